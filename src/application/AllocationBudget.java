@@ -0,0 +1,229 @@
+package application;
+
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.Color;
+import chess.CompactPosition;
+import chess.Move;
+import chess.MoveGenerator;
+import chess.MoveNotation;
+import chess.MoveStatus;
+import chess.PieceType;
+import chess.engine.NnueEvaluator;
+import chess.engine.NnueNetwork;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Allocation budgets of the move paths: each API is called on positions of random games until the JIT compiler
+ * settled, then the bytes the thread allocated are measured over many calls with
+ * {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}. The program prints a report of the bytes
+ * per call of each API against its budget, writes it to a file if a path is given as argument, and exits with
+ * status 1 if an API exceeds its budget, so that a build step running it fails.
+ */
+public class AllocationBudget {
+
+    private static final int WARM_UP_ROUNDS = 5;
+    private static final int CALLS = 200_000;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * A call of an API, given the index of the call.
+     */
+    private interface Call {
+        void run(int i);
+    }
+
+    private final List<String> report = new ArrayList<>();
+    private boolean exceeded;
+    private long sink;
+
+    public static void main(String[] args) throws IOException {
+        AllocationBudget budget = new AllocationBudget();
+        budget.measureAll();
+        if (args.length > 0) {
+            Files.write(Paths.get(args[0]), budget.report);
+        }
+        if (budget.exceeded) {
+            System.exit(1);
+        }
+    }
+
+    private void measureAll() {
+        Random random = new Random(1);
+        int[] buffer = new int[256];
+        // Positions of random games, with the legal moves of each
+        List<ChessMatch> matches = new ArrayList<>();
+        List<int[]> legalMoves = new ArrayList<>();
+        List<int[]> games = new ArrayList<>();
+        while (matches.size() < 1_000) {
+            ChessMatch match = new ChessMatch();
+            int[] game = new int[120];
+            int plies = 0;
+            while (plies < game.length && !match.getGameResult().isOver()) {
+                int[] legal = legalMoves(match, buffer);
+                if (plies % 8 == 3) {
+                    matches.add(CompactPosition.of(match).toMatch());
+                    legalMoves.add(legal);
+                }
+                game[plies] = legal[random.nextInt(legal.length)];
+                match.performChessMove(game[plies++]);
+            }
+            games.add(Arrays.copyOf(game, plies));
+        }
+        int positions = matches.size();
+        ChessMatch[] match = matches.toArray(new ChessMatch[0]);
+        int[][] legal = legalMoves.toArray(new int[0][]);
+        int[] kingSquares = new int[positions];
+        for (int p = 0; p < positions; p++) {
+            kingSquares[p] = kingSquare(match[p], match[p].getCurrentPlayer());
+        }
+        ChessMatch promotion = new ChessMatch("4k3/P6P/8/8/8/8/p6p/4K3 w - - 0 1");
+        int[] promotions = legalMoves(promotion, buffer);
+
+        report.add(String.format("%-40s %10s %10s", "API", "bytes/call", "budget"));
+        measure("MoveGenerator.generate", 0, i -> {
+            sink += MoveGenerator.generate(match[i % positions], MoveGenerator.ALL, buffer, 0);
+        });
+        measure("MoveGenerator.isPseudoLegal", 0, i -> {
+            int[] moves = legal[i % positions];
+            sink += MoveGenerator.isPseudoLegal(match[i % positions], moves[i % moves.length]) ? 1 : 0;
+        });
+        measure("MoveGenerator.isAttacked (check)", 0, i -> {
+            ChessMatch m = match[i % positions];
+            sink += MoveGenerator.isAttacked(m, kingSquares[i % positions],
+                    m.getCurrentPlayer() == Color.WHITE ? Color.BLACK : Color.WHITE) ? 1 : 0;
+        });
+        measure("ChessMatch.makeMove/undoMove", 0, i -> {
+            ChessMatch m = match[i % positions];
+            int[] moves = legal[i % positions];
+            m.makeMove(moves[i % moves.length]);
+            sink += m.getPositionKey() + (m.getCheck() ? 1 : 0);
+            m.undoMove();
+        });
+        measure("ChessMatch.makeMove/undoMove, promotion", 0, i -> {
+            promotion.makeMove(promotions[i % promotions.length]);
+            sink += promotion.getPositionKey();
+            promotion.undoMove();
+        });
+        measure("ChessMatch.makeMove, rejected", 0, i -> {
+            ChessMatch m = match[i % positions];
+            int count = MoveGenerator.generate(m, MoveGenerator.ALL, buffer, 0);
+            if (m.makeMove(buffer[i % count])) {
+                m.undoMove();
+            }
+        });
+
+        // tryMove checks moves against the generated ones, as makeMove does, and a legal move publishes an
+        // immutable snapshot of the new position
+        ChessMatch replay = new ChessMatch();
+        int[] gameIndex = {0, 0};
+        measure("ChessMatch.tryMove, legal", 128, i -> {
+            int[] game = games.get(gameIndex[0] % games.size());
+            if (gameIndex[1] == game.length) {
+                replay.reset();
+                gameIndex[0]++;
+                gameIndex[1] = 0;
+                game = games.get(gameIndex[0] % games.size());
+            }
+            if (game.length > 0) {
+                MoveStatus status = replay.tryMove(game[gameIndex[1]++]);
+                sink += status.ordinal();
+            }
+        });
+        measure("ChessMatch.tryMove, rejected", 0, i -> {
+            int[] moves = legal[i % positions];
+            int move = moves[i % moves.length];
+            // A legal move played backwards, which mostly starts from an empty square, or a piece moved in place
+            move = (i & 1) == 0 ? Move.of(Move.target(move), Move.source(move)) : Move.of(Move.source(move),
+                    Move.source(move));
+            sink += match[i % positions].tryMove(move).ordinal();
+        });
+        measure("ChessMatch.reset", 0, i -> replay.reset());
+
+        NnueEvaluator nnue = new NnueEvaluator(NnueNetwork.fromPieceSquareTables());
+        measure("NnueEvaluator.evaluate, incremental", 0, i -> {
+            ChessMatch m = match[i % positions];
+            int[] moves = legal[i % positions];
+            m.makeMove(moves[i % moves.length]);
+            sink += nnue.evaluate(m);
+            m.undoMove();
+        });
+
+        StringBuilder text = new StringBuilder(16);
+        measure("MoveNotation.appendSan", 0, i -> {
+            int[] moves = legal[i % positions];
+            text.setLength(0);
+            MoveNotation.appendSan(match[i % positions], moves[i % moves.length], text);
+            sink += text.length();
+        });
+        measure("MoveNotation.parse", 0, i -> {
+            ChessMatch m = match[i % positions];
+            int[] moves = legal[i % positions];
+            text.setLength(0);
+            MoveNotation.appendSan(m, moves[i % moves.length], text);
+            sink += MoveNotation.parse(m, text, 0, text.length());
+        });
+        report.add(exceeded ? "Allocation budget exceeded" : "All allocation budgets met");
+        for (String line : report) {
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * Measures the bytes allocated per call of an API after warming it up, and adds it to the report.
+     *
+     * @param name   the name of the API
+     * @param budget the maximum number of bytes allocated per call
+     * @param call   a call of the API
+     */
+    private void measure(String name, long budget, Call call) {
+        long thread = Thread.currentThread().getId();
+        for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+            for (int i = 0; i < CALLS / WARM_UP_ROUNDS; i++) {
+                call.run(i);
+            }
+        }
+        long allocated = THREADS.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < CALLS; i++) {
+            call.run(i);
+        }
+        double perCall = (double) (THREADS.getThreadAllocatedBytes(thread) - allocated) / CALLS;
+        // Less than a byte per call is the measurement itself, or a rare resize of a reused buffer
+        boolean over = perCall >= budget + 1;
+        exceeded |= over;
+        report.add(String.format("%-40s %10.2f %10d%s", name, perCall, budget, over ? "  EXCEEDED" : ""));
+    }
+
+    private static int[] legalMoves(ChessMatch match, int[] buffer) {
+        int count = MoveGenerator.generate(match, MoveGenerator.ALL, buffer, 0);
+        int legal = 0;
+        int[] moves = new int[count];
+        for (int i = 0; i < count; i++) {
+            if (match.makeMove(buffer[i])) {
+                match.undoMove();
+                moves[legal++] = buffer[i];
+            }
+        }
+        return Arrays.copyOf(moves, legal);
+    }
+
+    private static int kingSquare(ChessMatch match, Color color) {
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = match.getPiece(square);
+            if (piece != null && piece.getType() == PieceType.KING && piece.getColor() == color) {
+                return square;
+            }
+        }
+        throw new IllegalStateException("No king of " + color);
+    }
+}
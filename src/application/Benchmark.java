@@ -0,0 +1,754 @@
+package application;
+
+import chess.ChessMatch;
+import chess.ChessMatchPool;
+import chess.ChessPiece;
+import chess.Color;
+import chess.CompactPosition;
+import chess.CompactPositionList;
+import chess.MatchSnapshot;
+import chess.Move;
+import chess.MoveGenerator;
+import chess.MoveNotation;
+import chess.MoveStatus;
+import chess.PieceType;
+import chess.SequenceResult;
+import chess.clock.ClockMode;
+import chess.clock.GameClock;
+import chess.clock.TimerWheel;
+import chess.engine.Evaluator;
+import chess.engine.MateResult;
+import chess.engine.MateSolver;
+import chess.engine.NnueEvaluator;
+import chess.engine.NnueNetwork;
+import chess.engine.OrderingTables;
+import chess.engine.Search;
+import chess.engine.TimeBudget;
+import chess.engine.TimeMetrics;
+import chess.engine.TranspositionTable;
+import chess.event.MoveEventBus;
+import chess.event.MoveEventRing;
+import chess.event.OverflowPolicy;
+import chess.journal.MoveJournal;
+import chess.tablebase.TablebaseGenerator;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Benchmark suite for the chess engine components.
+ * Each section prints its measurements to the console.
+ */
+public class Benchmark {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path directory = args.length > 0 ? Paths.get(args[0]) : Files.createTempDirectory("tablebases");
+        tablebases(directory);
+        moveOrdering();
+        timeManagement();
+        positionStorage();
+        journal(Files.createTempDirectory("journal"));
+        moveEvents();
+        sequenceValidation();
+        notation();
+        matchPool();
+        nnue(Files.createTempDirectory("nnue"));
+        snapshots();
+        mateSolver();
+        clocks();
+    }
+
+    /**
+     * Openings searched by the search benchmarks, as moves in UCI notation from the initial position.
+     */
+    private static final String[] POSITIONS = {
+            "",
+            "e2e4 e7e5 g1f3 b8c6 f1b5 a7a6 b5a4 g8f6 e1g1 f8e7",
+            "d2d4 g8f6 c2c4 e7e6 b1c3 f8b4 e2e3 e8g8 f1d3 d7d5",
+            "e2e4 c7c5 g1f3 d7d6 d2d4 c5d4 f3d4 g8f6 b1c3 a7a6 c1e3 e7e5",
+    };
+
+    /**
+     * Searches each benchmark position to a fixed depth with and without move ordering, and prints the nodes
+     * needed, the time, and the share of beta cutoffs produced by the first move tried.
+     */
+    private static void moveOrdering() {
+        int depth = 5;
+        System.out.println("Move ordering, depth " + depth);
+        TranspositionTable table = new TranspositionTable(16);
+        Search search = new Search(table, new Evaluator());
+        for (String moves : POSITIONS) {
+            ChessMatch match = play(moves);
+            for (boolean ordered : new boolean[]{false, true}) {
+                table.clear();
+                OrderingTables.forCurrentThread().clear();
+                search.setOrdering(ordered);
+                long start = System.nanoTime();
+                int move = search.search(match, depth);
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                System.out.printf("%-9s %-6s %10d nodes %8d ms %6.1f%% first move cutoffs  %s%n",
+                        ordered ? "ordered" : "unordered", Move.toString(move), search.getNodes(), millis,
+                        100.0 * search.getFirstMoveCutoffs() / Math.max(1, search.getCutoffs()),
+                        moves.isEmpty() ? "initial position" : "after " + moves.split(" ").length + " plies");
+            }
+        }
+    }
+
+    /**
+     * Plays a game of the engine against itself with a clock of 3 seconds plus 30 milliseconds per move for each
+     * player, and prints the percentiles of the time used per move against the budget.
+     */
+    private static void timeManagement() {
+        System.out.println("Time management, 3 s + 30 ms per player");
+        TimeMetrics metrics = new TimeMetrics(256);
+        Search search = new Search(new TranspositionTable(16), new Evaluator());
+        search.setMetrics(metrics);
+        ChessMatch match = new ChessMatch();
+        long[] clocks = {3000, 3000};
+        for (int ply = 0; ply < 40 && !match.getGameResult().isOver(); ply++) {
+            int player = match.getCurrentPlayer().ordinal();
+            long start = System.nanoTime();
+            int move = search.search(match, TimeBudget.fromClock(clocks[player], 30, 0));
+            clocks[player] += 30 - (System.nanoTime() - start) / 1_000_000;
+            match.performChessMove(move);
+        }
+        System.out.println(metrics);
+    }
+
+    /**
+     * Stores the positions of random games in a compact position list and as matches rebuilt from them, and prints
+     * the heap taken per position by each.
+     */
+    private static void positionStorage() {
+        int positions = 100_000;
+        int matches = 1_000;
+        System.out.println("Position storage, " + positions + " positions");
+        Random random = new Random(1);
+        int[] moves = new int[256];
+        long before = usedHeap();
+        CompactPositionList list = new CompactPositionList();
+        ChessMatch match = new ChessMatch();
+        long start = System.nanoTime();
+        while (list.size() < positions) {
+            if (match.getGameResult().isOver() || match.getTurn() > 200) {
+                match = new ChessMatch();
+            }
+            list.add(match);
+            match.performChessMove(randomMove(match, random, moves));
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        long compactBytes = usedHeap() - before;
+        System.out.printf("compact   %8.1f bytes per position, %d ms to play and store%n",
+                (double) compactBytes / positions, millis);
+
+        before = usedHeap();
+        ChessMatch[] rebuilt = new ChessMatch[matches];
+        start = System.nanoTime();
+        for (int i = 0; i < matches; i++) {
+            rebuilt[i] = list.get(i * (positions / matches)).toMatch();
+        }
+        millis = (System.nanoTime() - start) / 1_000_000;
+        long matchBytes = usedHeap() - before;
+        System.out.printf("match     %8.1f bytes per position, %d ms to rebuild %d%n",
+                (double) matchBytes / matches, millis, rebuilt.length);
+    }
+
+    /**
+     * Plays games of random moves on several threads, each move journaled and waited for until it is on disk,
+     * then reopens the journal and prints the fsync batching and the time to rebuild the matches.
+     *
+     * @param directory the directory where the journal is written
+     * @throws IOException if the journal cannot be written or read
+     */
+    private static void journal(Path directory) throws IOException {
+        int threads = 8;
+        int matchesPerThread = 8;
+        int movesPerThread = 5_000;
+        System.out.println("Move journal, " + threads + " threads playing " + threads * matchesPerThread +
+                " matches, in " + directory);
+        long start = System.nanoTime();
+        try (MoveJournal journal = new MoveJournal(directory)) {
+            List<Thread> players = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Random random = new Random(t);
+                Thread player = new Thread(() -> {
+                    int[] moves = new int[256];
+                    ChessMatch[] matches = new ChessMatch[matchesPerThread];
+                    long[] ids = new long[matchesPerThread];
+                    for (int i = 0; i < movesPerThread; i++) {
+                        int m = i % matchesPerThread;
+                        if (matches[m] == null || matches[m].getGameResult().isOver()) {
+                            if (matches[m] != null) {
+                                journal.endMatch(ids[m]);
+                            }
+                            matches[m] = new ChessMatch();
+                            ids[m] = journal.startMatch();
+                        }
+                        int move = randomMove(matches[m], random, moves);
+                        matches[m].performChessMove(move);
+                        journal.append(ids[m], move).join();
+                    }
+                });
+                players.add(player);
+                player.start();
+            }
+            for (Thread player : players) {
+                player.join();
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.printf("%d moves in %d ms, %s%n", threads * movesPerThread, millis, journal);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try (MoveJournal journal = new MoveJournal(directory)) {
+            System.out.printf("recovered %d matches, %d moves in %d ms, %.0f ms per million moves, %d rejected%n",
+                    journal.getRecoveredMatches().size(), journal.getRecoveredMoves(),
+                    journal.getRecoveryNanos() / 1_000_000,
+                    journal.getRecoveryNanos() / 1e6 * 1_000_000 / Math.max(1, journal.getRecoveredMoves()),
+                    journal.getRejectedMatches().size());
+        }
+    }
+
+    /**
+     * Publishes move events through a bus with a fast and a slow subscription, under each overflow policy, and
+     * prints the cost of publishing on the player's thread, the bytes it allocated and what each subscription got.
+     */
+    private static void moveEvents() {
+        int events = 200_000;
+        System.out.println("Move events, " + events + " events, rings of 1024");
+        ChessMatch match = play("e2e4");
+        int move = Move.fromString("e2e4");
+        // The first round only warms up the JIT compiler
+        for (int round = 0; round < 2; round++) {
+            for (OverflowPolicy policy : OverflowPolicy.values()) {
+                moveEvents(policy, events, match, move, round == 1);
+            }
+        }
+    }
+
+    /**
+     * Publishes the same move repeatedly through a new bus with the given policy and prints the measurements.
+     */
+    private static void moveEvents(OverflowPolicy policy, int events, ChessMatch match, int move, boolean print) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        MoveEventBus bus = new MoveEventBus(1024, policy);
+        MoveEventBus.Subscription log = bus.subscribe("log", (event, endOfBatch) -> {
+        });
+        MoveEventBus.Subscription spectator = bus.subscribe("spectator", (event, endOfBatch) -> {
+            long until = System.nanoTime() + 2_000;
+            while (System.nanoTime() < until) {
+                Thread.onSpinWait();
+            }
+        });
+        MoveEventRing ring = bus.attach(match);
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < events; i++) {
+            ring.publish(match, move, null, 0);
+        }
+        long nanos = System.nanoTime() - start;
+        allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+        bus.detach(match);
+        bus.close();
+        if (print) {
+            System.out.printf("%-8s %6.0f ns per publish, %d bytes allocated, %d dropped%n",
+                    policy, (double) nanos / events, allocated, ring.getDropped());
+            System.out.println("         " + log);
+            System.out.println("         " + spectator);
+        }
+    }
+
+    /**
+     * Replays random games move by move with {@link ChessMatch#performChessMove(int)}, then validates them as whole
+     * sequences on one thread and on all the cores, and prints the moves checked per second.
+     */
+    private static void sequenceValidation() {
+        int games = 2_000;
+        Random random = new Random(1);
+        int[] moves = new int[256];
+        List<int[]> sequences = new ArrayList<>();
+        long total = 0;
+        for (int i = 0; i < games; i++) {
+            ChessMatch match = new ChessMatch();
+            int[] sequence = new int[200];
+            int plies = 0;
+            while (plies < sequence.length && !match.getGameResult().isOver()) {
+                sequence[plies] = randomMove(match, random, moves);
+                match.performChessMove(sequence[plies++]);
+            }
+            sequences.add(Arrays.copyOf(sequence, plies));
+            total += plies;
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        System.out.println("Sequence validation, " + games + " random games, " + total + " moves");
+
+        long start = System.nanoTime();
+        for (int[] sequence : sequences) {
+            ChessMatch match = new ChessMatch();
+            for (int move : sequence) {
+                match.performChessMove(move);
+            }
+        }
+        printMovesPerSecond("performChessMove", total, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        for (int[] sequence : sequences) {
+            new ChessMatch().validateSequence(sequence);
+        }
+        printMovesPerSecond("validateSequence", total, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        SequenceResult[] results = ChessMatch.validateSequences(sequences, threads);
+        printMovesPerSecond("validateSequences, " + threads + " threads", total, System.nanoTime() - start);
+        for (SequenceResult result : results) {
+            if (!result.isValid()) {
+                throw new IllegalStateException("A played game was rejected: " + result);
+            }
+        }
+        castlingRule();
+    }
+
+    /**
+     * Castles in positions where the king stands in, passes through or lands on an attacked square, and where it
+     * does not, with {@link ChessMatch#tryMove(int)} and with {@link ChessMatch#validateSequence(int[])}, which must
+     * agree on the status of the move, the result and the position.
+     */
+    private static void castlingRule() {
+        String[] positions = {
+                "5rk1/8/8/8/8/8/8/4K2R w K - 0 1", "6rk/8/8/8/8/8/7P/4K2R w K - 0 1",
+                "4r1k1/8/8/8/8/8/8/4K2R w K - 0 1", "3rk3/8/8/8/8/8/8/R3K3 w Q - 0 1",
+                "2r1k3/8/8/8/8/8/8/R3K3 w Q - 0 1", "1r2k3/8/8/8/8/8/8/R3K3 w Q - 0 1",
+                "r3k2r/8/8/8/8/8/8/5RK1 b kq - 0 1", "r3k2r/8/8/8/8/8/8/3R2K1 b kq - 0 1",
+                "r3k2r/8/8/8/8/8/8/4R1K1 b kq - 0 1", "r3k2r/8/8/8/8/8/8/6K1 b kq - 0 1"
+        };
+        int legal = 0;
+        for (String fen : positions) {
+            int king = fen.contains(" w ") ? 60 : 4;
+            for (int target : new int[]{king - 2, king + 2}) {
+                ChessMatch played = new ChessMatch(fen);
+                ChessMatch validated = new ChessMatch(fen);
+                int move = Move.of(king, target);
+                MoveStatus status = played.tryMove(move);
+                SequenceResult sequence = validated.validateSequence(new int[]{move});
+                if (status != sequence.getStatus() || played.getGameResult() != sequence.getResult() ||
+                        !CompactPosition.of(played).equals(sequence.getPosition())) {
+                    throw new IllegalStateException("Castling " + Move.toString(move) + " in " + fen +
+                            ": tryMove " + status + ", validateSequence " + sequence);
+                }
+                legal += status.isLegal() ? 1 : 0;
+            }
+        }
+        System.out.println("Castling through check, " + positions.length * 2 + " castles, " + legal +
+                " legal: tryMove and validateSequence agree");
+    }
+
+    /**
+     * Formats the moves of random games in SAN, then parses the game texts back, and prints the time and the bytes
+     * allocated per move.
+     */
+    private static void notation() {
+        int games = 1_000;
+        Random random = new Random(1);
+        int[] moves = new int[256];
+        List<int[]> sequences = new ArrayList<>();
+        long total = 0;
+        for (int i = 0; i < games; i++) {
+            ChessMatch match = new ChessMatch();
+            int[] sequence = new int[200];
+            int plies = 0;
+            while (plies < sequence.length && !match.getGameResult().isOver()) {
+                sequence[plies] = randomMove(match, random, moves);
+                match.performChessMove(sequence[plies++]);
+            }
+            sequences.add(Arrays.copyOf(sequence, plies));
+            total += plies;
+        }
+        System.out.println("Move notation, " + games + " random games, " + total + " moves");
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        List<StringBuilder> texts = new ArrayList<>();
+        for (int[] sequence : sequences) {
+            texts.add(new StringBuilder(sequence.length * 8));
+        }
+        ChessMatch match = new ChessMatch();
+        // The first round only warms up the JIT compiler
+        for (int round = 0; round < 2; round++) {
+            long allocated = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            for (int g = 0; g < games; g++) {
+                StringBuilder text = texts.get(g);
+                text.setLength(0);
+                for (int move : sequences.get(g)) {
+                    MoveNotation.appendSan(match, move, text).append(' ');
+                    match.makeMove(move);
+                }
+                for (int i = sequences.get(g).length; i > 0; i--) {
+                    match.undoMove();
+                }
+            }
+            long formatNanos = System.nanoTime() - start;
+            long formatBytes = threads.getCurrentThreadAllocatedBytes() - allocated;
+
+            allocated = threads.getCurrentThreadAllocatedBytes();
+            start = System.nanoTime();
+            for (int g = 0; g < games; g++) {
+                StringBuilder text = texts.get(g);
+                int plies = 0;
+                for (int begin = 0, end; begin < text.length(); begin = end + 1) {
+                    end = text.indexOf(" ", begin);
+                    int move = MoveNotation.parse(match, text, begin, end);
+                    if (move != sequences.get(g)[plies++] || !match.makeMove(move)) {
+                        throw new IllegalStateException("Wrong move parsed in game " + g + " at ply " + plies);
+                    }
+                }
+                for (; plies > 0; plies--) {
+                    match.undoMove();
+                }
+            }
+            long parseNanos = System.nanoTime() - start;
+            long parseBytes = threads.getCurrentThreadAllocatedBytes() - allocated;
+            if (round == 1) {
+                System.out.printf("format SAN %6.0f ns per move, %.2f bytes allocated per move%n",
+                        (double) formatNanos / total, (double) formatBytes / total);
+                System.out.printf("parse SAN  %6.0f ns per move, %.2f bytes allocated per move%n",
+                        (double) parseNanos / total, (double) parseBytes / total);
+            }
+        }
+    }
+
+    /**
+     * Starts games with new matches, then with matches of a pool, and prints the time and the bytes allocated per
+     * game, for empty games and for short random games.
+     */
+    private static void matchPool() {
+        int games = 20_000;
+        int[] moves = new int[256];
+        ChessMatchPool pool = new ChessMatchPool(16);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        System.out.println("Match pool, " + games + " games");
+        // The first round only warms up the JIT compiler
+        for (int round = 0; round < 2; round++) {
+            for (int plies : new int[]{0, 16}) {
+                for (boolean pooled : new boolean[]{false, true}) {
+                    Random random = new Random(1);
+                    long allocated = threads.getCurrentThreadAllocatedBytes();
+                    long start = System.nanoTime();
+                    for (int g = 0; g < games; g++) {
+                        ChessMatch match = pooled ? pool.acquire() : new ChessMatch();
+                        for (int i = 0; i < plies && !match.getGameResult().isOver(); i++) {
+                            match.performChessMove(randomMove(match, random, moves));
+                        }
+                        if (pooled) {
+                            pool.release(match);
+                        }
+                    }
+                    long nanos = System.nanoTime() - start;
+                    allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+                    if (round == 1) {
+                        System.out.printf("%-9s %2d moves %8.0f ns per game, %6.0f bytes allocated per game%n",
+                                pooled ? "pooled" : "new match", plies, (double) nanos / games,
+                                (double) allocated / games);
+                    }
+                }
+            }
+        }
+        System.out.println("pool: " + pool);
+    }
+
+    /**
+     * Writes the network distilled from the piece-square tables and loads it back, then evaluates positions of
+     * random games with the scalar and, if {@link NnueEvaluator#isVectorAvailable()}, the vector
+     * kernels, and prints the evaluations per second with accumulators computed from the board and with the
+     * incremental accumulators, each evaluation following a move made and undone.
+     *
+     * @param directory the directory where the network file is written
+     * @throws IOException if the network file cannot be written or read
+     */
+    private static void nnue(Path directory) throws IOException {
+        Path path = directory.resolve("psqt.nnue");
+        NnueNetwork.fromPieceSquareTables().save(path);
+        long start = System.nanoTime();
+        NnueNetwork network = NnueNetwork.load(path);
+        System.out.printf("NNUE, network of %d KB loaded in %d ms%n", Files.size(path) / 1024,
+                (System.nanoTime() - start) / 1_000_000);
+        Random random = new Random(1);
+        int[] moves = new int[256];
+        List<ChessMatch> matches = new ArrayList<>();
+        List<Integer> replies = new ArrayList<>();
+        while (matches.size() < 1_000) {
+            ChessMatch match = new ChessMatch();
+            for (int ply = 0; ply < 60 && !match.getGameResult().isOver(); ply++) {
+                int move = randomMove(match, random, moves);
+                if (ply % 6 == 5) {
+                    matches.add(CompactPosition.of(match).toMatch());
+                    replies.add(move);
+                }
+                match.performChessMove(move);
+            }
+        }
+        Evaluator handcrafted = new Evaluator();
+        long difference = 0;
+        for (ChessMatch match : matches) {
+            difference += Math.abs(new NnueEvaluator(network).evaluate(match) - handcrafted.evaluate(match));
+        }
+        System.out.printf("mean difference from the handcrafted evaluation: %d cp%n", difference / matches.size());
+        int evaluations = 500_000;
+        List<Boolean> kernels = NnueEvaluator.isVectorAvailable() ? List.of(false, true) : List.of(false);
+        // The first round only warms up the JIT compiler
+        for (int round = 0; round < 2; round++) {
+            for (boolean vector : kernels) {
+                NnueEvaluator evaluator = new NnueEvaluator(network, vector);
+                for (boolean incremental : new boolean[]{false, true}) {
+                    long sum = 0;
+                    start = System.nanoTime();
+                    for (int i = 0; i < evaluations; i++) {
+                        ChessMatch match = matches.get(i % matches.size());
+                        match.makeMove(replies.get(i % matches.size()));
+                        sum += incremental ? evaluator.evaluate(match) : evaluator.evaluateFromScratch(match);
+                        match.undoMove();
+                    }
+                    long nanos = System.nanoTime() - start;
+                    if (round == 1) {
+                        System.out.printf("%-16s %-12s %8d ms %12.0f evals/s (checksum %d)%n",
+                                evaluator.getKernelName(), incremental ? "incremental" : "full refresh",
+                                nanos / 1_000_000, evaluations * 1e9 / nanos, sum);
+                    }
+                }
+                for (ChessMatch match : matches) {
+                    evaluator.verify(match);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the board of a match from another thread while random games are played on it, first with
+     * {@link ChessMatch#getPieces()} and then with {@link ChessMatch#getSnapshot()}, and prints the reads per
+     * second and the number of torn boards seen, those without exactly one king per player.
+     *
+     * @throws InterruptedException if interrupted while waiting for the playing thread
+     */
+    private static void snapshots() throws InterruptedException {
+        long millis = 2_000;
+        System.out.println("Match snapshots, reads from another thread during " + millis + " ms of random games");
+        for (boolean snapshot : new boolean[]{false, true}) {
+            ChessMatch match = new ChessMatch();
+            long deadline = System.nanoTime() + millis * 1_000_000;
+            Thread player = new Thread(() -> {
+                Random random = new Random(1);
+                int[] moves = new int[256];
+                while (System.nanoTime() < deadline) {
+                    if (match.getGameResult().isOver() || match.getTurn() > 200) {
+                        match.reset();
+                    } else {
+                        match.performChessMove(randomMove(match, random, moves));
+                    }
+                }
+            });
+            player.start();
+            long reads = 0;
+            long torn = 0;
+            while (player.isAlive()) {
+                int kings = 0;
+                if (snapshot) {
+                    MatchSnapshot view = match.getSnapshot();
+                    for (int square = 0; square < 64; square++) {
+                        kings += view.getPosition().getPieceType(square) == PieceType.KING ? 1 : 0;
+                    }
+                } else {
+                    for (ChessPiece[] row : match.getPieces()) {
+                        for (ChessPiece piece : row) {
+                            kings += piece != null && piece.getType() == PieceType.KING ? 1 : 0;
+                        }
+                    }
+                }
+                reads++;
+                torn += kings != 2 ? 1 : 0;
+            }
+            player.join();
+            System.out.printf("%-12s %12.0f reads/s %8d torn boards%n", snapshot ? "getSnapshot" : "getPieces",
+                    reads * 1000.0 / millis, torn);
+        }
+    }
+
+    /**
+     * Mates by checks found in random games, in FEN.
+     */
+    private static final String[] MATES = {
+            "r1b1kbn1/p1Qp3B/1p5p/4p1N1/2N1P3/2B5/2qPK1PP/1R1r2R1 w - - 3 34",
+            "r2k4/5r2/5np1/p6p/pB1PQp1P/1P1B1N2/2PQ1PP1/RN3RK1 w - - 0 24",
+            "3q1k2/8/4B1pr/2p4p/2P1P2P/4Kp2/3n1nP1/R1BR4 b - - 6 46",
+            "2b1kbr1/1pnpppQ1/r6p/1P4N1/2pqPK2/5PPP/P1PP4/RNBR4 b - - 2 21",
+            "2b1kN1Q/1p5K/3P1r1p/1P2P3/n1p5/B6r/P1P5/RN6 w - - 0 39",
+    };
+
+    /**
+     * Solves mates by checks with the proof-number solver, then searches them with alpha-beta to the depth of
+     * the mate found, and prints the nodes and the time of both. Alpha-beta may find a shorter mate starting
+     * with a quiet move, which the solver does not try.
+     */
+    private static void mateSolver() {
+        System.out.println("Mate solver against alpha-beta");
+        MateSolver solver = new MateSolver(32);
+        // Warms up the JIT compiler
+        for (String fen : MATES) {
+            solver.solve(new ChessMatch(fen), 8);
+        }
+        for (String fen : MATES) {
+            ChessMatch match = new ChessMatch(fen);
+            solver.clear();
+            MateResult result = solver.solve(match, 8);
+            Search search = new Search(new TranspositionTable(32), new Evaluator());
+            long start = System.nanoTime();
+            int move = search.search(match, 2 * result.getMoves() - 1);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.printf("mate in %d by checks: %8d nodes %6d ms | alpha-beta mate in %d: %9d nodes %6d ms %s%n",
+                    result.getMoves(), result.getNodes(), result.getNanos() / 1_000_000,
+                    (Search.MATE - search.getScore() + 1) / 2, search.getNodes(), millis, Move.toString(move));
+        }
+    }
+
+    /**
+     * Arms 100,000 game clocks on one timer wheel, and prints the cost of starting, pressing and stopping a clock,
+     * the CPU time of the wheel while they run, and how late the flags fall for 10,000 of them running out.
+     *
+     * @throws InterruptedException if interrupted while waiting for the flags
+     */
+    private static void clocks() throws InterruptedException {
+        int count = 100_000;
+        int flagging = 10_000;
+        System.out.println("Game clocks, " + count + " on one timer wheel");
+        try (TimerWheel wheel = new TimerWheel()) {
+            GameClock[] clocks = new GameClock[count];
+            Random random = new Random(1);
+            for (int i = 0; i < count; i++) {
+                clocks[i] = new GameClock(wheel, 60_000 + random.nextInt(3_540_000), 2_000,
+                        i % 2 == 0 ? ClockMode.INCREMENT : ClockMode.DELAY);
+            }
+            long start = System.nanoTime();
+            for (GameClock clock : clocks) {
+                clock.start(Color.WHITE);
+            }
+            long started = System.nanoTime();
+            for (GameClock clock : clocks) {
+                clock.press(Color.WHITE);
+            }
+            long pressed = System.nanoTime();
+            System.out.printf("start %.0f ns, press %.0f ns per clock, %d timers scheduled%n",
+                    (started - start) / (double) count, (pressed - started) / (double) count, wheel.getScheduled());
+
+            long cpu = wheel.getCpuNanos();
+            Thread.sleep(1_000);
+            System.out.printf("wheel thread idle with %d armed clocks: %.2f ms of CPU per second%n",
+                    wheel.getScheduled(), (wheel.getCpuNanos() - cpu) / 1e6);
+
+            // Flags falling between 100 and 1100 ms, while the other clocks keep running
+            long[] due = new long[flagging];
+            long[] fell = new long[flagging];
+            CountDownLatch flags = new CountDownLatch(flagging);
+            GameClock[] expiring = new GameClock[flagging];
+            for (int i = 0; i < flagging; i++) {
+                int index = i;
+                expiring[i] = new GameClock(wheel, 100 + random.nextInt(1_000), 0, ClockMode.INCREMENT);
+                expiring[i].setListener(clock -> {
+                    fell[index] = System.nanoTime();
+                    flags.countDown();
+                });
+            }
+            cpu = wheel.getCpuNanos();
+            long expirations = wheel.getExpirations();
+            for (int i = 0; i < flagging; i++) {
+                due[i] = System.nanoTime() + expiring[i].getRemainingMillis(Color.WHITE) * 1_000_000;
+                expiring[i].start(Color.WHITE);
+            }
+            flags.await();
+            long[] lateness = new long[flagging];
+            for (int i = 0; i < flagging; i++) {
+                lateness[i] = fell[i] - due[i];
+            }
+            Arrays.sort(lateness);
+            System.out.printf("%d flags: lateness p50 %.2f ms, p99 %.2f ms, max %.2f ms, earliest %.2f ms; " +
+                            "%d expirations, %.1f ms of wheel CPU%n", flagging, lateness[flagging / 2] / 1e6,
+                    lateness[flagging * 99 / 100] / 1e6, lateness[flagging - 1] / 1e6, lateness[0] / 1e6,
+                    wheel.getExpirations() - expirations, (wheel.getCpuNanos() - cpu) / 1e6);
+
+            start = System.nanoTime();
+            for (GameClock clock : clocks) {
+                clock.stop();
+            }
+            System.out.printf("stop %.0f ns per clock, %d timers left%n",
+                    (System.nanoTime() - start) / (double) count, wheel.getScheduled());
+        }
+    }
+
+    private static void printMovesPerSecond(String label, long moves, long nanos) {
+        System.out.printf("%-30s %8d ms %12.0f moves/s%n", label, nanos / 1_000_000, moves * 1e9 / nanos);
+    }
+
+    /**
+     * Returns a random legal move of the current position of a match, which must not be over.
+     *
+     * @param match  the match
+     * @param random the source of randomness
+     * @param moves  a buffer for the generated moves
+     * @return the packed move
+     */
+    private static int randomMove(ChessMatch match, Random random, int[] moves) {
+        int count = MoveGenerator.generate(match, MoveGenerator.ALL, moves, 0);
+        int move;
+        do {
+            move = moves[random.nextInt(count)];
+        } while (!match.makeMove(move));
+        match.undoMove();
+        return move;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Plays moves in UCI notation from the initial position.
+     *
+     * @param moves the moves, separated by spaces
+     * @return the match after the moves
+     */
+    private static ChessMatch play(String moves) {
+        ChessMatch match = new ChessMatch();
+        for (String move : moves.split(" ")) {
+            if (!move.isEmpty()) {
+                match.performChessMove(Move.fromString(move));
+            }
+        }
+        return match;
+    }
+
+    /**
+     * Generates the endgame tables and prints the generation time and file size of each one.
+     *
+     * @param directory the directory where the table files are written
+     * @throws IOException if a table file cannot be written
+     */
+    private static void tablebases(Path directory) throws IOException {
+        System.out.println("Endgame tables, " + Runtime.getRuntime().availableProcessors() + " cores, in " + directory);
+        TablebaseGenerator generator = new TablebaseGenerator(directory);
+        for (String signature : new String[]{"KQK", "KRK", "KPK", "KBNK"}) {
+            long start = System.nanoTime();
+            Path path = generator.generate(signature);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.printf("%-6s %8d ms %12d bytes%n", signature, millis, Files.size(path));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package application;
+
+import chess.book.OpeningBook;
+import chess.book.PolyglotKeys;
+import chess.tablebase.Tablebases;
+import chess.tournament.EngineConfig;
+import chess.tournament.Sprt;
+import chess.tournament.Tournament;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Plays a tournament between two engine configurations and prints its outcome.
+ * <p>
+ * Arguments: results file, number of game pairs, first engine, second engine, and optionally an openings file, an
+ * endgame tables directory and a file holding the Polyglot Random64 table. An engine is written "depth=N" or
+ * "time=MILLIS", followed by ",unordered" to disable move ordering. An openings file ending in ".bin" is read as an
+ * {@link chess.book.OpeningBook}, keyed by the Polyglot hash when the Random64 table is given, so that any Polyglot
+ * book can be used, and otherwise as written by {@link chess.book.OpeningBookBuilder} without Polyglot keys; any
+ * other openings file is a list of UCI move sequences and EPD positions. The tournament stops early when the test
+ * of H0: 0 Elo against H1: 5 Elo decides.
+ */
+public class EngineMatch {
+
+    private static final int BOOK_PLIES = 8;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.out.println("Usage: EngineMatch <results> <pairs> <engine> <engine> [openings] [tablebases] " +
+                    "[random64]");
+            return;
+        }
+        Tournament tournament = new Tournament(engine(args[2]), engine(args[3]), Paths.get(args[0]));
+        tournament.setSprt(new Sprt(0, 5, 0.05, 0.05));
+        OpeningBook book = null;
+        Tablebases tablebases = null;
+        try {
+            if (args.length > 4) {
+                Path openings = Paths.get(args[4]);
+                if (args[4].endsWith(".bin")) {
+                    book = new OpeningBook(openings, false,
+                            args.length > 6 ? PolyglotKeys.read(Paths.get(args[6])) : null);
+                    tournament.setOpeningBook(book, BOOK_PLIES);
+                } else {
+                    tournament.setOpenings(Tournament.readOpenings(openings));
+                }
+            }
+            if (args.length > 5) {
+                tablebases = new Tablebases(Paths.get(args[5]));
+                tournament.setTablebases(tablebases);
+            }
+            long start = System.nanoTime();
+            tournament.run(Integer.parseInt(args[1]));
+            System.out.println(tournament);
+            System.out.printf("%.1f s%n", (System.nanoTime() - start) / 1e9);
+        } finally {
+            if (book != null) {
+                book.close();
+            }
+            if (tablebases != null) {
+                tablebases.close();
+            }
+        }
+    }
+
+    private static EngineConfig engine(String spec) {
+        String[] options = spec.split(",");
+        String[] limit = options[0].split("=");
+        if (limit.length != 2) {
+            throw new IllegalArgumentException("Invalid engine: " + spec);
+        }
+        EngineConfig engine;
+        if (limit[0].equals("depth")) {
+            engine = EngineConfig.depth(spec, Integer.parseInt(limit[1]));
+        } else if (limit[0].equals("time")) {
+            engine = EngineConfig.moveTime(spec, Long.parseLong(limit[1]));
+        } else {
+            throw new IllegalArgumentException("Invalid engine: " + spec);
+        }
+        return options.length > 1 && options[1].equals("unordered") ? engine.withOrdering(false) : engine;
+    }
+}
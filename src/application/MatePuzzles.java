@@ -0,0 +1,166 @@
+package application;
+
+import chess.ChessMatch;
+import chess.MoveNotation;
+import chess.engine.MateResult;
+import chess.engine.MateSolver;
+import chess.exception.ChessException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks a file of mate puzzles in EPD with {@link MateSolver}, on all the cores, and prints for each puzzle the
+ * shortest mate found with its line in SAN, flagging the puzzles whose mate is shorter than announced, those with
+ * another first move mating as fast, and those whose mate was not found.
+ * <p>
+ * Arguments: EPD file, and optionally the time limit per puzzle in milliseconds (10000), the number of moves
+ * searched when a puzzle announces none (8) and the number of threads (the number of cores). A puzzle is a line
+ * with the four position fields of FEN followed by operations ending with ';', of which "dm" gives the announced
+ * number of moves of the mate and "id" the name of the puzzle. Lines that are empty or start with '#' are skipped.
+ */
+public class MatePuzzles {
+
+    private static final int HASH_MEGABYTES = 32;
+
+    private static final ThreadLocal<MateSolver> SOLVERS = ThreadLocal.withInitial(
+            () -> new MateSolver(HASH_MEGABYTES));
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.out.println("Usage: MatePuzzles <epd> [millis per puzzle] [default moves] [threads]");
+            return;
+        }
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 10_000;
+        int defaultMoves = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        List<String> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(args[0]))) {
+            if (!line.isBlank() && !line.startsWith("#")) {
+                lines.add(line.trim());
+            }
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        List<Future<String>> reports = new ArrayList<>();
+        int[] counts = new int[5];
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            String name = "#" + (i + 1);
+            reports.add(workers.submit(() -> check(name, line, millis, defaultMoves, counts)));
+        }
+        try {
+            // Printed in the order of the file, each as soon as it and the ones before are done
+            for (Future<String> report : reports) {
+                System.out.println(report.get());
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            workers.shutdown();
+        }
+        synchronized (counts) {
+            System.out.printf("%d puzzles in %.1f s on %d threads: %d solved as announced, %d shorter, " +
+                            "%d with alternative first moves, %d not solved, %d invalid%n", lines.size(),
+                    (System.nanoTime() - start) / 1e9, threads, counts[0], counts[1], counts[2], counts[3],
+                    counts[4]);
+        }
+    }
+
+    /**
+     * Solves a puzzle and describes the outcome.
+     *
+     * @param name         the name of the puzzle when it has no id
+     * @param line         the EPD line of the puzzle
+     * @param millis       the time limit
+     * @param defaultMoves the number of moves searched when the puzzle announces none
+     * @param counts       the counters of the outcomes, updated under their lock
+     * @return the line of the report
+     */
+    private static String check(String name, String line, long millis, int defaultMoves, int[] counts) {
+        String[] fields = line.split("\\s+", 5);
+        String operations = fields.length > 4 ? fields[4] : "";
+        String id = operand(operations, "id");
+        if (id != null) {
+            name = id.replace("\"", "");
+        }
+        ChessMatch match;
+        int announced;
+        try {
+            if (fields.length < 4) {
+                throw new ChessException("Invalid EPD: " + line);
+            }
+            match = new ChessMatch(String.join(" ", fields[0], fields[1], fields[2], fields[3]));
+            String dm = operand(operations, "dm");
+            announced = dm == null ? 0 : Integer.parseInt(dm);
+            if (announced < 0 || announced > MateSolver.MAX_MOVES) {
+                throw new ChessException("Invalid dm: " + dm);
+            }
+        } catch (ChessException | NumberFormatException e) {
+            count(counts, 4);
+            return name + ": invalid, " + e.getMessage();
+        }
+
+        MateResult result = SOLVERS.get().solve(match, announced > 0 ? announced : defaultMoves, millis);
+        StringBuilder sb = new StringBuilder(name).append(": ");
+        if (!result.isMate()) {
+            count(counts, 3);
+            sb.append(result.isTimedOut() ? "NOT SOLVED, " : "NO MATE, ").append(result);
+            return sb.toString();
+        }
+        sb.append("mate in ").append(result.getMoves());
+        if (announced > 0 && result.getMoves() < announced) {
+            sb.append(" SHORTER than ").append(announced);
+        }
+        int[] alternatives = result.getAlternatives();
+        count(counts, announced > 0 && result.getMoves() < announced ? 1 : alternatives.length > 0 ? 2 : 0);
+        sb.append(':');
+        int[] moves = result.getLine();
+        for (int move : moves) {
+            MoveNotation.appendSan(match, move, sb.append(' '));
+            match.makeMove(move);
+        }
+        for (int i = 0; i < moves.length; i++) {
+            match.undoMove();
+        }
+        if (alternatives.length > 0) {
+            sb.append(", ALTERNATIVES");
+            for (int move : alternatives) {
+                MoveNotation.appendSan(match, move, sb.append(' '));
+            }
+        }
+        return sb.append(String.format(" (%d nodes, %d ms)", result.getNodes(), result.getNanos() / 1_000_000))
+                .toString();
+    }
+
+    /**
+     * Returns the operand of an EPD operation.
+     *
+     * @param operations the operations of the line, each ending with ';'
+     * @param opcode     the opcode of the operation
+     * @return the operand, or null if the operation is absent
+     */
+    private static String operand(String operations, String opcode) {
+        for (String operation : operations.split(";")) {
+            String[] parts = operation.trim().split("\\s+", 2);
+            if (parts[0].equals(opcode) && parts.length > 1) {
+                return parts[1].trim();
+            }
+        }
+        return null;
+    }
+
+    private static void count(int[] counts, int outcome) {
+        synchronized (counts) {
+            counts[outcome]++;
+        }
+    }
+}
@@ -3,6 +3,13 @@ package application;
 import chess.ChessMatch;
 import chess.ChessPiece;
 import chess.ChessPosition;
+import chess.Color;
+import chess.Move;
+import chess.MoveStatus;
+import chess.engine.Evaluator;
+import chess.engine.Ponderer;
+import chess.engine.TimeBudget;
+import chess.engine.TranspositionTable;
 import chess.exception.ChessException;
 
 import java.util.ArrayList;
@@ -13,23 +20,50 @@ import java.util.Scanner;
 /**
  * Main method for the chess game.
  * It initializes the chess match, captures list, and starts the game loop.
- * The game loop continues until a checkmate is reached.
+ * The game loop continues until a checkmate or a draw is reached.
+ * With "white" or "black" as argument, the computer plays that color, and thinks ahead while the human is to move.
  */
 
 public class Program {
+
+    /**
+     * Time the computer takes per move.
+     */
+    private static final long COMPUTER_MOVE_MILLIS = 2000;
+
     public static void main(String[] args) {
 
         Scanner sc = new Scanner(System.in);
         ChessMatch chessMatch = new ChessMatch();
         List<ChessPiece> captured = new ArrayList<>();
+        Color computer = args.length > 0 ? Color.valueOf(args[0].toUpperCase()) : null;
+        Ponderer ponderer = computer == null ? null : new Ponderer(new TranspositionTable(64), new Evaluator());
 
-        while (!chessMatch.getCheckMate()) {
+        while (!chessMatch.getGameResult().isOver()) {
             try {
                 UI.clearScreen();
                 UI.printMatch(chessMatch, captured);
                 System.out.println();
+
+                if (chessMatch.getCurrentPlayer() == computer) {
+                    int move = ponderer.think(TimeBudget.fixed(COMPUTER_MOVE_MILLIS));
+                    ChessPiece capturedPiece = chessMatch.performChessMove(move);
+                    if (capturedPiece != null) {
+                        captured.add(capturedPiece);
+                    }
+                    ponderer.moveMade(move);
+                    ponderer.startPondering();
+                    continue;
+                }
+
                 System.out.print("Source: ");
                 ChessPosition source = UI.readChessPosition(sc);
+                MoveStatus status = chessMatch.checkSource(source);
+                if (!status.isLegal()) {
+                    System.out.println(status.getMessage());
+                    sc.nextLine();
+                    continue;
+                }
 
                 boolean[][] possibleMoves = chessMatch.possibleMoves(source);
                 UI.clearScreen();
@@ -39,8 +73,14 @@ public class Program {
                 System.out.print("Target: ");
                 ChessPosition target = UI.readChessPosition(sc);
 
-                ChessPiece capturedPiece = chessMatch.performChessMove(source, target);
+                status = chessMatch.tryMove(source, target, null);
+                if (!status.isLegal()) {
+                    System.out.println(status.getMessage());
+                    sc.nextLine();
+                    continue;
+                }
 
+                ChessPiece capturedPiece = chessMatch.getLastCapturedPiece();
                 if (capturedPiece != null) {
                     captured.add(capturedPiece);
                 }
@@ -56,11 +96,19 @@ public class Program {
                     }
                     chessMatch.replacePromotedPiece(type);
                 }
+                if (ponderer != null) {
+                    ChessPiece promoted = chessMatch.getPromoted();
+                    ponderer.moveMade(Move.of(Move.square(source), Move.square(target),
+                            promoted == null ? null : promoted.getType()));
+                }
             } catch (ChessException | InputMismatchException e) {
                 System.out.println(e.getMessage());
                 sc.nextLine();
             }
         }
+        if (ponderer != null) {
+            ponderer.close();
+        }
         UI.clearScreen();
         UI.printMatch(chessMatch, captured);
     }
@@ -0,0 +1,316 @@
+package application;
+
+import chess.ChessMatch;
+import chess.MoveGenerator;
+import chess.MoveStatus;
+import chess.shard.RebalanceResult;
+import chess.shard.ShardClient;
+import chess.shard.ShardRing;
+import chess.shard.ShardRouter;
+import chess.shard.ShardWorker;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the processes of the sharded matches on one machine, and measures them.
+ * <p>
+ * "worker [port]" runs a {@link ShardWorker}, and "router port id=host:port..." a {@link ShardRouter} over the
+ * given workers; both print the port they listen on and run until their standard input is closed, so that they
+ * end with the process that started them.
+ * <p>
+ * "bench [workers] [matches] [clients] [seconds]", the default, starts the workers (3) as separate JVMs and a router
+ * in this one. It first measures the routing overhead, as the round trip of a move sent through the router against
+ * one sent to a worker directly. Then the clients (8), each on its own thread and connection, play random games on
+ * the matches (3000) while a worker is added and then one removed, each for a third of the time (9 seconds), and
+ * the benchmark prints the pause of the migrated matches, the latency seen by the clients, and the moves rejected
+ * or ending the game differently than on a local copy of the match, which must be none.
+ */
+public class ShardCluster {
+
+    /**
+     * Round trips counted per microsecond, the last bucket counting all the longer ones.
+     */
+    private static final int LATENCY_BUCKETS = 100_000;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String mode = args.length > 0 ? args[0] : "bench";
+        switch (mode) {
+            case "worker":
+                try (ShardWorker worker = new ShardWorker(address(args.length > 1 ? Integer.parseInt(args[1]) : 0))) {
+                    serveUntilStdinCloses(worker.getAddress().getPort());
+                    System.out.println(worker);
+                }
+                break;
+            case "router":
+                Map<Integer, InetSocketAddress> workers = new LinkedHashMap<>();
+                for (int i = 2; i < args.length; i++) {
+                    String[] parts = args[i].split("[=:]");
+                    workers.put(Integer.parseInt(parts[0]),
+                            new InetSocketAddress(parts[1], Integer.parseInt(parts[2])));
+                }
+                try (ShardRouter router = new ShardRouter(address(Integer.parseInt(args[1])), workers,
+                        ShardRing.DEFAULT_VIRTUAL_NODES)) {
+                    serveUntilStdinCloses(router.getAddress().getPort());
+                    System.out.println(router);
+                }
+                break;
+            case "bench":
+                bench(args.length > 1 ? Integer.parseInt(args[1]) : 3,
+                        args.length > 2 ? Integer.parseInt(args[2]) : 3000,
+                        args.length > 3 ? Integer.parseInt(args[3]) : 8,
+                        args.length > 4 ? Integer.parseInt(args[4]) : 9);
+                break;
+            default:
+                System.out.println("Usage: ShardCluster worker [port] | router <port> <id=host:port>... | " +
+                        "bench [workers] [matches] [clients] [seconds]");
+        }
+    }
+
+    private static void bench(int workerCount, int matchCount, int clientCount, int seconds)
+            throws IOException, InterruptedException {
+        List<Process> processes = new ArrayList<>();
+        try {
+            Map<Integer, InetSocketAddress> workers = new LinkedHashMap<>();
+            long start = System.nanoTime();
+            for (int worker = 1; worker <= workerCount; worker++) {
+                workers.put(worker, startWorker(processes));
+            }
+            System.out.printf("%d worker JVMs started in %d ms%n", workerCount,
+                    (System.nanoTime() - start) / 1_000_000);
+            try (ShardRouter router = new ShardRouter(address(0), workers, ShardRing.DEFAULT_VIRTUAL_NODES)) {
+                routingOverhead(workers.get(1), router.getAddress());
+
+                Player[] players = new Player[clientCount];
+                for (int i = 0; i < clientCount; i++) {
+                    players[i] = new Player(router.getAddress(), i, matchCount / clientCount);
+                    players[i].start();
+                }
+                long playStart = System.nanoTime();
+                long phaseMillis = seconds * 1000L / 3;
+                Thread.sleep(phaseMillis);
+                InetSocketAddress added = startWorker(processes);
+                RebalanceResult result = router.addWorker(workerCount + 1, added, 4);
+                System.out.println("add worker " + (workerCount + 1) + ": " + result);
+                Thread.sleep(phaseMillis);
+                result = router.removeWorker(1, 4);
+                System.out.println("remove worker 1: " + result);
+                Thread.sleep(phaseMillis);
+
+                long[] latencies = new long[LATENCY_BUCKETS];
+                long moves = 0;
+                long rejected = 0;
+                long mismatches = 0;
+                long max = 0;
+                for (Player player : players) {
+                    player.finish();
+                    for (int i = 0; i < LATENCY_BUCKETS; i++) {
+                        latencies[i] += player.latencies[i];
+                    }
+                    moves += player.moves;
+                    rejected += player.rejected;
+                    mismatches += player.mismatches;
+                    max = Math.max(max, player.maxNanos);
+                }
+                double elapsed = (System.nanoTime() - playStart) / 1e9;
+                System.out.printf("%d moves by %d clients on %d matches, %.0f moves/s: latency p50 %d us, " +
+                                "p99 %d us, p99.9 %d us, max %d us%n", moves, clientCount, matchCount,
+                        moves / elapsed, percentile(latencies, 0.5), percentile(latencies, 0.99),
+                        percentile(latencies, 0.999), max / 1_000);
+                System.out.printf("%d moves rejected, %d results differing from a local copy%n", rejected,
+                        mismatches);
+                System.out.println(router);
+            }
+        } finally {
+            for (Process process : processes) {
+                process.getOutputStream().close();
+                process.destroy();
+            }
+        }
+    }
+
+    /**
+     * Prints the round trip of moves sent to a worker directly and through the router, one at a time.
+     */
+    private static void routingOverhead(InetSocketAddress worker, InetSocketAddress router) throws IOException {
+        int moves = 20_000;
+        String[] labels = {"direct to worker", "through router"};
+        InetSocketAddress[] addresses = {worker, router};
+        long[] p50 = new long[2];
+        for (int round = 0; round < 3; round++) {
+            for (int target = 0; target < 2; target++) {
+                long[] latencies = new long[LATENCY_BUCKETS];
+                try (ShardClient client = new ShardClient(addresses[target])) {
+                    Random random = new Random(round);
+                    int[] buffer = new int[256];
+                    long matchId = -1_000_000L * (round * 2 + target + 1);
+                    ChessMatch match = new ChessMatch();
+                    client.startMatch(matchId);
+                    for (int i = 0; i < moves; i++) {
+                        if (match.getGameResult().isOver()) {
+                            client.endMatch(matchId);
+                            client.startMatch(--matchId);
+                            match = new ChessMatch();
+                        }
+                        int move = randomMove(match, random, buffer);
+                        match.tryMove(move);
+                        long start = System.nanoTime();
+                        client.move(matchId, move);
+                        latencies[(int) Math.min(LATENCY_BUCKETS - 1, (System.nanoTime() - start) / 1_000)]++;
+                    }
+                    client.endMatch(matchId);
+                }
+                p50[target] = percentile(latencies, 0.5);
+                // The first round warms up the JIT compiler of both processes
+                if (round == 2) {
+                    System.out.printf("%-16s round trip p50 %d us, p99 %d us%n", labels[target],
+                            percentile(latencies, 0.5), percentile(latencies, 0.99));
+                }
+            }
+        }
+        System.out.printf("routing overhead p50 %d us per request%n", p50[1] - p50[0]);
+    }
+
+    /**
+     * Client thread playing random games on its own matches, one move per match in turn, and checking each reply
+     * against a local copy of the match.
+     */
+    private static final class Player extends Thread {
+
+        private final ShardClient client;
+        private final long[] matchIds;
+        private final ChessMatch[] matches;
+        private final long[] latencies = new long[LATENCY_BUCKETS];
+        private final AtomicLong nextId;
+        private volatile boolean stopped;
+        private long moves;
+        private long rejected;
+        private long mismatches;
+        private long maxNanos;
+
+        Player(InetSocketAddress router, int index, int matchCount) throws IOException {
+            super("shard-player-" + index);
+            client = new ShardClient(router);
+            matchIds = new long[matchCount];
+            matches = new ChessMatch[matchCount];
+            nextId = new AtomicLong((long) index << 40);
+            for (int i = 0; i < matchCount; i++) {
+                matchIds[i] = nextId.getAndIncrement();
+                matches[i] = new ChessMatch();
+                client.startMatch(matchIds[i]);
+            }
+        }
+
+        @Override
+        public void run() {
+            Random random = new Random(getName().hashCode());
+            int[] buffer = new int[256];
+            try {
+                while (!stopped) {
+                    for (int i = 0; i < matches.length && !stopped; i++) {
+                        if (matches[i].getGameResult().isOver()) {
+                            client.endMatch(matchIds[i]);
+                            matchIds[i] = nextId.getAndIncrement();
+                            matches[i] = new ChessMatch();
+                            client.startMatch(matchIds[i]);
+                        }
+                        int move = randomMove(matches[i], random, buffer);
+                        matches[i].tryMove(move);
+                        long start = System.nanoTime();
+                        MoveStatus status = client.move(matchIds[i], move);
+                        long nanos = System.nanoTime() - start;
+                        latencies[(int) Math.min(LATENCY_BUCKETS - 1, nanos / 1_000)]++;
+                        maxNanos = Math.max(maxNanos, nanos);
+                        moves++;
+                        if (!status.isLegal()) {
+                            rejected++;
+                        } else if (client.getResult() != matches[i].getGameResult()) {
+                            mismatches++;
+                        }
+                    }
+                }
+                for (long matchId : matchIds) {
+                    client.endMatch(matchId);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                try {
+                    client.close();
+                } catch (IOException ignored) {
+                    // Nothing is left to release
+                }
+            }
+        }
+
+        void finish() throws InterruptedException {
+            stopped = true;
+            join();
+        }
+    }
+
+    /**
+     * Starts a worker JVM running this class, with the class path of this one.
+     *
+     * @return the address the worker listens on
+     */
+    private static InetSocketAddress startWorker(List<Process> processes) throws IOException {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                ShardCluster.class.getName(), "worker", "0")
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        processes.add(process);
+        String line = new BufferedReader(new InputStreamReader(process.getInputStream())).readLine();
+        if (line == null || !line.startsWith("port ")) {
+            throw new IOException("The worker did not start: " + line);
+        }
+        return address(Integer.parseInt(line.substring(5)));
+    }
+
+    private static void serveUntilStdinCloses(int port) throws IOException {
+        System.out.println("port " + port);
+        System.out.flush();
+        while (System.in.read() >= 0) {
+            // Only the end of the input matters
+        }
+    }
+
+    private static InetSocketAddress address(int port) {
+        return new InetSocketAddress("127.0.0.1", port);
+    }
+
+    private static int randomMove(ChessMatch match, Random random, int[] moves) {
+        int count = MoveGenerator.generate(match, MoveGenerator.ALL, moves, 0);
+        int move;
+        do {
+            move = moves[random.nextInt(count)];
+        } while (!match.makeMove(move));
+        match.undoMove();
+        return move;
+    }
+
+    private static long percentile(long[] latencies, double p) {
+        long total = 0;
+        for (long count : latencies) {
+            total += count;
+        }
+        long rank = (long) Math.ceil(p * total);
+        long seen = 0;
+        for (int micros = 0; micros < latencies.length; micros++) {
+            seen += latencies[micros];
+            if (seen >= Math.max(1, rank)) {
+                return micros;
+            }
+        }
+        return latencies.length;
+    }
+}
@@ -0,0 +1,293 @@
+package application;
+
+import chess.ChessMatch;
+import chess.CompactPosition;
+import chess.MoveGenerator;
+import chess.broadcast.SpectatorBoard;
+import chess.broadcast.SpectatorServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load test of {@link SpectatorServer} on the loopback interface: simulated watchers follow games of random moves,
+ * and the test prints the delivery latency, the CPU time of the server per position and the evictions.
+ * <p>
+ * Arguments, all optional: number of watchers (50000), number of games (50), moves per game (100) and the pause
+ * between two moves in microseconds (2000). A tenth of the watchers joins halfway, to check the snapshots sent to
+ * late joiners. At the end, a few watchers that never read follow a flood of moves until the server evicts them.
+ * Each watcher takes two file descriptors, so the limit of open files must be raised accordingly.
+ */
+public class SpectatorLoad {
+
+    private static final int STALLED_WATCHERS = 20;
+    private static final int FLOOD_MOVES = 20_000;
+
+    /**
+     * Delivery latencies counted per microsecond, the last bucket counting all the longer ones.
+     */
+    private static final long[] latencies = new long[1_000_000];
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int watcherCount = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int gameCount = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int moves = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        long pauseNanos = (args.length > 3 ? Long.parseLong(args[3]) : 2_000) * 1_000;
+
+        try (SpectatorServer server = new SpectatorServer(new InetSocketAddress("127.0.0.1", 0), 64 * 1024)) {
+            InetSocketAddress address = server.getAddress();
+            long[][] sentNanos = new long[gameCount][moves + 1];
+            Watchers watchers = new Watchers(sentNanos);
+            int early = watcherCount - watcherCount / 10;
+            long start = System.nanoTime();
+            for (int i = 0; i < early; i++) {
+                watchers.connect(address, i, i % gameCount, false);
+            }
+            System.out.printf("%d watchers connected in %d ms%n", early, (System.nanoTime() - start) / 1_000_000);
+            watchers.start();
+
+            ChessMatch[] matches = new ChessMatch[gameCount];
+            int[] played = new int[gameCount];
+            for (int game = 0; game < gameCount; game++) {
+                matches[game] = new ChessMatch();
+                sentNanos[game][0] = System.nanoTime();
+                server.broadcast(game, matches[game]);
+            }
+            Random random = new Random(1);
+            int[] buffer = new int[256];
+            long cpu = server.getCpuNanos();
+            long positions = server.getPositions();
+            long frames = server.getFrames();
+            start = System.nanoTime();
+            for (int move = 1; move <= moves; move++) {
+                if (move == moves / 2) {
+                    for (int i = early; i < watcherCount; i++) {
+                        watchers.connect(address, i, i % gameCount, false);
+                    }
+                }
+                for (int game = 0; game < gameCount; game++) {
+                    if (matches[game].getGameResult().isOver()) {
+                        continue;
+                    }
+                    matches[game].performChessMove(randomMove(matches[game], random, buffer));
+                    played[game] = move;
+                    sentNanos[game][move] = System.nanoTime();
+                    server.broadcast(game, matches[game]);
+                    LockSupport.parkNanos(pauseNanos);
+                }
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+
+            int behind = watchers.awaitUpdated(matches, played, 30_000);
+            cpu = server.getCpuNanos() - cpu;
+            positions = server.getPositions() - positions;
+            frames = server.getFrames() - frames;
+            System.out.printf("%d positions of %d games to %d watchers in %d ms, %d frames delivered%n",
+                    positions, gameCount, server.getWatchers(), millis, frames);
+            System.out.printf("server CPU %d ms: %.1f us per position, %.0f ns per frame delivered%n",
+                    cpu / 1_000_000, cpu / 1e3 / positions, (double) cpu / frames);
+            System.out.printf("latency p50 %d us, p99 %d us, p99.9 %d us, max %d us%n",
+                    percentile(0.5), percentile(0.99), percentile(0.999), percentile(1));
+            System.out.printf("%d watchers not up to date, %d bytes sent, %.1f bytes per frame%n",
+                    behind, server.getBytesSent(), (double) server.getBytesSent() / Math.max(1, server.getFrames()));
+
+            // Watchers that never read, following a game flooded with moves
+            for (int i = 0; i < STALLED_WATCHERS; i++) {
+                watchers.connect(address, watcherCount + i, gameCount, true);
+            }
+            ChessMatch flooded = new ChessMatch();
+            long evictions = server.getEvictions();
+            for (int i = 0; i < FLOOD_MOVES; i++) {
+                if (flooded.getGameResult().isOver()) {
+                    flooded = new ChessMatch();
+                }
+                flooded.performChessMove(randomMove(flooded, random, buffer));
+                server.broadcast(gameCount, flooded);
+            }
+            Thread.sleep(1_000);
+            System.out.printf("%d of %d stalled watchers evicted after %d moves%n",
+                    server.getEvictions() - evictions, STALLED_WATCHERS, FLOOD_MOVES);
+            watchers.close();
+        }
+    }
+
+    private static int randomMove(ChessMatch match, Random random, int[] moves) {
+        int count = MoveGenerator.generate(match, MoveGenerator.ALL, moves, 0);
+        int move;
+        do {
+            move = moves[random.nextInt(count)];
+        } while (!match.makeMove(move));
+        match.undoMove();
+        return move;
+    }
+
+    private static long percentile(double p) {
+        long total = 0;
+        for (long count : latencies) {
+            total += count;
+        }
+        long rank = (long) Math.ceil(p * total);
+        long seen = 0;
+        for (int micros = 0; micros < latencies.length; micros++) {
+            seen += latencies[micros];
+            if (seen >= Math.max(1, rank)) {
+                return micros;
+            }
+        }
+        return latencies.length;
+    }
+
+    /**
+     * The simulated watchers, read by a single thread with a selector of their own.
+     */
+    private static final class Watchers extends Thread {
+
+        private final long[][] sentNanos;
+        private final Selector selector = Selector.open();
+        private final List<Watcher> all = new ArrayList<>();
+
+        /**
+         * Watchers connected since the last pass, which the reading thread registers with its selector.
+         */
+        private final ConcurrentLinkedQueue<Watcher> connected = new ConcurrentLinkedQueue<>();
+        private volatile boolean closed;
+        private volatile IOException failure;
+
+        Watchers(long[][] sentNanos) throws IOException {
+            super("watchers");
+            this.sentNanos = sentNanos;
+            setDaemon(true);
+        }
+
+        /**
+         * Connects a watcher from one of several loopback addresses, as one address runs out of ports at about
+         * 28000 connections to the same server.
+         */
+        void connect(InetSocketAddress server, int index, int game, boolean stalled) throws IOException {
+            SocketChannel channel = SocketChannel.open();
+            if (stalled) {
+                channel.setOption(StandardSocketOptions.SO_RCVBUF, 4096);
+            }
+            channel.bind(new InetSocketAddress("127.0.0." + (2 + index / 20_000), 0));
+            channel.connect(server);
+            channel.write(ByteBuffer.allocate(8).putLong(0, game));
+            Watcher watcher = new Watcher(channel, game);
+            synchronized (all) {
+                all.add(watcher);
+            }
+            if (!stalled) {
+                channel.configureBlocking(false);
+                connected.add(watcher);
+                selector.wakeup();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    selector.select();
+                    Watcher watcher;
+                    while ((watcher = connected.poll()) != null) {
+                        watcher.channel.register(selector, SelectionKey.OP_READ, watcher);
+                    }
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        read((Watcher) key.attachment());
+                    }
+                    selector.selectedKeys().clear();
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        private void read(Watcher watcher) throws IOException {
+            if (watcher.channel.read(watcher.buffer) < 0) {
+                watcher.channel.close();
+                return;
+            }
+            long now = System.nanoTime();
+            int before = watcher.board.getSequence();
+            watcher.board.read(watcher.buffer.flip());
+            watcher.buffer.compact();
+            // A late joiner only counts the positions it received as deltas
+            for (int sequence = Math.max(before + 1, 1); sequence <= watcher.board.getSequence(); sequence++) {
+                if (watcher.game < sentNanos.length && before >= 0) {
+                    int micros = (int) Math.min(latencies.length - 1, (now - sentNanos[watcher.game][sequence]) / 1_000);
+                    latencies[micros]++;
+                }
+            }
+        }
+
+        /**
+         * Waits until every watcher holds the last position of its game.
+         *
+         * @return the number of watchers still behind after the timeout
+         */
+        int awaitUpdated(ChessMatch[] matches, int[] played, long timeoutMillis) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            CompactPosition[] expected = new CompactPosition[matches.length];
+            for (int game = 0; game < matches.length; game++) {
+                expected[game] = CompactPosition.of(matches[game]);
+            }
+            while (true) {
+                int behind = 0;
+                synchronized (all) {
+                    for (Watcher watcher : all) {
+                        if (watcher.board.getSequence() != played[watcher.game] ||
+                                !expected[watcher.game].equals(watcher.board.getPosition())) {
+                            behind++;
+                        }
+                    }
+                }
+                if (behind == 0 || System.currentTimeMillis() > deadline) {
+                    return behind;
+                }
+                Thread.sleep(100);
+            }
+        }
+
+        /**
+         * Disconnects the watchers.
+         *
+         * @throws IOException if reading the watchers failed
+         */
+        void close() throws IOException, InterruptedException {
+            closed = true;
+            selector.wakeup();
+            join();
+            synchronized (all) {
+                for (Watcher watcher : all) {
+                    watcher.channel.close();
+                }
+            }
+            selector.close();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private static final class Watcher {
+
+        final SocketChannel channel;
+        final int game;
+        final ByteBuffer buffer = ByteBuffer.allocate(512);
+        final SpectatorBoard board = new SpectatorBoard();
+
+        Watcher(SocketChannel channel, int game) {
+            this.channel = channel;
+            this.game = game;
+        }
+    }
+}
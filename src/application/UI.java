@@ -4,6 +4,8 @@ import chess.ChessMatch;
 import chess.ChessPiece;
 import chess.ChessPosition;
 import chess.Color;
+import chess.Move;
+import chess.MoveNotation;
 
 import java.util.Arrays;
 import java.util.InputMismatchException;
@@ -52,10 +54,12 @@ public class UI {
      */
     public static ChessPosition readChessPosition(Scanner sc) {
         try {
-            String s = sc.nextLine();
-            char column = s.charAt(0);
-            int row = Integer.parseInt(s.substring(1));
-            return new ChessPosition(column, row);
+            String s = sc.nextLine().trim();
+            int square = s.length() == 2 ? MoveNotation.parseSquare(s, 0) : -1;
+            if (square < 0) {
+                throw new InputMismatchException();
+            }
+            return Move.toChessPosition(square);
         } catch (RuntimeException e) {
             throw new InputMismatchException("Error reading ChessPosition. Valid values are from a1 to h8.");
         }
@@ -89,14 +93,18 @@ public class UI {
          */
         System.out.println("Turn: " + chessMatch.getTurn());
 
-        if (!chessMatch.getCheckMate()) {
+        if (!chessMatch.getGameResult().isOver()) {
             System.out.println("Waiting player: " + chessMatch.getCurrentPlayer());
             if (chessMatch.getCheck()) {
                 System.out.println("CHECK!");
             }
-        } else {
+            printHangingPieces(chessMatch.getHangingPieces());
+        } else if (chessMatch.getCheckMate()) {
             System.out.println("CHECKMATE!");
             System.out.println("Winner: " + chessMatch.getCurrentPlayer());
+        } else {
+            System.out.println("DRAW!");
+            System.out.println("Result: " + chessMatch.getGameResult());
         }
     }
 
@@ -161,6 +169,24 @@ public class UI {
         System.out.print(" ");
     }
 
+    /**
+     * Prints the squares of the pieces the last move left hanging, if any.
+     *
+     * @param hangingPieces a bit mask of squares, numbered as in {@link Move}.
+     */
+    private static void printHangingPieces(long hangingPieces) {
+        if (hangingPieces == 0) {
+            return;
+        }
+        StringBuilder squares = new StringBuilder();
+        for (int square = 0; square < 64; square++) {
+            if ((hangingPieces & 1L << square) != 0) {
+                squares.append(' ').append(Move.toChessPosition(square));
+            }
+        }
+        System.out.println(ANSI_RED + "Hanging:" + squares + ANSI_RESET);
+    }
+
     /**
      * Prints the captured pieces of the given list.
      *
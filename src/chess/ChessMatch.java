@@ -3,15 +3,36 @@ package chess;
 import boardgame.Board;
 import boardgame.Piece;
 import boardgame.Position;
+import chess.clock.GameClock;
+import chess.engine.NnueAccumulator;
+import chess.event.MoveEvent;
+import chess.event.MoveEventRing;
 import chess.exception.ChessException;
 import chess.pieces.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 public class ChessMatch {
 
+    /**
+     * Shared positions of the 64 squares, numbered as in {@link Move}, so that searched moves do not allocate.
+     */
+    private static final Position[] POSITIONS = new Position[64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            POSITIONS[square] = new Position(square >>> 3, square & 7);
+        }
+    }
+
     private Board board;
     private int turn;
     private Color currentPlayer;
@@ -19,10 +40,116 @@ public class ChessMatch {
     private boolean checkMate;
     private ChessPiece enPassantVulnerable;
     private ChessPiece promoted;
+    private GameResult result = GameResult.ONGOING;
 
     private List<Piece> piecesOnTheBoard = new ArrayList<>();
     private List<Piece> capturedPieces = new ArrayList<>();
 
+    /**
+     * Zobrist hash of the pieces on the board, updated on every placement and removal.
+     */
+    private long pieceKey;
+
+    /**
+     * Number of moves made by both players since the last capture or pawn move.
+     */
+    private int halfmoveClock;
+
+    /**
+     * Hashes of the positions reached in the match, current position last.
+     */
+    private long[] repetitionTable = new long[128];
+    private int repetitionCount;
+
+    /**
+     * Index in the repetition table of the first position reached after the last capture or pawn move.
+     */
+    private int repetitionStart;
+
+    /**
+     * Squares of the pieces left hanging by the last move played with {@link #performChessMove}, one bit per square.
+     */
+    private long hangingPieces;
+
+    /**
+     * Square of the king of each color, indexed by {@link Color#ordinal()}.
+     */
+    private int[] kingSquares = new int[2];
+
+    /**
+     * Buffer for the pseudo-legal moves of a single piece, which never number more than 32.
+     */
+    private int[] pieceMoves = new int[32];
+
+    /**
+     * State needed to take back the moves made with {@link #makeMove(int)}, most recent move last.
+     */
+    private UndoState[] undoStack = new UndoState[64];
+    private int undoCount;
+
+    /**
+     * Number of pieces on the board per colored piece kind, see {@link ChessPiece#getIndex()}.
+     */
+    private int[] material = new int[12];
+
+    /**
+     * Number of bishops of both colors standing on light (index 0) and dark (index 1) squares.
+     */
+    private int[] bishopsOnSquareColor = new int[2];
+
+    /**
+     * Material and piece-square values of white minus black, updated on every placement and removal.
+     */
+    private int middlegameScore;
+    private int endgameScore;
+
+    /**
+     * Game phase of the pieces on the board, see {@link PieceSquareTables}.
+     */
+    private int phase;
+
+    /**
+     * Ring the moves played with {@link #performChessMove} are published to, or null.
+     */
+    private MoveEventRing eventRing;
+
+    /**
+     * Accumulators of the NNUE evaluation, updated as pieces are placed and removed, or null.
+     */
+    private NnueAccumulator accumulator;
+
+    /**
+     * Clock pressed after each move played with {@link #tryMove(int)}, or null.
+     */
+    private GameClock clock;
+
+    /**
+     * Last move played with {@link #performChessMove}, with the piece of its promotion.
+     */
+    private int lastMove = Move.NONE;
+
+    /**
+     * Snapshot of the match after its last committed move, read by other threads.
+     */
+    private volatile MatchSnapshot snapshot;
+
+    /**
+     * Piece captured by the last move played with {@link #tryMove(int)}, or null.
+     */
+    private ChessPiece lastCapturedPiece;
+
+    /**
+     * Pieces kept off the board by {@link #reset()} and by taken back promotions, to be placed again instead of
+     * new ones, per colored piece kind.
+     */
+    private ChessPiece[][] sparePieces = new ChessPiece[12][8];
+    private int[] spareCounts = new int[12];
+
+    /**
+     * Lease of the match while it is acquired from a {@link ChessMatchPool}, or null.
+     */
+    ChessMatchPool.Lease lease;
+
     /**
      * Initializes a new ChessMatch object with a new 8x8 board, turn 1, and the current player as White.
      */
@@ -50,6 +177,121 @@ public class ChessMatch {
          * Initializes the chess board with the standard setup of pieces.
          */
         initialSetup();
+        recordPosition(currentPlayer);
+        publishSnapshot();
+    }
+
+    /**
+     * Initializes a ChessMatch from a position in Forsyth-Edwards Notation (FEN). The halfmove clock and the move
+     * number may be omitted. The castling rights are kept by leaving the king and the rooks concerned unmoved;
+     * positions reached before the given one are unknown, so repetitions are counted from it.
+     *
+     * @param fen The position, such as "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1".
+     * @throws ChessException If the text is not a valid FEN position, or if the player not to move is in check.
+     */
+    public ChessMatch(String fen) {
+        board = new Board(8, 8);
+        setUp(fen);
+    }
+
+    /**
+     * Returns the match to the initial position, as a new match, reusing its board, its pieces and its tables
+     * instead of allocating new ones. The event ring of the match, if any, is kept, and its clock stopped and
+     * detached.
+     */
+    public void reset() {
+        clear();
+        turn = 1;
+        currentPlayer = Color.WHITE;
+        initialSetup();
+        recordPosition(currentPlayer);
+        // The initial position is always the same, so its snapshot is shared by the matches
+        snapshot = InitialSnapshot.SNAPSHOT;
+    }
+
+    /**
+     * Sets the match up in a position in Forsyth-Edwards Notation, as a match created from it, reusing its board,
+     * its pieces and its tables instead of allocating new ones. The event ring of the match, if any, is kept, and
+     * its clock stopped and detached.
+     *
+     * @param fen The position, as accepted by {@link #ChessMatch(String)}.
+     * @throws ChessException If the position is not valid, in which case the match is left in the initial position.
+     */
+    public void reset(String fen) {
+        clear();
+        try {
+            setUp(fen);
+        } catch (ChessException e) {
+            reset();
+            throw e;
+        }
+    }
+
+    /**
+     * Sets up an empty board in a position in Forsyth-Edwards Notation.
+     *
+     * @param fen The position, as accepted by {@link #ChessMatch(String)}.
+     * @throws ChessException If the position is not valid.
+     */
+    private void setUp(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 4 || fields.length > 6) {
+            throw new ChessException("Invalid FEN: " + fen);
+        }
+        String[] ranks = fields[0].split("/");
+        if (ranks.length != 8) {
+            throw new ChessException("Invalid FEN board: " + fields[0]);
+        }
+        for (int row = 0; row < 8; row++) {
+            int column = 0;
+            for (char c : ranks[row].toCharArray()) {
+                if (c >= '1' && c <= '8') {
+                    column += c - '0';
+                } else if (column < 8) {
+                    placeNewPiece((char) ('a' + column), 8 - row, createFenPiece(c, row));
+                    column++;
+                } else {
+                    column = 9;
+                }
+            }
+            if (column != 8) {
+                throw new ChessException("Invalid FEN rank: " + ranks[row]);
+            }
+        }
+        if (material[PieceType.KING.ordinal()] != 1 || material[PieceType.KING.ordinal() + 6] != 1) {
+            throw new ChessException("Each player must have exactly one king");
+        }
+
+        if (!fields[1].equals("w") && !fields[1].equals("b")) {
+            throw new ChessException("Invalid FEN side to move: " + fields[1]);
+        }
+        currentPlayer = fields[1].equals("w") ? Color.WHITE : Color.BLACK;
+        setCastlingRights(fields[2]);
+        if (!fields[3].equals("-")) {
+            enPassantVulnerable = enPassantPawn(fields[3]);
+        }
+        try {
+            halfmoveClock = fields.length > 4 ? Integer.parseInt(fields[4]) : 0;
+            int moveNumber = fields.length > 5 ? Integer.parseInt(fields[5]) : 1;
+            if (halfmoveClock < 0 || moveNumber < 1) {
+                throw new ChessException("Invalid FEN move counters: " + fen);
+            }
+            turn = 2 * moveNumber - (currentPlayer == Color.WHITE ? 1 : 0);
+        } catch (NumberFormatException e) {
+            throw new ChessException("Invalid FEN move counters: " + fen);
+        }
+
+        if (testCheck(opponent(currentPlayer))) {
+            throw new ChessException("The player not to move is in check");
+        }
+        recordPosition(currentPlayer);
+        // The game state is the one left by a move of the opponent, so a checkmated player is not to move
+        updateGameState(opponent(currentPlayer));
+        if (checkMate) {
+            turn--;
+            currentPlayer = opponent(currentPlayer);
+        }
+        publishSnapshot();
     }
 
     public int getTurn() {
@@ -77,7 +319,103 @@ public class ChessMatch {
     }
 
     /**
-     * Get the current state of the chess board, represented as a 2D array of ChessPieces.
+     * Returns the result of the match, ending it on time first if the flag of its clock fell.
+     *
+     * @return The result of the match.
+     */
+    public GameResult getGameResult() {
+        if (clock != null && !result.isOver() && clock.getFlagged() != null) {
+            endOnTime(clock.getFlagged());
+        }
+        return result;
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /**
+     * Returns the middlegame material and piece-square score, maintained incrementally.
+     *
+     * @return the score of white minus the score of black, in centipawns.
+     */
+    public int getMiddlegameScore() {
+        return middlegameScore;
+    }
+
+    /**
+     * Returns the endgame material and piece-square score, maintained incrementally.
+     *
+     * @return the score of white minus the score of black, in centipawns.
+     */
+    public int getEndgameScore() {
+        return endgameScore;
+    }
+
+    /**
+     * Returns the game phase, maintained incrementally.
+     *
+     * @return the phase, {@link PieceSquareTables#TOTAL_PHASE} in the initial position and 0 with only kings and pawns.
+     */
+    public int getPhase() {
+        return phase;
+    }
+
+    /**
+     * Returns the square of the king of a player, maintained incrementally.
+     *
+     * @param color the color of the player
+     * @return the square, numbered as in {@link Move}.
+     */
+    public int getKingSquare(Color color) {
+        return kingSquares[color.ordinal()];
+    }
+
+    /**
+     * Returns the Zobrist hash of the current position, including castling rights,
+     * the en passant file and the player to move.
+     *
+     * @return the hash of the current position.
+     */
+    public long getPositionKey() {
+        return repetitionTable[repetitionCount - 1];
+    }
+
+    /**
+     * Returns the pieces of the player who made the last move that the opponent can win material by capturing,
+     * as estimated by {@link StaticExchange}. Only moves played with {@link #performChessMove} update them.
+     *
+     * @return a bit mask where bit n is set when the piece on square n, numbered as in {@link Move}, is hanging.
+     */
+    public long getHangingPieces() {
+        return hangingPieces;
+    }
+
+    /**
+     * Returns how many times the current position occurred since the last capture or pawn move,
+     * counting the moves made with {@link #makeMove(int)}.
+     *
+     * @return the number of occurrences of the current position, at least 1.
+     */
+    public int getRepetitions() {
+        return repetitions();
+    }
+
+    /**
+     * Returns the snapshot of the match after its last committed move. Unlike the other getters, it may be called
+     * from any thread while the match is played: the snapshot is immutable and published through a volatile field,
+     * so a reader sees a whole position, never one in the middle of a move or of a trial move, without copying
+     * or locking.
+     *
+     * @return the snapshot of the last committed position
+     */
+    public MatchSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Get the current state of the chess board, represented as a 2D array of ChessPieces. Only meant for the
+     * thread playing the match; other threads read {@link #getSnapshot()}.
      *
      * @return a 2D array of ChessPieces, where each element represents a piece on the board.
      */
@@ -98,59 +436,537 @@ public class ChessMatch {
         return mat;
     }
 
-    public boolean[][] possibleMoves(ChessPosition sourcePosition) {
-        Position position = sourcePosition.toPosition();
-        validateSourcePosition(position);
-        return board.piece(position).possibleMoves();
+    /**
+     * Returns the piece on the given square.
+     *
+     * @param square The square, numbered as in {@link Move}.
+     * @return The piece on the square, or null if the square is empty.
+     */
+    public ChessPiece getPiece(int square) {
+        return (ChessPiece) board.piece(square >>> 3, square & 7);
+    }
+
+    /**
+     * Checks whether the current player can move the piece on a position, without throwing an exception.
+     *
+     * @param sourcePosition The source position of a move.
+     * @return {@link MoveStatus#LEGAL} if the piece can be moved, otherwise the reason it cannot.
+     */
+    public MoveStatus checkSource(ChessPosition sourcePosition) {
+        return result.isOver() ? MoveStatus.GAME_OVER : sourceStatus(sourcePosition.toPosition());
+    }
+
+    public boolean[][] possibleMoves(ChessPosition sourcePosition) {
+        Position position = sourcePosition.toPosition();
+        validateSourcePosition(position);
+        int square = position.getRow() * 8 + position.getColumn();
+        int count = MoveGenerator.generate(this, getPiece(square), square, MoveGenerator.ALL, pieceMoves, 0);
+        boolean[][] mat = new boolean[board.getRows()][board.getColumns()];
+        for (int i = 0; i < count; i++) {
+            int target = Move.target(pieceMoves[i]);
+            mat[target >>> 3][target & 7] = true;
+        }
+        return mat;
+    }
+
+    /**
+     * Performs a chess move from the given source position to the target position.
+     * A promotion promotes to a queen, which {@link #replacePromotedPiece(String)} can then replace.
+     *
+     * @param sourcePosition The source position of the move.
+     * @param targetPosition The target position of the move.
+     * @return The captured piece, if any.
+     * @throws ChessException If the move is illegal or puts the player in check.
+     */
+    public ChessPiece performChessMove(ChessPosition sourcePosition, ChessPosition targetPosition) {
+        return performChessMove(Move.of(sourcePosition, targetPosition));
+    }
+
+    /**
+     * Performs a chess move packed as in {@link Move}, including its promotion choice.
+     *
+     * @param move The packed move.
+     * @return The captured piece, if any.
+     * @throws ChessException If the move is illegal or puts the player in check.
+     */
+    public ChessPiece performChessMove(int move) {
+        MoveStatus status = tryMove(move);
+        if (!status.isLegal()) {
+            throw new ChessException(status.getMessage());
+        }
+        return lastCapturedPiece;
+    }
+
+    /**
+     * Plays a move if it is legal, without throwing an exception when it is not, for callers that expect many
+     * rejected moves.
+     *
+     * @param sourcePosition The source position of the move.
+     * @param targetPosition The target position of the move.
+     * @param promotion      The type of the promoted piece, or null for a queen.
+     * @return {@link MoveStatus#LEGAL} if the move was played, otherwise the reason it was rejected, in which
+     * case the match is left unchanged.
+     */
+    public MoveStatus tryMove(ChessPosition sourcePosition, ChessPosition targetPosition, PieceType promotion) {
+        return tryMove(Move.of(Move.square(sourcePosition), Move.square(targetPosition), promotion));
+    }
+
+    /**
+     * Plays a move packed as in {@link Move} if it is legal, without throwing an exception when it is not. The
+     * captured piece is then returned by {@link #getLastCapturedPiece()}.
+     *
+     * @param move The packed move, whose promotion is only used when the move promotes a pawn.
+     * @return {@link MoveStatus#LEGAL} if the move was played, otherwise the reason it was rejected, in which
+     * case the match is left unchanged.
+     */
+    public MoveStatus tryMove(int move) {
+        Color mover = currentPlayer;
+        if (clock != null && !result.isOver() && clock.checkFlag() != null) {
+            endOnTime(clock.getFlagged());
+        }
+        MoveStatus status = playMove(move);
+        if (!status.isLegal()) {
+            return status;
+        }
+        PieceType promotion = Move.promotion(move);
+        if (promoted != null && promotion != null && promotion != PieceType.QUEEN) {
+            promote(promotion.getLetter());
+        }
+        publish(move, lastCapturedPiece, 0);
+        if (clock != null) {
+            if (result.isOver()) {
+                clock.stop();
+            } else if (!clock.press(mover)) {
+                // The time ran out while the move was being made
+                endOnTime(mover);
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Plays a whole sequence of moves from the current position, stopping at the first illegal one, much faster
+     * than {@link #tryMove(int)} per move: each move is checked against the generated moves and made with
+     * {@link #makeMove(int)}, and the checkmate and stalemate test, which is the costly part of a move, is only run
+     * on the final position, since a position where the next move is legal is neither. Apart from the pieces of
+     * promotions, no move allocates.
+     * <p>
+     * The match is left after the legal moves, with its result set as if they had been played with
+     * {@link #performChessMove(int)}, but the moves are not published to the event ring and the hanging pieces are
+     * those of the last move only. A promotion without a piece type promotes to a queen, and a piece type on
+     * another move is ignored.
+     *
+     * @param packedMoves The moves, packed as in {@link Move}.
+     * @return The index of the first illegal move and its reason, or the validity of the whole sequence, along with
+     * the final result and position.
+     */
+    public SequenceResult validateSequence(int[] packedMoves) {
+        int start = undoCount;
+        SequenceResult sequence = makeSequence(packedMoves, new int[256]);
+        if (sequence.getPlies() == 0) {
+            return sequence;
+        }
+        UndoState last = undoStack[undoCount - 1];
+        lastMove = last.move;
+        lastCapturedPiece = (ChessPiece) last.capturedPiece;
+        // The moves can no longer be taken back
+        for (int i = start; i < undoCount; i++) {
+            undoStack[i].capturedPiece = null;
+            undoStack[i].enPassantVulnerable = null;
+            undoStack[i].promotedPawn = null;
+        }
+        undoCount = start;
+        Color mover = opponent(currentPlayer);
+        promoted = Move.promotion(lastMove) != null ? getPiece(Move.target(lastMove)) : null;
+        result = sequence.getResult();
+        checkMate = result == GameResult.WHITE_WINS_BY_CHECKMATE || result == GameResult.BLACK_WINS_BY_CHECKMATE;
+        if (checkMate) {
+            turn--;
+            currentPlayer = mover;
+        }
+        updateHangingPieces(mover);
+        publishSnapshot();
+        return sequence;
+    }
+
+    /**
+     * Validates many sequences of moves from the initial position, as {@link #validateSequence(int[])} does, on
+     * several threads. Each thread plays all its sequences on a single match, taking the moves back after each one.
+     *
+     * @param sequences The sequences of packed moves.
+     * @param threads   The number of threads.
+     * @return The outcome of each sequence, in the same order.
+     */
+    public static SequenceResult[] validateSequences(List<int[]> sequences, int threads) {
+        SequenceResult[] results = new SequenceResult[sequences.size()];
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            ChessMatch match = new ChessMatch();
+            int[] buffer = new int[256];
+            for (int i = next.getAndIncrement(); i < results.length; i = next.getAndIncrement()) {
+                results[i] = match.makeSequence(sequences.get(i), buffer);
+                for (int ply = results[i].getPlies(); ply > 0; ply--) {
+                    match.undoMove();
+                }
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(worker));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while validating sequences", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Sequence validation failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * Makes the legal moves at the start of a sequence with {@link #makeMove(int)}, leaving them to be taken back.
+     *
+     * @param packedMoves The moves.
+     * @param moves       A buffer for the generated moves.
+     * @return The outcome of the sequence, whose number of plies is the number of moves made.
+     */
+    private SequenceResult makeSequence(int[] packedMoves, int[] moves) {
+        int plies = 0;
+        MoveStatus status = MoveStatus.LEGAL;
+        if (result.isOver()) {
+            status = packedMoves.length > 0 ? MoveStatus.GAME_OVER : MoveStatus.LEGAL;
+        } else {
+            for (; plies < packedMoves.length; plies++) {
+                int move = normalizedMove(packedMoves[plies]);
+                if (isDrawn() || !MoveGenerator.isPseudoLegal(this, move) || !makeMove(move)) {
+                    status = rejection(move, moves);
+                    break;
+                }
+            }
+        }
+        GameResult finalResult = result;
+        if (!result.isOver()) {
+            // Any other rejection means that the player to move has a legal move
+            boolean canMove = status.isLegal() || status == MoveStatus.GAME_OVER ? hasLegalMove(moves) : true;
+            finalResult = gameResult(opponent(currentPlayer), canMove);
+        }
+        return new SequenceResult(plies, status, finalResult, CompactPosition.of(this));
+    }
+
+    /**
+     * Adds the queen to a promotion without a piece type, and removes the piece type of any other move.
+     */
+    private int normalizedMove(int move) {
+        int source = Move.source(move);
+        int target = Move.target(move);
+        ChessPiece piece = getPiece(source);
+        if (piece == null || piece.getType() != PieceType.PAWN || (target >>> 3 != 0 && target >>> 3 != 7)) {
+            return Move.of(source, target);
+        }
+        return Move.promotion(move) == null ? Move.of(source, target, PieceType.QUEEN) : move;
+    }
+
+    /**
+     * Returns why a move of a sequence cannot be played in the current position.
+     */
+    private MoveStatus rejection(int move, int[] moves) {
+        if (isDrawn() || !hasLegalMove(moves)) {
+            return MoveStatus.GAME_OVER;
+        }
+        MoveStatus status = sourceStatus(POSITIONS[Move.source(move)]);
+        if (!status.isLegal()) {
+            return status;
+        }
+        return MoveGenerator.isPseudoLegal(this, move) ? MoveStatus.LEAVES_KING_IN_CHECK : MoveStatus.ILLEGAL_TARGET;
+    }
+
+    /**
+     * Returns whether the player to move has a legal move, trying the generated moves with {@link #makeMove(int)}.
+     */
+    private boolean hasLegalMove(int[] moves) {
+        int count = MoveGenerator.generate(this, MoveGenerator.ALL, moves, 0);
+        for (int i = 0; i < count; i++) {
+            if (makeMove(moves[i])) {
+                undoMove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the piece captured by the last move played with {@link #tryMove(int)} or {@link #performChessMove}.
+     *
+     * @return The captured piece, or null if the move captured nothing.
+     */
+    public ChessPiece getLastCapturedPiece() {
+        return lastCapturedPiece;
+    }
+
+    /**
+     * Plays a move, promoting to a queen, without publishing it.
+     *
+     * @return The status of the move; the match is unchanged unless it is legal.
+     */
+    private MoveStatus playMove(int move) {
+        Position source = POSITIONS[Move.source(move)];
+        Position target = POSITIONS[Move.target(move)];
+        if (result.isOver()) {
+            return MoveStatus.GAME_OVER;
+        }
+        MoveStatus status = sourceStatus(source);
+        if (!status.isLegal()) {
+            return status;
+        }
+        // The moves of the generator are the only rule, also used by makeMove(int) and validateSequence
+        if (!MoveGenerator.isPseudoLegal(this, normalizedMove(move))) {
+            return MoveStatus.ILLEGAL_TARGET;
+        }
+        Piece capturedPiece = makeMove(source, target);
+
+        if (testCheck(currentPlayer)) {
+            undoMove(source, target, capturedPiece);
+            return MoveStatus.LEAVES_KING_IN_CHECK;
+        }
+
+        ChessPiece movedPiece = (ChessPiece) board.piece(target);
+
+        // Set before the opponent's replies are tested, so that en passant counts as a legal reply
+        if (movedPiece instanceof Pawn &&
+                (target.getRow() == source.getRow() - 2 ||
+                        target.getRow() == source.getRow() + 2)) {
+            enPassantVulnerable = movedPiece;
+        } else {
+            enPassantVulnerable = null;
+        }
+
+        promoted = null;
+        if (movedPiece instanceof Pawn) {
+            if ((movedPiece.getColor() == Color.WHITE && target.getRow() == 0 ||
+                    movedPiece.getColor() == Color.BLACK && target.getRow() == 7)) {
+                promoted = (ChessPiece) board.piece(target);
+                promoted = replacePiece(promoted, "Q");
+            }
+        }
+
+        if (movedPiece instanceof Pawn || capturedPiece != null) {
+            halfmoveClock = 0;
+        } else {
+            halfmoveClock++;
+        }
+        recordPosition(opponent(currentPlayer));
+
+        updateGameState(currentPlayer);
+        updateHangingPieces(currentPlayer);
+        if (!checkMate) {
+            nextTurn();
+        }
+        lastCapturedPiece = (ChessPiece) capturedPiece;
+        return MoveStatus.LEGAL;
+    }
+
+    /**
+     * Returns the ring the moves of the match are published to.
+     *
+     * @return the ring, or null if the match is not attached to a {@link chess.event.MoveEventBus}
+     */
+    public MoveEventRing getEventRing() {
+        return eventRing;
+    }
+
+    /**
+     * Sets the ring the moves played with {@link #performChessMove} are published to. Meant for
+     * {@link chess.event.MoveEventBus}, which attaches and detaches matches.
+     *
+     * @param eventRing the ring, or null to stop publishing
+     */
+    public void setEventRing(MoveEventRing eventRing) {
+        this.eventRing = eventRing;
+    }
+
+    /**
+     * Returns the accumulators of the NNUE evaluation of the match.
+     *
+     * @return the accumulators, or null if the match is not evaluated by a {@link chess.engine.NnueEvaluator}
+     */
+    public NnueAccumulator getAccumulator() {
+        return accumulator;
+    }
+
+    /**
+     * Sets the accumulators of the NNUE evaluation, which the match then updates as pieces are placed and removed.
+     * Meant for {@link chess.engine.NnueEvaluator}, which attaches them on the first evaluation of the match.
+     *
+     * @param accumulator the accumulators, or null to stop updating them
+     */
+    public void setAccumulator(NnueAccumulator accumulator) {
+        this.accumulator = accumulator;
+        if (accumulator != null) {
+            accumulator.invalidate();
+        }
+    }
+
+    /**
+     * Returns the clock of the match.
+     *
+     * @return the clock, or null if the match is not played on time
+     */
+    public GameClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Sets the clock of the match, which {@link #tryMove(int)} then presses after each move, ending the match on
+     * time once a flag fell. The clock is started by its owner, typically for white before the first move.
+     *
+     * @param clock the clock, or null to play without one
+     */
+    public void setClock(GameClock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Ends the match with a result decided outside the rules of play, such as an endgame table lookup.
+     *
+     * @param result The result of the match.
+     * @throws ChessException           If the match is already over.
+     * @throws IllegalArgumentException If the result does not end the match.
+     */
+    public void adjudicate(GameResult result) {
+        if (this.result.isOver()) {
+            throw new ChessException("The match is already over");
+        }
+        if (!result.isOver()) {
+            throw new IllegalArgumentException("The result does not end the match");
+        }
+        this.result = result;
+        if (clock != null) {
+            clock.stop();
+        }
+        publishSnapshot();
     }
 
     /**
-     * Performs a chess move from the given source position to the target position.
+     * Makes a pseudo-legal move, such as one produced by {@link MoveGenerator}, so that it can be taken back
+     * with {@link #undoMove()}. Meant for searching: the move count, the player to move, the check status and
+     * the position history are updated, but the result of the match is not, and nothing is allocated: the piece
+     * of a promotion is kept when the move is taken back, for the next promotion to the same piece. A promotion
+     * without a piece type promotes to a queen.
      *
-     * @param sourcePosition The source position of the move.
-     * @param targetPosition The target position of the move.
-     * @return The captured piece, if any.
-     * @throws ChessException If the move is illegal or puts the player in check.
+     * @param move The packed move.
+     * @return True if the move was made, false if it would leave the king of the player in check, in which case
+     * the match is left unchanged.
      */
-    public ChessPiece performChessMove(ChessPosition sourcePosition, ChessPosition targetPosition) {
-        Position source = sourcePosition.toPosition();
-        Position target = targetPosition.toPosition();
-        validateSourcePosition(source);
-        validateTargetPosition(source, target);
+    public boolean makeMove(int move) {
+        Position source = POSITIONS[Move.source(move)];
+        Position target = POSITIONS[Move.target(move)];
+        ChessPiece movedPiece = (ChessPiece) board.piece(source);
+        boolean kingMove = accumulator != null && movedPiece instanceof King;
+        if (kingMove) {
+            accumulator.saveBeforeKingMove(currentPlayer, undoCount);
+        }
         Piece capturedPiece = makeMove(source, target);
-
         if (testCheck(currentPlayer)) {
             undoMove(source, target, capturedPiece);
-            throw new ChessException("You can't move into this position because you'll put yourself in a check situation");
+            if (kingMove) {
+                accumulator.restoreAfterKingMove(currentPlayer, undoCount);
+            }
+            return false;
         }
 
-        ChessPiece movedPiece = (ChessPiece) board.piece(target);
+        if (undoCount == undoStack.length) {
+            undoStack = Arrays.copyOf(undoStack, undoCount * 2);
+        }
+        UndoState state = undoStack[undoCount];
+        if (state == null) {
+            state = undoStack[undoCount] = new UndoState();
+        }
+        undoCount++;
+        state.move = move;
+        state.capturedPiece = capturedPiece;
+        state.enPassantVulnerable = enPassantVulnerable;
+        state.promotedPawn = null;
+        state.halfmoveClock = halfmoveClock;
+        state.repetitionStart = repetitionStart;
+        state.check = check;
 
-        promoted = null;
-        if (movedPiece instanceof Pawn) {
-            if ((movedPiece.getColor() == Color.WHITE && target.getRow() == 0 ||
-                    movedPiece.getColor() == Color.BLACK && target.getRow() == 7)) {
-                promoted = (ChessPiece) board.piece(target);
-                promoted = replacePromotedPiece("Q");
-            }
+        boolean pawn = movedPiece instanceof Pawn;
+        enPassantVulnerable = pawn && Math.abs(target.getRow() - source.getRow()) == 2 ? movedPiece : null;
+        if (pawn && (target.getRow() == 0 || target.getRow() == 7)) {
+            PieceType promotion = Move.promotion(move);
+            state.promotedPawn = movedPiece;
+            replacePiece(movedPiece, promotion == null ? "Q" : promotion.getLetter());
         }
+        halfmoveClock = pawn || capturedPiece != null ? 0 : halfmoveClock + 1;
 
-        check = testCheck(opponent(currentPlayer));
+        nextTurn();
+        check = testCheck(currentPlayer);
+        recordPosition(currentPlayer);
+        return true;
+    }
 
-        if (testCheckMate(opponent(currentPlayer))) {
-            checkMate = true;
-        } else {
-            nextTurn();
+    /**
+     * Takes back the last move made with {@link #makeMove(int)}.
+     *
+     * @throws IllegalStateException If there is no move to take back.
+     */
+    public void undoMove() {
+        if (undoCount == 0) {
+            throw new IllegalStateException("There is no move to take back");
         }
+        UndoState state = undoStack[--undoCount];
+        repetitionCount--;
+        repetitionStart = state.repetitionStart;
+        halfmoveClock = state.halfmoveClock;
+        check = state.check;
+        turn--;
+        currentPlayer = opponent(currentPlayer);
 
-        if (movedPiece instanceof Pawn &&
-                (target.getRow() == source.getRow() - 2 ||
-                        target.getRow() == source.getRow() + 2)) {
-            enPassantVulnerable = movedPiece;
-        } else {
-            enPassantVulnerable = null;
+        Position source = POSITIONS[Move.source(state.move)];
+        Position target = POSITIONS[Move.target(state.move)];
+        if (state.promotedPawn != null) {
+            ChessPiece p = removePiece(target);
+            piecesOnTheBoard.remove(p);
+            removeMaterial(p, target);
+            addSparePiece(p);
+            placePiece(state.promotedPawn, target);
+            piecesOnTheBoard.add(state.promotedPawn);
+            addMaterial(state.promotedPawn, target);
+        }
+        // Restored first, because the private undo recognizes an en passant capture by the vulnerable pawn
+        enPassantVulnerable = state.enPassantVulnerable;
+        undoMove(source, target, state.capturedPiece);
+        if (accumulator != null && board.piece(source) instanceof King) {
+            accumulator.restoreAfterKingMove(currentPlayer, undoCount);
+        }
+        state.capturedPiece = null;
+        state.enPassantVulnerable = null;
+        state.promotedPawn = null;
+    }
+
+    /**
+     * Returns whether no sequence of legal moves can lead to a checkmate: king against king,
+     * king and a single minor piece against king, or only bishops all standing on the same square color.
+     *
+     * @return True if neither player can checkmate, false otherwise.
+     */
+    public boolean isInsufficientMaterial() {
+        if (count(PieceType.PAWN) + count(PieceType.ROOK) + count(PieceType.QUEEN) > 0) {
+            return false;
         }
-        return (ChessPiece) capturedPiece;
+        int knights = count(PieceType.KNIGHT);
+        int bishops = count(PieceType.BISHOP);
+        if (knights + bishops <= 1) {
+            return true;
+        }
+        return knights == 0 && (bishopsOnSquareColor[0] == 0 || bishopsOnSquareColor[1] == 0);
     }
 
     /**
@@ -170,18 +986,99 @@ public class ChessMatch {
                 !type.equals("Q")) {
             return promoted;
         }
+        promote(type);
+        publish(lastMove, null, MoveEvent.PROMOTION_CHOICE);
+        return promoted;
+    }
+
+    /**
+     * Replaces the promoted piece with a valid piece type, without publishing the change.
+     *
+     * @param type The type of the new piece, "B", "N", "R" or "Q".
+     */
+    private void promote(String type) {
+        Color mover = promoted.getColor();
+        promoted = replacePiece(promoted, type);
+
+        // The promotion is the last move played, so the position and the game state are evaluated again
+        repetitionTable[repetitionCount - 1] = positionKey(opponent(mover));
+        boolean wasCheckMate = checkMate;
+        updateGameState(mover);
+        updateHangingPieces(mover);
+        if (wasCheckMate && !checkMate) {
+            nextTurn();
+        } else if (!wasCheckMate && checkMate) {
+            turn--;
+            currentPlayer = mover;
+        }
+    }
+
+    /**
+     * Records the move just played with {@link #performChessMove}, publishes the snapshot of the new position and
+     * publishes the move to the event ring, if any.
+     *
+     * @param move          The packed move, whose promotion is replaced by the promoted piece.
+     * @param capturedPiece The captured piece, or null.
+     * @param flags         The flags added to the event, see {@link MoveEvent}.
+     */
+    private void publish(int move, ChessPiece capturedPiece, int flags) {
+        lastMove = Move.of(Move.source(move), Move.target(move), promoted == null ? null : promoted.getType());
+        publishSnapshot();
+        if (eventRing != null) {
+            eventRing.publish(this, lastMove, capturedPiece, flags);
+        }
+    }
+
+    /**
+     * Publishes a snapshot of the current position, once the match is in a committed state.
+     */
+    private void publishSnapshot() {
+        snapshot = new MatchSnapshot(CompactPosition.of(this), lastMove, check, result);
+    }
 
-        Position pos = promoted.getChessPosition().toPosition();
-        Piece p = board.removePiece(pos);
+    /**
+     * Replaces the given piece on the board with a new piece of the specified type and the same color.
+     *
+     * @param piece The piece to be replaced.
+     * @param type  The type of the new piece, as accepted by {@link #replacePromotedPiece(String)}.
+     * @return The newly created piece.
+     */
+    private ChessPiece replacePiece(ChessPiece piece, String type) {
+        Position pos = POSITIONS[piece.getSquare()];
+        ChessPiece p = removePiece(pos);
         piecesOnTheBoard.remove(p);
+        removeMaterial(p, pos);
 
-        ChessPiece newPiece = createChessPiece(type, promoted.getColor());
-        board.placePiece(newPiece, pos);
+        ChessPiece newPiece = takePiece(promotionType(type), piece.getColor());
+        placePiece(newPiece, pos);
         piecesOnTheBoard.add(newPiece);
+        addMaterial(newPiece, pos);
 
         return newPiece;
     }
 
+    /**
+     * Returns the piece type of a promotion letter.
+     *
+     * @param type The type of the piece, as accepted by {@link #replacePromotedPiece(String)}.
+     * @return The piece type.
+     * @throws IllegalArgumentException If the provided type is not a valid piece type.
+     */
+    private static PieceType promotionType(String type) {
+        switch (type.toUpperCase()) {
+            case "B":
+                return PieceType.BISHOP;
+            case "N":
+                return PieceType.KNIGHT;
+            case "R":
+                return PieceType.ROOK;
+            case "Q":
+                return PieceType.QUEEN;
+            default:
+                throw new IllegalArgumentException("Invalid piece type");
+        }
+    }
+
     /**
      * Creates a new ChessPiece object based on the provided type and color.
      *
@@ -205,6 +1102,94 @@ public class ChessMatch {
         }
     }
 
+    /**
+     * Takes all the pieces off the board into the spare pieces and empties the state of the match, except its
+     * event ring and NNUE accumulators, which are recomputed at the next evaluation. The clock is detached.
+     */
+    private void clear() {
+        if (accumulator != null) {
+            accumulator.invalidate();
+        }
+        if (clock != null) {
+            clock.stop();
+            clock = null;
+        }
+        for (Piece p : piecesOnTheBoard) {
+            board.removePiece(POSITIONS[((ChessPiece) p).getSquare()]);
+            addSparePiece((ChessPiece) p);
+        }
+        for (Piece p : capturedPieces) {
+            addSparePiece((ChessPiece) p);
+        }
+        piecesOnTheBoard.clear();
+        capturedPieces.clear();
+        for (int i = 0; i < undoCount; i++) {
+            undoStack[i].capturedPiece = null;
+            undoStack[i].enPassantVulnerable = null;
+            undoStack[i].promotedPawn = null;
+        }
+        undoCount = 0;
+        turn = 0;
+        currentPlayer = null;
+        check = false;
+        checkMate = false;
+        enPassantVulnerable = null;
+        promoted = null;
+        result = GameResult.ONGOING;
+        pieceKey = 0;
+        halfmoveClock = 0;
+        repetitionCount = 0;
+        repetitionStart = 0;
+        hangingPieces = 0;
+        Arrays.fill(material, 0);
+        Arrays.fill(bishopsOnSquareColor, 0);
+        middlegameScore = 0;
+        endgameScore = 0;
+        phase = 0;
+        lastMove = Move.NONE;
+        lastCapturedPiece = null;
+    }
+
+    private void addSparePiece(ChessPiece piece) {
+        int index = piece.getIndex();
+        if (spareCounts[index] == sparePieces[index].length) {
+            sparePieces[index] = Arrays.copyOf(sparePieces[index], spareCounts[index] * 2);
+        }
+        piece.resetMoveCount();
+        sparePieces[index][spareCounts[index]++] = piece;
+    }
+
+    /**
+     * Returns a spare piece of the given type and color, or a new one if there is none.
+     *
+     * @param type  The type of the piece.
+     * @param color The color of the piece.
+     * @return A piece off the board that has never moved.
+     */
+    private ChessPiece takePiece(PieceType type, Color color) {
+        int index = type.ordinal() + (color == Color.WHITE ? 0 : 6);
+        if (spareCounts[index] > 0) {
+            ChessPiece piece = sparePieces[index][--spareCounts[index]];
+            sparePieces[index][spareCounts[index]] = null;
+            return piece;
+        }
+        switch (type) {
+            case KING:
+                return new King(board, color, this);
+            case PAWN:
+                return new Pawn(board, color, this);
+            default:
+                return createChessPiece(type.getLetter(), color);
+        }
+    }
+
+    /**
+     * Returns the shared position of a square, so that moving pieces does not allocate.
+     */
+    private static Position position(int row, int column) {
+        return POSITIONS[row * 8 + column];
+    }
+
     /*
      * Makes a move on the chess board from the given source position to the target position.
      *
@@ -215,27 +1200,28 @@ public class ChessMatch {
      * @throws IllegalArgumentException If the provided type is not a valid piece type.
      */
     private Piece makeMove(Position source, Position target) throws ChessException, IllegalArgumentException {
-        ChessPiece p = (ChessPiece) board.removePiece(source);
+        ChessPiece p = removePiece(source);
         p.increaseMoveCount();
-        Piece capturedPiece = board.removePiece(target);
-        board.placePiece(p, target);
+        ChessPiece capturedPiece = removePiece(target);
+        placePiece(p, target);
 
         if (capturedPiece != null) {
             piecesOnTheBoard.remove(capturedPiece);
             capturedPieces.add(capturedPiece);
+            removeMaterial(capturedPiece, target);
         }
         if (p instanceof King && target.getColumn() == source.getColumn() + 2) {
-            Position sourceT = new Position(source.getRow(), source.getColumn() + 3);
-            Position targetT = new Position(source.getRow(), source.getColumn() + 1);
-            ChessPiece rook = (ChessPiece) board.removePiece(sourceT);
-            board.placePiece(rook, targetT);
+            Position sourceT = position(source.getRow(), source.getColumn() + 3);
+            Position targetT = position(source.getRow(), source.getColumn() + 1);
+            ChessPiece rook = removePiece(sourceT);
+            placePiece(rook, targetT);
             rook.increaseMoveCount();
         }
         if (p instanceof King && target.getColumn() == source.getColumn() - 2) {
-            Position sourceT = new Position(source.getRow(), source.getColumn() - 4);
-            Position targetT = new Position(source.getRow(), source.getColumn() - 1);
-            ChessPiece rook = (ChessPiece) board.removePiece(sourceT);
-            board.placePiece(rook, targetT);
+            Position sourceT = position(source.getRow(), source.getColumn() - 4);
+            Position targetT = position(source.getRow(), source.getColumn() - 1);
+            ChessPiece rook = removePiece(sourceT);
+            placePiece(rook, targetT);
             rook.increaseMoveCount();
         }
         if (p instanceof Pawn) {
@@ -244,13 +1230,14 @@ public class ChessMatch {
                     capturedPiece == null) {
                 Position pawnPosition;
                 if (p.getColor() == Color.WHITE) {
-                    pawnPosition = new Position(target.getRow() + 1, target.getColumn());
+                    pawnPosition = position(target.getRow() + 1, target.getColumn());
                 } else {
-                    pawnPosition = new Position(target.getRow() - 1, target.getColumn());
+                    pawnPosition = position(target.getRow() - 1, target.getColumn());
                 }
-                capturedPiece = board.removePiece(pawnPosition);
+                capturedPiece = removePiece(pawnPosition);
                 capturedPieces.add(capturedPiece);
                 piecesOnTheBoard.remove(capturedPiece);
+                removeMaterial(capturedPiece, pawnPosition);
             }
         }
         return capturedPiece;
@@ -266,29 +1253,30 @@ public class ChessMatch {
      * @throws IllegalArgumentException If the provided type is not a valid piece type.
      */
     private void undoMove(Position source, Position target, Piece capturedPiece) {
-        ChessPiece p = (ChessPiece) board.removePiece(target);
+        ChessPiece p = removePiece(target);
         p.decreaseMoveCount();
-        board.placePiece(p, source);
+        placePiece(p, source);
 
         if (capturedPiece != null) {
-            board.placePiece(capturedPiece, target);
+            placePiece((ChessPiece) capturedPiece, target);
             capturedPieces.remove(capturedPiece);
             piecesOnTheBoard.add(capturedPiece);
+            addMaterial((ChessPiece) capturedPiece, target);
         }
 
         if (p instanceof King && target.getColumn() == source.getColumn() + 2) {
-            Position sourceT = new Position(source.getRow(), source.getColumn() + 3);
-            Position targetT = new Position(source.getRow(), source.getColumn() + 1);
-            ChessPiece rook = (ChessPiece) board.removePiece(targetT);
-            board.placePiece(rook, sourceT);
+            Position sourceT = position(source.getRow(), source.getColumn() + 3);
+            Position targetT = position(source.getRow(), source.getColumn() + 1);
+            ChessPiece rook = removePiece(targetT);
+            placePiece(rook, sourceT);
             rook.decreaseMoveCount();
         }
 
         if (p instanceof King && target.getColumn() == source.getColumn() - 2) {
-            Position sourceT = new Position(source.getRow(), source.getColumn() - 4);
-            Position targetT = new Position(source.getRow(), source.getColumn() - 1);
-            ChessPiece rook = (ChessPiece) board.removePiece(targetT);
-            board.placePiece(rook, sourceT);
+            Position sourceT = position(source.getRow(), source.getColumn() - 4);
+            Position targetT = position(source.getRow(), source.getColumn() - 1);
+            ChessPiece rook = removePiece(targetT);
+            placePiece(rook, sourceT);
             rook.decreaseMoveCount();
         }
 
@@ -297,14 +1285,14 @@ public class ChessMatch {
                     target.getColumn() &&
                     capturedPiece == enPassantVulnerable) {
 
-                ChessPiece pawn = (ChessPiece) board.removePiece(target);
+                ChessPiece pawn = removePiece(target);
                 Position pawnPosition;
                 if (p.getColor() == Color.WHITE) {
-                    pawnPosition = new Position(3, target.getColumn());
+                    pawnPosition = position(3, target.getColumn());
                 } else {
-                    pawnPosition = new Position(4, target.getColumn());
+                    pawnPosition = position(4, target.getColumn());
                 }
-                board.placePiece(pawn, pawnPosition);
+                placePiece(pawn, pawnPosition);
             }
         }
     }
@@ -316,26 +1304,29 @@ public class ChessMatch {
      * @throws ChessException If the source position does not have a piece, the piece is not owned by the current player, or the piece has no possible moves.
      */
     private void validateSourcePosition(Position position) {
-        if (!board.thereIsAPiece(position)) {
-            throw new ChessException("There is no piece on source position");
-        } else if (currentPlayer != ((ChessPiece) board.piece(position)).getColor()) {
-            throw new ChessException("The chosen piece is not yours");
-        } else if (!board.piece(position).isThereAnyPossibleMove()) {
-            throw new ChessException("There is no possible moves for the chosen piece");
+        MoveStatus status = sourceStatus(position);
+        if (!status.isLegal()) {
+            throw new ChessException(status.getMessage());
         }
     }
 
     /**
-     * Validates the target position of a chess move.
+     * Checks the source position of a chess move.
      *
-     * @param source The source position of the move.
-     * @param target The target position of the move.
-     * @throws ChessException If the target position is not reachable by the chosen piece.
+     * @param position The source position of the move.
+     * @return {@link MoveStatus#LEGAL} if the current player can move the piece on that position, otherwise the
+     * reason it cannot.
      */
-    private void validateTargetPosition(Position source, Position target) {
-        if (!board.piece(source).possibleMove(target)) {
-            throw new ChessException("The chosen piece can't move to target position");
+    private MoveStatus sourceStatus(Position position) {
+        if (!board.thereIsAPiece(position)) {
+            return MoveStatus.NO_PIECE_ON_SOURCE;
+        } else if (currentPlayer != ((ChessPiece) board.piece(position)).getColor()) {
+            return MoveStatus.NOT_YOUR_PIECE;
+        } else if (MoveGenerator.generate(this, (ChessPiece) board.piece(position),
+                position.getRow() * 8 + position.getColumn(), MoveGenerator.ALL, pieceMoves, 0) == 0) {
+            return MoveStatus.NO_POSSIBLE_MOVES;
         }
+        return MoveStatus.LEGAL;
     }
 
     /**
@@ -349,69 +1340,292 @@ public class ChessMatch {
     }
 
     /**
-     * Returns the king of the specified color.
+     * Returns whether the player whose color is specified is in check.
+     *
+     * @param color The color of the player whose check status is to be determined.
+     * @return True if the player is in check, false otherwise.
+     */
+    private boolean testCheck(Color color) {
+        return MoveGenerator.isAttacked(this, kingSquares[color.ordinal()], opponent(color));
+    }
+
+    /**
+     * Finds the pieces of the player who made the last move that the opponent can win material by capturing.
      *
-     * @param color The color of the player whose king is to be determined.
-     * @return The king piece of the specified color.
-     * @throws IllegalStateException If there is no king of the specified color on the board.
+     * @param mover The color of the player who made the last move.
      */
-    private ChessPiece king(Color color) {
-        List<Piece> list = piecesOnTheBoard.stream().filter(x -> ((ChessPiece) x).getColor() == color).toList();
-        for (Piece p : list) {
-            if (p instanceof King) {
-                return (ChessPiece) p;
+    private void updateHangingPieces(Color mover) {
+        hangingPieces = 0;
+        if (result.isOver()) {
+            return;
+        }
+        for (Piece p : piecesOnTheBoard) {
+            ChessPiece piece = (ChessPiece) p;
+            if (piece.getColor() == mover && !(piece instanceof King) &&
+                    StaticExchange.threat(this, piece.getSquare(), opponent(mover)) > 0) {
+                hangingPieces |= 1L << piece.getSquare();
             }
         }
-        throw new IllegalStateException("There is no " + color + " king on the board");
     }
 
     /**
-     * Returns whether the player whose color is specified is in check.
+     * Returns whether the player whose color is specified has at least one legal move.
+     * Checkmate and stalemate are both a legal-move count of zero, told apart by the check status.
      *
-     * @param color The color of the player whose check status is to be determined.
-     * @return True if the player is in check, false otherwise.
+     * @param color The color of the player whose moves are to be tested.
+     * @return True if the player has a move that does not leave their king in check, false otherwise.
      */
-    private boolean testCheck(Color color) {
-        Position kingPosition = king(color).getChessPosition().toPosition();
-        List<Piece> opponentPieces = piecesOnTheBoard.stream().filter(x -> ((ChessPiece) x).getColor() == opponent(color)).toList();
-        for (Piece p : opponentPieces) {
-            boolean[][] mat = p.possibleMoves();
-            if (mat[kingPosition.getRow()][kingPosition.getColumn()]) {
-                return true;
+    private boolean hasAnyLegalMove(Color color) {
+        // Squares rather than the list of pieces, which the moves tried reorder
+        for (int square = 0; square < 64; square++) {
+            ChessPiece p = getPiece(square);
+            if (p == null || p.getColor() != color) {
+                continue;
+            }
+            int count = MoveGenerator.generate(this, p, square, MoveGenerator.ALL, pieceMoves, 0);
+            for (int i = 0; i < count; i++) {
+                Position source = POSITIONS[square];
+                Position target = POSITIONS[Move.target(pieceMoves[i])];
+                Piece capturedPiece = makeMove(source, target);
+                boolean testCheck = testCheck(color);
+                undoMove(source, target, capturedPiece);
+                if (!testCheck) {
+                    return true;
+                }
             }
         }
         return false;
     }
 
     /**
-     * Returns whether the player whose color is specified is in checkmate.
+     * Updates the check, checkmate and result of the match after a move of the specified player.
+     * The position reached must already be recorded in the repetition table.
      *
-     * @param color The color of the player whose checkmate status is to be determined.
-     * @return True if the player is in checkmate, false otherwise.
+     * @param mover The color of the player who made the last move.
      */
-    private boolean testCheckMate(Color color) {
-        if (!testCheck(color)) {
-            return false;
+    private void updateGameState(Color mover) {
+        Color opponent = opponent(mover);
+        check = testCheck(opponent);
+        boolean canMove = hasAnyLegalMove(opponent);
+        checkMate = check && !canMove;
+        result = gameResult(mover, canMove);
+    }
+
+    /**
+     * Returns the result of the match after a move of the specified player, with the check status already set.
+     *
+     * @param mover   The color of the player who made the last move.
+     * @param canMove Whether the opponent has a legal move.
+     * @return The result of the match.
+     */
+    private GameResult gameResult(Color mover, boolean canMove) {
+        if (check && !canMove) {
+            return (mover == Color.WHITE) ? GameResult.WHITE_WINS_BY_CHECKMATE : GameResult.BLACK_WINS_BY_CHECKMATE;
+        } else if (!canMove) {
+            return GameResult.DRAW_BY_STALEMATE;
+        } else if (isDrawn()) {
+            if (isInsufficientMaterial()) {
+                return GameResult.DRAW_BY_INSUFFICIENT_MATERIAL;
+            }
+            return repetitions() >= 3 ? GameResult.DRAW_BY_THREEFOLD_REPETITION : GameResult.DRAW_BY_FIFTY_MOVE_RULE;
+        }
+        return GameResult.ONGOING;
+    }
+
+    /**
+     * Ends the match on time: the opponent of the player whose flag fell wins, unless it only has its king and at
+     * most one minor piece, which cannot deliver checkmate.
+     *
+     * @param flagged The color of the player whose time ran out.
+     */
+    private void endOnTime(Color flagged) {
+        int opponent = flagged == Color.WHITE ? 6 : 0;
+        int pawnsAndMajors = material[opponent + PieceType.PAWN.ordinal()] +
+                material[opponent + PieceType.ROOK.ordinal()] + material[opponent + PieceType.QUEEN.ordinal()];
+        int minors = material[opponent + PieceType.KNIGHT.ordinal()] + material[opponent + PieceType.BISHOP.ordinal()];
+        if (pawnsAndMajors == 0 && minors <= 1) {
+            result = GameResult.DRAW_BY_TIMEOUT_VS_INSUFFICIENT_MATERIAL;
+        } else {
+            result = flagged == Color.WHITE ? GameResult.BLACK_WINS_ON_TIME : GameResult.WHITE_WINS_ON_TIME;
+        }
+        publishSnapshot();
+    }
+
+    /**
+     * Returns whether the current position is drawn by insufficient material, threefold repetition or the
+     * fifty-move rule.
+     *
+     * @return True if the position ends the match in a draw.
+     */
+    private boolean isDrawn() {
+        return isInsufficientMaterial() || repetitions() >= 3 || halfmoveClock >= 100;
+    }
+
+    /**
+     * Returns the number of pieces of the specified type of both colors on the board.
+     *
+     * @param type The type of the pieces to be counted.
+     * @return The number of pieces of that type.
+     */
+    private int count(PieceType type) {
+        return material[type.ordinal()] + material[type.ordinal() + 6];
+    }
+
+    /**
+     * Returns how many times the current position occurred since the last capture or pawn move.
+     * Only positions with the same player to move are compared.
+     *
+     * @return The number of occurrences of the current position, at least 1.
+     */
+    private int repetitions() {
+        long key = repetitionTable[repetitionCount - 1];
+        int occurrences = 1;
+        for (int i = repetitionCount - 3; i >= repetitionStart; i -= 2) {
+            if (repetitionTable[i] == key) {
+                occurrences++;
+            }
+        }
+        return occurrences;
+    }
+
+    /**
+     * Appends the current position to the repetition table. After a capture or pawn move, the earlier positions
+     * are kept so the move can be taken back, but are no longer compared.
+     *
+     * @param sideToMove The color of the player to move in the current position.
+     */
+    private void recordPosition(Color sideToMove) {
+        if (halfmoveClock == 0) {
+            repetitionStart = repetitionCount;
+        }
+        if (repetitionCount == repetitionTable.length) {
+            repetitionTable = Arrays.copyOf(repetitionTable, repetitionCount * 2);
+        }
+        repetitionTable[repetitionCount++] = positionKey(sideToMove);
+    }
+
+    /**
+     * Computes the Zobrist hash of the current position from the incrementally updated piece hash.
+     *
+     * @param sideToMove The color of the player to move.
+     * @return The hash of the position.
+     */
+    private long positionKey(Color sideToMove) {
+        long key = pieceKey;
+        if (castlingAvailable(7, 7)) {
+            key ^= ZobristKeys.CASTLING[0];
+        }
+        if (castlingAvailable(7, 0)) {
+            key ^= ZobristKeys.CASTLING[1];
         }
-        List<Piece> list = piecesOnTheBoard.stream().filter(x -> ((ChessPiece) x).getColor() == color).toList();
-        for (Piece p : list) {
-            boolean[][] mat = p.possibleMoves();
-            for (int i = 0; i < board.getRows(); i++) {
-                for (int j = 0; j < board.getColumns(); j++) {
-                    if (mat[i][j]) {
-                        Position source = ((ChessPiece) p).getChessPosition().toPosition();
-                        Position target = new Position(i, j);
-                        Piece capturedPiece = makeMove(source, target);
-                        boolean testCheck = testCheck(color);
-                        undoMove(source, target, capturedPiece);
-                        if (!testCheck) {
-                            return false;
-                        }
+        if (castlingAvailable(0, 7)) {
+            key ^= ZobristKeys.CASTLING[2];
+        }
+        if (castlingAvailable(0, 0)) {
+            key ^= ZobristKeys.CASTLING[3];
+        }
+        if (enPassantVulnerable != null) {
+            // Only hashed when an opponent pawn stands next to the vulnerable pawn and could capture it
+            Position pos = enPassantVulnerable.getChessPosition().toPosition();
+            for (int column = pos.getColumn() - 1; column <= pos.getColumn() + 1; column += 2) {
+                if (column >= 0 && column < 8) {
+                    ChessPiece p = (ChessPiece) board.piece(pos.getRow(), column);
+                    if (p instanceof Pawn && p.getColor() != enPassantVulnerable.getColor()) {
+                        key ^= ZobristKeys.EN_PASSANT[pos.getColumn()];
+                        break;
                     }
                 }
             }
         }
-        return true;
+        if (sideToMove == Color.BLACK) {
+            key ^= ZobristKeys.BLACK_TO_MOVE;
+        }
+        return key;
+    }
+
+    /**
+     * Returns whether the king on the given row and the rook in the given corner have never moved.
+     *
+     * @param row        The row of the king and the rook.
+     * @param rookColumn The column of the rook.
+     * @return True if castling with that rook is still possible later in the match, false otherwise.
+     */
+    private boolean castlingAvailable(int row, int rookColumn) {
+        ChessPiece king = (ChessPiece) board.piece(row, 4);
+        ChessPiece rook = (ChessPiece) board.piece(row, rookColumn);
+        return king instanceof King && king.getMoveCount() == 0 &&
+                rook instanceof Rook && rook.getMoveCount() == 0 &&
+                rook.getColor() == king.getColor();
+    }
+
+    /**
+     * Places a piece on the board and updates the piece hash, the piece-square scores, the king squares and the
+     * NNUE accumulators.
+     *
+     * @param piece    The piece to be placed.
+     * @param position The position where the piece will be placed.
+     */
+    private void placePiece(ChessPiece piece, Position position) {
+        board.placePiece(piece, position);
+        pieceKey ^= ZobristKeys.piece(piece, position);
+        int square = position.getRow() * 8 + position.getColumn();
+        if (piece instanceof King) {
+            kingSquares[piece.getColor().ordinal()] = square;
+        }
+        middlegameScore += PieceSquareTables.middlegame(piece, square);
+        endgameScore += PieceSquareTables.endgame(piece, square);
+        if (accumulator != null) {
+            accumulator.piecePlaced(piece, square);
+        }
+    }
+
+    /**
+     * Removes a piece from the board and updates the piece hash, the piece-square scores and the NNUE
+     * accumulators.
+     *
+     * @param position The position of the piece to be removed.
+     * @return The removed piece, or null if there was no piece at the specified position.
+     */
+    private ChessPiece removePiece(Position position) {
+        ChessPiece piece = (ChessPiece) board.removePiece(position);
+        if (piece != null) {
+            pieceKey ^= ZobristKeys.piece(piece, position);
+            int square = position.getRow() * 8 + position.getColumn();
+            middlegameScore -= PieceSquareTables.middlegame(piece, square);
+            endgameScore -= PieceSquareTables.endgame(piece, square);
+            if (accumulator != null) {
+                accumulator.pieceRemoved(piece, square);
+            }
+        }
+        return piece;
+    }
+
+    /**
+     * Counts a piece entering the board in the material counters.
+     *
+     * @param piece    The piece entering the board.
+     * @param position The position of the piece.
+     */
+    private void addMaterial(ChessPiece piece, Position position) {
+        material[piece.getIndex()]++;
+        phase += PieceSquareTables.phase(piece.getType());
+        if (piece instanceof Bishop) {
+            bishopsOnSquareColor[(position.getRow() + position.getColumn()) % 2]++;
+        }
+    }
+
+    /**
+     * Removes a piece leaving the board from the material counters.
+     *
+     * @param piece    The piece leaving the board.
+     * @param position The last position of the piece.
+     */
+    private void removeMaterial(ChessPiece piece, Position position) {
+        material[piece.getIndex()]--;
+        phase -= PieceSquareTables.phase(piece.getType());
+        if (piece instanceof Bishop) {
+            bishopsOnSquareColor[(position.getRow() + position.getColumn()) % 2]--;
+        }
     }
 
     /**
@@ -431,8 +1645,107 @@ public class ChessMatch {
          * @return void
          * @throws IllegalArgumentException If the provided piece is not a valid chess piece.
          */
-        board.placePiece(piece, new ChessPosition(column, row).toPosition());
+        Position position = position(8 - row, column - 'a');
+        placePiece(piece, position);
         piecesOnTheBoard.add(piece);
+        addMaterial(piece, position);
+    }
+
+    /**
+     * Creates the piece of a FEN letter, as if it had moved already when it is a pawn off its initial row.
+     *
+     * @param letter The FEN letter of the piece, uppercase for white.
+     * @param row    The row of the board where the piece stands, 0 being the eighth rank.
+     * @return The new piece.
+     * @throws ChessException If the letter is not a piece, or a pawn stands on the first or last rank.
+     */
+    private ChessPiece createFenPiece(char letter, int row) {
+        Color color = Character.isUpperCase(letter) ? Color.WHITE : Color.BLACK;
+        switch (Character.toUpperCase(letter)) {
+            case 'K':
+                return takePiece(PieceType.KING, color);
+            case 'P':
+                if (row == 0 || row == 7) {
+                    throw new ChessException("A pawn cannot stand on the first or last rank");
+                }
+                ChessPiece pawn = takePiece(PieceType.PAWN, color);
+                if (row != (color == Color.WHITE ? 6 : 1)) {
+                    pawn.increaseMoveCount();
+                }
+                return pawn;
+            case 'Q':
+                return takePiece(PieceType.QUEEN, color);
+            case 'R':
+                return takePiece(PieceType.ROOK, color);
+            case 'B':
+                return takePiece(PieceType.BISHOP, color);
+            case 'N':
+                return takePiece(PieceType.KNIGHT, color);
+            default:
+                throw new ChessException("Invalid FEN piece: " + letter);
+        }
+    }
+
+    /**
+     * Marks as moved the kings and rooks that lost their castling rights.
+     *
+     * @param rights The castling field of a FEN position, such as "KQkq" or "-".
+     */
+    private void setCastlingRights(String rights) {
+        if (!rights.matches("-|K?Q?k?q?") || rights.isEmpty()) {
+            throw new ChessException("Invalid FEN castling rights: " + rights);
+        }
+        String[] letters = {"K", "Q", "k", "q"};
+        int[][] corners = {{7, 7}, {7, 0}, {0, 7}, {0, 0}};
+        for (int i = 0; i < 4; i++) {
+            ChessPiece rook = (ChessPiece) board.piece(corners[i][0], corners[i][1]);
+            boolean allowed = rights.contains(letters[i]);
+            if (allowed && !castlingAvailable(corners[i][0], corners[i][1])) {
+                throw new ChessException("Castling right without king and rook: " + letters[i]);
+            }
+            if (!allowed && rook instanceof Rook && rook.getMoveCount() == 0) {
+                rook.increaseMoveCount();
+            }
+        }
+        for (int row = 0; row < 8; row += 7) {
+            ChessPiece king = (ChessPiece) board.piece(row, 4);
+            if (king instanceof King && !castlingAvailable(row, 7) && !castlingAvailable(row, 0)) {
+                king.increaseMoveCount();
+            }
+        }
+        for (Piece p : piecesOnTheBoard) {
+            ChessPiece piece = (ChessPiece) p;
+            int square = piece.getSquare();
+            if (piece instanceof King && square != (piece.getColor() == Color.WHITE ? 60 : 4) ||
+                    piece instanceof Rook && square != 0 && square != 7 && square != 56 && square != 63) {
+                if (piece.getMoveCount() == 0) {
+                    piece.increaseMoveCount();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the pawn that can be captured en passant through the target square of a FEN position.
+     *
+     * @param square The en passant field of a FEN position, such as "e3".
+     * @return The pawn that has just moved two squares.
+     * @throws ChessException If no pawn of the player not to move stands in front of the square.
+     */
+    private ChessPiece enPassantPawn(String square) {
+        if (square.length() != 2) {
+            throw new ChessException("Invalid FEN en passant square: " + square);
+        }
+        ChessPosition target = new ChessPosition(square.charAt(0), square.charAt(1) - '0');
+        int pawnRow = currentPlayer == Color.WHITE ? 5 : 4;
+        if (target.getRow() != (currentPlayer == Color.WHITE ? 6 : 3)) {
+            throw new ChessException("Invalid FEN en passant square: " + square);
+        }
+        ChessPiece pawn = (ChessPiece) board.piece(new ChessPosition(target.getColumn(), pawnRow).toPosition());
+        if (!(pawn instanceof Pawn) || pawn.getColor() == currentPlayer) {
+            throw new ChessException("No pawn can be captured en passant on " + square);
+        }
+        return pawn;
     }
 
     private void nextTurn() {
@@ -441,39 +1754,58 @@ public class ChessMatch {
     }
 
     private void initialSetup() {
-        placeNewPiece('a', 1, new Rook(board, Color.WHITE));
-        placeNewPiece('b', 1, new Knight(board, Color.WHITE));
-        placeNewPiece('c', 1, new Bishop(board, Color.WHITE));
-        placeNewPiece('d', 1, new Queen(board, Color.WHITE));
-        placeNewPiece('e', 1, new King(board, Color.WHITE, this));
-        placeNewPiece('f', 1, new Bishop(board, Color.WHITE));
-        placeNewPiece('g', 1, new Knight(board, Color.WHITE));
-        placeNewPiece('h', 1, new Rook(board, Color.WHITE));
-        placeNewPiece('a', 2, new Pawn(board, Color.WHITE, this));
-        placeNewPiece('b', 2, new Pawn(board, Color.WHITE, this));
-        placeNewPiece('c', 2, new Pawn(board, Color.WHITE, this));
-        placeNewPiece('d', 2, new Pawn(board, Color.WHITE, this));
-        placeNewPiece('e', 2, new Pawn(board, Color.WHITE, this));
-        placeNewPiece('f', 2, new Pawn(board, Color.WHITE, this));
-        placeNewPiece('g', 2, new Pawn(board, Color.WHITE, this));
-        placeNewPiece('h', 2, new Pawn(board, Color.WHITE, this));
-
-        placeNewPiece('a', 8, new Rook(board, Color.BLACK));
-        placeNewPiece('b', 8, new Knight(board, Color.BLACK));
-        placeNewPiece('c', 8, new Bishop(board, Color.BLACK));
-        placeNewPiece('d', 8, new Queen(board, Color.BLACK));
-        placeNewPiece('e', 8, new King(board, Color.BLACK, this));
-        placeNewPiece('f', 8, new Bishop(board, Color.BLACK));
-        placeNewPiece('g', 8, new Knight(board, Color.BLACK));
-        placeNewPiece('h', 8, new Rook(board, Color.BLACK));
-        placeNewPiece('a', 7, new Pawn(board, Color.BLACK, this));
-        placeNewPiece('b', 7, new Pawn(board, Color.BLACK, this));
-        placeNewPiece('c', 7, new Pawn(board, Color.BLACK, this));
-        placeNewPiece('d', 7, new Pawn(board, Color.BLACK, this));
-        placeNewPiece('e', 7, new Pawn(board, Color.BLACK, this));
-        placeNewPiece('f', 7, new Pawn(board, Color.BLACK, this));
-        placeNewPiece('g', 7, new Pawn(board, Color.BLACK, this));
-        placeNewPiece('h', 7, new Pawn(board, Color.BLACK, this));
+        placeNewPiece('a', 1, takePiece(PieceType.ROOK, Color.WHITE));
+        placeNewPiece('b', 1, takePiece(PieceType.KNIGHT, Color.WHITE));
+        placeNewPiece('c', 1, takePiece(PieceType.BISHOP, Color.WHITE));
+        placeNewPiece('d', 1, takePiece(PieceType.QUEEN, Color.WHITE));
+        placeNewPiece('e', 1, takePiece(PieceType.KING, Color.WHITE));
+        placeNewPiece('f', 1, takePiece(PieceType.BISHOP, Color.WHITE));
+        placeNewPiece('g', 1, takePiece(PieceType.KNIGHT, Color.WHITE));
+        placeNewPiece('h', 1, takePiece(PieceType.ROOK, Color.WHITE));
+        placeNewPiece('a', 2, takePiece(PieceType.PAWN, Color.WHITE));
+        placeNewPiece('b', 2, takePiece(PieceType.PAWN, Color.WHITE));
+        placeNewPiece('c', 2, takePiece(PieceType.PAWN, Color.WHITE));
+        placeNewPiece('d', 2, takePiece(PieceType.PAWN, Color.WHITE));
+        placeNewPiece('e', 2, takePiece(PieceType.PAWN, Color.WHITE));
+        placeNewPiece('f', 2, takePiece(PieceType.PAWN, Color.WHITE));
+        placeNewPiece('g', 2, takePiece(PieceType.PAWN, Color.WHITE));
+        placeNewPiece('h', 2, takePiece(PieceType.PAWN, Color.WHITE));
+
+        placeNewPiece('a', 8, takePiece(PieceType.ROOK, Color.BLACK));
+        placeNewPiece('b', 8, takePiece(PieceType.KNIGHT, Color.BLACK));
+        placeNewPiece('c', 8, takePiece(PieceType.BISHOP, Color.BLACK));
+        placeNewPiece('d', 8, takePiece(PieceType.QUEEN, Color.BLACK));
+        placeNewPiece('e', 8, takePiece(PieceType.KING, Color.BLACK));
+        placeNewPiece('f', 8, takePiece(PieceType.BISHOP, Color.BLACK));
+        placeNewPiece('g', 8, takePiece(PieceType.KNIGHT, Color.BLACK));
+        placeNewPiece('h', 8, takePiece(PieceType.ROOK, Color.BLACK));
+        placeNewPiece('a', 7, takePiece(PieceType.PAWN, Color.BLACK));
+        placeNewPiece('b', 7, takePiece(PieceType.PAWN, Color.BLACK));
+        placeNewPiece('c', 7, takePiece(PieceType.PAWN, Color.BLACK));
+        placeNewPiece('d', 7, takePiece(PieceType.PAWN, Color.BLACK));
+        placeNewPiece('e', 7, takePiece(PieceType.PAWN, Color.BLACK));
+        placeNewPiece('f', 7, takePiece(PieceType.PAWN, Color.BLACK));
+        placeNewPiece('g', 7, takePiece(PieceType.PAWN, Color.BLACK));
+        placeNewPiece('h', 7, takePiece(PieceType.PAWN, Color.BLACK));
     }
-}
 
+    /**
+     * State of the match before a move made with {@link #makeMove(int)}.
+     */
+    private static class UndoState {
+        private int move;
+        private Piece capturedPiece;
+        private ChessPiece enPassantVulnerable;
+        private ChessPiece promotedPawn;
+        private int halfmoveClock;
+        private int repetitionStart;
+        private boolean check;
+    }
+
+    /**
+     * Snapshot of the initial position, created on first use since creating it creates a match.
+     */
+    private static final class InitialSnapshot {
+        static final MatchSnapshot SNAPSHOT = new ChessMatch().getSnapshot();
+    }
+}
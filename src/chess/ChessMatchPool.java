@@ -0,0 +1,202 @@
+package chess;
+
+import chess.exception.ChessException;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of matches, for servers starting many short games: a released match is {@link ChessMatch#reset()
+ * reset} and handed out again, so that a new game allocates neither a board nor pieces. It is safe to acquire and
+ * release matches from several threads at once.
+ * <p>
+ * At most {@code capacity} idle matches are kept; a match released while the pool is full is left to the garbage
+ * collector, and {@link #acquire()} creates a new match when none is idle, so that the pool never blocks. Each
+ * acquired match holds a lease, released once. A match that becomes unreachable without being released is counted
+ * as leaked, see {@link #getLeaked()}.
+ */
+public class ChessMatchPool {
+
+    private final ArrayBlockingQueue<ChessMatch> idle;
+
+    /**
+     * Leases of the acquired matches, kept here because a lease only refers weakly to its match.
+     */
+    private final Set<Lease> leases = ConcurrentHashMap.newKeySet();
+    private final ReferenceQueue<ChessMatch> collected = new ReferenceQueue<>();
+
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong leaked = new AtomicLong();
+
+    /**
+     * Creates an empty pool.
+     *
+     * @param capacity the maximum number of idle matches kept
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public ChessMatchPool(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        idle = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Acquires a match in the initial position.
+     *
+     * @return a match, to be given back with {@link #release(ChessMatch)}
+     */
+    public ChessMatch acquire() {
+        ChessMatch match = idle.poll();
+        if (match == null) {
+            match = new ChessMatch();
+            created.incrementAndGet();
+        } else {
+            reused.incrementAndGet();
+        }
+        return lease(match);
+    }
+
+    /**
+     * Acquires a match in a position in Forsyth-Edwards Notation.
+     *
+     * @param fen the position, as accepted by {@link ChessMatch#ChessMatch(String)}
+     * @return a match, to be given back with {@link #release(ChessMatch)}
+     * @throws ChessException if the position is not valid
+     */
+    public ChessMatch acquire(String fen) {
+        ChessMatch match = idle.poll();
+        if (match == null) {
+            match = new ChessMatch(fen);
+            created.incrementAndGet();
+        } else {
+            try {
+                match.reset(fen);
+            } catch (ChessException e) {
+                // The match was left in the initial position
+                idle.offer(match);
+                throw e;
+            }
+            reused.incrementAndGet();
+        }
+        return lease(match);
+    }
+
+    /**
+     * Gives back a match acquired from the pool. The match must not be used afterwards.
+     *
+     * @param match the match
+     * @throws IllegalArgumentException if the match is not acquired from this pool, as when released already
+     * @throws IllegalStateException    if the match is still attached to a move event bus, in which case it stays
+     *                                  acquired
+     */
+    public void release(ChessMatch match) {
+        Lease lease = match.lease;
+        if (lease == null || lease.pool != this) {
+            throw new IllegalArgumentException("The match is not acquired from this pool");
+        }
+        if (match.getEventRing() != null) {
+            throw new IllegalStateException("The match is still attached to a move event bus");
+        }
+        if (!leases.remove(lease)) {
+            throw new IllegalArgumentException("The match was released already");
+        }
+        match.lease = null;
+        lease.clear();
+        match.reset();
+        idle.offer(match);
+    }
+
+    /**
+     * Returns the number of idle matches.
+     *
+     * @return the number of matches ready to be acquired
+     */
+    public int getIdle() {
+        return idle.size();
+    }
+
+    /**
+     * Returns the number of matches acquired and not released yet, leaked ones excepted.
+     *
+     * @return the number of acquired matches
+     */
+    public int getAcquired() {
+        pollCollected();
+        return leases.size();
+    }
+
+    /**
+     * Returns the number of matches created by the pool because none was idle.
+     *
+     * @return the number of created matches
+     */
+    public long getCreated() {
+        return created.get();
+    }
+
+    /**
+     * Returns the number of acquisitions served by an idle match.
+     *
+     * @return the number of reused matches
+     */
+    public long getReused() {
+        return reused.get();
+    }
+
+    /**
+     * Returns the number of acquired matches that were garbage collected without being released. A leak is only
+     * seen once the garbage collector cleared the match, so it may be counted late.
+     *
+     * @return the number of leaked matches
+     */
+    public long getLeaked() {
+        pollCollected();
+        return leaked.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d idle, %d acquired, %d created, %d reused, %d leaked",
+                getIdle(), getAcquired(), getCreated(), getReused(), getLeaked());
+    }
+
+    private ChessMatch lease(ChessMatch match) {
+        pollCollected();
+        Lease lease = new Lease(match, this, collected);
+        leases.add(lease);
+        match.lease = lease;
+        return match;
+    }
+
+    /**
+     * Counts the leases whose match was collected while acquired.
+     */
+    private void pollCollected() {
+        Reference<? extends ChessMatch> reference;
+        while ((reference = collected.poll()) != null) {
+            if (leases.remove(reference)) {
+                leaked.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Lease of an acquired match, enqueued by the garbage collector if the match is collected before its release.
+     */
+    static final class Lease extends WeakReference<ChessMatch> {
+
+        private final ChessMatchPool pool;
+
+        private Lease(ChessMatch match, ChessMatchPool pool, ReferenceQueue<ChessMatch> queue) {
+            super(match, queue);
+            this.pool = pool;
+        }
+    }
+}
@@ -39,6 +39,23 @@ public abstract class ChessPiece extends Piece {
         return color;
     }
 
+    /**
+     * Returns the type of the chess piece.
+     *
+     * @return the type of the piece
+     */
+    public abstract PieceType getType();
+
+    /**
+     * Returns the index of the piece among the twelve colored piece kinds:
+     * white pieces first, then black pieces, each in {@link PieceType} order.
+     *
+     * @return the index of the piece, from 0 to 11
+     */
+    int getIndex() {
+        return getType().ordinal() + (color == Color.WHITE ? 0 : 6);
+    }
+
     /**
      * Returns the number of moves the piece has made.
      *
@@ -62,6 +79,13 @@ public abstract class ChessPiece extends Piece {
         moveCount--;
     }
 
+    /**
+     * Sets the move count of the piece back to zero, when its match reuses it for a new game.
+     */
+    void resetMoveCount() {
+        moveCount = 0;
+    }
+
     /**
      * Returns the chess position of the piece.
      *
@@ -71,6 +95,15 @@ public abstract class ChessPiece extends Piece {
         return ChessPosition.fromPosition(position);
     }
 
+    /**
+     * Returns the square of the piece, numbered as in {@link Move}.
+     *
+     * @return the square of the piece, or -1 if the piece is not on the board
+     */
+    public int getSquare() {
+        return position == null ? -1 : position.getRow() * 8 + position.getColumn();
+    }
+
     /**
      * Checks if there is an opponent piece at the specified position.
      *
@@ -0,0 +1,238 @@
+package chess;
+
+import chess.exception.ChessException;
+
+import java.util.Arrays;
+
+/**
+ * Immutable position packed into five longs, for storing large numbers of positions without the object graph
+ * of a {@link ChessMatch}.
+ * <p>
+ * The first four words are a mailbox of 4 bits per square, 16 squares per word, numbered as in {@link Move}. A
+ * square holds 0 when empty, or 1 plus the piece type ordinal, plus 6 for a black piece. The last word holds the
+ * state: bit 0 is set when black is to move, bits 1-4 are the castling rights K, Q, k and q, bits 5-8 are the file
+ * of the pawn that can be captured en passant plus 1, or 0 for none, bits 9-16 are the halfmove clock and bits
+ * 17-32 the move number.
+ * <p>
+ * The positions reached before are not kept, so a match rebuilt from a compact position counts repetitions from it.
+ */
+public final class CompactPosition {
+
+    /**
+     * Number of longs of a packed position.
+     */
+    public static final int WORDS = 5;
+
+    private static final PieceType[] TYPES = PieceType.values();
+
+    private static final String CASTLING_LETTERS = "KQkq";
+
+    /**
+     * Squares of the king and the rook of each castling right, in the order of {@link #CASTLING_LETTERS}.
+     */
+    private static final int[][] CASTLING_SQUARES = {{60, 63}, {60, 56}, {4, 7}, {4, 0}};
+
+    private final long[] words;
+
+    private CompactPosition(long[] words) {
+        this.words = words;
+    }
+
+    /**
+     * Packs the current position of a match.
+     *
+     * @param match the match
+     * @return the compact position
+     */
+    public static CompactPosition of(ChessMatch match) {
+        long[] words = new long[WORDS];
+        write(match, words, 0);
+        return new CompactPosition(words);
+    }
+
+    /**
+     * Packs the current position of a match into an array.
+     *
+     * @param match  the match
+     * @param words  the array receiving the {@value #WORDS} words of the position
+     * @param offset the index of the first word
+     */
+    static void write(ChessMatch match, long[] words, int offset) {
+        for (int i = 0; i < 4; i++) {
+            words[offset + i] = 0;
+        }
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = match.getPiece(square);
+            if (piece != null) {
+                words[offset + (square >>> 4)] |= (long) (piece.getIndex() + 1) << ((square & 15) * 4);
+            }
+        }
+        // A checkmated match leaves the winner as current player, without counting the mating move as a turn
+        boolean checkMate = match.getCheckMate();
+        Color current = match.getCurrentPlayer();
+        long state = (current == Color.BLACK) != checkMate ? 1 : 0;
+        for (int i = 0; i < 4; i++) {
+            int king = CASTLING_SQUARES[i][0];
+            int rook = CASTLING_SQUARES[i][1];
+            if (isUnmoved(match, king, PieceType.KING) && isUnmoved(match, rook, PieceType.ROOK) &&
+                    match.getPiece(king).getColor() == match.getPiece(rook).getColor()) {
+                state |= 1L << (1 + i);
+            }
+        }
+        ChessPiece vulnerable = match.getEnPassantVulnerable();
+        if (vulnerable != null) {
+            state |= (long) ((vulnerable.getSquare() & 7) + 1) << 5;
+        }
+        state |= (long) Math.min(255, match.getHalfmoveClock()) << 9;
+        state |= (long) Math.min(0xFFFF, (match.getTurn() + (checkMate ? 2 : 1)) / 2) << 17;
+        words[offset + 4] = state;
+    }
+
+    /**
+     * Creates a compact position from its words, as written by {@link #copyTo(long[], int)}.
+     *
+     * @param words  the array holding the {@value #WORDS} words of the position
+     * @param offset the index of the first word
+     * @return the compact position
+     */
+    public static CompactPosition read(long[] words, int offset) {
+        return new CompactPosition(Arrays.copyOfRange(words, offset, offset + WORDS));
+    }
+
+    /**
+     * Copies the words of the position into an array.
+     *
+     * @param words  the array receiving the {@value #WORDS} words of the position
+     * @param offset the index of the first word
+     */
+    public void copyTo(long[] words, int offset) {
+        System.arraycopy(this.words, 0, words, offset, WORDS);
+    }
+
+    /**
+     * Returns the type of the piece on a square.
+     *
+     * @param square the square, from 0 to 63
+     * @return the piece type, or null if the square is empty
+     */
+    public PieceType getPieceType(int square) {
+        int code = code(square);
+        return code == 0 ? null : TYPES[(code - 1) % 6];
+    }
+
+    /**
+     * Returns the color of the piece on a square.
+     *
+     * @param square the square, from 0 to 63
+     * @return the color of the piece, or null if the square is empty
+     */
+    public Color getPieceColor(int square) {
+        int code = code(square);
+        return code == 0 ? null : code <= 6 ? Color.WHITE : Color.BLACK;
+    }
+
+    /**
+     * Returns the player to move.
+     *
+     * @return the color of the player to move
+     */
+    public Color getSideToMove() {
+        return (words[4] & 1) == 0 ? Color.WHITE : Color.BLACK;
+    }
+
+    /**
+     * Returns the number of moves made by both players since the last capture or pawn move.
+     *
+     * @return the halfmove clock, at most 255
+     */
+    public int getHalfmoveClock() {
+        return (int) (words[4] >>> 9 & 0xFF);
+    }
+
+    /**
+     * Returns the move number, which starts at 1 and grows after each move of black.
+     *
+     * @return the move number
+     */
+    public int getMoveNumber() {
+        return (int) (words[4] >>> 17 & 0xFFFF);
+    }
+
+    /**
+     * Rebuilds a match in the position.
+     *
+     * @return a new match
+     * @throws ChessException if the position is not a legal one to play from
+     */
+    public ChessMatch toMatch() {
+        return new ChessMatch(toFen());
+    }
+
+    /**
+     * Returns the position in Forsyth-Edwards Notation.
+     *
+     * @return the FEN of the position
+     */
+    public String toFen() {
+        StringBuilder sb = new StringBuilder(90);
+        for (int row = 0; row < 8; row++) {
+            int empty = 0;
+            for (int column = 0; column < 8; column++) {
+                PieceType type = getPieceType(row * 8 + column);
+                if (type == null) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    sb.append(empty);
+                    empty = 0;
+                }
+                String letter = type.getLetter();
+                sb.append(getPieceColor(row * 8 + column) == Color.WHITE ? letter : letter.toLowerCase());
+            }
+            if (empty > 0) {
+                sb.append(empty);
+            }
+            sb.append(row < 7 ? "/" : "");
+        }
+        sb.append(getSideToMove() == Color.WHITE ? " w " : " b ");
+        int castlingLength = sb.length();
+        for (int i = 0; i < 4; i++) {
+            if ((words[4] >>> (1 + i) & 1) != 0) {
+                sb.append(CASTLING_LETTERS.charAt(i));
+            }
+        }
+        sb.append(sb.length() == castlingLength ? "- " : " ");
+        int file = (int) (words[4] >>> 5 & 0xF);
+        if (file == 0) {
+            sb.append('-');
+        } else {
+            sb.append((char) ('a' + file - 1)).append(getSideToMove() == Color.WHITE ? '6' : '3');
+        }
+        return sb.append(' ').append(getHalfmoveClock()).append(' ').append(getMoveNumber()).toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CompactPosition && Arrays.equals(words, ((CompactPosition) o).words);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+
+    @Override
+    public String toString() {
+        return toFen();
+    }
+
+    private int code(int square) {
+        return (int) (words[square >>> 4] >>> ((square & 15) * 4) & 0xF);
+    }
+
+    private static boolean isUnmoved(ChessMatch match, int square, PieceType type) {
+        ChessPiece piece = match.getPiece(square);
+        return piece != null && piece.getType() == type && piece.getMoveCount() == 0;
+    }
+}
@@ -0,0 +1,122 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of positions stored as {@link CompactPosition} words in a single long array, so that millions
+ * of positions take {@value CompactPosition#WORDS} longs each and no object at all. Adding the position of a
+ * match does not allocate, except when the array grows.
+ */
+public class CompactPositionList {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] words;
+    private int size;
+
+    /**
+     * Creates an empty list.
+     */
+    public CompactPositionList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty list with room for the given number of positions.
+     *
+     * @param capacity the number of positions the list holds before growing
+     * @throws IllegalArgumentException if the capacity is negative or too large
+     */
+    public CompactPositionList(int capacity) {
+        if (capacity < 0 || capacity > Integer.MAX_VALUE / CompactPosition.WORDS) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        words = new long[capacity * CompactPosition.WORDS];
+    }
+
+    /**
+     * Appends the current position of a match.
+     *
+     * @param match the match
+     */
+    public void add(ChessMatch match) {
+        ensureCapacity(size + 1);
+        CompactPosition.write(match, words, size * CompactPosition.WORDS);
+        size++;
+    }
+
+    /**
+     * Appends a position.
+     *
+     * @param position the position
+     */
+    public void add(CompactPosition position) {
+        ensureCapacity(size + 1);
+        position.copyTo(words, size * CompactPosition.WORDS);
+        size++;
+    }
+
+    /**
+     * Returns a position of the list.
+     *
+     * @param index the index of the position
+     * @return the position
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public CompactPosition get(int index) {
+        return CompactPosition.read(words, checkIndex(index) * CompactPosition.WORDS);
+    }
+
+    /**
+     * Replaces a position of the list.
+     *
+     * @param index    the index of the position
+     * @param position the new position
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public void set(int index, CompactPosition position) {
+        position.copyTo(words, checkIndex(index) * CompactPosition.WORDS);
+    }
+
+    /**
+     * Returns the number of positions in the list.
+     *
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all the positions, keeping the memory for new ones.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Returns the memory taken by the stored words, including the room not used yet.
+     *
+     * @return the size of the array in bytes
+     */
+    public long getCapacityBytes() {
+        return (long) words.length * Long.BYTES;
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return index;
+    }
+
+    private void ensureCapacity(int positions) {
+        if ((long) positions * CompactPosition.WORDS > words.length) {
+            long grown = Math.max((long) positions, words.length / CompactPosition.WORDS * 3L / 2 + 1);
+            if (grown > Integer.MAX_VALUE / CompactPosition.WORDS) {
+                throw new IllegalStateException("The list is full");
+            }
+            words = Arrays.copyOf(words, (int) grown * CompactPosition.WORDS);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package chess;
+
+/**
+ * Enum representing the result of a chess match.
+ */
+public enum GameResult {
+
+    /**
+     * The match is still being played.
+     */
+    ONGOING(null, false),
+
+    /**
+     * White checkmated the black king.
+     */
+    WHITE_WINS_BY_CHECKMATE(Color.WHITE, true),
+
+    /**
+     * Black checkmated the white king.
+     */
+    BLACK_WINS_BY_CHECKMATE(Color.BLACK, true),
+
+    /**
+     * The player to move is not in check and has no legal move.
+     */
+    DRAW_BY_STALEMATE(null, true),
+
+    /**
+     * Neither player has enough material left to deliver checkmate.
+     */
+    DRAW_BY_INSUFFICIENT_MATERIAL(null, true),
+
+    /**
+     * The same position occurred three times with the same player to move.
+     */
+    DRAW_BY_THREEFOLD_REPETITION(null, true),
+
+    /**
+     * Fifty moves were played by each player without a capture or a pawn move.
+     */
+    DRAW_BY_FIFTY_MOVE_RULE(null, true),
+
+    /**
+     * White was declared the winner without playing the match to the end.
+     */
+    WHITE_WINS_BY_ADJUDICATION(Color.WHITE, true),
+
+    /**
+     * Black was declared the winner without playing the match to the end.
+     */
+    BLACK_WINS_BY_ADJUDICATION(Color.BLACK, true),
+
+    /**
+     * The match was declared a draw without playing it to the end.
+     */
+    DRAW_BY_ADJUDICATION(null, true),
+
+    /**
+     * The time of black ran out.
+     */
+    WHITE_WINS_ON_TIME(Color.WHITE, true),
+
+    /**
+     * The time of white ran out.
+     */
+    BLACK_WINS_ON_TIME(Color.BLACK, true),
+
+    /**
+     * The time of a player ran out, but the opponent has too little material left to deliver checkmate.
+     */
+    DRAW_BY_TIMEOUT_VS_INSUFFICIENT_MATERIAL(null, true);
+
+    private final Color winner;
+    private final boolean over;
+
+    GameResult(Color winner, boolean over) {
+        this.winner = winner;
+        this.over = over;
+    }
+
+    /**
+     * Returns the color of the winner.
+     *
+     * @return the color of the winner, or null if the match is ongoing or drawn
+     */
+    public Color getWinner() {
+        return winner;
+    }
+
+    /**
+     * Checks if the match is over.
+     *
+     * @return true if the match is over, false otherwise
+     */
+    public boolean isOver() {
+        return over;
+    }
+
+    /**
+     * Checks if the match ended in a draw.
+     *
+     * @return true if the match is over without a winner, false otherwise
+     */
+    public boolean isDraw() {
+        return over && winner == null;
+    }
+}
@@ -0,0 +1,67 @@
+package chess;
+
+/**
+ * Immutable view of a match after a committed move, published by {@link ChessMatch#getSnapshot()} so that other
+ * threads, such as spectators and API handlers, read a consistent position while the thread playing the match
+ * makes its next move.
+ * <p>
+ * A new snapshot is published after each move played with {@link ChessMatch#performChessMove(int)},
+ * {@link ChessMatch#tryMove(int)} or {@link ChessMatch#validateSequence(int[])}, after a promotion choice, and
+ * when the match is set up. The moves made and taken back by the search, by move validation and by the checkmate
+ * test never are, so a snapshot only ever shows positions of the game.
+ */
+public final class MatchSnapshot {
+
+    private final CompactPosition position;
+    private final int lastMove;
+    private final boolean check;
+    private final GameResult result;
+
+    MatchSnapshot(CompactPosition position, int lastMove, boolean check, GameResult result) {
+        this.position = position;
+        this.lastMove = lastMove;
+        this.check = check;
+        this.result = result;
+    }
+
+    /**
+     * Returns the position of the match.
+     *
+     * @return the compact position
+     */
+    public CompactPosition getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the move that led to the position.
+     *
+     * @return the packed move, with the piece of its promotion, or {@link Move#NONE} when the match was just set up
+     */
+    public int getLastMove() {
+        return lastMove;
+    }
+
+    /**
+     * Checks if the player to move is in check.
+     *
+     * @return true if the player to move is in check
+     */
+    public boolean getCheck() {
+        return check;
+    }
+
+    /**
+     * Returns the result of the match.
+     *
+     * @return the result, {@link GameResult#ONGOING} if the match is not over
+     */
+    public GameResult getGameResult() {
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return position.toFen() + (result.isOver() ? " " + result : check ? " check" : "");
+    }
+}
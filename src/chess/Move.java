@@ -0,0 +1,134 @@
+package chess;
+
+import chess.exception.ChessException;
+
+/**
+ * Packs a chess move into a single int, so moves can be stored and passed around without allocation.
+ * <p>
+ * Squares are numbered from 0 to 63 as {@code row * 8 + column} of the board, so a8 is 0 and h1 is 63.
+ * Bits 0-5 hold the source square, bits 6-11 the target square and bits 12-14 the promotion
+ * piece type ordinal, or 0 when the move is not a promotion.
+ */
+public final class Move {
+
+    /**
+     * Value representing the absence of a move.
+     */
+    public static final int NONE = 0;
+
+    private static final PieceType[] TYPES = PieceType.values();
+
+    private Move() {
+    }
+
+    /**
+     * Creates a move that is not a promotion.
+     *
+     * @param source the source square
+     * @param target the target square
+     * @return the packed move
+     */
+    public static int of(int source, int target) {
+        return source | target << 6;
+    }
+
+    /**
+     * Creates a move with the given promotion.
+     *
+     * @param source    the source square
+     * @param target    the target square
+     * @param promotion the type of the promoted piece, or null if the move is not a promotion
+     * @return the packed move
+     */
+    public static int of(int source, int target, PieceType promotion) {
+        return source | target << 6 | (promotion == null ? 0 : promotion.ordinal() << 12);
+    }
+
+    /**
+     * Creates a move from chess positions.
+     *
+     * @param source the source position
+     * @param target the target position
+     * @return the packed move
+     */
+    public static int of(ChessPosition source, ChessPosition target) {
+        return of(square(source), square(target));
+    }
+
+    /**
+     * Returns the source square of the move.
+     *
+     * @param move the packed move
+     * @return the source square
+     */
+    public static int source(int move) {
+        return move & 0x3F;
+    }
+
+    /**
+     * Returns the target square of the move.
+     *
+     * @param move the packed move
+     * @return the target square
+     */
+    public static int target(int move) {
+        return move >>> 6 & 0x3F;
+    }
+
+    /**
+     * Returns the promotion of the move.
+     *
+     * @param move the packed move
+     * @return the type of the promoted piece, or null if the move is not a promotion
+     */
+    public static PieceType promotion(int move) {
+        int type = move >>> 12 & 0x7;
+        return type == 0 ? null : TYPES[type];
+    }
+
+    /**
+     * Returns the square of a chess position.
+     *
+     * @param position the chess position
+     * @return the square, from 0 to 63
+     */
+    public static int square(ChessPosition position) {
+        return (8 - position.getRow()) * 8 + (position.getColumn() - 'a');
+    }
+
+    /**
+     * Returns the chess position of a square.
+     *
+     * @param square the square, from 0 to 63
+     * @return the chess position
+     */
+    public static ChessPosition toChessPosition(int square) {
+        return new ChessPosition((char) ('a' + (square & 7)), 8 - (square >>> 3));
+    }
+
+    /**
+     * Returns the move in UCI long algebraic notation, such as "e2e4" or "e7e8q".
+     *
+     * @param move the packed move
+     * @return the move as a string
+     */
+    public static String toString(int move) {
+        return MoveNotation.appendUci(move, new StringBuilder(5)).toString();
+    }
+
+    /**
+     * Parses a move in UCI long algebraic notation, such as "e2e4" or "e7e8q".
+     * The move is not checked against any position.
+     *
+     * @param text the move as a string
+     * @return the packed move
+     * @throws ChessException if the text is not a move in UCI notation
+     */
+    public static int fromString(String text) {
+        int move = MoveNotation.parseUci(text);
+        if (move == NONE) {
+            throw new ChessException("Invalid move: " + text);
+        }
+        return move;
+    }
+}
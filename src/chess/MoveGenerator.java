@@ -0,0 +1,440 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * Generates the pseudo-legal moves of the player to move as packed {@link Move} ints, without allocating.
+ * <p>
+ * Moves are split in two groups, so that a search can generate the second group only when it needs it:
+ * noisy moves are captures, en passant and queen promotions; quiet moves are the other moves, including
+ * castling and under-promotions. Pseudo-legal moves may leave the king of the player in check, which
+ * {@link ChessMatch#makeMove(int)} rejects. Castling is only generated when the king does not pass
+ * through or land on an attacked square.
+ */
+public final class MoveGenerator {
+
+    /**
+     * Generate noisy moves only.
+     */
+    public static final int NOISY = 1;
+
+    /**
+     * Generate quiet moves only.
+     */
+    public static final int QUIET = 2;
+
+    /**
+     * Generate all moves.
+     */
+    public static final int ALL = NOISY | QUIET;
+
+    /**
+     * Number of directions of {@link #ray(int, int)}: the four along rows and columns come first, then the four
+     * along diagonals, from {@link #DIAGONALS} on.
+     */
+    public static final int DIRECTIONS = 8;
+
+    /**
+     * First diagonal direction of {@link #ray(int, int)}.
+     */
+    public static final int DIAGONALS = 4;
+
+    private static final int[][] KNIGHT_JUMPS = {{-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}, {1, 2}, {2, 1}, {2, -1}, {1, -2}};
+    private static final int[][] KING_STEPS = {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}};
+    private static final int[][] STEPS = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}, {-1, -1}, {-1, 1}, {1, -1}, {1, 1}};
+    private static final PieceType[] UNDER_PROMOTIONS = {PieceType.KNIGHT, PieceType.BISHOP, PieceType.ROOK};
+
+    // Per square: the squares a knight or a king reaches, and the squares along each direction, nearest first
+    private static final int[][] KNIGHT_TARGETS = new int[64][];
+    private static final int[][] KING_TARGETS = new int[64][];
+    private static final int[][][] RAYS = new int[64][DIRECTIONS][];
+
+    private static final ThreadLocal<int[]> SCRATCH = ThreadLocal.withInitial(() -> new int[64]);
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            KNIGHT_TARGETS[square] = targets(square, KNIGHT_JUMPS, 1);
+            KING_TARGETS[square] = targets(square, KING_STEPS, 1);
+            for (int direction = 0; direction < DIRECTIONS; direction++) {
+                RAYS[square][direction] = targets(square, new int[][]{STEPS[direction]}, 7);
+            }
+        }
+    }
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * Returns the squares reached from a square by each step repeated up to a number of times, staying on the board.
+     */
+    private static int[] targets(int square, int[][] steps, int repeats) {
+        int[] targets = new int[steps.length * repeats];
+        int count = 0;
+        for (int[] step : steps) {
+            int row = square >>> 3;
+            int column = square & 7;
+            for (int i = 0; i < repeats; i++) {
+                row += step[0];
+                column += step[1];
+                if (row < 0 || row >= 8 || column < 0 || column >= 8) {
+                    break;
+                }
+                targets[count++] = row * 8 + column;
+            }
+        }
+        return Arrays.copyOf(targets, count);
+    }
+
+    /**
+     * Returns the squares a knight on a square jumps to. The array is shared and must not be modified.
+     *
+     * @param square the square, numbered as in {@link Move}
+     * @return the target squares
+     */
+    public static int[] knightTargets(int square) {
+        return KNIGHT_TARGETS[square];
+    }
+
+    /**
+     * Returns the squares next to a square. The array is shared and must not be modified.
+     *
+     * @param square the square, numbered as in {@link Move}
+     * @return the neighbouring squares
+     */
+    public static int[] kingTargets(int square) {
+        return KING_TARGETS[square];
+    }
+
+    /**
+     * Returns the squares along a direction from a square, nearest first, up to the edge of the board. The array
+     * is shared and must not be modified.
+     *
+     * @param square    the square, numbered as in {@link Move}
+     * @param direction the direction, below {@link #DIAGONALS} along a row or column, from it on along a diagonal
+     * @return the squares of the ray, without the square itself
+     */
+    public static int[] ray(int square, int direction) {
+        return RAYS[square][direction];
+    }
+
+    /**
+     * Generates the pseudo-legal moves of the player to move.
+     *
+     * @param match the match
+     * @param kinds {@link #NOISY}, {@link #QUIET} or {@link #ALL}
+     * @param moves the array receiving the moves; 256 entries are always enough
+     * @param count the number of moves already in the array
+     * @return the number of moves in the array after generation
+     */
+    public static int generate(ChessMatch match, int kinds, int[] moves, int count) {
+        Color color = match.getCurrentPlayer();
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = match.getPiece(square);
+            if (piece != null && piece.getColor() == color) {
+                count = generate(match, piece, square, kinds, moves, count);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns whether a move, typically taken from another position, is pseudo-legal in the current position.
+     *
+     * @param match the match
+     * @param move  the packed move
+     * @return true if the move can be generated in the current position, false otherwise
+     */
+    public static boolean isPseudoLegal(ChessMatch match, int move) {
+        if (move == Move.NONE) {
+            return false;
+        }
+        int source = Move.source(move);
+        ChessPiece piece = match.getPiece(source);
+        if (piece == null || piece.getColor() != match.getCurrentPlayer()) {
+            return false;
+        }
+        int[] moves = SCRATCH.get();
+        int count = generate(match, piece, source, ALL, moves, 0);
+        for (int i = 0; i < count; i++) {
+            if (moves[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether a move is a capture, including en passant.
+     *
+     * @param match the match, before the move is made
+     * @param move  the packed move
+     * @return true if the move captures a piece, false otherwise
+     */
+    public static boolean isCapture(ChessMatch match, int move) {
+        if (match.getPiece(Move.target(move)) != null) {
+            return true;
+        }
+        ChessPiece piece = match.getPiece(Move.source(move));
+        return piece != null && piece.getType() == PieceType.PAWN &&
+                (Move.source(move) & 7) != (Move.target(move) & 7);
+    }
+
+    /**
+     * Returns whether a square is attacked by a piece of the given color.
+     *
+     * @param match    the match
+     * @param square   the square, numbered as in {@link Move}
+     * @param attacker the color of the attacking pieces
+     * @return true if a piece of that color attacks the square, false otherwise
+     */
+    public static boolean isAttacked(ChessMatch match, int square, Color attacker) {
+        if (pawnAttacker(match, square, attacker, 0) >= 0) {
+            return true;
+        }
+        for (int from : KNIGHT_TARGETS[square]) {
+            if (isPiece(match, from, attacker, PieceType.KNIGHT, 0)) {
+                return true;
+            }
+        }
+        for (int from : KING_TARGETS[square]) {
+            if (isPiece(match, from, attacker, PieceType.KING, 0)) {
+                return true;
+            }
+        }
+        for (int direction = 0; direction < DIRECTIONS; direction++) {
+            if (sliderAlong(match, square, direction, attacker, 0) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the square of the least valuable piece of a color attacking a square, ignoring removed pieces, which
+     * uncovers the sliding pieces standing behind them. Pieces of equal type are found pawns first, then knights,
+     * sliders by value and the king last.
+     *
+     * @param match    the match
+     * @param square   the attacked square
+     * @param attacker the color of the attacking pieces
+     * @param removed  the squares of the pieces treated as absent, as a bit mask
+     * @return the square of the attacker, or -1 if the square is not attacked
+     */
+    static int leastValuableAttacker(ChessMatch match, int square, Color attacker, long removed) {
+        int found = pawnAttacker(match, square, attacker, removed);
+        if (found >= 0) {
+            return found;
+        }
+        for (int from : KNIGHT_TARGETS[square]) {
+            if (isPiece(match, from, attacker, PieceType.KNIGHT, removed)) {
+                return from;
+            }
+        }
+
+        int best = -1;
+        int bestValue = Integer.MAX_VALUE;
+        for (int direction = 0; direction < DIRECTIONS; direction++) {
+            int from = sliderAlong(match, square, direction, attacker, removed);
+            if (from >= 0 && StaticExchange.value(match.getPiece(from).getType()) < bestValue) {
+                best = from;
+                bestValue = StaticExchange.value(match.getPiece(from).getType());
+            }
+        }
+        if (best >= 0) {
+            return best;
+        }
+
+        for (int from : KING_TARGETS[square]) {
+            if (isPiece(match, from, attacker, PieceType.KING, removed)) {
+                return from;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the square of a pawn of a color attacking a square, or -1.
+     */
+    private static int pawnAttacker(ChessMatch match, int square, Color attacker, long removed) {
+        // A white pawn attacks upwards, so it stands one row below the attacked square
+        int pawnRow = (square >>> 3) + (attacker == Color.WHITE ? 1 : -1);
+        if (pawnRow < 0 || pawnRow >= 8) {
+            return -1;
+        }
+        int column = square & 7;
+        for (int c = column - 1; c <= column + 1; c += 2) {
+            if (c >= 0 && c < 8 && isPiece(match, pawnRow * 8 + c, attacker, PieceType.PAWN, removed)) {
+                return pawnRow * 8 + c;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the square of the first piece along a direction from a square if it is a sliding piece of a color
+     * moving that way, or -1.
+     */
+    private static int sliderAlong(ChessMatch match, int square, int direction, Color attacker, long removed) {
+        PieceType slider = direction < DIAGONALS ? PieceType.ROOK : PieceType.BISHOP;
+        for (int from : RAYS[square][direction]) {
+            ChessPiece piece = match.getPiece(from);
+            if (piece != null && (removed & 1L << from) == 0) {
+                if (piece.getColor() == attacker &&
+                        (piece.getType() == slider || piece.getType() == PieceType.QUEEN)) {
+                    return from;
+                }
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isPiece(ChessMatch match, int square, Color color, PieceType type, long removed) {
+        ChessPiece piece = match.getPiece(square);
+        return piece != null && piece.getColor() == color && piece.getType() == type && (removed & 1L << square) == 0;
+    }
+
+    /**
+     * Generates the pseudo-legal moves of one piece.
+     */
+    static int generate(ChessMatch match, ChessPiece piece, int square, int kinds, int[] moves, int count) {
+        switch (piece.getType()) {
+            case PAWN:
+                return pawnMoves(match, piece, square, kinds, moves, count);
+            case KNIGHT:
+                return stepMoves(match, piece, square, KNIGHT_TARGETS[square], kinds, moves, count);
+            case BISHOP:
+                return slidingMoves(match, piece, square, DIAGONALS, DIRECTIONS, kinds, moves, count);
+            case ROOK:
+                return slidingMoves(match, piece, square, 0, DIAGONALS, kinds, moves, count);
+            case QUEEN:
+                return slidingMoves(match, piece, square, 0, DIRECTIONS, kinds, moves, count);
+            default:
+                count = stepMoves(match, piece, square, KING_TARGETS[square], kinds, moves, count);
+                if ((kinds & QUIET) != 0) {
+                    count = castlingMoves(match, piece, square, moves, count);
+                }
+                return count;
+        }
+    }
+
+    private static int pawnMoves(ChessMatch match, ChessPiece pawn, int square, int kinds, int[] moves, int count) {
+        int forward = pawn.getColor() == Color.WHITE ? -1 : 1;
+        int row = square >>> 3;
+        int column = square & 7;
+        int targetRow = row + forward;
+        if (targetRow < 0 || targetRow >= 8) {
+            return count;
+        }
+        boolean promotion = targetRow == 0 || targetRow == 7;
+
+        int target = targetRow * 8 + column;
+        if (match.getPiece(target) == null) {
+            if (promotion) {
+                count = promotions(square, target, kinds, moves, count);
+            } else if ((kinds & QUIET) != 0) {
+                moves[count++] = Move.of(square, target);
+                int startRow = pawn.getColor() == Color.WHITE ? 6 : 1;
+                int doubleTarget = target + forward * 8;
+                if (row == startRow && match.getPiece(doubleTarget) == null) {
+                    moves[count++] = Move.of(square, doubleTarget);
+                }
+            }
+        }
+
+        ChessPiece enPassant = match.getEnPassantVulnerable();
+        for (int c = column - 1; c <= column + 1; c += 2) {
+            if (c < 0 || c >= 8) {
+                continue;
+            }
+            target = targetRow * 8 + c;
+            ChessPiece victim = match.getPiece(target);
+            if (victim != null && victim.getColor() != pawn.getColor()) {
+                if (promotion) {
+                    count = promotions(square, target, kinds, moves, count);
+                } else if ((kinds & NOISY) != 0) {
+                    moves[count++] = Move.of(square, target);
+                }
+            } else if (victim == null && (kinds & NOISY) != 0 && enPassant != null &&
+                    enPassant.getColor() != pawn.getColor() && enPassant.getSquare() == row * 8 + c) {
+                moves[count++] = Move.of(square, target);
+            }
+        }
+        return count;
+    }
+
+    private static int promotions(int source, int target, int kinds, int[] moves, int count) {
+        if ((kinds & NOISY) != 0) {
+            moves[count++] = Move.of(source, target, PieceType.QUEEN);
+        }
+        if ((kinds & QUIET) != 0) {
+            for (PieceType type : UNDER_PROMOTIONS) {
+                moves[count++] = Move.of(source, target, type);
+            }
+        }
+        return count;
+    }
+
+    private static int stepMoves(ChessMatch match, ChessPiece piece, int square, int[] targets, int kinds,
+                                 int[] moves, int count) {
+        for (int target : targets) {
+            count = addMove(match, piece, square, target, kinds, moves, count);
+        }
+        return count;
+    }
+
+    /**
+     * Generates the moves of a sliding piece along the directions from the first up to the last, excluded.
+     */
+    private static int slidingMoves(ChessMatch match, ChessPiece piece, int square, int first, int last, int kinds,
+                                    int[] moves, int count) {
+        for (int direction = first; direction < last; direction++) {
+            for (int target : RAYS[square][direction]) {
+                count = addMove(match, piece, square, target, kinds, moves, count);
+                if (match.getPiece(target) != null) {
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int addMove(ChessMatch match, ChessPiece piece, int source, int target, int kinds,
+                               int[] moves, int count) {
+        ChessPiece victim = match.getPiece(target);
+        if (victim == null) {
+            if ((kinds & QUIET) != 0) {
+                moves[count++] = Move.of(source, target);
+            }
+        } else if (victim.getColor() != piece.getColor() && (kinds & NOISY) != 0) {
+            moves[count++] = Move.of(source, target);
+        }
+        return count;
+    }
+
+    private static int castlingMoves(ChessMatch match, ChessPiece king, int square, int[] moves, int count) {
+        int homeRow = king.getColor() == Color.WHITE ? 7 : 0;
+        if (king.getMoveCount() != 0 || square != homeRow * 8 + 4 || match.getCheck()) {
+            return count;
+        }
+        Color opponent = king.getColor() == Color.WHITE ? Color.BLACK : Color.WHITE;
+        int base = homeRow * 8;
+        if (isUnmovedRook(match, base + 7, king.getColor()) && match.getPiece(base + 5) == null &&
+                match.getPiece(base + 6) == null && !isAttacked(match, base + 5, opponent) &&
+                !isAttacked(match, base + 6, opponent)) {
+            moves[count++] = Move.of(square, base + 6);
+        }
+        if (isUnmovedRook(match, base, king.getColor()) && match.getPiece(base + 1) == null &&
+                match.getPiece(base + 2) == null && match.getPiece(base + 3) == null &&
+                !isAttacked(match, base + 3, opponent) && !isAttacked(match, base + 2, opponent)) {
+            moves[count++] = Move.of(square, base + 2);
+        }
+        return count;
+    }
+
+    private static boolean isUnmovedRook(ChessMatch match, int square, Color color) {
+        ChessPiece piece = match.getPiece(square);
+        return piece != null && piece.getType() == PieceType.ROOK && piece.getColor() == color &&
+                piece.getMoveCount() == 0;
+    }
+}
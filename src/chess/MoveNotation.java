@@ -0,0 +1,362 @@
+package chess;
+
+/**
+ * Parses and formats moves in UCI long algebraic notation, such as "e2e4" or "e7e8q", and in Standard Algebraic
+ * Notation (SAN), such as "Nbd7", "exd5", "e8=Q+" or "O-O".
+ * <p>
+ * Nothing is allocated: text is read from any {@link CharSequence} range, so that moves can be parsed in place from
+ * a line of a game file, and formatted into a caller's {@link StringBuilder}. Parsing SAN and formatting it need the
+ * position before the move; only the moves of the pieces of the named type are generated, into a per-thread buffer,
+ * and the candidates are tried with {@link ChessMatch#makeMove(int)}, then taken back. A check suffix costs one
+ * more move generation, and only when the move gives check.
+ */
+public final class MoveNotation {
+
+    private static final String PIECE_LETTERS = "PNBRQK";
+
+    private static final PieceType[] TYPES = PieceType.values();
+
+    /**
+     * Moves of the position in the first half, replies to a checking move in the second half.
+     */
+    private static final ThreadLocal<int[]> MOVES = ThreadLocal.withInitial(() -> new int[512]);
+
+    private MoveNotation() {
+    }
+
+    /**
+     * Parses a square such as "e4".
+     *
+     * @param text  the text
+     * @param index the index of the file letter
+     * @return the square, numbered as in {@link Move}, or -1 if the text has no square at that index
+     */
+    public static int parseSquare(CharSequence text, int index) {
+        if (index < 0 || index + 1 >= text.length()) {
+            return -1;
+        }
+        int file = text.charAt(index) - 'a';
+        int rank = text.charAt(index + 1) - '1';
+        if (file < 0 || file > 7 || rank < 0 || rank > 7) {
+            return -1;
+        }
+        return (7 - rank) * 8 + file;
+    }
+
+    /**
+     * Parses a move in UCI notation. The move is not checked against any position.
+     *
+     * @param text the text
+     * @return the packed move, or {@link Move#NONE} if the text is not a move in UCI notation
+     */
+    public static int parseUci(CharSequence text) {
+        return parseUci(text, 0, text.length());
+    }
+
+    /**
+     * Parses a move in UCI notation from a range of a text. The move is not checked against any position.
+     *
+     * @param text  the text
+     * @param start the index of the first character of the move
+     * @param end   the index after the last character of the move
+     * @return the packed move, or {@link Move#NONE} if the range is not a move in UCI notation
+     */
+    public static int parseUci(CharSequence text, int start, int end) {
+        if (end - start != 4 && end - start != 5) {
+            return Move.NONE;
+        }
+        int source = parseSquare(text, start);
+        int target = parseSquare(text, start + 2);
+        if (source < 0 || target < 0) {
+            return Move.NONE;
+        }
+        if (end - start == 4) {
+            return Move.of(source, target);
+        }
+        PieceType promotion = pieceType(Character.toUpperCase(text.charAt(start + 4)));
+        if (promotion == null || promotion == PieceType.PAWN || promotion == PieceType.KING) {
+            return Move.NONE;
+        }
+        return Move.of(source, target, promotion);
+    }
+
+    /**
+     * Parses a move in SAN or UCI notation and finds it among the legal moves of the current position.
+     *
+     * @param match the match, in the position before the move
+     * @param text  the text
+     * @return the packed move, with a queen for a promotion written without a piece, or {@link Move#NONE} if the
+     * text is not a legal move, or matches several
+     */
+    public static int parse(ChessMatch match, CharSequence text) {
+        return parse(match, text, 0, text.length());
+    }
+
+    /**
+     * Parses a move in SAN or UCI notation from a range of a text and finds it among the legal moves of the current
+     * position. Check and annotation suffixes such as "+", "#" or "!?" are ignored, "0-0" is read as "O-O", and the
+     * "=" of a promotion is optional.
+     *
+     * @param match the match, in the position before the move
+     * @param text  the text
+     * @param start the index of the first character of the move
+     * @param end   the index after the last character of the move
+     * @return the packed move, with a queen for a promotion written without a piece, or {@link Move#NONE} if the
+     * range is not a legal move, or matches several
+     */
+    public static int parse(ChessMatch match, CharSequence text, int start, int end) {
+        while (end > start && "+#!?".indexOf(text.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        int uci = parseUci(text, start, end);
+        if (uci != Move.NONE) {
+            return find(match, -1, -1, Move.target(uci), null, Move.source(uci), promotionOrQueen(match, uci));
+        }
+        if (isCastling(text, start, end, 3) || isCastling(text, start, end, 5)) {
+            int king = match.getCurrentPlayer() == Color.WHITE ? 60 : 4;
+            return find(match, -1, -1, end - start == 3 ? king + 2 : king - 2, PieceType.KING, king, null);
+        }
+
+        PieceType type = PieceType.PAWN;
+        if (start < end && Character.isUpperCase(text.charAt(start))) {
+            type = pieceType(text.charAt(start++));
+            if (type == null || type == PieceType.PAWN) {
+                return Move.NONE;
+            }
+        }
+        PieceType promotion = null;
+        if (type == PieceType.PAWN && end - start >= 3 && Character.isUpperCase(text.charAt(end - 1))) {
+            promotion = pieceType(text.charAt(--end));
+            if (promotion == null || promotion == PieceType.PAWN || promotion == PieceType.KING) {
+                return Move.NONE;
+            }
+            if (text.charAt(end - 1) == '=') {
+                end--;
+            }
+        }
+        int target = end - 2 < start ? -1 : parseSquare(text, end - 2);
+        if (target < 0) {
+            return Move.NONE;
+        }
+        end -= 2;
+        if (end > start && text.charAt(end - 1) == 'x') {
+            end--;
+        }
+        // What is left is the file, the rank or the square of the moved piece
+        int file = -1;
+        int rank = -1;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= 'a' && c <= 'h' && file < 0 && rank < 0) {
+                file = c - 'a';
+            } else if (c >= '1' && c <= '8' && rank < 0) {
+                rank = c - '1';
+            } else {
+                return Move.NONE;
+            }
+        }
+        if (type == PieceType.PAWN && promotion == null && (target >>> 3 == 0 || target >>> 3 == 7)) {
+            promotion = PieceType.QUEEN;
+        }
+        return find(match, file, rank, target, type, -1, promotion);
+    }
+
+    /**
+     * Appends a move in UCI notation.
+     *
+     * @param move the packed move
+     * @param out  the builder receiving the text
+     * @return the builder
+     */
+    public static StringBuilder appendUci(int move, StringBuilder out) {
+        appendSquare(Move.source(move), out);
+        appendSquare(Move.target(move), out);
+        PieceType promotion = Move.promotion(move);
+        if (promotion != null) {
+            out.append(Character.toLowerCase(PIECE_LETTERS.charAt(promotion.ordinal())));
+        }
+        return out;
+    }
+
+    /**
+     * Appends a legal move in SAN, with its disambiguation and its check or checkmate suffix.
+     *
+     * @param match the match, in the position before the move
+     * @param move  the packed move, which must be legal
+     * @param out   the builder receiving the text
+     * @return the builder
+     */
+    public static StringBuilder appendSan(ChessMatch match, int move, StringBuilder out) {
+        int source = Move.source(move);
+        int target = Move.target(move);
+        ChessPiece piece = match.getPiece(source);
+        PieceType type = piece.getType();
+        if (type == PieceType.KING && Math.abs((source & 7) - (target & 7)) == 2) {
+            out.append((target & 7) == 6 ? "O-O" : "O-O-O");
+        } else if (type == PieceType.PAWN) {
+            if (MoveGenerator.isCapture(match, move)) {
+                out.append((char) ('a' + (source & 7))).append('x');
+            }
+            appendSquare(target, out);
+            if (target >>> 3 == 0 || target >>> 3 == 7) {
+                PieceType promotion = Move.promotion(move);
+                out.append('=').append(PIECE_LETTERS.charAt((promotion == null ? PieceType.QUEEN : promotion).ordinal()));
+            }
+        } else {
+            out.append(PIECE_LETTERS.charAt(type.ordinal()));
+            appendDisambiguation(match, move, type, out);
+            if (match.getPiece(target) != null) {
+                out.append('x');
+            }
+            appendSquare(target, out);
+        }
+        if (match.makeMove(move)) {
+            if (match.getCheck()) {
+                out.append(hasLegalMove(match, MOVES.get(), 256) ? '+' : '#');
+            }
+            match.undoMove();
+        }
+        return out;
+    }
+
+    /**
+     * Returns a legal move in SAN.
+     *
+     * @param match the match, in the position before the move
+     * @param move  the packed move, which must be legal
+     * @return the move in SAN
+     */
+    public static String toSan(ChessMatch match, int move) {
+        return appendSan(match, move, new StringBuilder(8)).toString();
+    }
+
+    /**
+     * Appends the file, the rank or the square of the moved piece when another piece of the same type can legally
+     * move to the same square: the file if it tells them apart, else the rank, else both.
+     */
+    private static void appendDisambiguation(ChessMatch match, int move, PieceType type, StringBuilder out) {
+        int source = Move.source(move);
+        int target = Move.target(move);
+        int[] moves = MOVES.get();
+        boolean ambiguous = false;
+        boolean sameFile = false;
+        boolean sameRank = false;
+        for (int square = 0; square < 64; square++) {
+            ChessPiece other = match.getPiece(square);
+            if (square == source || other == null || other.getType() != type ||
+                    other.getColor() != match.getCurrentPlayer()) {
+                continue;
+            }
+            int count = MoveGenerator.generate(match, other, square, MoveGenerator.ALL, moves, 0);
+            for (int i = 0; i < count; i++) {
+                if (Move.target(moves[i]) == target && isLegal(match, moves[i])) {
+                    ambiguous = true;
+                    sameFile |= (square & 7) == (source & 7);
+                    sameRank |= square >>> 3 == source >>> 3;
+                    break;
+                }
+            }
+        }
+        if (!ambiguous) {
+            return;
+        }
+        if (!sameFile) {
+            out.append((char) ('a' + (source & 7)));
+        } else if (!sameRank) {
+            out.append((char) ('8' - (source >>> 3)));
+        } else {
+            appendSquare(source, out);
+        }
+    }
+
+    /**
+     * Finds the only legal move matching a description.
+     *
+     * @param file      the file of the moved piece, or -1 for any
+     * @param rank      the rank of the moved piece, from 0 for rank 1, or -1 for any
+     * @param target    the target square
+     * @param type      the type of the moved piece, or null for any
+     * @param source    the source square, or -1 for any
+     * @param promotion the promoted piece type, or null for a move that is not a promotion
+     * @return the move, or {@link Move#NONE} if no legal move or several match
+     */
+    private static int find(ChessMatch match, int file, int rank, int target, PieceType type, int source,
+                            PieceType promotion) {
+        int[] moves = MOVES.get();
+        int found = Move.NONE;
+        for (int from = source < 0 ? 0 : source; from < (source < 0 ? 64 : source + 1); from++) {
+            ChessPiece piece = match.getPiece(from);
+            if (piece == null || piece.getColor() != match.getCurrentPlayer() || type != null && piece.getType() != type ||
+                    file >= 0 && (from & 7) != file || rank >= 0 && 7 - (from >>> 3) != rank) {
+                continue;
+            }
+            int count = MoveGenerator.generate(match, piece, from, MoveGenerator.ALL, moves, 0);
+            for (int i = 0; i < count; i++) {
+                int move = moves[i];
+                if (Move.target(move) != target || Move.promotion(move) != promotion || !isLegal(match, move)) {
+                    continue;
+                }
+                if (found != Move.NONE) {
+                    return Move.NONE;
+                }
+                found = move;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the promotion of a UCI move, a queen if a pawn reaches the last rank without one, or null.
+     */
+    private static PieceType promotionOrQueen(ChessMatch match, int move) {
+        ChessPiece piece = match.getPiece(Move.source(move));
+        int row = Move.target(move) >>> 3;
+        if (piece == null || piece.getType() != PieceType.PAWN || row != 0 && row != 7) {
+            return null;
+        }
+        return Move.promotion(move) == null ? PieceType.QUEEN : Move.promotion(move);
+    }
+
+    private static boolean isLegal(ChessMatch match, int move) {
+        if (!match.makeMove(move)) {
+            return false;
+        }
+        match.undoMove();
+        return true;
+    }
+
+    private static boolean hasLegalMove(ChessMatch match, int[] moves, int offset) {
+        int count = MoveGenerator.generate(match, MoveGenerator.ALL, moves, offset);
+        for (int i = offset; i < count; i++) {
+            if (isLegal(match, moves[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether a range is "O-O" of the given length, "O-O" or "O-O-O", with letters O or digits 0.
+     */
+    private static boolean isCastling(CharSequence text, int start, int end, int length) {
+        if (end - start != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(start + i);
+            if (i % 2 == 0 ? c != 'O' && c != '0' : c != '-') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static PieceType pieceType(char letter) {
+        int index = PIECE_LETTERS.indexOf(letter);
+        return index < 0 ? null : TYPES[index];
+    }
+
+    private static void appendSquare(int square, StringBuilder out) {
+        out.append((char) ('a' + (square & 7))).append((char) ('8' - (square >>> 3)));
+    }
+}
@@ -0,0 +1,68 @@
+package chess;
+
+/**
+ * Outcome of an attempt to play a move with {@link ChessMatch#tryMove(int)}. The values are shared constants, so
+ * that rejecting a move allocates nothing.
+ */
+public enum MoveStatus {
+
+    /**
+     * The move was played.
+     */
+    LEGAL("The move was played"),
+
+    /**
+     * The match is already over.
+     */
+    GAME_OVER("The match is already over"),
+
+    /**
+     * The source square is empty.
+     */
+    NO_PIECE_ON_SOURCE("There is no piece on source position"),
+
+    /**
+     * The piece on the source square belongs to the opponent.
+     */
+    NOT_YOUR_PIECE("The chosen piece is not yours"),
+
+    /**
+     * The piece on the source square cannot move at all.
+     */
+    NO_POSSIBLE_MOVES("There is no possible moves for the chosen piece"),
+
+    /**
+     * The piece on the source square cannot move to the target square.
+     */
+    ILLEGAL_TARGET("The chosen piece can't move to target position"),
+
+    /**
+     * The move would leave the king of the player in check.
+     */
+    LEAVES_KING_IN_CHECK("You can't move into this position because you'll put yourself in a check situation");
+
+    private final String message;
+
+    MoveStatus(String message) {
+        this.message = message;
+    }
+
+    /**
+     * Returns the message shown to the player, which is also the message of the exception thrown by
+     * {@link ChessMatch#performChessMove(int)}.
+     *
+     * @return the message
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Checks if the move was played.
+     *
+     * @return true for {@link #LEGAL}, false otherwise
+     */
+    public boolean isLegal() {
+        return this == LEGAL;
+    }
+}
@@ -0,0 +1,189 @@
+package chess;
+
+/**
+ * Material values and piece-square tables used by the static evaluation.
+ * <p>
+ * Each piece has a middlegame and an endgame value, blended by the game phase: 24 with all minor and
+ * major pieces on the board, down to 0 with only kings and pawns. Tables are written from the point of
+ * view of white with the eighth row first, so they are indexed by the squares of {@link Move}, and
+ * mirrored top-bottom for black.
+ */
+public final class PieceSquareTables {
+
+    /**
+     * Game phase of the initial position.
+     */
+    public static final int TOTAL_PHASE = 24;
+
+    private static final int[] PHASE = {0, 1, 1, 2, 4, 0};
+    private static final int[] MIDDLEGAME_VALUES = {100, 320, 330, 500, 900, 0};
+    private static final int[] ENDGAME_VALUES = {120, 300, 320, 520, 920, 0};
+
+    private static final int[] PAWN_MIDDLEGAME = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            10, 10, 20, 30, 30, 20, 10, 10,
+            5, 5, 10, 25, 25, 10, 5, 5,
+            0, 0, 0, 20, 20, 0, 0, 0,
+            5, -5, -10, 0, 0, -10, -5, 5,
+            5, 10, 10, -20, -20, 10, 10, 5,
+            0, 0, 0, 0, 0, 0, 0, 0
+    };
+
+    private static final int[] PAWN_ENDGAME = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            80, 80, 80, 80, 80, 80, 80, 80,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            30, 30, 30, 30, 30, 30, 30, 30,
+            15, 15, 15, 15, 15, 15, 15, 15,
+            5, 5, 5, 5, 5, 5, 5, 5,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0
+    };
+
+    private static final int[] KNIGHT = {
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20, 0, 0, 0, 0, -20, -40,
+            -30, 0, 10, 15, 15, 10, 0, -30,
+            -30, 5, 15, 20, 20, 15, 5, -30,
+            -30, 0, 15, 20, 20, 15, 0, -30,
+            -30, 5, 10, 15, 15, 10, 5, -30,
+            -40, -20, 0, 5, 5, 0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50
+    };
+
+    private static final int[] BISHOP = {
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 10, 10, 5, 0, -10,
+            -10, 5, 5, 10, 10, 5, 5, -10,
+            -10, 0, 10, 10, 10, 10, 0, -10,
+            -10, 10, 10, 10, 10, 10, 10, -10,
+            -10, 5, 0, 0, 0, 0, 5, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20
+    };
+
+    private static final int[] ROOK = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            5, 10, 10, 10, 10, 10, 10, 5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            0, 0, 0, 5, 5, 0, 0, 0
+    };
+
+    private static final int[] QUEEN = {
+            -20, -10, -10, -5, -5, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 5, 5, 5, 0, -10,
+            -5, 0, 5, 5, 5, 5, 0, -5,
+            0, 0, 5, 5, 5, 5, 0, -5,
+            -10, 5, 5, 5, 5, 5, 0, -10,
+            -10, 0, 5, 0, 0, 0, 0, -10,
+            -20, -10, -10, -5, -5, -10, -10, -20
+    };
+
+    private static final int[] KING_MIDDLEGAME = {
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+            20, 20, 0, 0, 0, 0, 20, 20,
+            20, 30, 10, 0, 0, 10, 30, 20
+    };
+
+    private static final int[] KING_ENDGAME = {
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10, 0, 0, -10, -20, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -30, 0, 0, 0, 0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50
+    };
+
+    private static final int[][] MIDDLEGAME = {PAWN_MIDDLEGAME, KNIGHT, BISHOP, ROOK, QUEEN, KING_MIDDLEGAME};
+    private static final int[][] ENDGAME = {PAWN_ENDGAME, KNIGHT, BISHOP, ROOK, QUEEN, KING_ENDGAME};
+
+    private PieceSquareTables() {
+    }
+
+    /**
+     * Returns the middlegame value of a piece on a square, material included.
+     *
+     * @param piece  the piece
+     * @param square the square of the piece, numbered as in {@link Move}
+     * @return the value, positive for white pieces and negative for black pieces
+     */
+    public static int middlegame(ChessPiece piece, int square) {
+        return middlegame(piece.getType(), piece.getColor(), square);
+    }
+
+    /**
+     * Returns the middlegame value of a piece of a given type and color on a square, material included.
+     *
+     * @param pieceType the type of the piece
+     * @param color     the color of the piece
+     * @param square    the square of the piece, numbered as in {@link Move}
+     * @return the value, positive for white pieces and negative for black pieces
+     */
+    public static int middlegame(PieceType pieceType, Color color, int square) {
+        int type = pieceType.ordinal();
+        if (color == Color.WHITE) {
+            return MIDDLEGAME_VALUES[type] + MIDDLEGAME[type][square];
+        }
+        return -MIDDLEGAME_VALUES[type] - MIDDLEGAME[type][square ^ 56];
+    }
+
+    /**
+     * Returns the endgame value of a piece on a square, material included.
+     *
+     * @param piece  the piece
+     * @param square the square of the piece, numbered as in {@link Move}
+     * @return the value, positive for white pieces and negative for black pieces
+     */
+    public static int endgame(ChessPiece piece, int square) {
+        return endgame(piece.getType(), piece.getColor(), square);
+    }
+
+    /**
+     * Returns the endgame value of a piece of a given type and color on a square, material included.
+     *
+     * @param pieceType the type of the piece
+     * @param color     the color of the piece
+     * @param square    the square of the piece, numbered as in {@link Move}
+     * @return the value, positive for white pieces and negative for black pieces
+     */
+    public static int endgame(PieceType pieceType, Color color, int square) {
+        int type = pieceType.ordinal();
+        if (color == Color.WHITE) {
+            return ENDGAME_VALUES[type] + ENDGAME[type][square];
+        }
+        return -ENDGAME_VALUES[type] - ENDGAME[type][square ^ 56];
+    }
+
+    /**
+     * Returns the contribution of a piece type to the game phase.
+     *
+     * @param type the piece type
+     * @return 1 for minor pieces, 2 for rooks, 4 for queens and 0 for pawns and kings
+     */
+    public static int phase(PieceType type) {
+        return PHASE[type.ordinal()];
+    }
+
+    /**
+     * Returns the middlegame material value of a piece type.
+     *
+     * @param type the piece type
+     * @return the value in centipawns, 0 for the king
+     */
+    public static int value(PieceType type) {
+        return MIDDLEGAME_VALUES[type.ordinal()];
+    }
+}
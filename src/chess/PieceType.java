@@ -0,0 +1,52 @@
+package chess;
+
+/**
+ * Enum representing the types of the chess pieces.
+ */
+public enum PieceType {
+
+    /**
+     * Represents the pawn.
+     */
+    PAWN("P"),
+
+    /**
+     * Represents the knight.
+     */
+    KNIGHT("N"),
+
+    /**
+     * Represents the bishop.
+     */
+    BISHOP("B"),
+
+    /**
+     * Represents the rook.
+     */
+    ROOK("R"),
+
+    /**
+     * Represents the queen.
+     */
+    QUEEN("Q"),
+
+    /**
+     * Represents the king.
+     */
+    KING("K");
+
+    private final String letter;
+
+    PieceType(String letter) {
+        this.letter = letter;
+    }
+
+    /**
+     * Returns the letter of the piece type in algebraic notation.
+     *
+     * @return the upper-case letter of the piece type
+     */
+    public String getLetter() {
+        return letter;
+    }
+}
@@ -0,0 +1,78 @@
+package chess;
+
+/**
+ * Outcome of the validation of a sequence of moves with {@link ChessMatch#validateSequence(int[])}.
+ */
+public final class SequenceResult {
+
+    private final int plies;
+    private final MoveStatus status;
+    private final GameResult result;
+    private final CompactPosition position;
+
+    SequenceResult(int plies, MoveStatus status, GameResult result, CompactPosition position) {
+        this.plies = plies;
+        this.status = status;
+        this.result = result;
+        this.position = position;
+    }
+
+    /**
+     * Checks if every move of the sequence is legal.
+     *
+     * @return true if the whole sequence was played
+     */
+    public boolean isValid() {
+        return status.isLegal();
+    }
+
+    /**
+     * Returns the index of the first illegal move of the sequence.
+     *
+     * @return the index of the illegal move, or -1 if the sequence is valid
+     */
+    public int getIllegalPly() {
+        return status.isLegal() ? -1 : plies;
+    }
+
+    /**
+     * Returns the number of moves played, which is the whole sequence when it is valid.
+     *
+     * @return the number of legal moves before the first illegal one
+     */
+    public int getPlies() {
+        return plies;
+    }
+
+    /**
+     * Returns why the first illegal move was rejected.
+     *
+     * @return the status of the first illegal move, or {@link MoveStatus#LEGAL} if the sequence is valid
+     */
+    public MoveStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the result of the match after the legal moves.
+     *
+     * @return the result, {@link GameResult#ONGOING} if the match is not over
+     */
+    public GameResult getResult() {
+        return result;
+    }
+
+    /**
+     * Returns the position reached by the legal moves.
+     *
+     * @return the final position
+     */
+    public CompactPosition getPosition() {
+        return position;
+    }
+
+    @Override
+    public String toString() {
+        return (isValid() ? "valid, " + plies + " plies" : "illegal ply " + plies + ": " + status) + ", " + result;
+    }
+}
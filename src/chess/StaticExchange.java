@@ -0,0 +1,99 @@
+package chess;
+
+/**
+ * Static exchange evaluation: the material won or lost by a sequence of captures on a single square, where both
+ * players always recapture with their least valuable piece and may stop capturing when it does not pay.
+ * <p>
+ * The sequence is worked out on the board as it is, without making moves: pieces that already captured are
+ * recorded in a bit mask of the squares they left, which also uncovers the sliding pieces standing behind them.
+ * Pins and checks are ignored, so the result is an estimate, which is what move ordering and pruning need.
+ */
+public final class StaticExchange {
+
+    /**
+     * Exchange value of each piece type, in {@link PieceType} order. The king is worth more than all the other
+     * pieces together, so capturing with it only pays when no recapture follows.
+     */
+    private static final int[] VALUES = {100, 320, 330, 500, 900, 20000};
+
+    private StaticExchange() {
+    }
+
+    /**
+     * Returns the exchange value of a piece type.
+     *
+     * @param type the piece type
+     * @return the value in centipawns
+     */
+    public static int value(PieceType type) {
+        return VALUES[type.ordinal()];
+    }
+
+    /**
+     * Evaluates a move: the material it wins, counting the recaptures that follow on its target square.
+     * A quiet move scores how much the moved piece loses if it can be captured there.
+     *
+     * @param match the match, before the move is made
+     * @param move  a pseudo-legal packed move
+     * @return the material balance of the exchange for the player making the move, in centipawns
+     */
+    public static int evaluate(ChessMatch match, int move) {
+        int source = Move.source(move);
+        int target = Move.target(move);
+        ChessPiece mover = match.getPiece(source);
+        ChessPiece victim = match.getPiece(target);
+        long removed = 1L << source;
+
+        int gain = 0;
+        if (victim != null) {
+            gain = value(victim.getType());
+        } else if (mover.getType() == PieceType.PAWN && (source & 7) != (target & 7)) {
+            // En passant: the captured pawn stands beside the source square, on the target column
+            gain = VALUES[PieceType.PAWN.ordinal()];
+            removed |= 1L << ((source & ~7) | (target & 7));
+        }
+        int moverValue = value(mover.getType());
+        PieceType promotion = Move.promotion(move);
+        if (promotion != null) {
+            gain += value(promotion) - VALUES[PieceType.PAWN.ordinal()];
+            moverValue = value(promotion);
+        }
+        Color opponent = mover.getColor() == Color.WHITE ? Color.BLACK : Color.WHITE;
+        return gain - exchange(match, target, opponent, moverValue, removed);
+    }
+
+    /**
+     * Returns the material a player can win by starting captures on a square, or 0 if the square holds no piece
+     * of the opponent. A piece is hanging when the value is positive.
+     *
+     * @param match    the match
+     * @param square   the square of the threatened piece
+     * @param attacker the color of the capturing player
+     * @return the material won, in centipawns, never negative
+     */
+    public static int threat(ChessMatch match, int square, Color attacker) {
+        ChessPiece piece = match.getPiece(square);
+        if (piece == null || piece.getColor() == attacker) {
+            return 0;
+        }
+        return exchange(match, square, attacker, value(piece.getType()), 0);
+    }
+
+    /**
+     * Returns the best material balance for a player who may capture the piece on a square, or stop.
+     *
+     * @param square      the square of the exchange
+     * @param side        the player to capture
+     * @param targetValue the value of the piece standing on the square
+     * @param removed     the squares of the pieces that already captured
+     */
+    private static int exchange(ChessMatch match, int square, Color side, int targetValue, long removed) {
+        int attacker = MoveGenerator.leastValuableAttacker(match, square, side, removed);
+        if (attacker < 0) {
+            return 0;
+        }
+        int attackerValue = value(match.getPiece(attacker).getType());
+        Color other = side == Color.WHITE ? Color.BLACK : Color.WHITE;
+        return Math.max(0, targetValue - exchange(match, square, other, attackerValue, removed | 1L << attacker));
+    }
+}
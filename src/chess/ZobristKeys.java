@@ -0,0 +1,75 @@
+package chess;
+
+import boardgame.Position;
+
+/**
+ * Random keys used to hash chess positions (Zobrist hashing).
+ * The keys are generated from a fixed seed, so a position has the same hash in every run.
+ */
+final class ZobristKeys {
+
+    /**
+     * Keys for each of the twelve colored pieces on each of the 64 squares.
+     */
+    static final long[][] PIECE_SQUARE = new long[12][64];
+
+    /**
+     * Keys for the castling rights: white kingside, white queenside, black kingside, black queenside.
+     */
+    static final long[] CASTLING = new long[4];
+
+    /**
+     * Keys for the file of a capturable en passant pawn.
+     */
+    static final long[] EN_PASSANT = new long[8];
+
+    /**
+     * Key toggled when black is the side to move.
+     */
+    static final long BLACK_TO_MOVE;
+
+    static {
+        long seed = 0x2545F4914F6CDD1DL;
+        for (long[] keys : PIECE_SQUARE) {
+            for (int i = 0; i < keys.length; i++) {
+                seed = nextSeed(seed);
+                keys[i] = mix(seed);
+            }
+        }
+        for (int i = 0; i < CASTLING.length; i++) {
+            seed = nextSeed(seed);
+            CASTLING[i] = mix(seed);
+        }
+        for (int i = 0; i < EN_PASSANT.length; i++) {
+            seed = nextSeed(seed);
+            EN_PASSANT[i] = mix(seed);
+        }
+        seed = nextSeed(seed);
+        BLACK_TO_MOVE = mix(seed);
+    }
+
+    private ZobristKeys() {
+    }
+
+    /**
+     * Returns the key of the given piece standing on the given position.
+     *
+     * @param piece    the piece
+     * @param position the position of the piece
+     * @return the key of the piece on that square
+     */
+    static long piece(ChessPiece piece, Position position) {
+        return PIECE_SQUARE[piece.getIndex()][position.getRow() * 8 + position.getColumn()];
+    }
+
+    private static long nextSeed(long seed) {
+        return seed + 0x9E3779B97F4A7C15L;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
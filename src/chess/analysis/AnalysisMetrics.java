@@ -0,0 +1,104 @@
+package chess.analysis;
+
+import java.util.Arrays;
+
+/**
+ * Throughput and latency of the positions analyzed by an {@link Analyzer}.
+ * <p>
+ * The latencies of the most recent positions are kept in a fixed ring, so recording never allocates. Percentiles
+ * are computed over the samples in the ring. The class is thread-safe.
+ */
+public class AnalysisMetrics {
+
+    private final long[] latencyMicros;
+    private final long startNanos = System.nanoTime();
+    private long total;
+    private long errors;
+    private long nodes;
+
+    /**
+     * Creates metrics keeping the latencies of the given number of most recent positions.
+     *
+     * @param capacity the number of samples kept
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public AnalysisMetrics(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be positive");
+        }
+        latencyMicros = new long[capacity];
+    }
+
+    /**
+     * Records an analyzed position.
+     *
+     * @param result the result of the analysis
+     */
+    public synchronized void record(AnalysisResult result) {
+        latencyMicros[(int) (total % latencyMicros.length)] = result.getLatencyNanos() / 1000;
+        total++;
+        nodes += result.getNodes();
+        if (result.getError() != null) {
+            errors++;
+        }
+    }
+
+    /**
+     * Returns the number of positions analyzed, including the ones no longer in the ring.
+     *
+     * @return the number of positions
+     */
+    public synchronized long getCount() {
+        return total;
+    }
+
+    /**
+     * Returns the number of positions that could not be analyzed.
+     *
+     * @return the number of invalid positions
+     */
+    public synchronized long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Returns the number of positions analyzed per second since the metrics were created.
+     *
+     * @return the throughput
+     */
+    public synchronized double throughput() {
+        return total / Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+    }
+
+    /**
+     * Returns the number of nodes searched per second since the metrics were created.
+     *
+     * @return the nodes per second
+     */
+    public synchronized double nodesPerSecond() {
+        return nodes / Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+    }
+
+    /**
+     * Returns a percentile of the latency of the recent positions.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the latency in milliseconds, or 0 if nothing was recorded
+     */
+    public synchronized double latencyMillis(double percentile) {
+        int size = (int) Math.min(total, latencyMicros.length);
+        if (size == 0) {
+            return 0;
+        }
+        long[] values = Arrays.copyOf(latencyMicros, size);
+        Arrays.sort(values);
+        int rank = (int) Math.ceil(percentile / 100 * size);
+        return values[Math.max(0, Math.min(size, rank) - 1)] / 1000.0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d positions (%d invalid), %.1f positions/s, %.0f nodes/s, latency p50 %.1f ms, " +
+                "p99 %.1f ms", total, errors, throughput(), nodesPerSecond(), latencyMillis(50), latencyMillis(99));
+    }
+}
@@ -0,0 +1,116 @@
+package chess.analysis;
+
+import chess.Move;
+
+import java.util.Arrays;
+
+/**
+ * Outcome of the analysis of one position by an {@link Analyzer}.
+ */
+public final class AnalysisResult {
+
+    private final String fen;
+    private final int bestMove;
+    private final int score;
+    private final int[] principalVariation;
+    private final int depth;
+    private final long nodes;
+    private final long latencyNanos;
+    private final String error;
+
+    AnalysisResult(String fen, int bestMove, int score, int[] principalVariation, int depth, long nodes,
+                   long latencyNanos, String error) {
+        this.fen = fen;
+        this.bestMove = bestMove;
+        this.score = score;
+        this.principalVariation = principalVariation;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.latencyNanos = latencyNanos;
+        this.error = error;
+    }
+
+    /**
+     * Returns the analyzed position.
+     *
+     * @return the position in FEN, as received
+     */
+    public String getFen() {
+        return fen;
+    }
+
+    /**
+     * Returns the best move of the position.
+     *
+     * @return the packed move, or {@link Move#NONE} if the match is over or the position is invalid
+     */
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    /**
+     * Returns the score of the position.
+     *
+     * @return the score in centipawns from the point of view of the player to move, or a mate score
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Returns the principal variation, starting with the best move.
+     *
+     * @return the packed moves of the variation
+     */
+    public int[] getPrincipalVariation() {
+        return principalVariation.clone();
+    }
+
+    /**
+     * Returns the depth of the search.
+     *
+     * @return the depth of the last completed iteration
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Returns the number of positions visited by the search.
+     *
+     * @return the number of nodes
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the time from the arrival of the position to the end of its analysis, waiting included.
+     *
+     * @return the latency in nanoseconds
+     */
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    /**
+     * Returns why the position could not be analyzed.
+     *
+     * @return the error message, or null if the position was analyzed
+     */
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        if (error != null) {
+            return fen + ": " + error;
+        }
+        StringBuilder sb = new StringBuilder(fen).append(": ");
+        sb.append(bestMove == Move.NONE ? "(none)" : Move.toString(bestMove));
+        sb.append(" score ").append(score).append(" depth ").append(depth).append(" pv");
+        Arrays.stream(principalVariation).forEach(move -> sb.append(' ').append(Move.toString(move)));
+        return sb.toString();
+    }
+}
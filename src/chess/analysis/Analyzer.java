@@ -0,0 +1,204 @@
+package chess.analysis;
+
+import chess.ChessMatch;
+import chess.Move;
+import chess.engine.Evaluator;
+import chess.engine.Search;
+import chess.engine.TimeBudget;
+import chess.engine.TranspositionTable;
+import chess.exception.ChessException;
+
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * Analyzes a stream of positions in FEN and publishes the best move, score and principal variation of each.
+ * <p>
+ * The analyzer subscribes to a publisher of positions and is itself a publisher of results. Positions are searched
+ * on a fixed pool of worker threads, each with its own {@link Search} and transposition table, and their results
+ * are published as soon as they are ready, so they may come out of order. An invalid position gives a result
+ * carrying the error instead of ending the stream.
+ * <p>
+ * The memory used is bounded whatever the speed of both ends. The analyzer never requests more positions than it
+ * has worker threads, and requests the next one only when a result has been handed over; a result waits in a
+ * subscriber buffer of bounded capacity, and while that buffer is full the worker holding the result blocks, so
+ * that a slow subscriber stops the requests to the publisher of positions.
+ */
+public class Analyzer extends SubmissionPublisher<AnalysisResult> implements Flow.Processor<String, AnalysisResult> {
+
+    private static final int HASH_MEGABYTES = 16;
+
+    private static final int METRICS_CAPACITY = 1024;
+
+    private final int threads;
+    private final int depth;
+    private final TimeBudget budget;
+    private final ExecutorService workers;
+    private final ThreadLocal<Search> searches = ThreadLocal.withInitial(
+            () -> new Search(new TranspositionTable(HASH_MEGABYTES), new Evaluator()));
+    private final AnalysisMetrics metrics = new AnalysisMetrics(METRICS_CAPACITY);
+
+    /**
+     * Guards the subscription and the counters below; the lock of the publisher itself is left alone.
+     */
+    private final Object lock = new Object();
+    private Flow.Subscription subscription;
+    private int active;
+    private boolean upstreamDone;
+    private Throwable upstreamError;
+
+    /**
+     * Creates an analyzer searching every position to a fixed depth.
+     *
+     * @param threads the number of worker threads
+     * @param depth   the search depth
+     * @throws IllegalArgumentException if the number of threads is not positive or the depth is out of range
+     */
+    public Analyzer(int threads, int depth) {
+        this(threads, depth, null);
+    }
+
+    /**
+     * Creates an analyzer searching every position within a time budget.
+     *
+     * @param threads the number of worker threads
+     * @param budget  the time allowed for each position
+     * @throws IllegalArgumentException if the number of threads is not positive
+     */
+    public Analyzer(int threads, TimeBudget budget) {
+        this(threads, 0, Objects.requireNonNull(budget));
+    }
+
+    private Analyzer(int threads, int depth, TimeBudget budget) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be positive");
+        }
+        if (budget == null && (depth < 1 || depth >= Search.MAX_PLY)) {
+            throw new IllegalArgumentException("The depth must be between 1 and " + (Search.MAX_PLY - 1));
+        }
+        this.threads = threads;
+        this.depth = depth;
+        this.budget = budget;
+        workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "analyzer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        synchronized (lock) {
+            if (this.subscription != null) {
+                subscription.cancel();
+                return;
+            }
+            this.subscription = subscription;
+        }
+        subscription.request(threads);
+    }
+
+    @Override
+    public void onNext(String fen) {
+        long arrivalNanos = System.nanoTime();
+        synchronized (lock) {
+            active++;
+        }
+        workers.execute(() -> analyze(fen, arrivalNanos));
+    }
+
+    /**
+     * Publishes the results of the positions already received, then fails the subscribers with the error.
+     */
+    @Override
+    public void onError(Throwable throwable) {
+        upstreamFinished(Objects.requireNonNull(throwable));
+    }
+
+    /**
+     * Publishes the results of the positions already received, then completes the subscribers.
+     */
+    @Override
+    public void onComplete() {
+        upstreamFinished(null);
+    }
+
+    /**
+     * Returns the number of positions received whose result is not yet handed over to the subscribers: waiting for
+     * a worker, being searched, or waiting for room in a subscriber buffer. It never exceeds the number of threads.
+     * Unlike {@link #estimateMaximumLag()}, it can be called from a subscriber while a worker is blocked.
+     *
+     * @return the number of positions in progress
+     */
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return active;
+        }
+    }
+
+    /**
+     * Returns the throughput and latency of the analysis.
+     *
+     * @return the metrics
+     */
+    public AnalysisMetrics getMetrics() {
+        return metrics;
+    }
+
+    private void analyze(String fen, long arrivalNanos) {
+        AnalysisResult result;
+        try {
+            ChessMatch match = new ChessMatch(fen);
+            Search search = searches.get();
+            int move = budget == null ? search.search(match, depth) : search.search(match, budget);
+            result = new AnalysisResult(fen, move, search.getScore(), search.getPrincipalVariation(match),
+                    search.getCompletedDepth(), search.getNodes(), System.nanoTime() - arrivalNanos, null);
+        } catch (ChessException e) {
+            result = new AnalysisResult(fen, Move.NONE, 0, new int[0], 0, 0, System.nanoTime() - arrivalNanos,
+                    e.getMessage());
+        }
+        metrics.record(result);
+        // Blocks while a subscriber buffer is full, which holds back the next request
+        submit(result);
+
+        Flow.Subscription next;
+        boolean finished;
+        synchronized (lock) {
+            active--;
+            finished = upstreamDone && active == 0;
+            next = upstreamDone ? null : subscription;
+        }
+        if (finished) {
+            closeDownstream();
+        } else if (next != null) {
+            next.request(1);
+        }
+    }
+
+    private void upstreamFinished(Throwable throwable) {
+        boolean finished;
+        synchronized (lock) {
+            if (upstreamDone) {
+                return;
+            }
+            upstreamDone = true;
+            upstreamError = throwable;
+            finished = active == 0;
+        }
+        if (finished) {
+            closeDownstream();
+        }
+    }
+
+    private void closeDownstream() {
+        workers.shutdown();
+        if (upstreamError != null) {
+            closeExceptionally(upstreamError);
+        } else {
+            close();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package chess.book;
+
+import chess.Move;
+
+/**
+ * Results of the games of an {@link OpeningExplorer} that reached a position, or that played a given move there.
+ */
+public final class ExplorerStats {
+
+    private final int move;
+    private final long whiteWins;
+    private final long draws;
+    private final long blackWins;
+
+    ExplorerStats(int move, long whiteWins, long draws, long blackWins) {
+        this.move = move;
+        this.whiteWins = whiteWins;
+        this.draws = draws;
+        this.blackWins = blackWins;
+    }
+
+    /**
+     * Returns the move the statistics are about.
+     *
+     * @return the packed move, or {@link Move#NONE} for all the games that reached the position
+     */
+    public int getMove() {
+        return move;
+    }
+
+    /**
+     * Returns the number of games won by white.
+     *
+     * @return the number of white wins
+     */
+    public long getWhiteWins() {
+        return whiteWins;
+    }
+
+    /**
+     * Returns the number of drawn games.
+     *
+     * @return the number of draws
+     */
+    public long getDraws() {
+        return draws;
+    }
+
+    /**
+     * Returns the number of games won by black.
+     *
+     * @return the number of black wins
+     */
+    public long getBlackWins() {
+        return blackWins;
+    }
+
+    /**
+     * Returns the number of games.
+     *
+     * @return the number of games
+     */
+    public long getGames() {
+        return whiteWins + draws + blackWins;
+    }
+
+    @Override
+    public String toString() {
+        long games = Math.max(1, getGames());
+        return String.format("%s %d games, white %.0f%% draw %.0f%% black %.0f%%",
+                move == Move.NONE ? "position" : Move.toString(move), getGames(),
+                100.0 * whiteWins / games, 100.0 * draws / games, 100.0 * blackWins / games);
+    }
+}
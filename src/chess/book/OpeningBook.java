@@ -0,0 +1,270 @@
+package chess.book;
+
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.Color;
+import chess.GameResult;
+import chess.Move;
+import chess.PieceType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Opening book stored in the Polyglot ".bin" layout and read through a memory mapping.
+ * <p>
+ * The file is a sequence of 16-byte big-endian entries sorted by position key: the key (8 bytes),
+ * the move (2 bytes), the weight (2 bytes) and the learn value (4 bytes). Opened with {@link PolyglotKeys}, the
+ * book is keyed by the Polyglot hash and reads the books of other Polyglot tools; otherwise entries are keyed by
+ * {@link ChessMatch#getPositionKey()}, as written by an {@link OpeningBookBuilder} without Polyglot keys.
+ * A probe is a binary search over the mapping and does not allocate.
+ */
+public class OpeningBook implements Closeable {
+
+    /**
+     * Size in bytes of one book entry.
+     */
+    static final int ENTRY_SIZE = 16;
+
+    private static final int MAX_WEIGHT = 0xFFFF;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer entries;
+    private final int entryCount;
+    private final boolean learning;
+    private final PolyglotKeys polyglotKeys;
+
+    /**
+     * Opens an opening book file keyed by {@link ChessMatch#getPositionKey()}.
+     *
+     * @param path     the path of the book file
+     * @param learning if true, the file is mapped for writing so that {@link #learn} can update weights in place
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public OpeningBook(Path path, boolean learning) throws IOException {
+        this(path, learning, null);
+    }
+
+    /**
+     * Opens an opening book file.
+     *
+     * @param path         the path of the book file
+     * @param learning     if true, the file is mapped for writing so that {@link #learn} can update weights in place
+     * @param polyglotKeys the keys of a Polyglot book, or null for a book keyed by
+     *                     {@link ChessMatch#getPositionKey()}
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public OpeningBook(Path path, boolean learning, PolyglotKeys polyglotKeys) throws IOException {
+        this.learning = learning;
+        this.polyglotKeys = polyglotKeys;
+        if (learning) {
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } else {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        }
+        long size = channel.size();
+        if (size % ENTRY_SIZE != 0 || size / ENTRY_SIZE > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("Invalid opening book size: " + size + " bytes");
+        }
+        entries = channel.map(learning ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, size);
+        entryCount = (int) (size / ENTRY_SIZE);
+    }
+
+    /**
+     * Returns the number of entries in the book.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return entryCount;
+    }
+
+    /**
+     * Returns the key under which the book stores the current position of a match.
+     *
+     * @param match the match
+     * @return the Polyglot key if the book was opened with Polyglot keys, the position key of the match otherwise
+     */
+    public long key(ChessMatch match) {
+        return polyglotKeys != null ? polyglotKeys.key(match) : match.getPositionKey();
+    }
+
+    /**
+     * Picks a book move for the current position at random, with a probability proportional to its weight.
+     *
+     * @param match the match whose current position is looked up
+     * @return the packed move, or {@link Move#NONE} if the position is not in the book or all its weights are zero
+     */
+    public int probe(ChessMatch match) {
+        long key = key(match);
+        int first = firstEntry(key);
+        int total = 0;
+        for (int i = first; i < entryCount && key(i) == key; i++) {
+            total += weight(i);
+        }
+        if (total == 0) {
+            return Move.NONE;
+        }
+        int pick = ThreadLocalRandom.current().nextInt(total);
+        for (int i = first; ; i++) {
+            pick -= weight(i);
+            if (pick < 0) {
+                return fromPolyglot(match, move(i));
+            }
+        }
+    }
+
+    /**
+     * Returns the book move with the highest weight for the current position.
+     *
+     * @param match the match whose current position is looked up
+     * @return the packed move, or {@link Move#NONE} if the position is not in the book or all its weights are zero
+     */
+    public int bestMove(ChessMatch match) {
+        long key = key(match);
+        int best = -1;
+        for (int i = firstEntry(key); i < entryCount && key(i) == key; i++) {
+            if (weight(i) > 0 && (best < 0 || weight(i) > weight(best))) {
+                best = i;
+            }
+        }
+        return best < 0 ? Move.NONE : fromPolyglot(match, move(best));
+    }
+
+    /**
+     * Updates in place the weight of a book move with the result of a game in which it was played:
+     * a win adds 2, a draw adds 1 and a loss subtracts 2. The learn value counts the updates.
+     *
+     * @param key    the key of the position before the move, as returned by {@link #key(ChessMatch)}
+     * @param move   the move in Polyglot encoding, see {@link #toPolyglot(ChessMatch, int)}
+     * @param mover  the color of the player who played the move
+     * @param result the result of the game
+     * @return true if the move was found in the book, false otherwise
+     * @throws IllegalStateException if the book was not opened in learning mode
+     */
+    public synchronized boolean learn(long key, int move, Color mover, GameResult result) {
+        if (!learning) {
+            throw new IllegalStateException("The opening book was not opened in learning mode");
+        }
+        int delta;
+        if (result.isDraw()) {
+            delta = 1;
+        } else if (result.getWinner() == mover) {
+            delta = 2;
+        } else if (result.getWinner() != null) {
+            delta = -2;
+        } else {
+            return false;
+        }
+        for (int i = firstEntry(key); i < entryCount && key(i) == key; i++) {
+            if (move(i) == move) {
+                int weight = Math.max(0, Math.min(MAX_WEIGHT, weight(i) + delta));
+                entries.putShort(i * ENTRY_SIZE + 10, (short) weight);
+                entries.putInt(i * ENTRY_SIZE + 12, entries.getInt(i * ENTRY_SIZE + 12) + 1);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Flushes the weights updated by {@link #learn} and closes the book.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (learning) {
+            entries.force();
+        }
+        channel.close();
+    }
+
+    /**
+     * Returns the index of the first entry whose key is not lower than the given key.
+     */
+    private int firstEntry(long key) {
+        int low = 0;
+        int high = entryCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(key(mid), key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private long key(int index) {
+        return entries.getLong(index * ENTRY_SIZE);
+    }
+
+    private int move(int index) {
+        return entries.getShort(index * ENTRY_SIZE + 8) & 0xFFFF;
+    }
+
+    private int weight(int index) {
+        return entries.getShort(index * ENTRY_SIZE + 10) & 0xFFFF;
+    }
+
+    /**
+     * Converts a packed move to the Polyglot move encoding, in which squares are numbered from a1
+     * and castling is written as the king capturing its own rook.
+     *
+     * @param match the match in which the move is about to be played
+     * @param move  the packed move
+     * @return the move in Polyglot encoding
+     */
+    public static int toPolyglot(ChessMatch match, int move) {
+        int source = Move.source(move);
+        int target = Move.target(move);
+        ChessPiece piece = match.getPiece(source);
+        if (piece != null && piece.getType() == PieceType.KING && (source & 7) == 4) {
+            if ((target & 7) == 6) {
+                target = (target & ~7) | 7;
+            } else if ((target & 7) == 2) {
+                target = target & ~7;
+            }
+        }
+        PieceType promotion = Move.promotion(move);
+        return polyglotSquare(target) | polyglotSquare(source) << 6 | (promotion == null ? 0 : promotion.ordinal() << 12);
+    }
+
+    /**
+     * Converts a move in Polyglot encoding to a packed move.
+     *
+     * @param match the match in which the move is about to be played
+     * @param move  the move in Polyglot encoding
+     * @return the packed move
+     */
+    public static int fromPolyglot(ChessMatch match, int move) {
+        int target = polyglotSquare(move & 0x3F);
+        int source = polyglotSquare(move >>> 6 & 0x3F);
+        int promotion = move >>> 12 & 0x7;
+        ChessPiece piece = match.getPiece(source);
+        if (piece != null && piece.getType() == PieceType.KING && (source & 7) == 4 && (source >>> 3) == (target >>> 3)) {
+            if ((target & 7) == 7) {
+                target = (target & ~7) | 6;
+            } else if ((target & 7) == 0) {
+                target = (target & ~7) | 2;
+            }
+        }
+        return Move.of(source, target) | promotion << 12;
+    }
+
+    /**
+     * Converts between board squares and Polyglot squares, which are numbered from a1 instead of a8.
+     * The conversion is its own inverse.
+     */
+    private static int polyglotSquare(int square) {
+        return square ^ 0x38;
+    }
+}
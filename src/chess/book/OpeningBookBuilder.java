@@ -0,0 +1,109 @@
+package chess.book;
+
+import chess.ChessMatch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds an {@link OpeningBook} file from the moves played in a set of games.
+ * The weight of a book move is the number of times it was played in its position.
+ */
+public class OpeningBookBuilder {
+
+    private final int maxPlies;
+    private final PolyglotKeys polyglotKeys;
+    private final Map<Long, Map<Integer, Integer>> counts = new HashMap<>();
+
+    /**
+     * Constructs a builder that keeps the first moves of each game, keyed by {@link ChessMatch#getPositionKey()}.
+     *
+     * @param maxPlies the number of half-moves of each game added to the book
+     */
+    public OpeningBookBuilder(int maxPlies) {
+        this(maxPlies, null);
+    }
+
+    /**
+     * Constructs a builder that keeps the first moves of each game.
+     *
+     * @param maxPlies     the number of half-moves of each game added to the book
+     * @param polyglotKeys the keys of a Polyglot book, or null to key the book by
+     *                     {@link ChessMatch#getPositionKey()}
+     */
+    public OpeningBookBuilder(int maxPlies, PolyglotKeys polyglotKeys) {
+        this.maxPlies = maxPlies;
+        this.polyglotKeys = polyglotKeys;
+    }
+
+    /**
+     * Adds a move played in the current position of a match. Must be called before the move is performed.
+     *
+     * @param match the match in which the move is about to be played
+     * @param move  the packed move
+     */
+    public void add(ChessMatch match, int move) {
+        long key = polyglotKeys != null ? polyglotKeys.key(match) : match.getPositionKey();
+        counts.computeIfAbsent(key, k -> new HashMap<>())
+                .merge(OpeningBook.toPolyglot(match, move), 1, Integer::sum);
+    }
+
+    /**
+     * Replays a game from the initial position and adds its first moves.
+     *
+     * @param moves the packed moves of the game
+     * @throws chess.exception.ChessException if one of the added moves is illegal
+     */
+    public void addGame(int[] moves) {
+        ChessMatch match = new ChessMatch();
+        for (int i = 0; i < moves.length && i < maxPlies && !match.getGameResult().isOver(); i++) {
+            add(match, moves[i]);
+            match.performChessMove(moves[i]);
+        }
+    }
+
+    /**
+     * Writes the book file, with entries sorted by position key and, within a position, by decreasing weight.
+     *
+     * @param path the path of the book file
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path path) throws IOException {
+        List<Long> keys = new ArrayList<>(counts.keySet());
+        keys.sort(Long::compareUnsigned);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(OpeningBook.ENTRY_SIZE * 4096);
+            for (long key : keys) {
+                List<Map.Entry<Integer, Integer>> moves = new ArrayList<>(counts.get(key).entrySet());
+                moves.sort((a, b) -> b.getValue() - a.getValue());
+                for (Map.Entry<Integer, Integer> move : moves) {
+                    if (!buffer.hasRemaining()) {
+                        writeFully(channel, buffer);
+                    }
+                    buffer.putLong(key);
+                    buffer.putShort(move.getKey().shortValue());
+                    buffer.putShort((short) Math.min(move.getValue(), 0xFFFF));
+                    buffer.putInt(0);
+                }
+            }
+            writeFully(channel, buffer);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,153 @@
+package chess.book;
+
+import chess.ChessMatch;
+import chess.Move;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Index of the games of a corpus by position, written by {@link OpeningExplorerBuilder} and read through memory
+ * mappings, so that it can be far larger than the heap.
+ * <p>
+ * The file is a sequence of 24-byte big-endian entries sorted by position key: the key (8 bytes), the packed move
+ * played in the position (4 bytes), then the number of games won by white, drawn and won by black after it
+ * (4 bytes each). A game that ended in the position, or left the index there, has an entry with
+ * {@link Move#NONE}. Within a position, entries are sorted by decreasing number of games. Entries are keyed by
+ * {@link ChessMatch#getPositionKey()}. A lookup is a binary search over the mappings; it is safe to look up from
+ * several threads at once.
+ */
+public class OpeningExplorer implements Closeable {
+
+    /**
+     * Size in bytes of one entry.
+     */
+    static final int ENTRY_SIZE = 24;
+
+    /**
+     * Number of entries per mapping, as a single mapping cannot exceed 2 GB.
+     */
+    private static final int ENTRIES_PER_SEGMENT = 1 << 25;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long entryCount;
+
+    /**
+     * Opens an explorer file.
+     *
+     * @param path the path of the file
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public OpeningExplorer(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        long size = channel.size();
+        if (size % ENTRY_SIZE != 0) {
+            channel.close();
+            throw new IOException("Invalid opening explorer size: " + size + " bytes");
+        }
+        entryCount = size / ENTRY_SIZE;
+        segments = new MappedByteBuffer[(int) ((entryCount + ENTRIES_PER_SEGMENT - 1) / ENTRIES_PER_SEGMENT)];
+        for (int i = 0; i < segments.length; i++) {
+            long start = (long) i * ENTRIES_PER_SEGMENT * ENTRY_SIZE;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                    Math.min((long) ENTRIES_PER_SEGMENT * ENTRY_SIZE, size - start));
+        }
+    }
+
+    /**
+     * Returns the number of entries of the index.
+     *
+     * @return the number of entries
+     */
+    public long size() {
+        return entryCount;
+    }
+
+    /**
+     * Returns the results of all the games that reached the current position of a match.
+     *
+     * @param match the match whose current position is looked up
+     * @return the statistics, with {@link Move#NONE} as move and no game if the position is not in the index
+     */
+    public ExplorerStats getPosition(ChessMatch match) {
+        long key = match.getPositionKey();
+        long white = 0;
+        long draws = 0;
+        long black = 0;
+        for (long i = firstEntry(key); i < entryCount && key(i) == key; i++) {
+            white += count(i, 12);
+            draws += count(i, 16);
+            black += count(i, 20);
+        }
+        return new ExplorerStats(Move.NONE, white, draws, black);
+    }
+
+    /**
+     * Returns the moves played in the current position of a match, most played first.
+     *
+     * @param match the match whose current position is looked up
+     * @param limit the maximum number of moves returned
+     * @return the statistics of each move, empty if the position is not in the index
+     */
+    public List<ExplorerStats> getMoves(ChessMatch match, int limit) {
+        long key = match.getPositionKey();
+        List<ExplorerStats> moves = new ArrayList<>();
+        for (long i = firstEntry(key); i < entryCount && key(i) == key && moves.size() < limit; i++) {
+            int move = segment(i).getInt(offset(i) + 8);
+            if (move != Move.NONE) {
+                moves.add(new ExplorerStats(move, count(i, 12), count(i, 16), count(i, 20)));
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Closes the file. The explorer must not be used afterwards.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Returns the index of the first entry whose key is not lower than the given key.
+     */
+    private long firstEntry(long key) {
+        long low = 0;
+        long high = entryCount;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(key(mid), key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private long key(long index) {
+        return segment(index).getLong(offset(index));
+    }
+
+    private long count(long index, int field) {
+        return segment(index).getInt(offset(index) + field) & 0xFFFFFFFFL;
+    }
+
+    private MappedByteBuffer segment(long index) {
+        return segments[(int) (index / ENTRIES_PER_SEGMENT)];
+    }
+
+    private static int offset(long index) {
+        return (int) (index % ENTRIES_PER_SEGMENT) * ENTRY_SIZE;
+    }
+}
@@ -0,0 +1,462 @@
+package chess.book;
+
+import chess.ChessMatch;
+import chess.Move;
+import chess.MoveGenerator;
+import chess.exception.ChessException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds an {@link OpeningExplorer} file from a corpus of games, with memory bounded whatever the size of the
+ * corpus.
+ * <p>
+ * The corpus is a text file with one game per line: its result, "1-0", "1/2-1/2" or "0-1", followed by its moves
+ * in UCI notation, separated by spaces. Games without a result or with an illegal move are skipped.
+ * <p>
+ * Building is a map-reduce. In the map step, worker threads replay batches of games and count the results per
+ * position and move in a table of their own; when the table is full, it is sorted and written to a run file.
+ * In the reduce step, the sorted runs are merged, counts of the same position and move are added, and the
+ * entries of each position are written by decreasing number of games. Only the tables and one entry per run are
+ * ever in memory.
+ */
+public class OpeningExplorerBuilder {
+
+    private static final int BATCH_SIZE = 256;
+
+    private static final int DEFAULT_TABLE_CAPACITY = 1 << 20;
+
+    private static final List<String> END_OF_CORPUS = Collections.emptyList();
+
+    private final int maxPlies;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int tableCapacity = DEFAULT_TABLE_CAPACITY;
+
+    private final List<Path> runs = new ArrayList<>();
+    private final AtomicLong games = new AtomicLong();
+    private final AtomicLong skippedGames = new AtomicLong();
+
+    /**
+     * Constructs a builder indexing the first moves of each game.
+     *
+     * @param maxPlies the number of half-moves of each game indexed
+     */
+    public OpeningExplorerBuilder(int maxPlies) {
+        this.maxPlies = maxPlies;
+    }
+
+    /**
+     * Sets the number of threads replaying games.
+     *
+     * @param threads the number of threads, by default the number of processors
+     * @throws IllegalArgumentException if the number is not positive
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be positive");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the number of entries each thread counts in memory before writing a run, which bounds the heap used:
+     * at most 48 bytes per entry and thread.
+     *
+     * @param tableCapacity the number of entries, rounded up to a power of two
+     * @throws IllegalArgumentException if the number is not positive or too large
+     */
+    public void setTableCapacity(int tableCapacity) {
+        if (tableCapacity < 1 || tableCapacity > 1 << 28) {
+            throw new IllegalArgumentException("Invalid table capacity: " + tableCapacity);
+        }
+        this.tableCapacity = tableCapacity;
+    }
+
+    /**
+     * Indexes a corpus and writes the explorer file. The run files are written next to it and deleted afterwards.
+     *
+     * @param corpus the corpus file
+     * @param output the explorer file
+     * @return the number of games indexed
+     * @throws IOException if a file cannot be read or written
+     */
+    public long build(Path corpus, Path output) throws IOException {
+        games.set(0);
+        skippedGames.set(0);
+        runs.clear();
+        Path directory = Files.createTempDirectory(output.toAbsolutePath().getParent(), "explorer");
+        try {
+            map(corpus, directory);
+            reduce(output);
+        } finally {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+            Files.deleteIfExists(directory);
+        }
+        return games.get();
+    }
+
+    /**
+     * Returns the number of games of the last build that were skipped.
+     *
+     * @return the number of games without a result or with an illegal move
+     */
+    public long getSkippedGames() {
+        return skippedGames.get();
+    }
+
+    private void map(Path corpus, Path directory) throws IOException {
+        BlockingQueue<List<String>> batches = new ArrayBlockingQueue<>(threads * 2);
+        List<Thread> workers = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                CountTable table = new CountTable(tableCapacity);
+                try {
+                    for (List<String> batch = batches.take(); batch != END_OF_CORPUS; batch = batches.take()) {
+                        for (String line : batch) {
+                            replay(line, table);
+                            if (table.isFull()) {
+                                spill(table, directory);
+                            }
+                        }
+                    }
+                    spill(table, directory);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, "explorer-" + i);
+            worker.setUncaughtExceptionHandler((thread, e) -> {
+                failures.add(e);
+                // Keeps the reader from blocking on a queue nobody takes from any more
+                batches.clear();
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        try {
+            try (BufferedReader reader = Files.newBufferedReader(corpus)) {
+                List<String> batch = new ArrayList<>(BATCH_SIZE);
+                for (String line = reader.readLine(); line != null && failures.isEmpty(); line = reader.readLine()) {
+                    batch.add(line);
+                    if (batch.size() == BATCH_SIZE) {
+                        batches.put(batch);
+                        batch = new ArrayList<>(BATCH_SIZE);
+                    }
+                }
+                batches.put(batch);
+            } finally {
+                for (int i = 0; i < threads; i++) {
+                    batches.put(END_OF_CORPUS);
+                }
+                for (Thread worker : workers) {
+                    worker.join();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while indexing", e);
+        }
+        if (!failures.isEmpty()) {
+            Throwable failure = failures.get(0);
+            if (failure instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) failure).getCause();
+            }
+            throw new IllegalStateException("Indexing failed", failure);
+        }
+    }
+
+    /**
+     * Replays a game of the corpus and counts its result in each position reached, with the move played there.
+     */
+    private void replay(String line, CountTable table) {
+        String[] tokens = line.trim().split("\\s+");
+        int result;
+        switch (tokens[0]) {
+            case "1-0":
+                result = 0;
+                break;
+            case "1/2-1/2":
+                result = 1;
+                break;
+            case "0-1":
+                result = 2;
+                break;
+            default:
+                skippedGames.incrementAndGet();
+                return;
+        }
+        int plies = Math.min(maxPlies, tokens.length - 1);
+        long[] keys = new long[plies + 1];
+        int[] moves = new int[plies + 1];
+        ChessMatch match = new ChessMatch();
+        try {
+            for (int i = 0; i < plies; i++) {
+                int move = Move.fromString(tokens[i + 1]);
+                keys[i] = match.getPositionKey();
+                moves[i] = move;
+                if (!MoveGenerator.isPseudoLegal(match, move) || !match.makeMove(move)) {
+                    skippedGames.incrementAndGet();
+                    return;
+                }
+            }
+        } catch (ChessException e) {
+            skippedGames.incrementAndGet();
+            return;
+        }
+        keys[plies] = match.getPositionKey();
+        moves[plies] = Move.NONE;
+        for (int i = 0; i <= plies; i++) {
+            table.add(keys[i], moves[i], result);
+        }
+        games.incrementAndGet();
+    }
+
+    /**
+     * Sorts the entries of a table, writes them to a new run file and empties the table.
+     */
+    private void spill(CountTable table, Path directory) throws IOException {
+        if (table.size == 0) {
+            return;
+        }
+        Path run = Files.createTempFile(directory, "run", ".bin");
+        synchronized (runs) {
+            runs.add(run);
+        }
+        int count = table.compact();
+        table.sort(0, count - 1);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)))) {
+            for (int i = 0; i < count; i++) {
+                out.writeLong(table.keys[i]);
+                out.writeInt(table.moves[i]);
+                for (int r = 0; r < 3; r++) {
+                    out.writeInt(table.counts[i * 3 + r]);
+                }
+            }
+        }
+        table.clear();
+    }
+
+    /**
+     * Merges the sorted runs into the explorer file.
+     */
+    private void reduce(Path output) throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<>((a, b) -> {
+            int c = Long.compareUnsigned(a.key, b.key);
+            return c != 0 ? c : Integer.compare(a.move, b.move);
+        });
+        List<RunReader> readers = new ArrayList<>();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(output)))) {
+            for (Path run : runs) {
+                RunReader reader = new RunReader(run);
+                readers.add(reader);
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+            List<long[]> group = new ArrayList<>();
+            long[] current = null;
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                if (current == null || current[0] != reader.key || current[1] != reader.move) {
+                    if (current != null && current[0] != reader.key) {
+                        writeGroup(out, group);
+                    }
+                    current = new long[]{reader.key, reader.move, 0, 0, 0};
+                    group.add(current);
+                }
+                for (int r = 0; r < 3; r++) {
+                    current[2 + r] = Math.min(0xFFFFFFFFL, current[2 + r] + (reader.counts[r] & 0xFFFFFFFFL));
+                }
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+            writeGroup(out, group);
+        } finally {
+            for (RunReader reader : readers) {
+                reader.in.close();
+            }
+        }
+    }
+
+    /**
+     * Writes the entries of a position, most played first, and empties the group.
+     */
+    private static void writeGroup(DataOutputStream out, List<long[]> group) throws IOException {
+        group.sort(Comparator.comparingLong((long[] entry) -> entry[2] + entry[3] + entry[4]).reversed());
+        for (long[] entry : group) {
+            out.writeLong(entry[0]);
+            out.writeInt((int) entry[1]);
+            for (int r = 0; r < 3; r++) {
+                out.writeInt((int) entry[2 + r]);
+            }
+        }
+        group.clear();
+    }
+
+    /**
+     * Open-addressing table counting the results of each position and move, in primitive arrays.
+     */
+    private static class CountTable {
+        private final long[] keys;
+        private final int[] moves;
+        private final int[] counts;
+        private final int mask;
+        private final int limit;
+        private int size;
+
+        CountTable(int capacity) {
+            int slots = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+            keys = new long[slots];
+            moves = new int[slots];
+            counts = new int[slots * 3];
+            mask = slots - 1;
+            limit = slots / 4 * 3;
+            Arrays.fill(moves, -1);
+        }
+
+        void add(long key, int move, int result) {
+            int slot = (int) ((key ^ key >>> 29 ^ move * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+            while (moves[slot] != -1 && (keys[slot] != key || moves[slot] != move)) {
+                slot = (slot + 1) & mask;
+            }
+            if (moves[slot] == -1) {
+                keys[slot] = key;
+                moves[slot] = move;
+                size++;
+            }
+            int index = slot * 3 + result;
+            if (counts[index] != -1) {
+                counts[index]++;
+            }
+        }
+
+        boolean isFull() {
+            return size >= limit;
+        }
+
+        /**
+         * Moves the entries to the start of the arrays, which breaks the hashing until {@link #clear()}.
+         *
+         * @return the number of entries
+         */
+        int compact() {
+            int count = 0;
+            for (int slot = 0; slot < moves.length; slot++) {
+                if (moves[slot] != -1) {
+                    if (slot != count) {
+                        swap(slot, count);
+                    }
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Sorts the compacted entries between two indexes by key, then move.
+         */
+        void sort(int low, int high) {
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                long pivotKey = keys[mid];
+                int pivotMove = moves[mid];
+                int i = low;
+                int j = high;
+                while (i <= j) {
+                    while (compare(i, pivotKey, pivotMove) < 0) {
+                        i++;
+                    }
+                    while (compare(j, pivotKey, pivotMove) > 0) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        swap(i++, j--);
+                    }
+                }
+                // Recurses into the smaller side so the stack stays logarithmic
+                if (j - low < high - i) {
+                    sort(low, j);
+                    low = i;
+                } else {
+                    sort(i, high);
+                    high = j;
+                }
+            }
+        }
+
+        void clear() {
+            Arrays.fill(moves, -1);
+            Arrays.fill(counts, 0);
+            size = 0;
+        }
+
+        private int compare(int index, long key, int move) {
+            int c = Long.compareUnsigned(keys[index], key);
+            return c != 0 ? c : Integer.compare(moves[index], move);
+        }
+
+        private void swap(int a, int b) {
+            long key = keys[a];
+            keys[a] = keys[b];
+            keys[b] = key;
+            int move = moves[a];
+            moves[a] = moves[b];
+            moves[b] = move;
+            for (int r = 0; r < 3; r++) {
+                int count = counts[a * 3 + r];
+                counts[a * 3 + r] = counts[b * 3 + r];
+                counts[b * 3 + r] = count;
+            }
+        }
+    }
+
+    /**
+     * Sequential reader of the entries of a run file.
+     */
+    private static class RunReader {
+        private final DataInputStream in;
+        private long key;
+        private int move;
+        private final int[] counts = new int[3];
+
+        RunReader(Path run) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run)));
+        }
+
+        boolean next() throws IOException {
+            try {
+                key = in.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            move = in.readInt();
+            for (int r = 0; r < 3; r++) {
+                counts[r] = in.readInt();
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package chess.book;
+
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.Color;
+import chess.Move;
+import chess.PieceType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Position keys of Polyglot opening books: the exclusive or of the entries of the Random64 table of the format for
+ * the pieces on their squares, the castling rights, the en passant file when a pawn of the player to move stands
+ * ready to take en passant, and white to move.
+ * <p>
+ * The table is read from a file holding its 781 values in hexadecimal, in order, such as the C source of the
+ * format description, and is checked against the keys that the description publishes for a few positions.
+ */
+public final class PolyglotKeys {
+
+    private static final int ENTRIES = 781;
+    private static final int CASTLING = 768;
+    private static final int EN_PASSANT = 772;
+    private static final int TURN = 780;
+
+    private static final Pattern VALUE = Pattern.compile("(?<![0-9A-Fa-f])(?:0[xX])?([0-9A-Fa-f]{16})(?![0-9A-Fa-f])");
+
+    /**
+     * UCI moves from the initial position, and the published key of the position they lead to.
+     */
+    private static final String[][] TEST_KEYS = {
+            {"", "463b96181691fc9c"},
+            {"e2e4", "823c9b50fd114196"},
+            {"e2e4 d7d5", "0756b94461c50fb0"},
+            {"e2e4 d7d5 e4e5", "662fafb965db29d4"},
+            {"e2e4 d7d5 e4e5 f7f5", "22a48b5a8e47ff78"},
+            {"e2e4 d7d5 e4e5 f7f5 e1e2", "652a607ca3f242c1"},
+            {"e2e4 d7d5 e4e5 f7f5 e1e2 e8f7", "00fdd303c946bdd9"},
+            {"a2a4 b7b5 h2h4 b5b4 c2c4", "3c8123ea7b067637"},
+            {"a2a4 b7b5 h2h4 b5b4 c2c4 b4c3 a1a3", "5c3f9b829b279560"},
+    };
+
+    private final long[] random;
+
+    PolyglotKeys(long[] random) {
+        this.random = random;
+    }
+
+    /**
+     * Reads the Random64 table of the Polyglot format.
+     *
+     * @param path the path of a file holding the 781 values of the table in order, as 16 hexadecimal digits each
+     * @return the keys
+     * @throws IOException if the file cannot be read, or does not hold the Polyglot table
+     */
+    public static PolyglotKeys read(Path path) throws IOException {
+        Matcher matcher = VALUE.matcher(Files.readString(path));
+        long[] random = new long[ENTRIES];
+        int count = 0;
+        while (matcher.find()) {
+            if (count == ENTRIES) {
+                throw new IOException("More than " + ENTRIES + " values in " + path);
+            }
+            random[count++] = Long.parseUnsignedLong(matcher.group(1), 16);
+        }
+        if (count < ENTRIES) {
+            throw new IOException("Only " + count + " of the " + ENTRIES + " values in " + path);
+        }
+        PolyglotKeys keys = new PolyglotKeys(random);
+        for (String[] test : TEST_KEYS) {
+            ChessMatch match = new ChessMatch();
+            for (String move : test[0].split(" ")) {
+                if (!move.isEmpty()) {
+                    match.tryMove(Move.fromString(move));
+                }
+            }
+            if (keys.key(match) != Long.parseUnsignedLong(test[1], 16)) {
+                throw new IOException("Not the Polyglot Random64 table, the key after \"" + test[0] + "\" differs: " +
+                        path);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the Polyglot key of the current position of a match.
+     *
+     * @param match the match
+     * @return the key
+     */
+    public long key(ChessMatch match) {
+        long key = 0;
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = match.getPiece(square);
+            if (piece != null) {
+                // Black pawn, white pawn, black knight and so on, each over the squares numbered from a1
+                int kind = piece.getType().ordinal() * 2 + (piece.getColor() == Color.WHITE ? 1 : 0);
+                key ^= random[kind * 64 + (square ^ 0x38)];
+            }
+        }
+        if (castlingAvailable(match, 60, 63)) {
+            key ^= random[CASTLING];
+        }
+        if (castlingAvailable(match, 60, 56)) {
+            key ^= random[CASTLING + 1];
+        }
+        if (castlingAvailable(match, 4, 7)) {
+            key ^= random[CASTLING + 2];
+        }
+        if (castlingAvailable(match, 4, 0)) {
+            key ^= random[CASTLING + 3];
+        }
+        ChessPiece vulnerable = match.getEnPassantVulnerable();
+        if (vulnerable != null && vulnerable.getColor() != match.getCurrentPlayer()) {
+            int square = vulnerable.getSquare();
+            int column = square & 7;
+            if ((column > 0 && isPawn(match, square - 1, match.getCurrentPlayer())) ||
+                    (column < 7 && isPawn(match, square + 1, match.getCurrentPlayer()))) {
+                key ^= random[EN_PASSANT + column];
+            }
+        }
+        if (match.getCurrentPlayer() == Color.WHITE) {
+            key ^= random[TURN];
+        }
+        return key;
+    }
+
+    /**
+     * Returns whether the king and the rook on the given squares have never moved.
+     */
+    private static boolean castlingAvailable(ChessMatch match, int kingSquare, int rookSquare) {
+        ChessPiece king = match.getPiece(kingSquare);
+        ChessPiece rook = match.getPiece(rookSquare);
+        return king != null && king.getType() == PieceType.KING && king.getMoveCount() == 0 &&
+                rook != null && rook.getType() == PieceType.ROOK && rook.getMoveCount() == 0 &&
+                rook.getColor() == king.getColor();
+    }
+
+    private static boolean isPawn(ChessMatch match, int square, Color color) {
+        ChessPiece piece = match.getPiece(square);
+        return piece != null && piece.getType() == PieceType.PAWN && piece.getColor() == color;
+    }
+}
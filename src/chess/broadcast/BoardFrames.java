@@ -0,0 +1,80 @@
+package chess.broadcast;
+
+import chess.CompactPosition;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary frames sent by a {@link SpectatorServer} to its watchers, built on the words of {@link CompactPosition}.
+ * <p>
+ * Every frame starts with its length, not counting the two bytes of the length itself, then its type and the
+ * sequence number of the position in its game. A snapshot frame carries the five words of the position. A delta
+ * frame carries the number of changed squares, then each changed square (1 byte) with its new 4-bit code (1 byte),
+ * then the state word: an ordinary move changes two squares and takes 20 bytes. All values are big-endian.
+ */
+final class BoardFrames {
+
+    static final byte SNAPSHOT = 1;
+    static final byte DELTA = 2;
+
+    /**
+     * Size of the length, type and sequence number of a frame.
+     */
+    static final int HEADER_SIZE = 7;
+
+    static final int SNAPSHOT_SIZE = HEADER_SIZE + CompactPosition.WORDS * 8;
+
+    /**
+     * Size of the largest delta frame, where every square changed.
+     */
+    static final int MAX_DELTA_SIZE = HEADER_SIZE + 1 + 64 * 2 + 8;
+
+    private BoardFrames() {
+    }
+
+    /**
+     * Writes a snapshot frame.
+     *
+     * @param buffer   the buffer, with at least {@link #SNAPSHOT_SIZE} bytes remaining
+     * @param sequence the sequence number of the position
+     * @param words    the words of the position
+     */
+    static void writeSnapshot(ByteBuffer buffer, int sequence, long[] words) {
+        buffer.putShort((short) (SNAPSHOT_SIZE - 2));
+        buffer.put(SNAPSHOT);
+        buffer.putInt(sequence);
+        for (long word : words) {
+            buffer.putLong(word);
+        }
+    }
+
+    /**
+     * Writes a delta frame from one position to the next.
+     *
+     * @param buffer   the buffer, with at least {@link #MAX_DELTA_SIZE} bytes remaining
+     * @param sequence the sequence number of the new position
+     * @param previous the words of the previous position
+     * @param current  the words of the new position
+     */
+    static void writeDelta(ByteBuffer buffer, int sequence, long[] previous, long[] current) {
+        int start = buffer.position();
+        buffer.position(start + HEADER_SIZE + 1);
+        int count = 0;
+        for (int word = 0; word < 4; word++) {
+            // Each set nibble of the difference is a changed square
+            long changed = previous[word] ^ current[word];
+            while (changed != 0) {
+                int shift = Long.numberOfTrailingZeros(changed) & ~3;
+                buffer.put((byte) (word * 16 + shift / 4));
+                buffer.put((byte) (current[word] >>> shift & 0xF));
+                changed &= ~(0xFL << shift);
+                count++;
+            }
+        }
+        buffer.putLong(current[4]);
+        buffer.putShort(start, (short) (buffer.position() - start - 2));
+        buffer.put(start + 2, DELTA);
+        buffer.putInt(start + 3, sequence);
+        buffer.put(start + HEADER_SIZE, (byte) count);
+    }
+}
@@ -0,0 +1,90 @@
+package chess.broadcast;
+
+import chess.CompactPosition;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Position of a game as seen by a watcher of a {@link SpectatorServer}, rebuilt from the frames it receives: a
+ * snapshot, then one delta per move.
+ */
+public final class SpectatorBoard {
+
+    private final long[] words = new long[CompactPosition.WORDS];
+    private int sequence = -1;
+    private long frames;
+
+    /**
+     * Applies the complete frames at the start of a buffer, as read from the connection. A partial frame at the
+     * end is left in the buffer, to be completed by the next read.
+     *
+     * @param buffer the buffer, ready to be read; its position is moved past the frames applied
+     * @return the number of frames applied
+     * @throws IllegalStateException if a frame is invalid, or a delta does not follow the position held
+     */
+    public int read(ByteBuffer buffer) {
+        int applied = 0;
+        while (buffer.remaining() >= 2) {
+            int start = buffer.position();
+            int length = buffer.getShort(start) & 0xFFFF;
+            if (buffer.remaining() < length + 2) {
+                break;
+            }
+            byte type = buffer.get(start + 2);
+            int frameSequence = buffer.getInt(start + 3);
+            buffer.position(start + BoardFrames.HEADER_SIZE);
+            if (type == BoardFrames.SNAPSHOT && length == BoardFrames.SNAPSHOT_SIZE - 2) {
+                for (int i = 0; i < words.length; i++) {
+                    words[i] = buffer.getLong();
+                }
+            } else if (type == BoardFrames.DELTA) {
+                if (sequence < 0 || frameSequence != sequence + 1) {
+                    throw new IllegalStateException("Delta " + frameSequence + " does not follow position " + sequence);
+                }
+                int count = buffer.get() & 0xFF;
+                if (length != BoardFrames.HEADER_SIZE - 2 + 1 + count * 2 + 8) {
+                    throw new IllegalStateException("Invalid delta length: " + length);
+                }
+                for (int i = 0; i < count; i++) {
+                    int square = buffer.get() & 63;
+                    int shift = (square & 15) * 4;
+                    words[square >>> 4] = words[square >>> 4] & ~(0xFL << shift) | (long) (buffer.get() & 0xF) << shift;
+                }
+                words[4] = buffer.getLong();
+            } else {
+                throw new IllegalStateException("Invalid frame type " + type + " of length " + length);
+            }
+            sequence = frameSequence;
+            frames++;
+            applied++;
+        }
+        return applied;
+    }
+
+    /**
+     * Returns the sequence number of the position held, which grows by one with each move of the game.
+     *
+     * @return the sequence number, or -1 before the first snapshot
+     */
+    public int getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the number of frames applied.
+     *
+     * @return the number of frames
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Returns the position held.
+     *
+     * @return the position, or null before the first snapshot
+     */
+    public CompactPosition getPosition() {
+        return sequence < 0 ? null : CompactPosition.read(words, 0);
+    }
+}
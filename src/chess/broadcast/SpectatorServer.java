@@ -0,0 +1,484 @@
+package chess.broadcast;
+
+import chess.ChessMatch;
+import chess.CompactPosition;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Broadcasts the positions of games to watchers over TCP, from a single thread multiplexing all the connections
+ * with a {@link Selector}.
+ * <p>
+ * A watcher connects and sends the 8-byte id of the game it watches. It receives a snapshot of the current
+ * position, then a delta for each move: the squares that changed and the state word, as described in
+ * {@link BoardFrames}, which {@link SpectatorBoard} applies. A watcher connected before the first position of its
+ * game receives that position as a snapshot.
+ * <p>
+ * The positions of each game queued since the last pass are encoded once into a batch, which is written to each
+ * watcher with a single call. A connection that cannot take the whole batch keeps the rest in a write buffer of
+ * its own, allocated only while it is behind; a watcher whose buffer would overflow is disconnected, so that a slow
+ * consumer costs a bounded amount of memory and never delays the others. The kernel send buffer of each connection
+ * is capped to the same size.
+ */
+public class SpectatorServer implements Closeable {
+
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final int maxPendingBytes;
+    private final int batchBytes;
+    private final Thread thread;
+
+    private final ConcurrentLinkedQueue<Update> updates = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Set when the selector was woken up for updates it did not take yet, so that a burst of moves wakes it once.
+     */
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+
+    private final Map<Long, Game> games = new HashMap<>();
+    private final List<Game> updatedGames = new ArrayList<>();
+    private final ByteBuffer snapshot = ByteBuffer.allocate(BoardFrames.SNAPSHOT_SIZE);
+    private final ByteBuffer discarded = ByteBuffer.allocate(256);
+    private long[] nextWords = new long[CompactPosition.WORDS];
+
+    private volatile boolean closed;
+    private volatile IOException failure;
+    private volatile int watchers;
+    private volatile long positions;
+    private volatile long frames;
+    private volatile long bytesSent;
+    private volatile long evictions;
+
+    /**
+     * Starts a server.
+     *
+     * @param address         the address to listen on, with port 0 for any free port
+     * @param maxPendingBytes the most bytes a watcher can be behind before it is disconnected, at least 1 KB
+     * @throws IOException if the address cannot be bound
+     */
+    public SpectatorServer(InetSocketAddress address, int maxPendingBytes) throws IOException {
+        if (maxPendingBytes < 1024) {
+            throw new IllegalArgumentException("The write buffers must hold at least 1 KB");
+        }
+        this.maxPendingBytes = maxPendingBytes;
+        batchBytes = Math.min(maxPendingBytes, 16 * 1024);
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(address, 4096);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        thread = new Thread(this::run, "spectator-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the address the server listens on.
+     *
+     * @return the address
+     * @throws IOException if the server is closed
+     */
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) server.getLocalAddress();
+    }
+
+    /**
+     * Sends the last committed position of a match to the watchers of its game. Thread-safe: the position is the
+     * {@link ChessMatch#getSnapshot() snapshot} of the match, read without copying, so it may be called from any
+     * thread, even while a move is played.
+     *
+     * @param gameId the id of the game
+     * @param match  the match
+     */
+    public void broadcast(long gameId, ChessMatch match) {
+        broadcast(gameId, match.getSnapshot().getPosition());
+    }
+
+    /**
+     * Sends a position to the watchers of a game. Thread-safe.
+     *
+     * @param gameId   the id of the game
+     * @param position the new position of the game
+     */
+    public void broadcast(long gameId, CompactPosition position) {
+        enqueue(new Update(gameId, position));
+    }
+
+    /**
+     * Forgets a game. Its watchers are disconnected once they received its last position. Thread-safe.
+     *
+     * @param gameId the id of the game
+     */
+    public void endGame(long gameId) {
+        enqueue(new Update(gameId, null));
+    }
+
+    /**
+     * Returns the number of connected watchers.
+     *
+     * @return the number of watchers
+     */
+    public int getWatchers() {
+        return watchers;
+    }
+
+    /**
+     * Returns the number of positions broadcast.
+     *
+     * @return the number of positions
+     */
+    public long getPositions() {
+        return positions;
+    }
+
+    /**
+     * Returns the number of frames sent or buffered for watchers, snapshots included.
+     *
+     * @return the number of frames
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Returns the number of bytes written to the connections.
+     *
+     * @return the number of bytes
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * Returns the number of watchers disconnected for being too far behind.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the CPU time used by the server thread.
+     *
+     * @return the CPU time in nanoseconds, or -1 if the JVM does not measure it
+     */
+    public long getCpuNanos() {
+        return ManagementFactory.getThreadMXBean().getThreadCpuTime(thread.getId());
+    }
+
+    /**
+     * Stops the server and disconnects every watcher.
+     *
+     * @throws IOException if the server thread failed
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d watchers, %d positions, %d frames, %d bytes sent, %d evicted",
+                watchers, positions, frames, bytesSent, evictions);
+    }
+
+    private void enqueue(Update update) {
+        updates.add(update);
+        if (!wakeupPending.getAndSet(true)) {
+            selector.wakeup();
+        }
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                selector.select();
+                wakeupPending.set(false);
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isWritable()) {
+                            flush(connection);
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            read(connection);
+                        }
+                    }
+                }
+                selector.selectedKeys().clear();
+                applyUpdates();
+            }
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                try {
+                    key.channel().close();
+                } catch (IOException ignored) {
+                    // The connection is dropped anyway
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                // Nothing is left to release
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.setOption(StandardSocketOptions.SO_SNDBUF, maxPendingBytes);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        }
+    }
+
+    /**
+     * Reads the game id of a new watcher and sends it the current position. Anything sent afterwards is ignored.
+     */
+    private void read(Connection connection) {
+        try {
+            ByteBuffer buffer = connection.game == null ? connection.request : discarded.clear();
+            if (connection.channel.read(buffer) < 0) {
+                disconnect(connection);
+                return;
+            }
+            if (connection.game == null && !connection.request.hasRemaining()) {
+                Game game = games.computeIfAbsent(connection.request.getLong(0), Game::new);
+                connection.game = game;
+                connection.index = game.watchers.size();
+                game.watchers.add(connection);
+                watchers++;
+                if (game.sequence >= 0) {
+                    BoardFrames.writeSnapshot(snapshot.clear(), game.sequence, game.words);
+                    send(connection, snapshot.flip());
+                }
+            }
+        } catch (IOException e) {
+            disconnect(connection);
+        }
+    }
+
+    /**
+     * Encodes the positions queued since the last pass into the batch of their game, then sends the batches.
+     */
+    private void applyUpdates() {
+        Update update;
+        while ((update = updates.poll()) != null) {
+            Game game = games.computeIfAbsent(update.gameId, Game::new);
+            if (update.position == null) {
+                send(game);
+                endGame(game);
+                continue;
+            }
+            if (game.batch.remaining() < BoardFrames.MAX_DELTA_SIZE) {
+                send(game);
+            }
+            update.position.copyTo(nextWords, 0);
+            if (game.sequence < 0) {
+                BoardFrames.writeSnapshot(game.batch, ++game.sequence, nextWords);
+            } else {
+                BoardFrames.writeDelta(game.batch, ++game.sequence, game.words, nextWords);
+            }
+            long[] previous = game.words;
+            game.words = nextWords;
+            nextWords = previous;
+            game.frames++;
+            positions++;
+            if (!game.updated) {
+                game.updated = true;
+                updatedGames.add(game);
+            }
+        }
+        for (Game game : updatedGames) {
+            send(game);
+            game.updated = false;
+        }
+        updatedGames.clear();
+    }
+
+    /**
+     * Sends the batch of a game to all its watchers.
+     */
+    private void send(Game game) {
+        ByteBuffer batch = game.batch.flip();
+        if (batch.hasRemaining()) {
+            int frameCount = game.frames;
+            // Backwards, as a disconnected watcher is replaced by the last one
+            for (int i = game.watchers.size() - 1; i >= 0; i--) {
+                send(game.watchers.get(i), batch.position(0));
+                frames += frameCount;
+            }
+        }
+        batch.clear();
+        game.frames = 0;
+    }
+
+    /**
+     * Writes a frame or a batch to a watcher, or buffers what the connection cannot take now.
+     */
+    private void send(Connection connection, ByteBuffer data) {
+        try {
+            if (connection.pending == null) {
+                bytesSent += connection.channel.write(data);
+                if (!data.hasRemaining()) {
+                    return;
+                }
+                connection.pending = ByteBuffer.allocate(maxPendingBytes);
+                connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+            if (data.remaining() > connection.pending.remaining()) {
+                evictions++;
+                disconnect(connection);
+                return;
+            }
+            connection.pending.put(data);
+        } catch (IOException e) {
+            disconnect(connection);
+        }
+    }
+
+    private void flush(Connection connection) {
+        try {
+            ByteBuffer pending = connection.pending.flip();
+            bytesSent += connection.channel.write(pending);
+            pending.compact();
+            if (pending.position() == 0) {
+                connection.pending = null;
+                if (connection.closing) {
+                    disconnect(connection);
+                } else {
+                    connection.key.interestOps(SelectionKey.OP_READ);
+                }
+            }
+        } catch (IOException e) {
+            disconnect(connection);
+        }
+    }
+
+    private void endGame(Game game) {
+        games.remove(game.id);
+        for (int i = game.watchers.size() - 1; i >= 0; i--) {
+            Connection connection = game.watchers.get(i);
+            if (connection.pending == null) {
+                disconnect(connection);
+            } else {
+                connection.closing = true;
+            }
+        }
+    }
+
+    private void disconnect(Connection connection) {
+        Game game = connection.game;
+        if (game != null) {
+            Connection last = game.watchers.remove(game.watchers.size() - 1);
+            if (last != connection) {
+                game.watchers.set(connection.index, last);
+                last.index = connection.index;
+            }
+            connection.game = null;
+            watchers--;
+            // A game that was never broadcast is only kept for its watchers, whatever id they asked for
+            if (game.watchers.isEmpty() && game.sequence < 0 && games.get(game.id) == game) {
+                games.remove(game.id);
+            }
+        }
+        connection.key.cancel();
+        connection.pending = null;
+        try {
+            connection.channel.close();
+        } catch (IOException ignored) {
+            // The connection is dropped anyway
+        }
+    }
+
+    /**
+     * A position to broadcast, or the end of a game when the position is null.
+     */
+    private static final class Update {
+
+        final long gameId;
+        final CompactPosition position;
+
+        Update(long gameId, CompactPosition position) {
+            this.gameId = gameId;
+            this.position = position;
+        }
+    }
+
+    private final class Game {
+
+        final long id;
+        final List<Connection> watchers = new ArrayList<>();
+        long[] words = new long[CompactPosition.WORDS];
+        int sequence = -1;
+
+        /**
+         * Frames of the positions queued since the last pass, and their number.
+         */
+        final ByteBuffer batch = ByteBuffer.allocate(batchBytes);
+        int frames;
+        boolean updated;
+
+        Game(long id) {
+            this.id = id;
+        }
+    }
+
+    private static final class Connection {
+
+        final SocketChannel channel;
+        SelectionKey key;
+        final ByteBuffer request = ByteBuffer.allocate(8);
+        Game game;
+
+        /**
+         * Index of the connection in the watchers of its game.
+         */
+        int index;
+
+        /**
+         * Data the connection could not take yet, or null when it is up to date.
+         */
+        ByteBuffer pending;
+        boolean closing;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+}
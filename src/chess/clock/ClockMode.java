@@ -0,0 +1,18 @@
+package chess.clock;
+
+/**
+ * How a {@link GameClock} adds time to the players.
+ */
+public enum ClockMode {
+
+    /**
+     * Fischer increment: the increment is added to the time of a player after each of its moves.
+     */
+    INCREMENT,
+
+    /**
+     * Simple delay: the time of a player only starts running after the delay at each of its moves, and a move
+     * made within the delay costs nothing.
+     */
+    DELAY
+}
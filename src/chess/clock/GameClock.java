@@ -0,0 +1,250 @@
+package chess.clock;
+
+import chess.Color;
+
+import java.util.function.Consumer;
+
+/**
+ * Chess clock of a game: the remaining time of each player, of which at most one runs, and a flag that falls
+ * when the running time reaches zero.
+ * <p>
+ * The clock does not need a thread of its own: while a time runs, a single timer of a {@link TimerWheel} is
+ * scheduled at the moment it would reach zero, and it is moved when the player moves, so that pressing the clock
+ * takes constant time and one wheel serves the clocks of many games. A {@link chess.ChessMatch} the clock is set
+ * on presses it after each move and ends with a loss on time once the flag fell.
+ * <p>
+ * The methods are thread-safe: the players press the clock from the threads playing their games while the thread
+ * of the wheel makes the flags fall.
+ */
+public class GameClock {
+
+    private final TimerWheel wheel;
+    private final ClockMode mode;
+    private final long bonusNanos;
+    private final Flag flag = new Flag();
+
+    /**
+     * Remaining time of each player when its time last stopped, indexed by {@link Color#ordinal()}.
+     */
+    private final long[] remainingNanos = new long[2];
+
+    /**
+     * Player whose time runs, or null.
+     */
+    private Color running;
+    private long startNanos;
+
+    private volatile Color flagged;
+    private volatile Consumer<GameClock> listener;
+
+    /**
+     * Creates a stopped clock giving the same time to both players.
+     *
+     * @param wheel         the wheel expiring the flags
+     * @param initialMillis the time of each player at the start of the game
+     * @param bonusMillis   the increment added after each move, or the delay before the time runs at each move
+     * @param mode          whether the bonus is an increment or a delay
+     * @throws IllegalArgumentException if a time is negative, or the initial time zero
+     */
+    public GameClock(TimerWheel wheel, long initialMillis, long bonusMillis, ClockMode mode) {
+        if (initialMillis <= 0 || bonusMillis < 0) {
+            throw new IllegalArgumentException("Invalid time control: " + initialMillis + " ms + " + bonusMillis +
+                    " ms");
+        }
+        this.wheel = wheel;
+        this.mode = mode;
+        bonusNanos = bonusMillis * 1_000_000;
+        remainingNanos[0] = initialMillis * 1_000_000;
+        remainingNanos[1] = initialMillis * 1_000_000;
+    }
+
+    /**
+     * Sets the listener told when a flag falls, on the thread of the wheel, or on the thread that noticed the
+     * flag first. The listener must return quickly, since it delays the flags of the other games.
+     *
+     * @param listener the listener, or null for none
+     */
+    public void setListener(Consumer<GameClock> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts the time of a player, typically white at the start of the game.
+     *
+     * @param player the player to move
+     * @throws IllegalStateException if a flag fell
+     */
+    public synchronized void start(Color player) {
+        checkNotFlagged();
+        if (running != null) {
+            stopRunning();
+        }
+        startRunning(player);
+    }
+
+    /**
+     * Stops the time of the player who just moved, adding the increment in increment mode, and starts the time of
+     * the opponent. If the time of the player ran out before the wheel made its flag fall, the flag falls now.
+     *
+     * @param mover the player who moved
+     * @return true if the clock was pressed, false if the flag of the player fell
+     * @throws IllegalStateException if the flag of the opponent fell
+     */
+    public boolean press(Color mover) {
+        synchronized (this) {
+            Color opponent = mover == Color.WHITE ? Color.BLACK : Color.WHITE;
+            if (flagged == opponent) {
+                throw new IllegalStateException("The flag of " + opponent + " fell");
+            }
+            if (flagged == null) {
+                if (running == mover) {
+                    stopRunning();
+                }
+                if (remainingNanos[mover.ordinal()] > 0) {
+                    if (mode == ClockMode.INCREMENT) {
+                        remainingNanos[mover.ordinal()] += bonusNanos;
+                    }
+                    startRunning(opponent);
+                    return true;
+                }
+                flagged = mover;
+            } else {
+                return false;
+            }
+        }
+        notifyListener();
+        return false;
+    }
+
+    /**
+     * Stops the running time, when the game ends or is adjourned.
+     */
+    public synchronized void stop() {
+        if (running != null) {
+            stopRunning();
+        }
+    }
+
+    /**
+     * Returns the remaining time of a player.
+     *
+     * @param player the player
+     * @return the time in milliseconds, 0 once the flag fell
+     */
+    public synchronized long getRemainingMillis(Color player) {
+        long remaining = remainingNanos[player.ordinal()];
+        if (running == player) {
+            remaining -= used(System.nanoTime() - startNanos);
+        }
+        return Math.max(0, remaining) / 1_000_000;
+    }
+
+    /**
+     * Returns the player whose time runs.
+     *
+     * @return the player, or null if the clock is stopped
+     */
+    public synchronized Color getRunning() {
+        return running;
+    }
+
+    /**
+     * Returns the player whose flag fell.
+     *
+     * @return the player who lost on time, or null if no flag fell
+     */
+    public Color getFlagged() {
+        return flagged;
+    }
+
+    /**
+     * Makes the flag of the running player fall if its time ran out, for a thread that wants to know now rather
+     * than at the next tick of the wheel.
+     *
+     * @return the player whose flag fell, or null if none did
+     */
+    public Color checkFlag() {
+        if (flagged == null && expireIfDue(false)) {
+            notifyListener();
+        }
+        return flagged;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("white %d ms, black %d ms%s", getRemainingMillis(Color.WHITE),
+                getRemainingMillis(Color.BLACK), flagged != null ? ", " + flagged + " flag fell" : "");
+    }
+
+    private void startRunning(Color player) {
+        running = player;
+        startNanos = System.nanoTime();
+        long delay = mode == ClockMode.DELAY ? bonusNanos : 0;
+        // Rounded up, so that the flag never falls early
+        wheel.schedule(flag, (remainingNanos[player.ordinal()] + delay + 999_999) / 1_000_000);
+    }
+
+    private void stopRunning() {
+        remainingNanos[running.ordinal()] -= used(System.nanoTime() - startNanos);
+        running = null;
+        wheel.cancel(flag);
+    }
+
+    /**
+     * Returns the time charged to the running player for a thinking time.
+     */
+    private long used(long elapsedNanos) {
+        return mode == ClockMode.DELAY ? Math.max(0, elapsedNanos - bonusNanos) : elapsedNanos;
+    }
+
+    private void checkNotFlagged() {
+        if (flagged != null) {
+            throw new IllegalStateException("The flag of " + flagged + " fell");
+        }
+    }
+
+    /**
+     * Makes the flag of the running player fall if its time ran out.
+     *
+     * @param reschedule whether to schedule the flag again for the time left if it did not run out, since the
+     *                   wheel rounds the deadlines to its ticks
+     * @return true if the flag fell
+     */
+    private synchronized boolean expireIfDue(boolean reschedule) {
+        if (running == null || flagged != null) {
+            return false;
+        }
+        long left = remainingNanos[running.ordinal()] - used(System.nanoTime() - startNanos);
+        if (left > 0) {
+            if (reschedule) {
+                wheel.schedule(flag, (left + 999_999) / 1_000_000);
+            }
+            return false;
+        }
+        remainingNanos[running.ordinal()] = 0;
+        flagged = running;
+        running = null;
+        wheel.cancel(flag);
+        return true;
+    }
+
+    private void notifyListener() {
+        Consumer<GameClock> current = listener;
+        if (current != null) {
+            current.accept(this);
+        }
+    }
+
+    /**
+     * Timer of the running time.
+     */
+    private final class Flag extends WheelTimer {
+
+        @Override
+        void expire() {
+            if (expireIfDue(true)) {
+                notifyListener();
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package chess.clock;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hierarchical timing wheel expiring the timers of many {@link GameClock}s on a single thread, with a tick of one
+ * millisecond.
+ * <p>
+ * The wheel has {@value #LEVELS} levels of {@value #SLOTS} slots. The first level holds the timers due within
+ * 256 ticks, one slot per tick; each next level holds the timers due 256 times later, one slot per turn of the
+ * level below. Whenever a level completes a turn, the next slot of the level above is emptied into the lower
+ * levels. Each slot is a doubly linked list of timers, so scheduling, rescheduling and cancelling a timer take
+ * constant time whatever the number of timers, and a tick only visits the timers that expire or move down a level.
+ * Timers further away than about 49 days expire at that horizon, and their owner schedules them again.
+ * <p>
+ * Scheduling and cancelling are thread-safe, under a lock held for a few instructions. The thread of the wheel
+ * advances it every millisecond and calls the expired timers outside the lock.
+ */
+public class TimerWheel implements Closeable {
+
+    private static final int LEVELS = 4;
+    private static final int SLOT_BITS = 8;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    /**
+     * Largest number of ticks between now and a deadline.
+     */
+    private static final long HORIZON = (1L << (LEVELS * SLOT_BITS)) - 1;
+
+    private final WheelTimer[] slots = new WheelTimer[LEVELS * SLOTS];
+    private final long startNanos = System.nanoTime();
+    private final Thread thread;
+
+    /**
+     * Last tick processed, in milliseconds since the creation of the wheel.
+     */
+    private long tick;
+    private int scheduled;
+    private long expirations;
+    private WheelTimer[] expired = new WheelTimer[64];
+    private volatile boolean closed;
+
+    /**
+     * Creates a wheel and starts its thread.
+     */
+    public TimerWheel() {
+        thread = new Thread(this::run, "timer-wheel");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the number of timers scheduled.
+     *
+     * @return the number of timers waiting to expire
+     */
+    public synchronized int getScheduled() {
+        return scheduled;
+    }
+
+    /**
+     * Returns the number of timers expired since the wheel was created.
+     *
+     * @return the number of expirations
+     */
+    public synchronized long getExpirations() {
+        return expirations;
+    }
+
+    /**
+     * Returns the CPU time used by the thread of the wheel.
+     *
+     * @return the CPU time in nanoseconds, or -1 if the JVM does not measure it
+     */
+    public long getCpuNanos() {
+        return ManagementFactory.getThreadMXBean().getThreadCpuTime(thread.getId());
+    }
+
+    /**
+     * Stops the thread of the wheel. Scheduled timers no longer expire.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Schedules a timer, or reschedules it if it is already scheduled.
+     *
+     * @param timer  the timer
+     * @param millis the delay before it expires; the timer expires at the next tick at the earliest, and up to a
+     *               tick after the delay
+     */
+    synchronized void schedule(WheelTimer timer, long millis) {
+        if (timer.slot >= 0) {
+            unlink(timer);
+        } else {
+            scheduled++;
+        }
+        // From the current time rather than from the last tick, which lags behind while the thread sleeps, rounded
+        // up so that the timer never expires early
+        long now = (System.nanoTime() - startNanos + 999_999) / 1_000_000;
+        timer.deadline = Math.min(tick + HORIZON, Math.max(tick + 1, now + Math.min(millis, HORIZON)));
+        link(timer);
+    }
+
+    /**
+     * Cancels a timer.
+     *
+     * @param timer the timer
+     * @return true if it was scheduled
+     */
+    synchronized boolean cancel(WheelTimer timer) {
+        if (timer.slot < 0) {
+            return false;
+        }
+        unlink(timer);
+        scheduled--;
+        return true;
+    }
+
+    private void run() {
+        while (!closed) {
+            long now = (System.nanoTime() - startNanos) / 1_000_000;
+            int count = advance(now);
+            for (int i = 0; i < count; i++) {
+                WheelTimer timer = expired[i];
+                expired[i] = null;
+                timer.expire();
+            }
+            LockSupport.parkNanos(startNanos + (now + 1) * 1_000_000 - System.nanoTime());
+        }
+    }
+
+    /**
+     * Processes the ticks up to the given one, and collects the expired timers.
+     *
+     * @param now the current tick
+     * @return the number of expired timers, at the start of {@link #expired}
+     */
+    private synchronized int advance(long now) {
+        if (scheduled == 0) {
+            // Every slot is empty, so no tick has anything to do
+            tick = Math.max(tick, now);
+            return 0;
+        }
+        int count = 0;
+        while (tick < now) {
+            tick++;
+            // When a level completes a turn, the next slot of the level above moves down
+            for (int level = 1; level < LEVELS && (tick >>> (SLOT_BITS * (level - 1)) & SLOT_MASK) == 0; level++) {
+                int index = level * SLOTS + (int) (tick >>> (SLOT_BITS * level) & SLOT_MASK);
+                WheelTimer timer = slots[index];
+                slots[index] = null;
+                while (timer != null) {
+                    WheelTimer next = timer.next;
+                    link(timer);
+                    timer = next;
+                }
+            }
+            int index = (int) (tick & SLOT_MASK);
+            for (WheelTimer timer = slots[index]; timer != null; timer = timer.next) {
+                timer.slot = -1;
+                if (count == expired.length) {
+                    expired = Arrays.copyOf(expired, count * 2);
+                }
+                expired[count++] = timer;
+            }
+            slots[index] = null;
+        }
+        scheduled -= count;
+        expirations += count;
+        return count;
+    }
+
+    /**
+     * Adds a timer to the slot of its deadline.
+     */
+    private void link(WheelTimer timer) {
+        long delta = timer.deadline - tick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int index = level * SLOTS + (int) (timer.deadline >>> (SLOT_BITS * level) & SLOT_MASK);
+        WheelTimer head = slots[index];
+        timer.previous = null;
+        timer.next = head;
+        if (head != null) {
+            head.previous = timer;
+        }
+        slots[index] = timer;
+        timer.slot = index;
+    }
+
+    /**
+     * Removes a timer from its slot.
+     */
+    private void unlink(WheelTimer timer) {
+        if (timer.previous != null) {
+            timer.previous.next = timer.next;
+        } else {
+            slots[timer.slot] = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.previous = timer.previous;
+        }
+        timer.previous = null;
+        timer.next = null;
+        timer.slot = -1;
+    }
+}
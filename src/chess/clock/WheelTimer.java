@@ -0,0 +1,27 @@
+package chess.clock;
+
+/**
+ * Timer scheduled in a {@link TimerWheel}, linked into the list of its slot so that scheduling and cancelling take
+ * constant time. The fields belong to the wheel and are only accessed under its lock.
+ */
+abstract class WheelTimer {
+
+    WheelTimer previous;
+    WheelTimer next;
+
+    /**
+     * Tick at which the timer expires.
+     */
+    long deadline;
+
+    /**
+     * Index of the slot holding the timer, or -1 if it is not scheduled.
+     */
+    int slot = -1;
+
+    /**
+     * Called on the thread of the wheel once the deadline is reached, without the lock of the wheel. The timer may
+     * have been scheduled again meanwhile, so the call must check that it is still due.
+     */
+    abstract void expire();
+}
@@ -0,0 +1,174 @@
+package chess.engine;
+
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.Color;
+import chess.MoveGenerator;
+import chess.PieceSquareTables;
+import chess.PieceType;
+
+/**
+ * Static evaluation of chess positions.
+ * <p>
+ * The material and piece-square part is read from the scores that {@link ChessMatch} keeps up to date on
+ * every move, so only mobility and king safety are computed from the board at each call. Middlegame and
+ * endgame scores are blended by the game phase.
+ */
+public class Evaluator {
+
+    // Per piece type: mobility baseline, middlegame and endgame weight per square, weight of a king zone attack
+    private static final int[] MOBILITY_BASELINE = {0, 4, 6, 7, 13, 0};
+    private static final int[] MOBILITY_MIDDLEGAME = {0, 4, 5, 2, 1, 0};
+    private static final int[] MOBILITY_ENDGAME = {0, 4, 5, 4, 2, 0};
+    private static final int[] KING_ATTACK_WEIGHT = {0, 2, 2, 3, 5, 0};
+
+    private static final int SHIELD_PAWN_BONUS = 12;
+    private static final int MAX_KING_ATTACK_PENALTY = 400;
+
+    /**
+     * Evaluates the current position of a match.
+     *
+     * @param match the match to be evaluated
+     * @return the score in centipawns, positive when the player to move is better
+     */
+    public int evaluate(ChessMatch match) {
+        return evaluate(match, match.getMiddlegameScore(), match.getEndgameScore(), match.getPhase());
+    }
+
+    /**
+     * Evaluates the current position of a match, recomputing the material and piece-square part from the board
+     * instead of reading the incremental scores. Slow; meant to check the incremental scores.
+     *
+     * @param match the match to be evaluated
+     * @return the score in centipawns, positive when the player to move is better
+     */
+    public int evaluateFromScratch(ChessMatch match) {
+        int[] scores = scanMaterial(match);
+        return evaluate(match, scores[0], scores[1], scores[2]);
+    }
+
+    /**
+     * Checks that the incremental material and piece-square scores of a match match the board.
+     *
+     * @param match the match to be checked
+     * @throws IllegalStateException if an incremental score differs from the score recomputed from the board
+     */
+    public void verify(ChessMatch match) {
+        int[] scores = scanMaterial(match);
+        if (scores[0] != match.getMiddlegameScore() || scores[1] != match.getEndgameScore() ||
+                scores[2] != match.getPhase()) {
+            throw new IllegalStateException("Incremental evaluation out of sync: middlegame " +
+                    match.getMiddlegameScore() + "/" + scores[0] + ", endgame " + match.getEndgameScore() + "/" +
+                    scores[1] + ", phase " + match.getPhase() + "/" + scores[2]);
+        }
+    }
+
+    private int evaluate(ChessMatch match, int middlegame, int endgame, int phase) {
+        int whiteKing = match.getKingSquare(Color.WHITE);
+        int blackKing = match.getKingSquare(Color.BLACK);
+
+        int whiteAttacks = 0;
+        int blackAttacks = 0;
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = match.getPiece(square);
+            if (piece == null || piece.getType() == PieceType.PAWN || piece.getType() == PieceType.KING) {
+                continue;
+            }
+            boolean white = piece.getColor() == Color.WHITE;
+            int result = mobility(match, piece, square, white ? blackKing : whiteKing);
+            int type = piece.getType().ordinal();
+            int moves = (result & 0xFF) - MOBILITY_BASELINE[type];
+            int sign = white ? 1 : -1;
+            middlegame += sign * moves * MOBILITY_MIDDLEGAME[type];
+            endgame += sign * moves * MOBILITY_ENDGAME[type];
+            if (white) {
+                blackAttacks += (result >>> 8) * KING_ATTACK_WEIGHT[type];
+            } else {
+                whiteAttacks += (result >>> 8) * KING_ATTACK_WEIGHT[type];
+            }
+        }
+        middlegame += kingSafety(match, whiteKing, Color.WHITE, whiteAttacks);
+        middlegame -= kingSafety(match, blackKing, Color.BLACK, blackAttacks);
+
+        phase = Math.min(phase, PieceSquareTables.TOTAL_PHASE);
+        int score = (middlegame * phase + endgame * (PieceSquareTables.TOTAL_PHASE - phase)) /
+                PieceSquareTables.TOTAL_PHASE;
+        return match.getCurrentPlayer() == Color.WHITE ? score : -score;
+    }
+
+    /**
+     * Counts the squares a knight, bishop, rook or queen can move to, and how many of them are next to the enemy king.
+     *
+     * @return {@code kingZoneAttacks << 8 | moves}
+     */
+    private static int mobility(ChessMatch match, ChessPiece piece, int square, int enemyKing) {
+        int moves = 0;
+        int attacks = 0;
+        if (piece.getType() == PieceType.KNIGHT) {
+            for (int to : MoveGenerator.knightTargets(square)) {
+                ChessPiece target = match.getPiece(to);
+                if (target == null || target.getColor() != piece.getColor()) {
+                    moves++;
+                    attacks += isNextTo(to, enemyKing) ? 1 : 0;
+                }
+            }
+            return attacks << 8 | moves;
+        }
+        int first = piece.getType() == PieceType.BISHOP ? MoveGenerator.DIAGONALS : 0;
+        int last = piece.getType() == PieceType.ROOK ? MoveGenerator.DIAGONALS : MoveGenerator.DIRECTIONS;
+        for (int d = first; d < last; d++) {
+            for (int to : MoveGenerator.ray(square, d)) {
+                ChessPiece target = match.getPiece(to);
+                if (target == null || target.getColor() != piece.getColor()) {
+                    moves++;
+                    attacks += isNextTo(to, enemyKing) ? 1 : 0;
+                }
+                if (target != null) {
+                    break;
+                }
+            }
+        }
+        return attacks << 8 | moves;
+    }
+
+    /**
+     * Scores the safety of a king: a bonus for each own pawn sheltering it and a penalty growing with the square
+     * of the weighted attacks on the squares around it.
+     */
+    private static int kingSafety(ChessMatch match, int king, Color color, int attacks) {
+        int forward = color == Color.WHITE ? -1 : 1;
+        int shield = 0;
+        for (int distance = 1; distance <= 2; distance++) {
+            int r = (king >>> 3) + forward * distance;
+            for (int c = (king & 7) - 1; c <= (king & 7) + 1; c++) {
+                if (r >= 0 && r < 8 && c >= 0 && c < 8) {
+                    ChessPiece piece = match.getPiece(r * 8 + c);
+                    if (piece != null && piece.getType() == PieceType.PAWN && piece.getColor() == color) {
+                        shield++;
+                    }
+                }
+            }
+        }
+        return shield * SHIELD_PAWN_BONUS - Math.min(attacks * attacks, MAX_KING_ATTACK_PENALTY);
+    }
+
+    private static boolean isNextTo(int square, int king) {
+        return Math.abs((square >>> 3) - (king >>> 3)) <= 1 && Math.abs((square & 7) - (king & 7)) <= 1;
+    }
+
+    /**
+     * Recomputes the middlegame score, endgame score and game phase from the board.
+     */
+    private static int[] scanMaterial(ChessMatch match) {
+        int[] scores = new int[3];
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = match.getPiece(square);
+            if (piece != null) {
+                scores[0] += PieceSquareTables.middlegame(piece, square);
+                scores[1] += PieceSquareTables.endgame(piece, square);
+                scores[2] += PieceSquareTables.phase(piece.getType());
+            }
+        }
+        return scores;
+    }
+}
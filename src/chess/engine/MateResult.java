@@ -0,0 +1,123 @@
+package chess.engine;
+
+import chess.Move;
+
+import java.util.Arrays;
+
+/**
+ * Outcome of a search for a forced mate by a {@link MateSolver}.
+ */
+public final class MateResult {
+
+    private final int moves;
+    private final int provedNoMate;
+    private final boolean timedOut;
+    private final int[] line;
+    private final int[] alternatives;
+    private final long nodes;
+    private final long nanos;
+
+    MateResult(int moves, int provedNoMate, boolean timedOut, int[] line, int[] alternatives, long nodes,
+               long nanos) {
+        this.moves = moves;
+        this.provedNoMate = provedNoMate;
+        this.timedOut = timedOut;
+        this.line = line;
+        this.alternatives = alternatives;
+        this.nodes = nodes;
+        this.nanos = nanos;
+    }
+
+    /**
+     * Checks if a forced mate was found.
+     *
+     * @return true if the player to move mates by force
+     */
+    public boolean isMate() {
+        return moves > 0;
+    }
+
+    /**
+     * Returns the number of moves of the shortest forced mate.
+     *
+     * @return n for a mate in n, or 0 if no mate was found
+     */
+    public int getMoves() {
+        return moves;
+    }
+
+    /**
+     * Returns the number of moves within which the player to move was proved to have no forced mate.
+     *
+     * @return n if there is no mate in n or fewer moves, 0 if nothing was proved
+     */
+    public int getProvedNoMate() {
+        return provedNoMate;
+    }
+
+    /**
+     * Checks if the time limit ended the search before it could prove or disprove a mate within the maximum
+     * number of moves.
+     *
+     * @return true if the search was stopped
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Returns the mating line: the moves of the attacker are shortest mates, and the replies of the defender
+     * delay the mate the longest.
+     *
+     * @return the packed moves of the line, ending with the mating move, or an empty array if no mate was found
+     */
+    public int[] getLine() {
+        return line.clone();
+    }
+
+    /**
+     * Returns the first moves, other than the first move of the line, that also mate in {@link #getMoves()}.
+     *
+     * @return the packed moves, in generation order
+     */
+    public int[] getAlternatives() {
+        return alternatives.clone();
+    }
+
+    /**
+     * Returns the number of positions expanded by the search.
+     *
+     * @return the number of nodes
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the time taken by the search.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        if (isMate()) {
+            sb.append("mate in ").append(moves).append(':');
+            Arrays.stream(line).forEach(move -> sb.append(' ').append(Move.toString(move)));
+            if (alternatives.length > 0) {
+                sb.append(", also");
+                Arrays.stream(alternatives).forEach(move -> sb.append(' ').append(Move.toString(move)));
+            }
+        } else {
+            sb.append(provedNoMate > 0 ? "no mate in " + provedNoMate : "no mate found");
+            if (timedOut) {
+                sb.append(" (timed out)");
+            }
+        }
+        return sb.append(", ").append(nodes).append(" nodes").toString();
+    }
+}
@@ -0,0 +1,404 @@
+package chess.engine;
+
+import chess.ChessMatch;
+import chess.Move;
+import chess.MoveGenerator;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Solver of forced mates by depth-first proof-number search (df-pn), for checking "mate in n" puzzles.
+ * <p>
+ * The tree is an AND/OR tree: the player to move, the attacker, only plays checking moves, and a position of the
+ * attacker is proved when one of its moves leads to a proved position; a position of the defender is proved when
+ * it has no legal move, being in check, or when all its moves lead to proved positions. Each position holds a
+ * proof number and a disproof number, the least numbers of leaves to prove and to disprove it, and the search
+ * always expands the most proving position, with thresholds so that it goes down the tree without returning to
+ * the root after each expansion. Unlike alpha-beta, it needs no evaluation and concentrates on the forcing lines.
+ * <p>
+ * Positions are counted with the number of moves left to the attacker, which is part of their key in the table,
+ * so that a proof is a mate within that many moves and the tree has no cycles. The solver looks for a mate in 1,
+ * then in 2 and so on, reusing the table, so the first mate found is the shortest. The mating line and the
+ * alternative first moves are then read from the table, with a few more searches where it lacks entries.
+ * <p>
+ * A solver is not thread-safe, except for {@link #stop()}; parallel solvers use one instance per thread.
+ */
+public class MateSolver {
+
+    /**
+     * Maximum number of moves of a mate.
+     */
+    public static final int MAX_MOVES = 32;
+
+    /**
+     * Proof or disproof number of a position that is disproved or proved.
+     */
+    private static final int INFINITY = 1 << 30;
+
+    /**
+     * Number of nodes between two readings of the clock; a power of two.
+     */
+    private static final int NODES_PER_TIME_CHECK = 1024;
+
+    private static final int ENTRY_BYTES = 16;
+
+    /**
+     * Keys of the number of moves left to the attacker, mixed into the keys of the positions.
+     */
+    private static final long[] MOVES_KEYS = new SplittableRandom(0x6D617465L).longs(MAX_MOVES + 1).toArray();
+
+    private final long[] keys;
+    private final long[] numbers;
+    private final int mask;
+
+    /**
+     * Moves and keys of the children of the positions on the current path, per ply.
+     */
+    private final int[][] moves = new int[2 * MAX_MOVES + 1][256];
+    private final long[][] childKeys = new long[2 * MAX_MOVES + 1][256];
+
+    private volatile boolean stopRequested;
+
+    private ChessMatch match;
+    private long nodes;
+    private long deadline;
+    private boolean stopped;
+
+    /**
+     * Creates a solver whose table uses about the given amount of memory.
+     *
+     * @param megabytes the size of the table in megabytes, at least 1
+     * @throws IllegalArgumentException if the size is less than 1 megabyte
+     */
+    public MateSolver(int megabytes) {
+        if (megabytes < 1) {
+            throw new IllegalArgumentException("The table size must be at least 1 MB");
+        }
+        int entries = Integer.highestOneBit((int) Math.min(1L << 30, (long) megabytes * (1 << 20) / ENTRY_BYTES));
+        keys = new long[entries];
+        numbers = new long[entries];
+        mask = entries - 1;
+    }
+
+    /**
+     * Asks the running search to stop as soon as possible, from any thread. A request made just before a search
+     * starts stops that search.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    /**
+     * Looks for the shortest forced mate of the player to move, without a time limit.
+     *
+     * @param match    the match, unchanged when the method returns
+     * @param maxMoves the maximum number of moves of the mate
+     * @return the result
+     * @throws IllegalArgumentException if the maximum number of moves is out of range
+     */
+    public MateResult solve(ChessMatch match, int maxMoves) {
+        return solve(match, maxMoves, 0);
+    }
+
+    /**
+     * Looks for the shortest forced mate of the player to move within a time limit. The limit applies to the
+     * proof; reading the line of a mate found in time may take a little longer.
+     *
+     * @param match    the match, unchanged when the method returns
+     * @param maxMoves the maximum number of moves of the mate
+     * @param millis   the time limit in milliseconds, or 0 for none
+     * @return the result
+     * @throws IllegalArgumentException if the maximum number of moves is out of range
+     */
+    public MateResult solve(ChessMatch match, int maxMoves, long millis) {
+        if (maxMoves < 1 || maxMoves > MAX_MOVES) {
+            throw new IllegalArgumentException("The number of moves must be between 1 and " + MAX_MOVES);
+        }
+        try {
+            return prove(match, maxMoves, millis);
+        } finally {
+            // A request arriving after the proof ended must not stop the next one
+            stopRequested = false;
+            this.match = null;
+        }
+    }
+
+    private MateResult prove(ChessMatch match, int maxMoves, long millis) {
+        long start = System.nanoTime();
+        this.match = match;
+        nodes = 0;
+        deadline = millis > 0 ? start + millis * 1_000_000 : Long.MAX_VALUE;
+        stopped = stopRequested;
+        stopRequested = false;
+        int provedNoMate = 0;
+        int mate = 0;
+        if (!match.getGameResult().isOver()) {
+            for (int n = 1; n <= maxMoves && !stopped; n++) {
+                long key = key(match.getPositionKey(), n);
+                search(0, n, true, key, INFINITY, INFINITY);
+                if (stopped) {
+                    break;
+                }
+                if (proofNumber(probe(key)) == 0) {
+                    mate = n;
+                    break;
+                }
+                provedNoMate = n;
+            }
+        }
+        int[] line = new int[0];
+        int[] alternatives = new int[0];
+        if (mate > 0) {
+            deadline = Long.MAX_VALUE;
+            stopped = false;
+            line = line(mate);
+            alternatives = alternatives(mate, line[0]);
+        }
+        return new MateResult(mate, provedNoMate, mate == 0 && stopped, line, alternatives, nodes,
+                System.nanoTime() - start);
+    }
+
+    /**
+     * Removes all the entries of the table.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(numbers, 0);
+    }
+
+    /**
+     * Searches a position until its proof or disproof number reaches its threshold, and stores its numbers.
+     *
+     * @param ply               the distance from the position the search started from
+     * @param movesLeft         the number of moves left to the attacker, this one included if it is to move
+     * @param attacker          true if the attacker is to move
+     * @param key               the key of the position and of the number of moves left
+     * @param proofThreshold    the proof number at which to return
+     * @param disproofThreshold the disproof number at which to return
+     */
+    private void search(int ply, int movesLeft, boolean attacker, long key, int proofThreshold,
+                        int disproofThreshold) {
+        if ((++nodes & (NODES_PER_TIME_CHECK - 1)) == 0 && (System.nanoTime() > deadline || stopRequested)) {
+            stopped = true;
+        }
+        if (stopped) {
+            return;
+        }
+        int count = expand(ply, movesLeft, attacker);
+        if (count == 0) {
+            // The attacker has no check left, or the defender is checkmated
+            store(key, attacker ? INFINITY : 0, attacker ? 0 : INFINITY);
+            return;
+        }
+        if (!attacker && movesLeft == 0) {
+            // The defender escaped the last check
+            store(key, INFINITY, 0);
+            return;
+        }
+        int[] children = moves[ply];
+        long[] keysOfChildren = childKeys[ply];
+        int childMovesLeft = attacker ? movesLeft - 1 : movesLeft;
+        while (true) {
+            // The number minimized over the children, the one summed, and the best child with its numbers
+            int least = INFINITY;
+            int secondLeast = INFINITY;
+            int sum = 0;
+            int best = 0;
+            int bestSummed = 0;
+            for (int i = 0; i < count; i++) {
+                long entry = probe(keysOfChildren[i]);
+                int minimized = attacker ? proofNumber(entry) : disproofNumber(entry);
+                int summed = attacker ? disproofNumber(entry) : proofNumber(entry);
+                sum = Math.min(INFINITY, sum + summed);
+                if (minimized < least) {
+                    secondLeast = least;
+                    least = minimized;
+                    best = i;
+                    bestSummed = summed;
+                } else if (minimized < secondLeast) {
+                    secondLeast = minimized;
+                }
+            }
+            int proof = attacker ? least : sum;
+            int disproof = attacker ? sum : least;
+            store(key, proof, disproof);
+            if (proof >= proofThreshold || disproof >= disproofThreshold || stopped) {
+                return;
+            }
+            // The best child is searched until it is no longer best by a margin, the 1 + epsilon trick, which
+            // saves many returns to this position
+            int margin = Math.min(INFINITY, secondLeast + secondLeast / 4 + 1);
+            int childProof;
+            int childDisproof;
+            if (attacker) {
+                childProof = Math.min(proofThreshold, margin);
+                childDisproof = disproofThreshold - disproof + bestSummed;
+            } else {
+                childProof = proofThreshold - proof + bestSummed;
+                childDisproof = Math.min(disproofThreshold, margin);
+            }
+            match.makeMove(children[best]);
+            search(ply + 1, childMovesLeft, !attacker, keysOfChildren[best], childProof, childDisproof);
+            match.undoMove();
+        }
+    }
+
+    /**
+     * Lists the children of a position: the legal checking moves of the attacker, or the legal moves of the
+     * defender, only the first one if the attacker has no move left.
+     *
+     * @param ply       the index of the lists to fill
+     * @param movesLeft the number of moves left to the attacker
+     * @param attacker  true if the attacker is to move
+     * @return the number of children
+     */
+    private int expand(int ply, int movesLeft, boolean attacker) {
+        if (attacker && movesLeft == 0) {
+            return 0;
+        }
+        int[] list = moves[ply];
+        long[] keysOfChildren = childKeys[ply];
+        int generated = MoveGenerator.generate(match, MoveGenerator.ALL, list, 0);
+        int childMovesLeft = attacker ? movesLeft - 1 : movesLeft;
+        int count = 0;
+        for (int i = 0; i < generated; i++) {
+            int move = list[i];
+            if (match.makeMove(move)) {
+                boolean child = !attacker || match.getCheck();
+                long key = key(match.getPositionKey(), childMovesLeft);
+                match.undoMove();
+                if (child) {
+                    list[count] = move;
+                    keysOfChildren[count++] = key;
+                    if (!attacker && movesLeft == 0) {
+                        break;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Reads the mating line from the position of the match, playing first moves that mate in the given number
+     * of moves and then the replies that delay the mate the longest.
+     *
+     * @param mate the number of moves of the shortest mate
+     * @return the packed moves of the line
+     */
+    private int[] line(int mate) {
+        int[] line = new int[2 * mate - 1];
+        int length = 0;
+        for (int n = mate; n > 0; n--) {
+            int count = expand(0, n, true);
+            int move = Move.NONE;
+            for (int i = 0; i < count && move == Move.NONE; i++) {
+                match.makeMove(moves[0][i]);
+                if (proves(n - 1, false)) {
+                    move = moves[0][i];
+                } else {
+                    match.undoMove();
+                }
+            }
+            if (move == Move.NONE) {
+                // The table lost the proof, which cannot happen with a search of unlimited time
+                break;
+            }
+            line[length++] = move;
+            count = expand(0, n - 1, false);
+            if (count == 0) {
+                break;
+            }
+            int reply = moves[0][0];
+            for (int i = 0; i < count; i++) {
+                match.makeMove(moves[0][i]);
+                boolean faster = proves(n - 2, true);
+                match.undoMove();
+                if (!faster) {
+                    reply = moves[0][i];
+                    break;
+                }
+            }
+            match.makeMove(reply);
+            line[length++] = reply;
+        }
+        for (int i = 0; i < length; i++) {
+            match.undoMove();
+        }
+        return Arrays.copyOf(line, length);
+    }
+
+    /**
+     * Lists the first moves, other than the given one, that mate in the given number of moves.
+     *
+     * @param mate  the number of moves of the shortest mate
+     * @param first the first move of the line
+     * @return the packed moves
+     */
+    private int[] alternatives(int mate, int first) {
+        int count = expand(0, mate, true);
+        int[] candidates = Arrays.copyOf(moves[0], count);
+        int[] alternatives = new int[count];
+        int found = 0;
+        for (int move : candidates) {
+            if (move != first) {
+                match.makeMove(move);
+                if (proves(mate - 1, false)) {
+                    alternatives[found++] = move;
+                }
+                match.undoMove();
+            }
+        }
+        return Arrays.copyOf(alternatives, found);
+    }
+
+    /**
+     * Searches the current position of the match until it is proved or disproved.
+     *
+     * @param movesLeft the number of moves left to the attacker
+     * @param attacker  true if the attacker is to move
+     * @return true if the attacker mates within the number of moves
+     */
+    private boolean proves(int movesLeft, boolean attacker) {
+        if (movesLeft < 0) {
+            return false;
+        }
+        long key = key(match.getPositionKey(), movesLeft);
+        long entry = probe(key);
+        if (proofNumber(entry) != 0 && disproofNumber(entry) != 0) {
+            search(1, movesLeft, attacker, key, INFINITY, INFINITY);
+            entry = probe(key);
+        }
+        return proofNumber(entry) == 0;
+    }
+
+    private static long key(long positionKey, int movesLeft) {
+        return positionKey ^ MOVES_KEYS[movesLeft];
+    }
+
+    /**
+     * Returns the numbers of a position.
+     *
+     * @param key the key of the position
+     * @return the proof number in the high int and the disproof number in the low int, 1 and 1 if unknown
+     */
+    private long probe(long key) {
+        int index = (int) key & mask;
+        return keys[index] == key ? numbers[index] : 1L << 32 | 1;
+    }
+
+    private void store(long key, int proof, int disproof) {
+        int index = (int) key & mask;
+        keys[index] = key;
+        numbers[index] = (long) proof << 32 | disproof;
+    }
+
+    private static int proofNumber(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    private static int disproofNumber(long entry) {
+        return (int) entry;
+    }
+}
@@ -0,0 +1,260 @@
+package chess.engine;
+
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.Move;
+import chess.MoveGenerator;
+import chess.PieceType;
+import chess.StaticExchange;
+
+/**
+ * Returns the pseudo-legal moves of a position one at a time, best candidates first, generating each group of
+ * moves only when the previous group is exhausted.
+ * <p>
+ * The stages are: the hash move, the noisy moves ordered by most valuable victim then least valuable attacker,
+ * the two killer moves and the counter move, the quiet moves ordered by history score, and last the captures
+ * that lose material according to {@link StaticExchange}. A beta cutoff on the hash move therefore costs no move
+ * generation at all, and a cutoff on a capture or killer skips generating the quiet moves. Noisy and quiet moves
+ * are selected lazily, one pass per returned move, instead of being sorted.
+ * <p>
+ * In quiescence mode only the noisy moves are returned, and losing captures are pruned instead of deferred.
+ * <p>
+ * A picker is reused across nodes: {@link #init} resets it without allocating.
+ */
+public class MovePicker {
+
+    private static final int HASH = 0;
+    private static final int GENERATE_NOISY = 1;
+    private static final int NOISY = 2;
+    private static final int KILLER_1 = 3;
+    private static final int KILLER_2 = 4;
+    private static final int COUNTER = 5;
+    private static final int GENERATE_QUIET = 6;
+    private static final int QUIET = 7;
+    private static final int BAD_NOISY = 8;
+    private static final int UNORDERED = 9;
+    private static final int DONE = 10;
+
+    private final int[] moves = new int[256];
+    private final int[] scores = new int[256];
+    private final int[] badMoves = new int[256];
+    private int count;
+    private int next;
+    private int badCount;
+    private int stage;
+    private boolean quiescence;
+
+    private ChessMatch match;
+    private OrderingTables tables;
+    private int hashMove;
+    private int killer1;
+    private int killer2;
+    private int counterMove;
+
+    /**
+     * Prepares the picker for a position.
+     *
+     * @param match          the match in the position to be searched
+     * @param tables         the ordering tables of the searching thread
+     * @param hashMove       the move stored for the position in the transposition table, or {@link Move#NONE}
+     * @param ply            the distance from the root
+     * @param previousPiece  the index of the piece moved by the previous move, or -1 at the root
+     * @param previousTarget the target square of the previous move
+     * @param ordered        false to return the moves in generation order, without any ordering heuristic
+     */
+    public void init(ChessMatch match, OrderingTables tables, int hashMove, int ply, int previousPiece,
+                     int previousTarget, boolean ordered) {
+        this.match = match;
+        this.tables = tables;
+        this.hashMove = hashMove;
+        killer1 = tables.killer(ply, 0);
+        killer2 = tables.killer(ply, 1);
+        counterMove = previousPiece < 0 ? Move.NONE : tables.counterMove(previousPiece, previousTarget);
+        quiescence = false;
+        count = 0;
+        next = 0;
+        badCount = 0;
+        if (ordered) {
+            stage = HASH;
+        } else {
+            count = MoveGenerator.generate(match, MoveGenerator.ALL, moves, 0);
+            stage = UNORDERED;
+        }
+    }
+
+    /**
+     * Prepares the picker for a position of the quiescence search, where only noisy moves are searched.
+     * They are always ordered and pruned, since an unordered quiescence search hardly terminates.
+     *
+     * @param match  the match in the position to be searched
+     * @param tables the ordering tables of the searching thread
+     */
+    public void initQuiescence(ChessMatch match, OrderingTables tables) {
+        this.match = match;
+        this.tables = tables;
+        hashMove = Move.NONE;
+        killer1 = Move.NONE;
+        killer2 = Move.NONE;
+        counterMove = Move.NONE;
+        quiescence = true;
+        count = 0;
+        next = 0;
+        badCount = 0;
+        stage = GENERATE_NOISY;
+    }
+
+    /**
+     * Returns the next move to be searched.
+     *
+     * @return the packed move, or {@link Move#NONE} when all the moves were returned
+     */
+    // Each stage falls through to the next one once it has no move left to return
+    @SuppressWarnings("fallthrough")
+    public int next() {
+        switch (stage) {
+            case HASH:
+                stage = GENERATE_NOISY;
+                if (MoveGenerator.isPseudoLegal(match, hashMove)) {
+                    return hashMove;
+                }
+                // fall through
+            case GENERATE_NOISY:
+                count = MoveGenerator.generate(match, MoveGenerator.NOISY, moves, 0);
+                next = 0;
+                for (int i = 0; i < count; i++) {
+                    scores[i] = mvvLva(moves[i]);
+                }
+                stage = NOISY;
+                // fall through
+            case NOISY:
+                while (next < count) {
+                    int move = selectBest();
+                    if (move == hashMove) {
+                        continue;
+                    }
+                    if (isLosingCapture(move)) {
+                        if (!quiescence) {
+                            badMoves[badCount++] = move;
+                        }
+                        continue;
+                    }
+                    return move;
+                }
+                if (quiescence) {
+                    stage = DONE;
+                    return Move.NONE;
+                }
+                stage = KILLER_1;
+                // fall through
+            case KILLER_1:
+                stage = KILLER_2;
+                if (isUsefulQuiet(killer1)) {
+                    return killer1;
+                }
+                // fall through
+            case KILLER_2:
+                stage = COUNTER;
+                if (killer2 != killer1 && isUsefulQuiet(killer2)) {
+                    return killer2;
+                }
+                // fall through
+            case COUNTER:
+                stage = GENERATE_QUIET;
+                if (counterMove != killer1 && counterMove != killer2 && isUsefulQuiet(counterMove)) {
+                    return counterMove;
+                }
+                // fall through
+            case GENERATE_QUIET:
+                count = MoveGenerator.generate(match, MoveGenerator.QUIET, moves, 0);
+                next = 0;
+                for (int i = 0; i < count; i++) {
+                    int move = moves[i];
+                    ChessPiece piece = match.getPiece(Move.source(move));
+                    scores[i] = tables.history(OrderingTables.pieceIndex(piece), Move.target(move));
+                }
+                stage = QUIET;
+                // fall through
+            case QUIET:
+                while (next < count) {
+                    int move = selectBest();
+                    if (move != hashMove && move != killer1 && move != killer2 && move != counterMove) {
+                        return move;
+                    }
+                }
+                next = 0;
+                stage = BAD_NOISY;
+                // fall through
+            case BAD_NOISY:
+                if (next < badCount) {
+                    return badMoves[next++];
+                }
+                stage = DONE;
+                return Move.NONE;
+            case UNORDERED:
+                if (next < count) {
+                    return moves[next++];
+                }
+                stage = DONE;
+                return Move.NONE;
+            default:
+                return Move.NONE;
+        }
+    }
+
+    /**
+     * Returns whether a killer or counter move can be played here and was not returned already:
+     * it must differ from the hash move, be pseudo-legal, and not be noisy.
+     */
+    private boolean isUsefulQuiet(int move) {
+        return move != Move.NONE && move != hashMove && MoveGenerator.isPseudoLegal(match, move) &&
+                !MoveGenerator.isCapture(match, move) && Move.promotion(move) != PieceType.QUEEN;
+    }
+
+    /**
+     * Returns whether a noisy move loses material. The exchange is only evaluated when the capturing piece is worth
+     * more than its victim, since otherwise the capture cannot lose material.
+     */
+    private boolean isLosingCapture(int move) {
+        ChessPiece attacker = match.getPiece(Move.source(move));
+        ChessPiece victim = match.getPiece(Move.target(move));
+        if (victim != null && StaticExchange.value(victim.getType()) >= StaticExchange.value(attacker.getType())) {
+            return false;
+        }
+        return StaticExchange.evaluate(match, move) < 0;
+    }
+
+    /**
+     * Swaps the best scored remaining move to the next slot and returns it.
+     */
+    private int selectBest() {
+        int best = next;
+        for (int i = next + 1; i < count; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        int move = moves[best];
+        moves[best] = moves[next];
+        scores[best] = scores[next];
+        moves[next] = move;
+        next++;
+        return move;
+    }
+
+    private int mvvLva(int move) {
+        ChessPiece attacker = match.getPiece(Move.source(move));
+        ChessPiece victim = match.getPiece(Move.target(move));
+        int victimRank;
+        if (victim != null) {
+            victimRank = victim.getType().ordinal() + 1;
+        } else {
+            // An en passant capture, or a queen promotion without capture
+            victimRank = Move.promotion(move) == null ? PieceType.PAWN.ordinal() + 1 : 0;
+        }
+        int score = victimRank * 8 - attacker.getType().ordinal();
+        if (Move.promotion(move) == PieceType.QUEEN) {
+            score += PieceType.QUEEN.ordinal() * 8;
+        }
+        return score;
+    }
+}
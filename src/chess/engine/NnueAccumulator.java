@@ -0,0 +1,226 @@
+package chess.engine;
+
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.Color;
+import chess.PieceType;
+
+import java.util.Arrays;
+
+/**
+ * Accumulators of the NNUE evaluation of a match, one per perspective, updated by the match as pieces are placed
+ * and removed, so that {@link ChessMatch#makeMove(int)} and {@link ChessMatch#undoMove()} only add or subtract the
+ * weights of the few features they change. A move of a king changes all the features of its perspective, which is
+ * then recomputed from the board at the next evaluation; the match saves that accumulator before the king moves,
+ * by the ply of the move, and restores it when the move is taken back, so that only the king moves made refresh.
+ * <p>
+ * An accumulator is attached to a single match by {@link NnueEvaluator} and, like the match, used by one thread at
+ * a time.
+ */
+public final class NnueAccumulator {
+
+    private static final Color[] COLORS = Color.values();
+
+    private final NnueNetwork network;
+    private final NnueKernel kernel;
+
+    /**
+     * Values of the accumulator of each perspective, indexed by {@link Color#ordinal()}.
+     */
+    private final short[][] values = new short[2][NnueNetwork.L1];
+
+    /**
+     * Whether the accumulator of a perspective must be recomputed from the board; it is not updated meanwhile.
+     */
+    private final boolean[] stale = {true, true};
+
+    /**
+     * Squares of the kings the accumulators were computed for.
+     */
+    private final int[] kingSquares = new int[2];
+
+    /**
+     * Accumulator of the perspective of the king moved at each ply, with its staleness and king square, saved by
+     * {@link #saveBeforeKingMove}; grown as deeper plies are reached.
+     */
+    private short[][] savedValues = new short[0][];
+    private boolean[] savedStale = new boolean[0];
+    private int[] savedKingSquares = new int[0];
+
+    /**
+     * Value of {@link #generation} when each ply was saved: a king move made before the accumulators were last
+     * invalidated, such as before they were attached, has nothing to restore.
+     */
+    private int[] savedGenerations = new int[0];
+    private int generation = 1;
+
+    private final int[] input = new int[2 * NnueNetwork.L1];
+    private final int[] hidden1 = new int[NnueNetwork.L2];
+    private final int[] hidden2 = new int[NnueNetwork.L3];
+
+    NnueAccumulator(NnueNetwork network, NnueKernel kernel) {
+        this.network = network;
+        this.kernel = kernel;
+    }
+
+    /**
+     * Returns the network the accumulators are computed for.
+     *
+     * @return the network
+     */
+    public NnueNetwork getNetwork() {
+        return network;
+    }
+
+    /**
+     * Adds the features of a piece placed on the board.
+     *
+     * @param piece  the piece
+     * @param square the square of the piece, numbered as in {@link chess.Move}
+     */
+    public void piecePlaced(ChessPiece piece, int square) {
+        if (piece.getType() == PieceType.KING) {
+            stale[piece.getColor().ordinal()] = true;
+            return;
+        }
+        for (int perspective = 0; perspective < 2; perspective++) {
+            if (!stale[perspective]) {
+                kernel.add(values[perspective], network.featureWeights,
+                        NnueNetwork.featureOffset(COLORS[perspective], kingSquares[perspective], piece, square));
+            }
+        }
+    }
+
+    /**
+     * Removes the features of a piece taken off the board.
+     *
+     * @param piece  the piece
+     * @param square the square the piece stood on
+     */
+    public void pieceRemoved(ChessPiece piece, int square) {
+        if (piece.getType() == PieceType.KING) {
+            stale[piece.getColor().ordinal()] = true;
+            return;
+        }
+        for (int perspective = 0; perspective < 2; perspective++) {
+            if (!stale[perspective]) {
+                kernel.subtract(values[perspective], network.featureWeights,
+                        NnueNetwork.featureOffset(COLORS[perspective], kingSquares[perspective], piece, square));
+            }
+        }
+    }
+
+    /**
+     * Saves the accumulator of a perspective before its king moves, so that {@link #restoreAfterKingMove} can
+     * restore it when the move is taken back instead of recomputing it.
+     *
+     * @param color the color of the king
+     * @param ply   the index of the move among those that can be taken back
+     */
+    public void saveBeforeKingMove(Color color, int ply) {
+        if (ply >= savedValues.length) {
+            int length = Math.max(16, ply * 2);
+            int from = savedValues.length;
+            savedValues = Arrays.copyOf(savedValues, length);
+            for (int i = from; i < length; i++) {
+                savedValues[i] = new short[NnueNetwork.L1];
+            }
+            savedStale = Arrays.copyOf(savedStale, length);
+            savedKingSquares = Arrays.copyOf(savedKingSquares, length);
+            savedGenerations = Arrays.copyOf(savedGenerations, length);
+        }
+        int perspective = color.ordinal();
+        savedGenerations[ply] = generation;
+        savedStale[ply] = stale[perspective];
+        if (!stale[perspective]) {
+            System.arraycopy(values[perspective], 0, savedValues[ply], 0, NnueNetwork.L1);
+            savedKingSquares[ply] = kingSquares[perspective];
+        }
+    }
+
+    /**
+     * Restores the accumulator of a perspective saved by {@link #saveBeforeKingMove}, once the king move is taken
+     * back and the board is as it was when it was saved.
+     *
+     * @param color the color of the king
+     * @param ply   the index of the move among those that can be taken back
+     */
+    public void restoreAfterKingMove(Color color, int ply) {
+        int perspective = color.ordinal();
+        if (ply >= savedGenerations.length || savedGenerations[ply] != generation) {
+            stale[perspective] = true;
+            return;
+        }
+        stale[perspective] = savedStale[ply];
+        if (!stale[perspective]) {
+            System.arraycopy(savedValues[ply], 0, values[perspective], 0, NnueNetwork.L1);
+            kingSquares[perspective] = savedKingSquares[ply];
+        }
+    }
+
+    /**
+     * Marks both accumulators to be recomputed from the board, when the match is set up again.
+     */
+    public void invalidate() {
+        stale[0] = true;
+        stale[1] = true;
+        generation++;
+    }
+
+    /**
+     * Evaluates the current position of a match, whose pieces the accumulators follow.
+     *
+     * @param match the match
+     * @return the score in centipawns, positive when the player to move is better
+     */
+    int evaluate(ChessMatch match) {
+        for (int perspective = 0; perspective < 2; perspective++) {
+            if (stale[perspective]) {
+                refresh(match, perspective);
+            }
+        }
+        int us = match.getCurrentPlayer().ordinal();
+        kernel.clip(values[us], input, 0);
+        kernel.clip(values[1 - us], input, NnueNetwork.L1);
+        return network.propagate(kernel, input, hidden1, hidden2);
+    }
+
+    /**
+     * Returns whether the accumulators hold the same values as those recomputed from the board.
+     *
+     * @param match the match
+     * @return true if no up to date accumulator differs from the board
+     */
+    boolean matches(ChessMatch match) {
+        NnueAccumulator fresh = new NnueAccumulator(network, kernel);
+        for (int perspective = 0; perspective < 2; perspective++) {
+            fresh.refresh(match, perspective);
+            if (!stale[perspective] && !Arrays.equals(values[perspective], fresh.values[perspective])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void refresh(ChessMatch match, int perspective) {
+        Color color = COLORS[perspective];
+        int king = -1;
+        for (int square = 0; square < 64 && king < 0; square++) {
+            ChessPiece piece = match.getPiece(square);
+            if (piece != null && piece.getType() == PieceType.KING && piece.getColor() == color) {
+                king = square;
+            }
+        }
+        kingSquares[perspective] = king;
+        short[] accumulator = values[perspective];
+        System.arraycopy(network.featureBiases, 0, accumulator, 0, NnueNetwork.L1);
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = match.getPiece(square);
+            if (piece != null && piece.getType() != PieceType.KING) {
+                kernel.add(accumulator, network.featureWeights,
+                        NnueNetwork.featureOffset(color, king, piece, square));
+            }
+        }
+        stale[perspective] = false;
+    }
+}
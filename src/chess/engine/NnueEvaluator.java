@@ -0,0 +1,98 @@
+package chess.engine;
+
+import chess.ChessMatch;
+
+/**
+ * Static evaluation by an {@link NnueNetwork}, in place of the handcrafted terms of {@link Evaluator}.
+ * <p>
+ * The first evaluation of a match attaches an {@link NnueAccumulator} to it, which the match then keeps up to
+ * date on every move, so that an evaluation only clips the accumulators and runs the small hidden layers. The
+ * arithmetic uses the vector API of {@code jdk.incubator.vector} when the optional vector kernel is compiled and
+ * that module is resolved, and scalar loops otherwise. The evaluator itself holds no state of a match, so it can
+ * be shared by the searches of several threads, each playing its own matches.
+ */
+public class NnueEvaluator extends Evaluator {
+
+    private final NnueNetwork network;
+    private final NnueKernel kernel;
+
+    /**
+     * Creates an evaluator with the fastest arithmetic available.
+     *
+     * @param network the network
+     */
+    public NnueEvaluator(NnueNetwork network) {
+        this(network, NnueKernel.best());
+    }
+
+    /**
+     * Creates an evaluator with the given arithmetic, for comparing them.
+     *
+     * @param network the network
+     * @param vector  true for the vector API, false for scalar loops
+     * @throws IllegalStateException if the vector API is requested but the vector kernel is not available
+     */
+    public NnueEvaluator(NnueNetwork network, boolean vector) {
+        this(network, NnueKernel.create(vector));
+    }
+
+    private NnueEvaluator(NnueNetwork network, NnueKernel kernel) {
+        this.network = network;
+        this.kernel = kernel;
+    }
+
+    /**
+     * Returns whether the vector API can be used.
+     *
+     * @return true if the vector kernel is compiled and the {@code jdk.incubator.vector} module is resolved
+     */
+    public static boolean isVectorAvailable() {
+        return NnueKernel.isVectorAvailable();
+    }
+
+    /**
+     * Returns the name of the arithmetic used.
+     *
+     * @return "scalar", or "vector" followed by the vector size in bits
+     */
+    public String getKernelName() {
+        return kernel.getName();
+    }
+
+    @Override
+    public int evaluate(ChessMatch match) {
+        NnueAccumulator accumulator = match.getAccumulator();
+        if (accumulator == null || accumulator.getNetwork() != network) {
+            accumulator = new NnueAccumulator(network, kernel);
+            match.setAccumulator(accumulator);
+        }
+        return accumulator.evaluate(match);
+    }
+
+    /**
+     * Evaluates the current position of a match with accumulators computed from the board instead of the
+     * incremental ones. Slow; meant to check the incremental accumulators.
+     *
+     * @param match the match to be evaluated
+     * @return the score in centipawns, positive when the player to move is better
+     */
+    @Override
+    public int evaluateFromScratch(ChessMatch match) {
+        return new NnueAccumulator(network, kernel).evaluate(match);
+    }
+
+    /**
+     * Checks that the incremental scores and accumulators of a match match the board.
+     *
+     * @param match the match to be checked
+     * @throws IllegalStateException if an incremental value differs from the value recomputed from the board
+     */
+    @Override
+    public void verify(ChessMatch match) {
+        super.verify(match);
+        NnueAccumulator accumulator = match.getAccumulator();
+        if (accumulator != null && accumulator.getNetwork() == network && !accumulator.matches(match)) {
+            throw new IllegalStateException("NNUE accumulator out of sync");
+        }
+    }
+}
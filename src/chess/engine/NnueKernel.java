@@ -0,0 +1,107 @@
+package chess.engine;
+
+/**
+ * Arithmetic of the NNUE evaluation, implemented with scalar loops or with the vector API of
+ * {@code jdk.incubator.vector}.
+ * <p>
+ * The vector kernel lives in the separate {@code vector} source folder, so that the rest of the project compiles
+ * without the incubator module. It is loaded by name, and only used when it was compiled onto the class path, with
+ * {@code --add-modules jdk.incubator.vector}, and that module is resolved at run time as well.
+ */
+abstract class NnueKernel {
+
+    private static final String VECTOR_KERNEL = "chess.engine.NnueVectorKernel";
+
+    /**
+     * Adds a column of feature weights to an accumulator.
+     *
+     * @param accumulator the {@value NnueNetwork#L1} values of the accumulator
+     * @param weights     the feature weights
+     * @param offset      the index of the first weight of the feature
+     */
+    abstract void add(short[] accumulator, short[] weights, int offset);
+
+    /**
+     * Subtracts a column of feature weights from an accumulator.
+     *
+     * @param accumulator the {@value NnueNetwork#L1} values of the accumulator
+     * @param weights     the feature weights
+     * @param offset      the index of the first weight of the feature
+     */
+    abstract void subtract(short[] accumulator, short[] weights, int offset);
+
+    /**
+     * Clips the values of an accumulator to [0, {@value NnueNetwork#MAX_ACTIVATION}].
+     *
+     * @param accumulator the {@value NnueNetwork#L1} values of the accumulator
+     * @param output      the array receiving the clipped values
+     * @param offset      the index of the first clipped value
+     */
+    abstract void clip(short[] accumulator, int[] output, int offset);
+
+    /**
+     * Returns the dot product of activations and a row of weights.
+     *
+     * @param input   the activations
+     * @param weights the weights
+     * @param offset  the index of the first weight of the row
+     * @param length  the number of activations, a multiple of 16
+     * @return the sum of the products
+     */
+    abstract int dot(int[] input, int[] weights, int offset, int length);
+
+    /**
+     * Returns the name of the kernel.
+     *
+     * @return "scalar", or "vector" followed by the vector size in bits
+     */
+    abstract String getName();
+
+    /**
+     * Returns whether the vector API can be used.
+     *
+     * @return true if the vector kernel is on the class path and the {@code jdk.incubator.vector} module is resolved
+     */
+    static boolean isVectorAvailable() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+        try {
+            Class.forName(VECTOR_KERNEL, false, NnueKernel.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the kernel of the vector API if it can be used, and the scalar kernel otherwise.
+     *
+     * @return the fastest kernel available
+     */
+    static NnueKernel best() {
+        return create(isVectorAvailable());
+    }
+
+    /**
+     * Returns a kernel.
+     *
+     * @param vector true for the kernel of the vector API, false for the scalar kernel
+     * @return the kernel
+     * @throws IllegalStateException if the vector API is requested but cannot be used
+     */
+    static NnueKernel create(boolean vector) {
+        if (!vector) {
+            return new NnueScalarKernel();
+        }
+        if (!isVectorAvailable()) {
+            throw new IllegalStateException(
+                    "The vector kernel is not compiled, or the jdk.incubator.vector module is not resolved");
+        }
+        try {
+            return (NnueKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("The vector kernel cannot be created", e);
+        }
+    }
+}
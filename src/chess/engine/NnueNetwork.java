@@ -0,0 +1,256 @@
+package chess.engine;
+
+import chess.ChessPiece;
+import chess.Color;
+import chess.PieceSquareTables;
+import chess.PieceType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Weights of a small quantized evaluation network in the NNUE layout, read by {@link NnueEvaluator}.
+ * <p>
+ * The inputs are HalfKP features: for each perspective, one feature per piece other than a king, indexed by the
+ * square of the king of the perspective, the kind of the piece (its type, and whether it belongs to the
+ * perspective) and its square. Squares are seen from white for the white perspective and mirrored top-bottom for
+ * the black one, so that both perspectives see their own pieces the same way. The feature transformer adds the
+ * int16 weights of the active features to int16 biases, giving an accumulator of {@value #L1} values per
+ * perspective, which {@link NnueAccumulator} keeps up to date as pieces are placed and removed.
+ * <p>
+ * The accumulators of the player to move and of the opponent, clipped to [0, {@value #MAX_ACTIVATION}], are the
+ * {@code 2 * L1} inputs of two hidden layers of {@value #L2} and {@value #L3} neurons with int8 weights and int32
+ * biases, whose sums are shifted right by {@value #HIDDEN_SHIFT} bits and clipped the same way. The output neuron
+ * has int8 weights and an int32 bias, and its sum divided by the output divisor is the evaluation in centipawns
+ * for the player to move.
+ * <p>
+ * The file is big-endian: the magic "NNUE" and the version, inputs, L1, L2, L3 and output divisor (ints), then
+ * the feature biases (L1 shorts), the feature weights (inputs times L1 shorts, feature after feature), the weights
+ * of the first hidden layer (L2 times 2 * L1 bytes, neuron after neuron) and its biases (L2 ints), the weights of
+ * the second hidden layer (L3 times L2 bytes) and its biases (L3 ints), then the output weights (L3 bytes) and
+ * bias (int).
+ */
+public final class NnueNetwork {
+
+    /**
+     * Number of input features of a perspective: king square, piece kind and piece square.
+     */
+    public static final int INPUTS = 64 * 10 * 64;
+
+    /**
+     * Size of the accumulator of a perspective.
+     */
+    public static final int L1 = 128;
+
+    /**
+     * Sizes of the hidden layers.
+     */
+    public static final int L2 = 32;
+    public static final int L3 = 32;
+
+    static final int HIDDEN_SHIFT = 6;
+    static final int MAX_ACTIVATION = 127;
+
+    private static final int MAGIC = 0x4E4E5545;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 28;
+
+    final short[] featureBiases = new short[L1];
+    final short[] featureWeights = new short[INPUTS * L1];
+
+    // The int8 weights of the dense layers are widened once, so that the kernels multiply ints
+    final int[] hidden1Weights = new int[L2 * 2 * L1];
+    final int[] hidden1Biases = new int[L2];
+    final int[] hidden2Weights = new int[L3 * L2];
+    final int[] hidden2Biases = new int[L3];
+    final int[] outputWeights = new int[L3];
+    int outputBias;
+    int outputDivisor = 1;
+
+    private NnueNetwork() {
+    }
+
+    /**
+     * Reads a network file.
+     *
+     * @param path the path of the file
+     * @return the network
+     * @throws IOException if the file cannot be read, or is not a network of this architecture
+     */
+    public static NnueNetwork load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() != fileSize()) {
+                throw new IOException("Invalid network size: " + channel.size() + " bytes, expected " + fileSize());
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Read until the buffer is full
+            }
+            buffer.flip();
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a network file of version " + VERSION + ": " + path);
+            }
+            if (buffer.getInt() != INPUTS || buffer.getInt() != L1 || buffer.getInt() != L2 ||
+                    buffer.getInt() != L3) {
+                throw new IOException("Network architecture differs from HalfKP " + INPUTS + "x" + L1 + "x2-" +
+                        L2 + "-" + L3 + "-1: " + path);
+            }
+            NnueNetwork network = new NnueNetwork();
+            network.outputDivisor = buffer.getInt();
+            if (network.outputDivisor <= 0) {
+                throw new IOException("Invalid output divisor: " + network.outputDivisor);
+            }
+            buffer.asShortBuffer().get(network.featureBiases);
+            buffer.position(buffer.position() + 2 * L1);
+            buffer.asShortBuffer().get(network.featureWeights);
+            buffer.position(buffer.position() + 2 * network.featureWeights.length);
+            readBytes(buffer, network.hidden1Weights);
+            readInts(buffer, network.hidden1Biases);
+            readBytes(buffer, network.hidden2Weights);
+            readInts(buffer, network.hidden2Biases);
+            readBytes(buffer, network.outputWeights);
+            network.outputBias = buffer.getInt();
+            return network;
+        }
+    }
+
+    /**
+     * Writes the network to a file, replacing it if it exists.
+     *
+     * @param path the path of the file
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) fileSize());
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(INPUTS).putInt(L1).putInt(L2).putInt(L3).putInt(outputDivisor);
+        buffer.asShortBuffer().put(featureBiases);
+        buffer.position(buffer.position() + 2 * L1);
+        buffer.asShortBuffer().put(featureWeights);
+        buffer.position(buffer.position() + 2 * featureWeights.length);
+        writeBytes(buffer, hidden1Weights);
+        writeInts(buffer, hidden1Biases);
+        writeBytes(buffer, hidden2Weights);
+        writeInts(buffer, hidden2Biases);
+        writeBytes(buffer, outputWeights);
+        buffer.putInt(outputBias);
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Builds a network that reproduces the material and piece-square values of {@link PieceSquareTables}, the
+     * middlegame and endgame values averaged, as a starting point until trained weights are available. Each kind
+     * of piece on each half of the board adds its values, in units of 8 centipawns, to one neuron of the
+     * accumulator, which the hidden layers pass through unchanged; the king squares are ignored.
+     *
+     * @return the network
+     */
+    public static NnueNetwork fromPieceSquareTables() {
+        int unit = 8;
+        int channels = 20;
+        NnueNetwork network = new NnueNetwork();
+        for (int kind = 0; kind < 10; kind++) {
+            PieceType type = PieceType.values()[kind % 5];
+            // Seen from the perspective, its own pieces are white and the pieces of the opponent black
+            Color color = kind < 5 ? Color.WHITE : Color.BLACK;
+            for (int square = 0; square < 64; square++) {
+                int value = Math.abs(PieceSquareTables.middlegame(type, color, square) +
+                        PieceSquareTables.endgame(type, color, square)) / 2;
+                int neuron = 2 * kind + ((square & 7) < 4 ? 0 : 1);
+                for (int king = 0; king < 64; king++) {
+                    network.featureWeights[feature(king, kind, square) * L1 + neuron] =
+                            (short) Math.round((float) value / unit);
+                }
+            }
+        }
+        int identity = 1 << HIDDEN_SHIFT;
+        for (int neuron = 0; neuron < channels; neuron++) {
+            network.hidden1Weights[neuron * 2 * L1 + neuron] = identity;
+            network.hidden2Weights[neuron * L2 + neuron] = identity;
+            network.outputWeights[neuron] = neuron < channels / 2 ? unit : -unit;
+        }
+        return network;
+    }
+
+    /**
+     * Returns the offset in the feature weights of a piece seen from a perspective.
+     *
+     * @param perspective the color of the perspective
+     * @param king        the square of the king of the perspective, numbered as in {@link chess.Move}
+     * @param piece       the piece, which must not be a king
+     * @param square      the square of the piece
+     * @return the index of the first weight of the feature
+     */
+    static int featureOffset(Color perspective, int king, ChessPiece piece, int square) {
+        int flip = perspective == Color.WHITE ? 0 : 56;
+        int kind = piece.getType().ordinal() + (piece.getColor() == perspective ? 0 : 5);
+        return feature(king ^ flip, kind, square ^ flip) * L1;
+    }
+
+    /**
+     * Propagates the clipped accumulators through the hidden layers and the output neuron.
+     *
+     * @param kernel  the arithmetic kernel
+     * @param input   the clipped accumulators of the player to move and of the opponent
+     * @param hidden1 a buffer of {@value #L2} activations
+     * @param hidden2 a buffer of {@value #L3} activations
+     * @return the evaluation in centipawns for the player to move
+     */
+    int propagate(NnueKernel kernel, int[] input, int[] hidden1, int[] hidden2) {
+        for (int neuron = 0; neuron < L2; neuron++) {
+            hidden1[neuron] = activation(hidden1Biases[neuron] +
+                    kernel.dot(input, hidden1Weights, neuron * 2 * L1, 2 * L1));
+        }
+        for (int neuron = 0; neuron < L3; neuron++) {
+            hidden2[neuron] = activation(hidden2Biases[neuron] + kernel.dot(hidden1, hidden2Weights, neuron * L2, L2));
+        }
+        return (outputBias + kernel.dot(hidden2, outputWeights, 0, L3)) / outputDivisor;
+    }
+
+    private static int activation(int sum) {
+        return Math.max(0, Math.min(MAX_ACTIVATION, sum >> HIDDEN_SHIFT));
+    }
+
+    private static int feature(int king, int kind, int square) {
+        return (king * 10 + kind) * 64 + square;
+    }
+
+    private static long fileSize() {
+        return HEADER_SIZE + 2L * L1 + 2L * INPUTS * L1 + L2 * 2L * L1 + 4L * L2 + (long) L3 * L2 + 4L * L3 + L3 + 4;
+    }
+
+    private static void readBytes(ByteBuffer buffer, int[] values) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.get();
+        }
+    }
+
+    private static void readInts(ByteBuffer buffer, int[] values) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.getInt();
+        }
+    }
+
+    private static void writeBytes(ByteBuffer buffer, int[] values) {
+        for (int value : values) {
+            if (value < Byte.MIN_VALUE || value > Byte.MAX_VALUE) {
+                throw new IllegalStateException("Weight out of the int8 range: " + value);
+            }
+            buffer.put((byte) value);
+        }
+    }
+
+    private static void writeInts(ByteBuffer buffer, int[] values) {
+        for (int value : values) {
+            buffer.putInt(value);
+        }
+    }
+}
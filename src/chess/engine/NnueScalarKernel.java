@@ -0,0 +1,42 @@
+package chess.engine;
+
+/**
+ * NNUE arithmetic with plain loops, used when the vector API is not available.
+ */
+final class NnueScalarKernel extends NnueKernel {
+
+    @Override
+    void add(short[] accumulator, short[] weights, int offset) {
+        for (int i = 0; i < NnueNetwork.L1; i++) {
+            accumulator[i] += weights[offset + i];
+        }
+    }
+
+    @Override
+    void subtract(short[] accumulator, short[] weights, int offset) {
+        for (int i = 0; i < NnueNetwork.L1; i++) {
+            accumulator[i] -= weights[offset + i];
+        }
+    }
+
+    @Override
+    void clip(short[] accumulator, int[] output, int offset) {
+        for (int i = 0; i < NnueNetwork.L1; i++) {
+            output[offset + i] = Math.max(0, Math.min(NnueNetwork.MAX_ACTIVATION, accumulator[i]));
+        }
+    }
+
+    @Override
+    int dot(int[] input, int[] weights, int offset, int length) {
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += input[i] * weights[offset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    String getName() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,133 @@
+package chess.engine;
+
+import chess.ChessPiece;
+import chess.Color;
+import chess.Move;
+
+import java.util.Arrays;
+
+/**
+ * Tables learned during a search to order quiet moves: two killer moves per ply, a history score per piece and
+ * target square, and a counter move per piece and target square of the previous move.
+ * <p>
+ * The tables are not synchronized. Each search thread uses its own instance, see {@link #forCurrentThread()},
+ * so parallel searches never contend on them.
+ */
+public class OrderingTables {
+
+    private static final ThreadLocal<OrderingTables> TABLES = ThreadLocal.withInitial(OrderingTables::new);
+
+    private static final int MAX_HISTORY = 1 << 20;
+
+    private final int[][] killers = new int[Search.MAX_PLY][2];
+    private final int[][] history = new int[12][64];
+    private final int[][] counterMoves = new int[12][64];
+
+    /**
+     * Returns the tables of the calling thread.
+     *
+     * @return the tables, created on first use
+     */
+    public static OrderingTables forCurrentThread() {
+        return TABLES.get();
+    }
+
+    /**
+     * Returns the index of a piece among the twelve colored piece kinds, used to index the tables.
+     *
+     * @param piece the piece
+     * @return the index, from 0 to 11
+     */
+    static int pieceIndex(ChessPiece piece) {
+        return piece.getType().ordinal() + (piece.getColor() == Color.WHITE ? 0 : 6);
+    }
+
+    /**
+     * Returns a killer move of a ply.
+     *
+     * @param ply  the distance from the root
+     * @param slot 0 for the most recent killer, 1 for the older one
+     * @return the packed move, or {@link Move#NONE}
+     */
+    public int killer(int ply, int slot) {
+        return killers[ply][slot];
+    }
+
+    /**
+     * Returns the history score of a quiet move.
+     *
+     * @param piece  the index of the moving piece, see {@link #pieceIndex(ChessPiece)}
+     * @param target the target square
+     * @return the score, higher for moves that caused more cutoffs
+     */
+    public int history(int piece, int target) {
+        return history[piece][target];
+    }
+
+    /**
+     * Returns the move that refuted a previous move most recently.
+     *
+     * @param piece  the index of the piece moved by the previous move
+     * @param target the target square of the previous move
+     * @return the packed move, or {@link Move#NONE}
+     */
+    public int counterMove(int piece, int target) {
+        return counterMoves[piece][target];
+    }
+
+    /**
+     * Records a quiet move that caused a beta cutoff.
+     *
+     * @param ply            the distance from the root
+     * @param depth          the remaining depth of the node
+     * @param move           the move that caused the cutoff
+     * @param piece          the index of the moving piece
+     * @param previousPiece  the index of the piece moved by the previous move, or -1 at the root
+     * @param previousTarget the target square of the previous move
+     */
+    public void recordCutoff(int ply, int depth, int move, int piece, int previousPiece, int previousTarget) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        if (previousPiece >= 0) {
+            counterMoves[previousPiece][previousTarget] = move;
+        }
+        int[] scores = history[piece];
+        scores[Move.target(move)] += depth * depth;
+        if (scores[Move.target(move)] > MAX_HISTORY) {
+            age();
+        }
+    }
+
+    /**
+     * Prepares the tables for a new search: killers are cleared and history scores are halved,
+     * so that what was learned in the previous search still helps but fades out.
+     */
+    public void newSearch() {
+        for (int[] slots : killers) {
+            slots[0] = Move.NONE;
+            slots[1] = Move.NONE;
+        }
+        age();
+    }
+
+    /**
+     * Forgets everything learned.
+     */
+    public void clear() {
+        for (int i = 0; i < 12; i++) {
+            Arrays.fill(history[i], 0);
+            Arrays.fill(counterMoves[i], Move.NONE);
+        }
+        newSearch();
+    }
+
+    private void age() {
+        for (int[] scores : history) {
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] >>= 1;
+            }
+        }
+    }
+}
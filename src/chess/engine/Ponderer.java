@@ -0,0 +1,247 @@
+package chess.engine;
+
+import chess.ChessMatch;
+import chess.Move;
+import chess.MoveGenerator;
+
+import java.io.Closeable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Plays one side of a match with a search that keeps thinking while the opponent is to move.
+ * <p>
+ * The ponderer follows the match on a replica of its own, fed with every move played through
+ * {@link #moveMade(int)}. After its own move, {@link #startPondering()} guesses the reply of the opponent, plays
+ * it on the replica and searches the resulting position on a low-priority background thread, without time
+ * limit. When the real reply is the guessed one, the pondering search simply continues and {@link #think} only
+ * waits for what is left of the budget, counted from the start of pondering; otherwise the pondering search is
+ * cancelled and the replica takes the guess back. Either way, what was searched stays in the shared transposition
+ * table and the thread's ordering tables, so even a missed guess speeds up the next search.
+ * <p>
+ * All the searching happens on the single background thread, so the replica and the searches are never used
+ * concurrently. Pondering has a search of its own, so that a cancellation arriving just as it ends cannot stop the
+ * next search for the move. The methods are meant to be called from one thread, the one running the match.
+ */
+public class Ponderer implements Closeable {
+
+    /**
+     * Depth of the search guessing the reply of the opponent when the transposition table has no move for it.
+     */
+    private static final int GUESS_DEPTH = 4;
+
+    private final ChessMatch replica = new ChessMatch();
+    private final TranspositionTable table;
+    private final Search search;
+    private final Search ponderSearch;
+    private final ExecutorService executor;
+
+    private Future<Integer> pondering;
+    private CountDownLatch guessed;
+    private volatile int guessedMove = Move.NONE;
+    private int replyMove = Move.NONE;
+    private long ponderStartNanos;
+    private boolean ponderHit;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a ponderer for a match starting from the initial position.
+     *
+     * @param table     the transposition table of the search
+     * @param evaluator the static evaluation of the search
+     */
+    public Ponderer(TranspositionTable table, Evaluator evaluator) {
+        this.table = table;
+        search = new Search(table, evaluator);
+        ponderSearch = new Search(table, evaluator);
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ponderer");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts pondering, after the move of this side and before the opponent replies.
+     * Does nothing if the match is over or if already pondering.
+     */
+    public void startPondering() {
+        if (pondering != null || replica.getGameResult().isOver()) {
+            return;
+        }
+        ponderHit = false;
+        replyMove = Move.NONE;
+        guessedMove = Move.NONE;
+        // A stop sent after the last pondering ended, or when it gave up before searching, would stop this one
+        ponderSearch.clearStop();
+        CountDownLatch latch = new CountDownLatch(1);
+        guessed = latch;
+        ponderStartNanos = System.nanoTime();
+        pondering = executor.submit(() -> {
+            try {
+                int move = guessReply();
+                if (move == Move.NONE || !replica.makeMove(move)) {
+                    return Move.NONE;
+                }
+                guessedMove = move;
+            } finally {
+                latch.countDown();
+            }
+            return ponderSearch.search(replica, Search.MAX_PLY - 1);
+        });
+    }
+
+    /**
+     * Applies a move played in the match, by either side, to the replica. A reply the ponderer did not guess
+     * cancels the pondering search.
+     *
+     * @param move the packed move, with its promotion
+     */
+    public void moveMade(int move) {
+        if (pondering == null) {
+            runOnReplica(move);
+            return;
+        }
+        replyMove = move;
+        awaitGuess();
+        if (move == guessedMove) {
+            ponderHit = true;
+            hits++;
+        } else {
+            misses++;
+            ponderSearch.stop();
+            finishPondering();
+        }
+    }
+
+    /**
+     * Returns the move of this side. After a guessed reply, the time spent pondering counts as thinking time: the
+     * pondering search only continues for what is left of the soft limit of the budget, if anything, and its best
+     * move is returned at once when the opponent took longer than that. Otherwise a new search runs on the
+     * background thread.
+     *
+     * @param budget the time allowed for the move
+     * @return the packed move, or {@link Move#NONE} if the match is over
+     */
+    public int think(TimeBudget budget) {
+        if (pondering != null && ponderHit) {
+            long remaining = budget.getSoftMillis() - (System.nanoTime() - ponderStartNanos) / 1_000_000;
+            try {
+                pondering.get(Math.max(0, remaining), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                ponderSearch.stop();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("Pondering failed", e);
+            }
+            int move = finishPondering();
+            if (move != Move.NONE) {
+                return move;
+            }
+        } else if (pondering != null) {
+            ponderSearch.stop();
+            finishPondering();
+        }
+        return await(executor.submit(() -> search.search(replica, budget)));
+    }
+
+    /**
+     * Returns the number of replies that were guessed.
+     *
+     * @return the number of ponder hits
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of replies that were not guessed.
+     *
+     * @return the number of ponder misses
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Stops pondering and the background thread.
+     */
+    @Override
+    public void close() {
+        if (pondering != null) {
+            ponderSearch.stop();
+            finishPondering();
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Returns the reply expected from the opponent: the move stored for the position in the transposition table,
+     * or else the best move of a shallow search.
+     */
+    private int guessReply() {
+        long entry = table.probe(replica.getPositionKey());
+        int move = TranspositionTable.move(entry);
+        if (entry != 0 && MoveGenerator.isPseudoLegal(replica, move)) {
+            return move;
+        }
+        return search.search(replica, GUESS_DEPTH);
+    }
+
+    /**
+     * Waits until the background thread has played its guess on the replica, or given up guessing.
+     */
+    private void awaitGuess() {
+        try {
+            guessed.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the guess", e);
+        }
+    }
+
+    /**
+     * Waits for the pondering search, takes the guess back on the replica and plays the real reply.
+     *
+     * @return the best move of the pondering search if the reply was guessed, {@link Move#NONE} otherwise
+     */
+    private int finishPondering() {
+        int move = await(pondering);
+        pondering = null;
+        boolean hit = ponderHit;
+        ponderHit = false;
+        int reply = replyMove;
+        replyMove = Move.NONE;
+        return await(executor.submit(() -> {
+            if (guessedMove != Move.NONE) {
+                replica.undoMove();
+            }
+            guessedMove = Move.NONE;
+            if (reply != Move.NONE) {
+                replica.performChessMove(reply);
+            }
+            return hit ? move : Move.NONE;
+        }));
+    }
+
+    private void runOnReplica(int move) {
+        await(executor.submit(() -> replica.performChessMove(move)));
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the search", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("The search failed", e.getCause());
+        }
+    }
+}
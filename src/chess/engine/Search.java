@@ -0,0 +1,486 @@
+package chess.engine;
+
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.Move;
+import chess.MoveGenerator;
+import chess.book.OpeningBook;
+import chess.tablebase.Tablebases;
+
+import java.util.Arrays;
+
+/**
+ * Iterative deepening alpha-beta search of the best move of a position.
+ * <p>
+ * The leaves are resolved by a quiescence search over captures and promotions, so that the static evaluation is
+ * only taken in quiet positions; captures losing material by static exchange evaluation are pruned there.
+ * Moves are made and taken back on the searched match with {@link ChessMatch#makeMove(int)} and
+ * {@link ChessMatch#undoMove()}, so the match is unchanged when the search returns. Moves are tried in the order
+ * of a {@link MovePicker}, using the {@link OrderingTables} of the calling thread. When an opening book or
+ * endgame tables are set, they are consulted before searching.
+ * <p>
+ * A search is limited either by depth or by a {@link TimeBudget}. With a budget, the clock is read every
+ * {@value #NODES_PER_TIME_CHECK} nodes rather than at every node; no new iteration starts unless it is expected
+ * to end before the soft limit, which shrinks when the best move stayed the same for several iterations and grows
+ * when it just changed, and the search stops wherever it is at the hard limit. The best move of the last completed
+ * iteration, or a better move found since, is always returned; the first iteration is never interrupted.
+ * <p>
+ * A search instance is not thread-safe, except for {@link #stop()}; parallel searches use one instance per thread
+ * and may share the transposition table.
+ */
+public class Search {
+
+    /**
+     * Maximum distance from the root of a searched position.
+     */
+    public static final int MAX_PLY = 128;
+
+    /**
+     * Score of being checkmated at the root; being checkmated n plies from the root scores {@code -MATE + n}.
+     */
+    public static final int MATE = 32000;
+
+    /**
+     * Scores at least this high, in absolute value, are mate scores.
+     */
+    public static final int MATE_BOUND = MATE - MAX_PLY;
+
+    private static final int INFINITY = MATE + 1;
+
+    /**
+     * Number of nodes between two readings of the clock; a power of two.
+     */
+    private static final int NODES_PER_TIME_CHECK = 256;
+
+    /**
+     * Number of iterations with the same best move after which the soft limit is halved.
+     */
+    private static final int STABLE_ITERATIONS = 3;
+
+    private final TranspositionTable table;
+    private final Evaluator evaluator;
+    private final MovePicker[] pickers = new MovePicker[MAX_PLY];
+    private final int[] movedPieces = new int[MAX_PLY];
+    private final int[] movedTargets = new int[MAX_PLY];
+
+    private OpeningBook openingBook;
+    private Tablebases tablebases;
+    private boolean ordered = true;
+    private TimeMetrics metrics;
+    private volatile boolean stopRequested;
+
+    private ChessMatch match;
+    private OrderingTables tables;
+    private int bestMove;
+    private int score;
+    private int completedDepth;
+    private long nodes;
+    private long cutoffs;
+    private long firstMoveCutoffs;
+    private long hardDeadline;
+    private boolean stopped;
+
+    /**
+     * Creates a search.
+     *
+     * @param table     the transposition table, possibly shared with other searches
+     * @param evaluator the static evaluation of the leaves
+     */
+    public Search(TranspositionTable table, Evaluator evaluator) {
+        this.table = table;
+        this.evaluator = evaluator;
+        for (int i = 0; i < MAX_PLY; i++) {
+            pickers[i] = new MovePicker();
+        }
+    }
+
+    /**
+     * Sets the opening book consulted before searching.
+     *
+     * @param openingBook the opening book, or null for none
+     */
+    public void setOpeningBook(OpeningBook openingBook) {
+        this.openingBook = openingBook;
+    }
+
+    /**
+     * Sets the endgame tables consulted before searching.
+     *
+     * @param tablebases the endgame tables, or null for none
+     */
+    public void setTablebases(Tablebases tablebases) {
+        this.tablebases = tablebases;
+    }
+
+    /**
+     * Enables or disables the move ordering heuristics, to measure what they save.
+     *
+     * @param ordered false to search the moves in generation order
+     */
+    public void setOrdering(boolean ordered) {
+        this.ordered = ordered;
+    }
+
+    /**
+     * Sets the metrics receiving the time used by each search with a budget.
+     *
+     * @param metrics the metrics, or null for none
+     */
+    public void setMetrics(TimeMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Asks the running search to stop as soon as possible, from any thread. The search returns its best move so
+     * far, once its first iteration is complete. A request made just before a search starts stops that search,
+     * so a search started on another thread can be cancelled without waiting for it to begin.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    /**
+     * Withdraws a stop request that no search consumed, such as one made for a search that had already ended or
+     * never started, so that it does not stop the next search. Must not be called while a search runs.
+     */
+    public void clearStop() {
+        stopRequested = false;
+    }
+
+    /**
+     * Searches the current position of a match to a fixed depth.
+     *
+     * @param match    the match, unchanged when the method returns
+     * @param maxDepth the depth of the last iteration, at least 1
+     * @return the best move found, or {@link Move#NONE} if the match is over or the player to move has no legal move
+     * @throws IllegalArgumentException if the depth is not between 1 and {@link #MAX_PLY} - 1
+     */
+    public int search(ChessMatch match, int maxDepth) {
+        if (maxDepth < 1 || maxDepth >= MAX_PLY) {
+            throw new IllegalArgumentException("The depth must be between 1 and " + (MAX_PLY - 1));
+        }
+        return search(match, maxDepth, null);
+    }
+
+    /**
+     * Searches the current position of a match within a time budget.
+     *
+     * @param match  the match, unchanged when the method returns
+     * @param budget the time allowed for the search
+     * @return the best move found, or {@link Move#NONE} if the match is over or the player to move has no legal move
+     */
+    public int search(ChessMatch match, TimeBudget budget) {
+        return search(match, MAX_PLY - 1, budget);
+    }
+
+    private int search(ChessMatch match, int maxDepth, TimeBudget budget) {
+        try {
+            return iterate(match, maxDepth, budget);
+        } finally {
+            stopRequested = false;
+        }
+    }
+
+    private int iterate(ChessMatch match, int maxDepth, TimeBudget budget) {
+        long start = System.nanoTime();
+        hardDeadline = budget == null ? Long.MAX_VALUE : start + budget.getHardMillis() * 1_000_000;
+        stopped = false;
+        this.match = match;
+        tables = OrderingTables.forCurrentThread();
+        tables.newSearch();
+        bestMove = Move.NONE;
+        score = 0;
+        completedDepth = 0;
+        nodes = 0;
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+
+        if (match.getGameResult().isOver()) {
+            return Move.NONE;
+        }
+        if (openingBook != null) {
+            int move = openingBook.probe(match);
+            // A key collision or a book from another source can suggest a move that is illegal here
+            if (move != Move.NONE && MoveGenerator.isPseudoLegal(match, move) && match.makeMove(move)) {
+                match.undoMove();
+                return bestMove = move;
+            }
+        }
+        if (tablebases != null) {
+            int move = tablebases.bestMove(match);
+            if (move != Move.NONE) {
+                return bestMove = move;
+            }
+        }
+
+        int stableIterations = 0;
+        int previousBestMove = Move.NONE;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            int value = negamax(-INFINITY, INFINITY, depth, 0);
+            if (stopped) {
+                break;
+            }
+            score = value;
+            completedDepth = depth;
+            if (Math.abs(score) >= MATE_BOUND) {
+                break;
+            }
+            if (budget != null) {
+                stableIterations = bestMove == previousBestMove ? stableIterations + 1 : 0;
+                previousBestMove = bestMove;
+                long soft = budget.getSoftMillis() * 1_000_000;
+                if (stableIterations >= STABLE_ITERATIONS) {
+                    soft /= 2;
+                } else if (stableIterations == 0 && depth > 1) {
+                    soft += soft / 2;
+                }
+                // The next iteration usually takes longer than all the previous ones together
+                if (System.nanoTime() - start >= soft / 2) {
+                    break;
+                }
+            }
+        }
+        if (budget != null && metrics != null) {
+            metrics.record(System.nanoTime() - start, budget, stopped && !stopRequested);
+        }
+        return bestMove;
+    }
+
+    /**
+     * Returns whether the search must stop, reading the clock only every {@value #NODES_PER_TIME_CHECK} nodes.
+     * The first iteration is never stopped, so that there is always a best move.
+     */
+    private boolean shouldStop() {
+        if (!stopped && (nodes & (NODES_PER_TIME_CHECK - 1)) == 0 && completedDepth > 0 &&
+                (stopRequested || System.nanoTime() >= hardDeadline)) {
+            stopped = true;
+        }
+        return stopped;
+    }
+
+    /**
+     * Returns the score of the last search.
+     *
+     * @return the score in centipawns from the point of view of the player to move, or a mate score
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Returns the best move of the last search.
+     *
+     * @return the packed move, or {@link Move#NONE}
+     */
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    /**
+     * Returns the principal variation of the last search: its best move, followed by the replies stored in the
+     * transposition table for as long as they are legal, the line does not repeat and the searched depth allows.
+     *
+     * @param match the match of the last search, unchanged when the method returns
+     * @return the packed moves of the variation, empty if the search found no move
+     */
+    public int[] getPrincipalVariation(ChessMatch match) {
+        int[] line = new int[Math.max(1, completedDepth)];
+        int length = 0;
+        int move = bestMove;
+        while (move != Move.NONE && length < line.length && MoveGenerator.isPseudoLegal(match, move) &&
+                match.makeMove(move)) {
+            line[length++] = move;
+            if (match.getRepetitions() >= 2) {
+                break;
+            }
+            long entry = table.probe(match.getPositionKey());
+            move = entry == 0 ? Move.NONE : TranspositionTable.move(entry);
+        }
+        for (int i = 0; i < length; i++) {
+            match.undoMove();
+        }
+        return Arrays.copyOf(line, length);
+    }
+
+    /**
+     * Returns the depth of the last completed iteration of the last search.
+     *
+     * @return the depth, or 0 if the move came from the opening book or the endgame tables
+     */
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    /**
+     * Returns the number of positions visited by the last search.
+     *
+     * @return the number of nodes
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the number of beta cutoffs of the last search.
+     *
+     * @return the number of nodes where a move refuted the previous move
+     */
+    public long getCutoffs() {
+        return cutoffs;
+    }
+
+    /**
+     * Returns the number of beta cutoffs of the last search that happened on the first legal move tried.
+     * Divided by {@link #getCutoffs()}, it measures the quality of the move ordering.
+     *
+     * @return the number of first move cutoffs
+     */
+    public long getFirstMoveCutoffs() {
+        return firstMoveCutoffs;
+    }
+
+    private int negamax(int alpha, int beta, int depth, int ply) {
+        nodes++;
+        if (shouldStop()) {
+            return 0;
+        }
+        if (ply > 0 && (match.getHalfmoveClock() >= 100 || match.getRepetitions() >= 2 ||
+                match.isInsufficientMaterial())) {
+            return 0;
+        }
+        if (depth <= 0 || ply >= MAX_PLY - 1) {
+            return quiescence(alpha, beta, ply);
+        }
+
+        long key = match.getPositionKey();
+        long entry = table.probe(key);
+        int hashMove = Move.NONE;
+        if (entry != 0) {
+            hashMove = TranspositionTable.move(entry);
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int stored = TranspositionTable.score(entry, ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT ||
+                        bound == TranspositionTable.LOWER && stored >= beta ||
+                        bound == TranspositionTable.UPPER && stored <= alpha) {
+                    return stored;
+                }
+            }
+        }
+
+        MovePicker picker = pickers[ply];
+        int previousPiece = ply == 0 ? -1 : movedPieces[ply - 1];
+        int previousTarget = ply == 0 ? 0 : movedTargets[ply - 1];
+        picker.init(match, tables, hashMove, ply, previousPiece, previousTarget, ordered);
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMoveHere = Move.NONE;
+        int legalMoves = 0;
+        int move;
+        while ((move = picker.next()) != Move.NONE) {
+            ChessPiece piece = match.getPiece(Move.source(move));
+            boolean quiet = Move.promotion(move) == null && !MoveGenerator.isCapture(match, move);
+            if (!match.makeMove(move)) {
+                continue;
+            }
+            legalMoves++;
+            movedPieces[ply] = OrderingTables.pieceIndex(piece);
+            movedTargets[ply] = Move.target(move);
+            int value = -negamax(-beta, -alpha, depth - 1, ply + 1);
+            match.undoMove();
+            if (stopped) {
+                return 0;
+            }
+
+            if (value > best) {
+                best = value;
+                bestMoveHere = move;
+                if (ply == 0) {
+                    bestMove = move;
+                }
+            }
+            if (value > alpha) {
+                alpha = value;
+            }
+            if (alpha >= beta) {
+                cutoffs++;
+                if (legalMoves == 1) {
+                    firstMoveCutoffs++;
+                }
+                if (quiet && ordered) {
+                    tables.recordCutoff(ply, depth, move, movedPieces[ply], previousPiece, previousTarget);
+                }
+                break;
+            }
+        }
+
+        if (legalMoves == 0) {
+            return match.getCheck() ? -MATE + ply : 0;
+        }
+        int bound = best >= beta ? TranspositionTable.LOWER
+                : best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.store(key, bestMoveHere, best, depth, bound, ply);
+        return best;
+    }
+
+    /**
+     * Searches the noisy moves of a position until it is quiet. The player to move may stand pat on the static
+     * evaluation instead of capturing, unless in check, where every move is searched to find the mates.
+     */
+    private int quiescence(int alpha, int beta, int ply) {
+        if (shouldStop()) {
+            return 0;
+        }
+        boolean inCheck = match.getCheck();
+        if (ply >= MAX_PLY - 1) {
+            return inCheck ? 0 : evaluator.evaluate(match);
+        }
+
+        int best = -INFINITY;
+        if (!inCheck) {
+            best = evaluator.evaluate(match);
+            if (best >= beta) {
+                return best;
+            }
+            if (best > alpha) {
+                alpha = best;
+            }
+        }
+
+        MovePicker picker = pickers[ply];
+        if (inCheck) {
+            picker.init(match, tables, Move.NONE, ply, -1, 0, true);
+        } else {
+            picker.initQuiescence(match, tables);
+        }
+        int legalMoves = 0;
+        int move;
+        while ((move = picker.next()) != Move.NONE) {
+            if (!match.makeMove(move)) {
+                continue;
+            }
+            legalMoves++;
+            nodes++;
+            int value = -quiescence(-beta, -alpha, ply + 1);
+            match.undoMove();
+            if (stopped) {
+                return 0;
+            }
+
+            if (value > best) {
+                best = value;
+            }
+            if (value > alpha) {
+                alpha = value;
+            }
+            if (alpha >= beta) {
+                break;
+            }
+        }
+        if (inCheck && legalMoves == 0) {
+            return -MATE + ply;
+        }
+        return best;
+    }
+}
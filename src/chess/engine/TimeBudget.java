@@ -0,0 +1,85 @@
+package chess.engine;
+
+/**
+ * Time allowed to search one move: a soft limit, after which no new iteration is started, and a hard limit,
+ * at which the search stops in the middle of an iteration.
+ */
+public final class TimeBudget {
+
+    /**
+     * Number of moves the remaining time is shared among when the time control does not say.
+     */
+    private static final int DEFAULT_MOVES_TO_GO = 30;
+
+    /**
+     * Time kept back on the clock for the delays outside the search, such as sending the move.
+     */
+    private static final long SAFETY_MARGIN_MILLIS = 20;
+
+    private final long softMillis;
+    private final long hardMillis;
+
+    private TimeBudget(long softMillis, long hardMillis) {
+        this.softMillis = softMillis;
+        this.hardMillis = hardMillis;
+    }
+
+    /**
+     * Derives a budget from the state of the clock of the player to move. The soft limit is an even share of the
+     * remaining time plus most of the increment; the hard limit allows overrunning it when the best move is
+     * unstable, but never uses more than a fifth of the remaining time beyond the increment.
+     *
+     * @param remainingMillis the time left on the clock
+     * @param incrementMillis the time added to the clock after each move
+     * @param movesToGo       the number of moves until the next time control, or 0 if unknown
+     * @return the budget
+     * @throws IllegalArgumentException if a time is negative
+     */
+    public static TimeBudget fromClock(long remainingMillis, long incrementMillis, int movesToGo) {
+        if (remainingMillis < 0 || incrementMillis < 0) {
+            throw new IllegalArgumentException("Clock times must not be negative");
+        }
+        long available = Math.max(1, remainingMillis - SAFETY_MARGIN_MILLIS);
+        int moves = movesToGo > 0 ? Math.min(movesToGo, DEFAULT_MOVES_TO_GO) : DEFAULT_MOVES_TO_GO;
+        long hard = Math.min(available, available / 5 + incrementMillis);
+        long soft = Math.min(hard, available / moves + incrementMillis * 3 / 4);
+        return new TimeBudget(Math.max(1, soft), Math.max(1, hard));
+    }
+
+    /**
+     * Creates a budget with a fixed time per move, used as both limits.
+     *
+     * @param millis the time per move
+     * @return the budget
+     * @throws IllegalArgumentException if the time is not positive
+     */
+    public static TimeBudget fixed(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("The time per move must be positive");
+        }
+        return new TimeBudget(millis, millis);
+    }
+
+    /**
+     * Returns the time after which no new iteration should start.
+     *
+     * @return the soft limit in milliseconds
+     */
+    public long getSoftMillis() {
+        return softMillis;
+    }
+
+    /**
+     * Returns the time at which the search must stop.
+     *
+     * @return the hard limit in milliseconds
+     */
+    public long getHardMillis() {
+        return hardMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "soft " + softMillis + " ms, hard " + hardMillis + " ms";
+    }
+}
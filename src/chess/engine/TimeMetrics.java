@@ -0,0 +1,138 @@
+package chess.engine;
+
+import java.util.Arrays;
+
+/**
+ * Records how much of its budget each timed search used, to tune time management against a latency objective.
+ * <p>
+ * The most recent samples are kept in a fixed ring, so recording never allocates. Percentiles are computed over
+ * the samples in the ring. The class is thread-safe, so one instance can collect the searches of many threads.
+ */
+public class TimeMetrics {
+
+    private final long[] usedMicros;
+    private final long[] budgetMicros;
+    private long total;
+    private long hardLimitStops;
+    private long overruns;
+
+    /**
+     * Creates metrics keeping the given number of most recent samples.
+     *
+     * @param capacity the number of samples kept
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public TimeMetrics(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be positive");
+        }
+        usedMicros = new long[capacity];
+        budgetMicros = new long[capacity];
+    }
+
+    /**
+     * Records a search.
+     *
+     * @param usedNanos     the time the search took
+     * @param budget        the budget of the search
+     * @param hardLimitStop whether the search was stopped by the hard limit
+     */
+    public synchronized void record(long usedNanos, TimeBudget budget, boolean hardLimitStop) {
+        int index = (int) (total % usedMicros.length);
+        usedMicros[index] = usedNanos / 1000;
+        budgetMicros[index] = budget.getHardMillis() * 1000;
+        total++;
+        if (hardLimitStop) {
+            hardLimitStops++;
+        }
+        if (usedNanos > budget.getHardMillis() * 1_000_000) {
+            overruns++;
+        }
+    }
+
+    /**
+     * Returns the number of searches recorded, including the ones no longer in the ring.
+     *
+     * @return the number of searches
+     */
+    public synchronized long getCount() {
+        return total;
+    }
+
+    /**
+     * Returns the number of searches stopped by their hard limit rather than finishing an iteration.
+     *
+     * @return the number of hard limit stops
+     */
+    public synchronized long getHardLimitStops() {
+        return hardLimitStops;
+    }
+
+    /**
+     * Returns the number of searches that took longer than their hard limit.
+     *
+     * @return the number of overruns
+     */
+    public synchronized long getOverruns() {
+        return overruns;
+    }
+
+    /**
+     * Returns a percentile of the time used by the recent searches.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the time in milliseconds, or 0 if nothing was recorded
+     */
+    public synchronized double usedMillis(double percentile) {
+        return percentile(usedMicros, percentile) / 1000.0;
+    }
+
+    /**
+     * Returns a percentile of the share of the hard limit used by the recent searches.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the time used divided by the hard limit, or 0 if nothing was recorded
+     */
+    public synchronized double usedRatio(double percentile) {
+        int size = (int) Math.min(total, usedMicros.length);
+        long[] ratios = new long[size];
+        for (int i = 0; i < size; i++) {
+            ratios[i] = usedMicros[i] * 1_000_000 / Math.max(1, budgetMicros[i]);
+        }
+        return percentile(ratios, size, percentile) / 1_000_000.0;
+    }
+
+    /**
+     * Removes all the samples.
+     */
+    public synchronized void clear() {
+        total = 0;
+        hardLimitStops = 0;
+        overruns = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d searches, used p50 %.1f ms (%.0f%% of budget), p99 %.1f ms (%.0f%% of budget), " +
+                        "%d stopped at the hard limit, %d overruns",
+                total, usedMillis(50), usedRatio(50) * 100, usedMillis(99), usedRatio(99) * 100,
+                hardLimitStops, overruns);
+    }
+
+    private long percentile(long[] values, double percentile) {
+        return percentile(Arrays.copyOf(values, (int) Math.min(total, values.length)),
+                (int) Math.min(total, values.length), percentile);
+    }
+
+    /**
+     * Returns the nearest-rank percentile of the first values of an array, sorting them in place.
+     */
+    private static long percentile(long[] values, int size, double percentile) {
+        if (size == 0) {
+            return 0;
+        }
+        Arrays.sort(values, 0, size);
+        int rank = (int) Math.ceil(percentile / 100 * size);
+        return values[Math.max(0, Math.min(size, rank) - 1)];
+    }
+}
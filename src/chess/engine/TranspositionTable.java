@@ -0,0 +1,140 @@
+package chess.engine;
+
+import java.util.Arrays;
+
+/**
+ * Hash table of search results, indexed by the Zobrist key of the position.
+ * <p>
+ * Each entry is two longs: the data, and the key xor-ed with the data. Threads read and write entries without
+ * locking; an entry torn by a concurrent write no longer passes the key check and is treated as missing.
+ * Mate scores are stored relative to the position rather than to the root, so they stay valid when the position
+ * is reached again at another ply.
+ */
+public class TranspositionTable {
+
+    /**
+     * The stored score is an upper bound of the real score.
+     */
+    public static final int UPPER = 1;
+
+    /**
+     * The stored score is a lower bound of the real score.
+     */
+    public static final int LOWER = 2;
+
+    /**
+     * The stored score is exact.
+     */
+    public static final int EXACT = 3;
+
+    private static final int ENTRY_BYTES = 16;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+
+    /**
+     * Creates a table using about the given amount of memory.
+     *
+     * @param megabytes the size of the table in megabytes, at least 1
+     * @throws IllegalArgumentException if the size is less than 1 megabyte
+     */
+    public TranspositionTable(int megabytes) {
+        if (megabytes < 1) {
+            throw new IllegalArgumentException("The table size must be at least 1 MB");
+        }
+        int entries = Integer.highestOneBit((int) Math.min(1L << 30, (long) megabytes * (1 << 20) / ENTRY_BYTES));
+        keys = new long[entries];
+        data = new long[entries];
+        mask = entries - 1;
+    }
+
+    /**
+     * Returns the entry of a position.
+     *
+     * @param key the Zobrist key of the position
+     * @return the packed entry, or 0 if the position is not in the table
+     */
+    public long probe(long key) {
+        int index = (int) key & mask;
+        long entry = data[index];
+        return (keys[index] ^ entry) == key ? entry : 0;
+    }
+
+    /**
+     * Stores the result of a search, replacing the entry found at the same index.
+     *
+     * @param key   the Zobrist key of the position
+     * @param move  the best move found, or {@link chess.Move#NONE}
+     * @param score the score from the point of view of the player to move, mate scores relative to the root
+     * @param depth the depth of the search
+     * @param bound {@link #UPPER}, {@link #LOWER} or {@link #EXACT}
+     * @param ply   the distance of the position from the root
+     */
+    public void store(long key, int move, int score, int depth, int bound, int ply) {
+        if (score >= Search.MATE_BOUND) {
+            score += ply;
+        } else if (score <= -Search.MATE_BOUND) {
+            score -= ply;
+        }
+        long entry = (move & 0x7FFFL) | (long) (score + 0x8000) << 15 | (long) (depth & 0xFF) << 31 | (long) bound << 39;
+        int index = (int) key & mask;
+        keys[index] = key ^ entry;
+        data[index] = entry;
+    }
+
+    /**
+     * Returns the move of an entry.
+     *
+     * @param entry the packed entry
+     * @return the packed move, or {@link chess.Move#NONE}
+     */
+    public static int move(long entry) {
+        return (int) (entry & 0x7FFF);
+    }
+
+    /**
+     * Returns the score of an entry.
+     *
+     * @param entry the packed entry
+     * @param ply   the distance of the position from the root
+     * @return the score from the point of view of the player to move, mate scores relative to the root
+     */
+    public static int score(long entry, int ply) {
+        int score = (int) (entry >>> 15 & 0xFFFF) - 0x8000;
+        if (score >= Search.MATE_BOUND) {
+            return score - ply;
+        } else if (score <= -Search.MATE_BOUND) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    /**
+     * Returns the depth of an entry.
+     *
+     * @param entry the packed entry
+     * @return the depth of the search that produced the entry
+     */
+    public static int depth(long entry) {
+        return (int) (entry >>> 31 & 0xFF);
+    }
+
+    /**
+     * Returns the bound of an entry.
+     *
+     * @param entry the packed entry
+     * @return {@link #UPPER}, {@link #LOWER} or {@link #EXACT}
+     */
+    public static int bound(long entry) {
+        return (int) (entry >>> 39 & 0x3);
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(data, 0);
+    }
+}
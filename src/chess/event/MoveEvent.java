@@ -0,0 +1,229 @@
+package chess.event;
+
+import chess.ChessPiece;
+import chess.Color;
+import chess.GameResult;
+import chess.Move;
+import chess.PieceType;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A move played in a match, as published by a {@link MoveEventRing}. Events are preallocated and reused: the slots
+ * of a ring are filled in place by the player's thread, and each subscription copies them into an event of its own
+ * before handing it to its handler.
+ */
+public final class MoveEvent {
+
+    /**
+     * Flag of a move that captured a piece.
+     */
+    public static final int CAPTURE = 1;
+
+    /**
+     * Flag of a move that gave check.
+     */
+    public static final int CHECK = 1 << 1;
+
+    /**
+     * Flag of a move that gave checkmate.
+     */
+    public static final int CHECKMATE = 1 << 2;
+
+    /**
+     * Flag of a move that promoted a pawn.
+     */
+    public static final int PROMOTION = 1 << 3;
+
+    /**
+     * Flag of a castling move, described by the move of its king.
+     */
+    public static final int CASTLING = 1 << 4;
+
+    /**
+     * Flag of an event repeating the last move of a match after the piece of its promotion was chosen with
+     * {@link chess.ChessMatch#replacePromotedPiece(String)}, which the move event announced as a queen.
+     */
+    public static final int PROMOTION_CHOICE = 1 << 5;
+
+    private static final VarHandle STAMP;
+
+    static {
+        try {
+            STAMP = MethodHandles.lookup().findVarHandle(MoveEvent.class, "stamp", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Sequence of the event held by a ring slot, or -1 while the slot is being written.
+     */
+    private volatile long stamp = -1;
+
+    private long matchId;
+    private long sequence;
+    private int move;
+    private PieceType pieceType;
+    private Color color;
+    private PieceType capturedType;
+    private int flags;
+    private int turn;
+    private long positionKey;
+    private GameResult result;
+
+    MoveEvent() {
+    }
+
+    /**
+     * Fills the event, as a ring slot, with a move just played. Does not allocate.
+     */
+    void write(long matchId, long sequence, int move, ChessPiece piece, ChessPiece captured, int flags, int turn,
+               long positionKey, GameResult result) {
+        STAMP.setOpaque(this, -1L);
+        VarHandle.storeStoreFence();
+        this.matchId = matchId;
+        this.sequence = sequence;
+        this.move = move;
+        this.pieceType = piece.getType();
+        this.color = piece.getColor();
+        this.capturedType = captured == null ? null : captured.getType();
+        this.flags = flags;
+        this.turn = turn;
+        this.positionKey = positionKey;
+        this.result = result;
+        STAMP.setRelease(this, sequence);
+    }
+
+    /**
+     * Copies the event of a ring slot into another event.
+     *
+     * @return false if the slot does not hold the expected sequence, or was overwritten during the copy
+     */
+    boolean copyTo(MoveEvent target, long expected) {
+        if ((long) STAMP.getAcquire(this) != expected) {
+            return false;
+        }
+        target.matchId = matchId;
+        target.sequence = sequence;
+        target.move = move;
+        target.pieceType = pieceType;
+        target.color = color;
+        target.capturedType = capturedType;
+        target.flags = flags;
+        target.turn = turn;
+        target.positionKey = positionKey;
+        target.result = result;
+        VarHandle.loadLoadFence();
+        return (long) STAMP.getOpaque(this) == expected;
+    }
+
+    /**
+     * Returns the id of the match, given by the bus it is attached to.
+     *
+     * @return the match id
+     */
+    public long getMatchId() {
+        return matchId;
+    }
+
+    /**
+     * Returns the position of the event in the events of its match, starting at 0.
+     *
+     * @return the sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the move, packed as in {@link Move} with its promotion.
+     *
+     * @return the packed move
+     */
+    public int getMove() {
+        return move;
+    }
+
+    /**
+     * Returns the type of the moved piece, which is the promoted piece after a promotion.
+     *
+     * @return the piece type
+     */
+    public PieceType getPieceType() {
+        return pieceType;
+    }
+
+    /**
+     * Returns the color of the player who moved.
+     *
+     * @return the color of the mover
+     */
+    public Color getColor() {
+        return color;
+    }
+
+    /**
+     * Returns the type of the captured piece.
+     *
+     * @return the piece type, or null if the move captured nothing
+     */
+    public PieceType getCapturedType() {
+        return capturedType;
+    }
+
+    /**
+     * Returns the flags of the move, such as {@link #CAPTURE} and {@link #CHECK}.
+     *
+     * @return the flags
+     */
+    public int getFlags() {
+        return flags;
+    }
+
+    /**
+     * Returns whether the move has a flag.
+     *
+     * @param flag the flag, such as {@link #CHECK}
+     * @return true if the flag is set
+     */
+    public boolean is(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    /**
+     * Returns the turn of the match after the move.
+     *
+     * @return the turn
+     */
+    public int getTurn() {
+        return turn;
+    }
+
+    /**
+     * Returns the Zobrist hash of the position reached by the move.
+     *
+     * @return the position key
+     */
+    public long getPositionKey() {
+        return positionKey;
+    }
+
+    /**
+     * Returns the result of the match after the move.
+     *
+     * @return the result, {@link GameResult#ONGOING} if the move did not end the match
+     */
+    public GameResult getResult() {
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "match " + matchId + " #" + sequence + " " + color + " " + pieceType + " " + Move.toString(move) +
+                (capturedType != null ? " takes " + capturedType : "") +
+                (is(CHECKMATE) ? " checkmate" : is(CHECK) ? " check" : "") +
+                (is(PROMOTION_CHOICE) ? " promotion choice" : "");
+    }
+}
@@ -0,0 +1,272 @@
+package chess.event;
+
+import chess.ChessMatch;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Delivers the moves of matches to subscribers, such as analytics, logging and spectators, without slowing the
+ * players down.
+ * <p>
+ * Each attached match publishes into a {@link MoveEventRing} of its own, from the thread playing it. Each
+ * subscription runs on a thread of its own, which visits the rings of all the matches in turn and drains each one
+ * in a batch: it handles every event available, then advances its gate once. A subscription with nothing to do
+ * spins, then yields, then sleeps for short periods. The {@link OverflowPolicy} of the bus decides what a match does
+ * when a subscription is a full ring behind, so that memory stays bounded whatever the consumers do.
+ */
+public class MoveEventBus implements Closeable {
+
+    private final int capacity;
+    private final OverflowPolicy policy;
+
+    private final Object lock = new Object();
+    private volatile MoveEventRing[] rings = new MoveEventRing[0];
+    private final List<Subscription> subscriptions = new ArrayList<>();
+    private long nextMatchId = 1;
+    private volatile boolean closed;
+
+    /**
+     * Creates a bus.
+     *
+     * @param capacity the number of events of the ring of each match, a power of two
+     * @param policy   what a match does when a subscription is a full ring behind
+     */
+    public MoveEventBus(int capacity, OverflowPolicy policy) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("The capacity must be a power of two: " + capacity);
+        }
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    /**
+     * Starts publishing the moves of a match, played with {@link ChessMatch#performChessMove}.
+     *
+     * @param match the match
+     * @return the ring of the match, whose id identifies the match in its events
+     * @throws IllegalStateException if the match is already attached, or the bus is closed
+     */
+    public MoveEventRing attach(ChessMatch match) {
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("The bus is closed");
+            }
+            if (match.getEventRing() != null) {
+                throw new IllegalStateException("The match is already attached");
+            }
+            MoveEventRing ring = new MoveEventRing(nextMatchId++, capacity, policy);
+            for (int i = 0; i < subscriptions.size(); i++) {
+                ring.addGate(new Sequence(-1));
+            }
+            MoveEventRing[] updated = Arrays.copyOf(rings, rings.length + 1);
+            updated[rings.length] = ring;
+            rings = updated;
+            match.setEventRing(ring);
+            return ring;
+        }
+    }
+
+    /**
+     * Stops publishing the moves of a match. Its events already published are still delivered, after which its
+     * ring is dropped; a ring with nothing left to deliver, as always without subscriptions, is dropped at once.
+     * Must be called from the thread playing the match, or once it stopped playing.
+     *
+     * @param match the match
+     */
+    public void detach(ChessMatch match) {
+        MoveEventRing ring = match.getEventRing();
+        if (ring != null) {
+            match.setEventRing(null);
+            ring.setDetached();
+            if (ring.isDrained()) {
+                remove(ring);
+            }
+        }
+    }
+
+    /**
+     * Starts delivering the events of all the matches to a handler, on a new thread. The handler receives the
+     * events published from now on.
+     *
+     * @param name    the name of the subscription, used to name its thread
+     * @param handler the handler
+     * @return the subscription
+     * @throws IllegalStateException if the bus is closed
+     */
+    public Subscription subscribe(String name, MoveEventHandler handler) {
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("The bus is closed");
+            }
+            for (MoveEventRing ring : rings) {
+                ring.addGate(new Sequence(ring.getCursor().get()));
+            }
+            Subscription subscription = new Subscription(subscriptions.size(), name, handler);
+            subscriptions.add(subscription);
+            subscription.thread.start();
+            return subscription;
+        }
+    }
+
+    /**
+     * Delivers the events already published, then stops the subscription threads. The matches must no longer be
+     * played.
+     */
+    @Override
+    public void close() {
+        List<Subscription> stopped;
+        synchronized (lock) {
+            closed = true;
+            stopped = new ArrayList<>(subscriptions);
+        }
+        try {
+            for (Subscription subscription : stopped) {
+                subscription.thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void remove(MoveEventRing ring) {
+        synchronized (lock) {
+            List<MoveEventRing> remaining = new ArrayList<>(Arrays.asList(rings));
+            // The player and the subscriptions may all find the ring drained, and only the first removes it
+            if (remaining.remove(ring)) {
+                rings = remaining.toArray(new MoveEventRing[0]);
+            }
+        }
+    }
+
+    /**
+     * A handler receiving the events of the bus on a thread of its own.
+     */
+    public final class Subscription {
+
+        private final int index;
+        private final MoveEventHandler handler;
+        private final Thread thread;
+
+        /**
+         * Event the ring slots are copied into, so that the player can reuse a slot while it is handled.
+         */
+        private final MoveEvent event = new MoveEvent();
+
+        private volatile long handled;
+        private volatile long lost;
+        private volatile long batches;
+        private volatile long failures;
+
+        private Subscription(int index, String name, MoveEventHandler handler) {
+            this.index = index;
+            this.handler = handler;
+            thread = new Thread(this::run, "move-events-" + name);
+            thread.setDaemon(true);
+        }
+
+        /**
+         * Returns the number of events handled.
+         *
+         * @return the number of events
+         */
+        public long getHandled() {
+            return handled;
+        }
+
+        /**
+         * Returns the number of events overwritten before they were handled.
+         *
+         * @return the number of lost events
+         */
+        public long getLost() {
+            return lost;
+        }
+
+        /**
+         * Returns the number of batches handled, each made of the events available in a ring at once.
+         *
+         * @return the number of batches
+         */
+        public long getBatches() {
+            return batches;
+        }
+
+        /**
+         * Returns the number of events whose handler threw an exception. The event is skipped and delivery goes on.
+         *
+         * @return the number of failed events
+         */
+        public long getFailures() {
+            return failures;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d events in %d batches (%.1f per batch), %d lost, %d failed",
+                    thread.getName(), handled, batches, (double) handled / Math.max(1, batches), lost, failures);
+        }
+
+        private void run() {
+            for (int attempt = 0; ; ) {
+                // Read before draining, so that the last pass delivers everything published before the close
+                boolean stopping = closed;
+                long drained = 0;
+                for (MoveEventRing ring : rings) {
+                    drained += drain(ring);
+                    if (ring.isDetached() && ring.isDrained()) {
+                        remove(ring);
+                    }
+                }
+                if (drained > 0) {
+                    attempt = 0;
+                } else if (stopping) {
+                    return;
+                } else {
+                    MoveEventRing.idle(attempt++);
+                }
+            }
+        }
+
+        /**
+         * Handles the events available in a ring and advances the gate of the subscription past them.
+         *
+         * @return the number of events handled
+         */
+        private long drain(MoveEventRing ring) {
+            Sequence gate = ring.getGates()[index];
+            long next = gate.value + 1;
+            long available = ring.getCursor().get();
+            if (available < next) {
+                return 0;
+            }
+            if (available - next >= ring.capacity()) {
+                long skipped = available - ring.capacity() + 1 - next;
+                lost = lost + skipped;
+                handler.onLost(ring.getMatchId(), skipped);
+                next += skipped;
+                gate.set(next - 1);
+            }
+            long sequence = next;
+            for (; sequence <= available; sequence++) {
+                // Only fails when the player overwrote the slot, in which case the next pass counts the lost events
+                if (!ring.slot(sequence).copyTo(event, sequence)) {
+                    break;
+                }
+                try {
+                    handler.onEvent(event, sequence == available);
+                } catch (RuntimeException e) {
+                    failures = failures + 1;
+                }
+            }
+            if (sequence > next) {
+                gate.set(sequence - 1);
+                handled = handled + sequence - next;
+                batches = batches + 1;
+            }
+            return sequence - next;
+        }
+    }
+}
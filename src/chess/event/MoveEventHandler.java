@@ -0,0 +1,26 @@
+package chess.event;
+
+/**
+ * Receiver of the events of a {@link MoveEventBus}, called on the thread of its subscription.
+ */
+@FunctionalInterface
+public interface MoveEventHandler {
+
+    /**
+     * Handles an event. The event object is reused for the next one, so it must not be kept.
+     *
+     * @param event      the event
+     * @param endOfBatch true for the last event available in the ring, after which buffered work can be flushed
+     */
+    void onEvent(MoveEvent event, boolean endOfBatch);
+
+    /**
+     * Called when events of a match were overwritten before they were handled, with the
+     * {@link OverflowPolicy#COALESCE} policy. Does nothing by default.
+     *
+     * @param matchId the id of the match
+     * @param count   the number of lost events
+     */
+    default void onLost(long matchId, long count) {
+    }
+}
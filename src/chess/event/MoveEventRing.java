@@ -0,0 +1,196 @@
+package chess.event;
+
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.Move;
+import chess.PieceType;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Preallocated ring of the move events of one match, published by the thread playing the match and read by the
+ * subscriptions of a {@link MoveEventBus}, in the style of the LMAX Disruptor.
+ * <p>
+ * Events are numbered by a sequence counter, the cursor, and event n lives in slot n modulo the capacity. The
+ * player fills the next slot in place and then advances the cursor, so that publishing allocates nothing and takes
+ * no lock. Each subscription owns a gate, the sequence of the last event it handled, which it advances once per
+ * batch. A slot can be reused once every gate has passed it; when the slowest gate is a full ring behind, the
+ * {@link OverflowPolicy} decides what happens. The gates are only read when the cursor reaches the last known
+ * minimum, so that the player seldom touches the cache lines of the consumers.
+ * <p>
+ * A ring has a single producer: the match must be played by one thread at a time.
+ */
+public final class MoveEventRing {
+
+    private final long matchId;
+    private final MoveEvent[] slots;
+    private final int mask;
+    private final OverflowPolicy policy;
+    private final Sequence cursor = new Sequence(-1);
+
+    /**
+     * Gate of each subscription of the bus, in subscription order.
+     */
+    private volatile Sequence[] gates = new Sequence[0];
+
+    /**
+     * Lowest gate seen by the player, below the actual minimum if consumers moved on since.
+     */
+    private long cachedGate = -1;
+
+    private volatile long dropped;
+    private volatile boolean detached;
+
+    MoveEventRing(long matchId, int capacity, OverflowPolicy policy) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("The capacity must be a power of two: " + capacity);
+        }
+        this.matchId = matchId;
+        this.policy = policy;
+        slots = new MoveEvent[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new MoveEvent();
+        }
+        mask = capacity - 1;
+    }
+
+    /**
+     * Returns the id of the match, given by its bus.
+     *
+     * @return the match id
+     */
+    public long getMatchId() {
+        return matchId;
+    }
+
+    /**
+     * Returns the number of events published.
+     *
+     * @return the number of events
+     */
+    public long getPublished() {
+        return cursor.get() + 1;
+    }
+
+    /**
+     * Returns the number of events not published because a subscription was a full ring behind, with the
+     * {@link OverflowPolicy#DROP} policy.
+     *
+     * @return the number of dropped events
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Publishes the move just played in a match. Called by {@link ChessMatch} from the thread playing it; does not
+     * allocate, and only waits with the {@link OverflowPolicy#BLOCK} policy.
+     *
+     * @param match    the match, after the move
+     * @param move     the packed move, with its promotion
+     * @param captured the captured piece, or null
+     * @param flags    flags added to the ones read from the match, such as {@link MoveEvent#PROMOTION_CHOICE}
+     * @return true if the event was published, false if it was dropped
+     */
+    public boolean publish(ChessMatch match, int move, ChessPiece captured, int flags) {
+        long next = cursor.value + 1;
+        long wrapPoint = next - slots.length;
+        if (policy != OverflowPolicy.COALESCE && wrapPoint > cachedGate) {
+            long gate = minimumGate(next - 1);
+            for (int attempt = 0; wrapPoint > gate; attempt++) {
+                if (policy == OverflowPolicy.DROP) {
+                    dropped = dropped + 1;
+                    return false;
+                }
+                idle(attempt);
+                gate = minimumGate(next - 1);
+            }
+            cachedGate = gate;
+        }
+
+        ChessPiece piece = match.getPiece(Move.target(move));
+        if (captured != null) {
+            flags |= MoveEvent.CAPTURE;
+        }
+        if (match.getCheckMate()) {
+            flags |= MoveEvent.CHECKMATE | MoveEvent.CHECK;
+        } else if (match.getCheck()) {
+            flags |= MoveEvent.CHECK;
+        }
+        if (match.getPromoted() != null) {
+            flags |= MoveEvent.PROMOTION;
+        }
+        if (piece.getType() == PieceType.KING && Math.abs((Move.source(move) & 7) - (Move.target(move) & 7)) == 2) {
+            flags |= MoveEvent.CASTLING;
+        }
+        slots[(int) next & mask].write(matchId, next, move, piece, captured, flags, match.getTurn(),
+                match.getPositionKey(), match.getGameResult());
+        cursor.set(next);
+        return true;
+    }
+
+    Sequence getCursor() {
+        return cursor;
+    }
+
+    MoveEvent slot(long sequence) {
+        return slots[(int) sequence & mask];
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+
+    Sequence[] getGates() {
+        return gates;
+    }
+
+    /**
+     * Adds the gate of a new subscription. Called by the bus under its lock.
+     */
+    void addGate(Sequence gate) {
+        Sequence[] current = gates;
+        Sequence[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = gate;
+        gates = updated;
+    }
+
+    boolean isDetached() {
+        return detached;
+    }
+
+    void setDetached() {
+        detached = true;
+    }
+
+    /**
+     * Returns whether every subscription handled every published event.
+     */
+    boolean isDrained() {
+        return minimumGate(cursor.get()) == cursor.get();
+    }
+
+    private long minimumGate(long minimum) {
+        for (Sequence gate : gates) {
+            minimum = Math.min(minimum, gate.get());
+        }
+        return minimum;
+    }
+
+    /**
+     * Waits a little after an attempt found nothing to do: spins first, then yields the processor, then sleeps
+     * briefly, so that a busy ring is handled with no system call and an idle one costs almost no CPU.
+     *
+     * @param attempt the number of attempts that found nothing to do in a row
+     */
+    static void idle(int attempt) {
+        if (attempt < 100) {
+            Thread.onSpinWait();
+        } else if (attempt < 200) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(50_000);
+        }
+    }
+}
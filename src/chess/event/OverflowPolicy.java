@@ -0,0 +1,24 @@
+package chess.event;
+
+/**
+ * What a {@link MoveEventRing} does with a new event when its slowest consumer is a full ring behind.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * The new event is not published, for any consumer, and counted as dropped. The move path never waits.
+     */
+    DROP,
+
+    /**
+     * The new event overwrites the oldest one. A consumer that falls a full ring behind skips to the most recent
+     * events and is told how many it lost, so that slow spectators see the latest moves. The move path never waits.
+     */
+    COALESCE,
+
+    /**
+     * The player's thread waits until the slowest consumer frees a slot. No event is lost, but a slow consumer
+     * slows the match down.
+     */
+    BLOCK
+}
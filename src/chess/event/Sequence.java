@@ -0,0 +1,53 @@
+package chess.event;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Position in a ring buffer written by a single thread. It is padded on both sides by its superclass and its own
+ * fields, which the JVM lays out in that order, so that it sits alone on its cache line: the cursor of a ring is
+ * written by the player's thread and each gate by a consumer thread, and a shared line would be invalidated on
+ * every write of either.
+ */
+final class Sequence extends SequenceValue {
+
+    long p9, p10, p11, p12, p13, p14, p15;
+
+    Sequence(long value) {
+        this.value = value;
+    }
+
+    /**
+     * Returns the value, as last published by any thread.
+     */
+    long get() {
+        return (long) VALUE.getAcquire(this);
+    }
+
+    /**
+     * Publishes a new value. Only the owning thread may call it, so no atomic update is needed.
+     */
+    void set(long value) {
+        VALUE.setRelease(this, value);
+    }
+}
+
+abstract class SequencePadding {
+
+    long p1, p2, p3, p4, p5, p6, p7;
+}
+
+abstract class SequenceValue extends SequencePadding {
+
+    static final VarHandle VALUE;
+
+    static {
+        try {
+            VALUE = MethodHandles.lookup().findVarHandle(SequenceValue.class, "value", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    volatile long value;
+}
@@ -0,0 +1,472 @@
+package chess.journal;
+
+import chess.ChessMatch;
+import chess.Move;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of the moves of live matches, from which the matches are rebuilt after a crash.
+ * <p>
+ * Each event is a 16-byte big-endian record: the match id (8 bytes), the record kind (1 byte), an unused byte, the
+ * packed move with its promotion (2 bytes) and a CRC32C of the first 12 bytes (4 bytes). A match starts from the
+ * initial position with a start record, each accepted move adds a move record, and an end record drops the match
+ * from the journal. Records go to segment files of bounded size, named by increasing number; a segment is deleted
+ * once every match with records in it has ended.
+ * <p>
+ * Appending only queues the record. A single writer thread writes all the queued records of all the matches at
+ * once and forces them to disk with one fsync, then completes their futures: while one batch is synced, the next
+ * one builds up, so the fsync cost is shared by all the moves made meanwhile instead of paid by each move.
+ * <p>
+ * Opening a journal replays its segments: the matches that were started and not ended are rebuilt by validating
+ * all their moves at once with {@link ChessMatch#validateSequence(int[])}. A match with an illegal move is dropped
+ * and reported by {@link #getRejectedMatches()}, without affecting the other matches. A torn or corrupt record, as
+ * left by a crash in the middle of a write, ends the replay of its segment. New records always go to a new segment.
+ * The class is thread-safe.
+ */
+public class MoveJournal implements Closeable {
+
+    /**
+     * Size in bytes of one record.
+     */
+    static final int RECORD_SIZE = 16;
+
+    private static final byte START = 1;
+    private static final byte MOVE = 2;
+    private static final byte END = 3;
+
+    private static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final long segmentBytes;
+
+    private final Map<Long, ChessMatch> recovered = new HashMap<>();
+    private final Set<Long> rejected = new HashSet<>();
+    private long recoveredMoves;
+    private long recoveryNanos;
+
+    /**
+     * Lowest segment holding records of each live match.
+     */
+    private final Map<Long, Integer> firstSegments = new HashMap<>();
+    private final TreeMap<Integer, Path> segments = new TreeMap<>();
+    private long nextMatchId = 1;
+
+    private ByteBuffer pending = ByteBuffer.allocate(RECORD_SIZE * 1024);
+    private final CRC32C crc = new CRC32C();
+    private List<CompletableFuture<Void>> waiters = new ArrayList<>();
+    private boolean closed;
+    private IOException failure;
+
+    private FileChannel channel;
+    private int segment;
+    private long segmentSize;
+    private long records;
+    private long syncs;
+    private long syncNanos;
+    private int largestBatch;
+
+    private final Thread writer;
+
+    /**
+     * Opens the journal of a directory, rebuilding the matches it holds, with segments of 64 MB.
+     *
+     * @param directory the directory of the segment files, created if needed
+     * @throws IOException if the journal cannot be read or a new segment cannot be created
+     */
+    public MoveJournal(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Opens the journal of a directory, rebuilding the matches it holds.
+     *
+     * @param directory    the directory of the segment files, created if needed
+     * @param segmentBytes the size above which a new segment is started
+     * @throws IOException if the journal cannot be read or a new segment cannot be created
+     */
+    public MoveJournal(Path directory, long segmentBytes) throws IOException {
+        if (segmentBytes < RECORD_SIZE) {
+            throw new IllegalArgumentException("Segments must hold at least one record");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+        recover();
+        openSegment(segments.isEmpty() ? 1 : segments.lastKey() + 1);
+        deleteEndedSegments();
+        writer = new Thread(this::writeLoop, "move-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Returns the matches rebuilt from the journal when it was opened, by match id. They are still live: their
+     * next moves are appended under the same ids.
+     *
+     * @return the recovered matches
+     */
+    public Map<Long, ChessMatch> getRecoveredMatches() {
+        return Collections.unmodifiableMap(recovered);
+    }
+
+    /**
+     * Returns the ids of the matches dropped when the journal was opened, because one of their moves was illegal.
+     * Their records are deleted with their segments, as those of ended matches.
+     *
+     * @return the rejected match ids
+     */
+    public Set<Long> getRejectedMatches() {
+        return Collections.unmodifiableSet(rejected);
+    }
+
+    /**
+     * Returns the number of moves replayed when the journal was opened.
+     *
+     * @return the number of recovered moves
+     */
+    public long getRecoveredMoves() {
+        return recoveredMoves;
+    }
+
+    /**
+     * Returns the time taken to replay the journal when it was opened.
+     *
+     * @return the recovery time in nanoseconds
+     */
+    public long getRecoveryNanos() {
+        return recoveryNanos;
+    }
+
+    /**
+     * Starts journaling a new match, from the initial position.
+     *
+     * @return the id of the match
+     */
+    public synchronized long startMatch() {
+        long id = nextMatchId++;
+        firstSegments.put(id, segment);
+        enqueue(id, START, Move.NONE);
+        return id;
+    }
+
+    /**
+     * Appends a move accepted by a match, with the piece chosen for a promotion.
+     *
+     * @param matchId the id of the match
+     * @param move    the packed move, as accepted by {@link ChessMatch#performChessMove(int)}
+     * @return a future completed when the move is on disk, or completed exceptionally if it could not be written
+     * @throws IllegalArgumentException if the match is not live
+     */
+    public synchronized CompletableFuture<Void> append(long matchId, int move) {
+        checkLive(matchId);
+        return enqueue(matchId, MOVE, move);
+    }
+
+    /**
+     * Ends a match, which is then no longer rebuilt.
+     *
+     * @param matchId the id of the match
+     * @return a future completed when the end is on disk
+     * @throws IllegalArgumentException if the match is not live
+     */
+    public synchronized CompletableFuture<Void> endMatch(long matchId) {
+        checkLive(matchId);
+        firstSegments.remove(matchId);
+        return enqueue(matchId, END, Move.NONE);
+    }
+
+    /**
+     * Returns the number of records written since the journal was opened.
+     *
+     * @return the number of records
+     */
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    /**
+     * Returns the number of fsyncs since the journal was opened.
+     *
+     * @return the number of syncs
+     */
+    public synchronized long getSyncs() {
+        return syncs;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d records, %d fsyncs, %.1f records per fsync (largest batch %d), %.2f ms per fsync",
+                records, syncs, (double) records / Math.max(1, syncs), largestBatch,
+                syncNanos / 1e6 / Math.max(1, syncs));
+    }
+
+    /**
+     * Writes the queued records, stops the writer thread and closes the current segment.
+     *
+     * @throws IOException if the last records could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing the journal", e);
+        }
+        channel.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void checkLive(long matchId) {
+        if (!firstSegments.containsKey(matchId)) {
+            throw new IllegalArgumentException("No live match with id " + matchId);
+        }
+    }
+
+    private CompletableFuture<Void> enqueue(long matchId, byte kind, int move) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (closed || failure != null) {
+            future.completeExceptionally(failure != null ? failure : new IOException("The journal is closed"));
+            return future;
+        }
+        if (pending.remaining() < RECORD_SIZE) {
+            ByteBuffer grown = ByteBuffer.allocate(pending.capacity() * 2);
+            pending.flip();
+            pending = grown.put(pending);
+        }
+        int start = pending.position();
+        pending.putLong(matchId).put(kind).put((byte) 0).putShort((short) move);
+        crc.reset();
+        crc.update(pending.array(), start, RECORD_SIZE - 4);
+        pending.putInt((int) crc.getValue());
+        waiters.add(future);
+        notifyAll();
+        return future;
+    }
+
+    /**
+     * Writes and syncs the queued records in batches, until the journal is closed.
+     */
+    private void writeLoop() {
+        ByteBuffer batch = ByteBuffer.allocate(pending.capacity());
+        while (true) {
+            List<CompletableFuture<Void>> batchWaiters;
+            synchronized (this) {
+                while (waiters.isEmpty() && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (waiters.isEmpty()) {
+                    return;
+                }
+                // Swaps the buffers, so appends go on while this batch is written
+                ByteBuffer full = pending;
+                pending = batch.capacity() >= full.capacity() ? batch : ByteBuffer.allocate(full.capacity());
+                pending.clear();
+                batch = full;
+                batchWaiters = waiters;
+                waiters = new ArrayList<>();
+            }
+            batch.flip();
+            long start = System.nanoTime();
+            IOException error = null;
+            try {
+                write(batch);
+            } catch (IOException e) {
+                error = e;
+            }
+            synchronized (this) {
+                if (error == null) {
+                    syncs++;
+                    syncNanos += System.nanoTime() - start;
+                    records += batchWaiters.size();
+                    largestBatch = Math.max(largestBatch, batchWaiters.size());
+                } else if (failure == null) {
+                    failure = error;
+                }
+            }
+            for (CompletableFuture<Void> waiter : batchWaiters) {
+                if (error == null) {
+                    waiter.complete(null);
+                } else {
+                    waiter.completeExceptionally(error);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Writes a batch of records to the current segment, starting a new one when it is full, and syncs it.
+     */
+    private void write(ByteBuffer batch) throws IOException {
+        while (batch.hasRemaining()) {
+            if (segmentSize >= segmentBytes) {
+                channel.force(false);
+                channel.close();
+                synchronized (this) {
+                    openSegment(segment + 1);
+                }
+                deleteEndedSegments();
+            }
+            int length = (int) Math.min(batch.remaining(),
+                    Math.max(RECORD_SIZE, (segmentBytes - segmentSize) / RECORD_SIZE * RECORD_SIZE));
+            ByteBuffer slice = batch.slice(batch.position(), length);
+            while (slice.hasRemaining()) {
+                channel.write(slice);
+            }
+            batch.position(batch.position() + length);
+            segmentSize += length;
+        }
+        channel.force(false);
+    }
+
+    private void openSegment(int number) throws IOException {
+        Path path = directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segments.put(number, path);
+        segment = number;
+        segmentSize = 0;
+    }
+
+    /**
+     * Deletes the segments older than the first segment of every live match.
+     */
+    private void deleteEndedSegments() throws IOException {
+        List<Path> obsolete = new ArrayList<>();
+        synchronized (this) {
+            int oldest = firstSegments.values().stream().min(Integer::compare).orElse(segment);
+            while (!segments.isEmpty() && segments.firstKey() < Math.min(oldest, segment)) {
+                obsolete.add(segments.pollFirstEntry().getValue());
+            }
+        }
+        for (Path path : obsolete) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Replays the segments of the directory in order, then validates the moves of each match still live.
+     */
+    private void recover() throws IOException {
+        long start = System.nanoTime();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                segments.put(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+                        name.length() - SEGMENT_SUFFIX.length())), path);
+            }
+        }
+        Map<Long, MoveList> replayed = new HashMap<>();
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 4096);
+        for (Map.Entry<Integer, Path> entry : segments.entrySet()) {
+            try (FileChannel in = FileChannel.open(entry.getValue(), StandardOpenOption.READ)) {
+                boolean intact = true;
+                buffer.clear();
+                while (intact && in.read(buffer) > 0) {
+                    buffer.flip();
+                    while (intact && buffer.remaining() >= RECORD_SIZE) {
+                        crc.reset();
+                        crc.update(buffer.array(), buffer.position(), RECORD_SIZE - 4);
+                        intact = (int) crc.getValue() == buffer.getInt(buffer.position() + RECORD_SIZE - 4);
+                        long matchId = buffer.getLong();
+                        byte kind = buffer.get();
+                        buffer.get();
+                        int move = buffer.getShort() & 0xFFFF;
+                        buffer.getInt();
+                        if (intact) {
+                            replay(replayed, matchId, kind, move, entry.getKey());
+                        }
+                    }
+                    buffer.compact();
+                }
+            }
+        }
+        for (Map.Entry<Long, MoveList> entry : replayed.entrySet()) {
+            MoveList moves = entry.getValue();
+            ChessMatch match = new ChessMatch();
+            if (match.validateSequence(Arrays.copyOf(moves.moves, moves.count)).isValid()) {
+                recovered.put(entry.getKey(), match);
+                recoveredMoves += moves.count;
+            } else {
+                rejected.add(entry.getKey());
+                firstSegments.remove(entry.getKey());
+            }
+        }
+        recoveryNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Replays an intact record, collecting the moves of each live match. A record of an unknown kind is skipped.
+     */
+    private void replay(Map<Long, MoveList> replayed, long matchId, byte kind, int move, int segmentNumber) {
+        nextMatchId = Math.max(nextMatchId, matchId + 1);
+        switch (kind) {
+            case START:
+                replayed.put(matchId, new MoveList());
+                firstSegments.put(matchId, segmentNumber);
+                break;
+            case MOVE:
+                MoveList moves = replayed.get(matchId);
+                // Otherwise a match that ended, whose start was in a deleted segment
+                if (moves != null) {
+                    moves.add(move);
+                }
+                break;
+            case END:
+                replayed.remove(matchId);
+                firstSegments.remove(matchId);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Moves of a match read from the journal, in order.
+     */
+    private static final class MoveList {
+
+        int[] moves = new int[64];
+        int count;
+
+        void add(int move) {
+            if (count == moves.length) {
+                moves = Arrays.copyOf(moves, count * 2);
+            }
+            moves[count++] = move;
+        }
+    }
+}
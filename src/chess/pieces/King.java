@@ -4,6 +4,7 @@ import boardgame.Board;
 import boardgame.Position;
 import chess.ChessMatch;
 import chess.ChessPiece;
+import chess.PieceType;
 import chess.Color;
 
 /**
@@ -25,6 +26,16 @@ public class King extends ChessPiece {
         this.chessMatch = chessMatch;
     }
 
+    /**
+     * Returns the type of the King chess piece.
+     *
+     * @return {@link PieceType#KING}
+     */
+    @Override
+    public PieceType getType() {
+        return PieceType.KING;
+    }
+
     /**
      * Returns the string representation of the King chess piece.
      *
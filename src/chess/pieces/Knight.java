@@ -3,6 +3,7 @@ package chess.pieces;
 import boardgame.Board;
 import boardgame.Position;
 import chess.ChessPiece;
+import chess.PieceType;
 import chess.Color;
 
 import chess.ChessMatch;
@@ -22,6 +23,16 @@ public class Knight extends ChessPiece {
         super(board, color);
     }
 
+    /**
+     * Returns the type of the Knight chess piece.
+     *
+     * @return {@link PieceType#KNIGHT}
+     */
+    @Override
+    public PieceType getType() {
+        return PieceType.KNIGHT;
+    }
+
     /**
      * Returns the string representation of the Knight chess piece.
      *
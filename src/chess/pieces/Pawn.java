@@ -4,6 +4,7 @@ import boardgame.Board;
 import boardgame.Position;
 import chess.ChessMatch;
 import chess.ChessPiece;
+import chess.PieceType;
 import chess.Color;
 
 /**
@@ -25,6 +26,16 @@ public class Pawn extends ChessPiece {
         this.chessMatch = chessMatch;
     }
 
+    /**
+     * Returns the type of the Pawn chess piece.
+     *
+     * @return {@link PieceType#PAWN}
+     */
+    @Override
+    public PieceType getType() {
+        return PieceType.PAWN;
+    }
+
     /**
      * Returns a 2D boolean array representing all the possible moves of the pawn.
      *
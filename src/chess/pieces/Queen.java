@@ -3,6 +3,7 @@ package chess.pieces;
 import boardgame.Board;
 import boardgame.Position;
 import chess.ChessPiece;
+import chess.PieceType;
 import chess.Color;
 
 /**
@@ -20,6 +21,16 @@ public class Queen extends ChessPiece {
         super(board, color);
     }
 
+    /**
+     * Returns the type of the Queen chess piece.
+     *
+     * @return {@link PieceType#QUEEN}
+     */
+    @Override
+    public PieceType getType() {
+        return PieceType.QUEEN;
+    }
+
     /**
      * Returns a 2D boolean array representing all the possible moves the Queen can make.
      *
@@ -3,6 +3,7 @@ package chess.pieces;
 import boardgame.Board;
 import boardgame.Position;
 import chess.ChessPiece;
+import chess.PieceType;
 import chess.Color;
 
 /**
@@ -20,6 +21,16 @@ public class Rook extends ChessPiece {
         super(board, color);
     }
 
+    /**
+     * Returns the type of the Rook chess piece.
+     *
+     * @return {@link PieceType#ROOK}
+     */
+    @Override
+    public PieceType getType() {
+        return PieceType.ROOK;
+    }
+
     /**
      * Returns a string representation of the Rook.
      *
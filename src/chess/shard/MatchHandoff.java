@@ -0,0 +1,51 @@
+package chess.shard;
+
+import chess.ChessMatch;
+import chess.CompactPosition;
+import chess.exception.ChessException;
+
+import java.util.Arrays;
+
+/**
+ * State of a match shipped from one worker to another: the compact position after the last capture or pawn move,
+ * and the moves played since, the tail of the journal of the match. No position before that move can occur again,
+ * so the match rebuilt by replaying the tail counts repetitions and the fifty-move rule exactly as the original.
+ */
+final class MatchHandoff {
+
+    final long[] words;
+    final int[] moves;
+
+    MatchHandoff(long[] words, int[] moves) {
+        this.words = words;
+        this.moves = moves;
+    }
+
+    /**
+     * Returns whether the handoff continues an earlier one of the same match: the position is the same, and the
+     * moves start with the earlier ones, so the match can be brought up to date by playing the moves that follow.
+     *
+     * @param earlier the earlier handoff
+     * @return true if no capture or pawn move was played since the earlier handoff
+     */
+    boolean continues(MatchHandoff earlier) {
+        return Arrays.equals(words, earlier.words) && moves.length >= earlier.moves.length &&
+                Arrays.equals(moves, 0, earlier.moves.length, earlier.moves, 0, earlier.moves.length);
+    }
+
+    /**
+     * Rebuilds the match.
+     *
+     * @return a new match, after the moves of the tail
+     * @throws ChessException if the position is invalid or a move of the tail is illegal
+     */
+    ChessMatch rebuild() {
+        ChessMatch match = CompactPosition.read(words, 0).toMatch();
+        for (int move : moves) {
+            if (!match.tryMove(move).isLegal()) {
+                throw new ChessException("Illegal move in the tail of the match");
+            }
+        }
+        return match;
+    }
+}
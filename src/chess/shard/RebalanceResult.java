@@ -0,0 +1,93 @@
+package chess.shard;
+
+/**
+ * Outcome of a rebalance of a {@link ShardRouter}: the matches migrated to their new workers, and for how long
+ * each of them was paused.
+ */
+public final class RebalanceResult {
+
+    private final int moved;
+    private final int failed;
+    private final int kept;
+    private final int heldRequests;
+    private final long[] pauseNanos;
+    private final long nanos;
+
+    RebalanceResult(int moved, int failed, int kept, int heldRequests, long[] pauseNanos, long nanos) {
+        this.moved = moved;
+        this.failed = failed;
+        this.kept = kept;
+        this.heldRequests = heldRequests;
+        this.pauseNanos = pauseNanos;
+        this.nanos = nanos;
+    }
+
+    /**
+     * Returns the number of matches migrated to another worker.
+     *
+     * @return the number of matches moved, the ones that ended during the rebalance included
+     */
+    public int getMoved() {
+        return moved;
+    }
+
+    /**
+     * Returns the number of matches that could not be migrated, because a worker could not be reached or rejected
+     * the match. Their requests are then answered as for a match that is not live.
+     *
+     * @return the number of failed migrations
+     */
+    public int getFailed() {
+        return failed;
+    }
+
+    /**
+     * Returns the number of matches put back on their old worker, because their new worker failed once the old one
+     * gave them up. Their old worker keeps playing them, and they are not counted as moved.
+     *
+     * @return the number of matches kept on their old worker
+     */
+    public int getKept() {
+        return kept;
+    }
+
+    /**
+     * Returns the number of requests that arrived for a match while it was migrated, and were held until it was.
+     *
+     * @return the number of held requests
+     */
+    public int getHeldRequests() {
+        return heldRequests;
+    }
+
+    /**
+     * Returns a percentile of the time a match was paused by its migration, from the moment the router held its
+     * requests to the moment it forwarded them to the new worker.
+     *
+     * @param percentile the percentile, from 0 to 1
+     * @return the pause in nanoseconds, or 0 if no match was moved
+     */
+    public long getPauseNanos(double percentile) {
+        if (pauseNanos.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * pauseNanos.length) - 1;
+        return pauseNanos[Math.max(0, Math.min(pauseNanos.length - 1, index))];
+    }
+
+    /**
+     * Returns the duration of the whole rebalance.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d matches moved in %d ms, %d failed, %d kept, %d requests held, pause p50 %d us, " +
+                        "p99 %d us, max %d us", moved, nanos / 1_000_000, failed, kept, heldRequests,
+                getPauseNanos(0.5) / 1_000, getPauseNanos(0.99) / 1_000, getPauseNanos(1) / 1_000);
+    }
+}
@@ -0,0 +1,127 @@
+package chess.shard;
+
+import chess.GameResult;
+import chess.MoveStatus;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Blocking client of a {@link ShardRouter}, or of a single {@link ShardWorker}, which speaks the same protocol.
+ * Each call sends one request and waits for its reply. The methods are thread-safe, but calls from several
+ * threads wait for each other, so a thread playing many matches at once should have its own client.
+ */
+public class ShardClient implements Closeable {
+
+    private static final MoveStatus[] STATUSES = MoveStatus.values();
+    private static final GameResult[] RESULTS = GameResult.values();
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private int nextId;
+    private GameResult result = GameResult.ONGOING;
+
+    /**
+     * Connects to a router or a worker.
+     *
+     * @param address the address of the router or the worker
+     * @throws IOException if the connection fails
+     */
+    public ShardClient(InetSocketAddress address) throws IOException {
+        socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(address);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    /**
+     * Starts a match from the initial position.
+     *
+     * @param matchId the id of the match, chosen by the caller
+     * @throws IllegalArgumentException if a match with the id is live
+     * @throws IOException              if the connection failed, or the owner of the match cannot be reached
+     */
+    public synchronized void startMatch(long matchId) throws IOException {
+        call(ShardFrames.START, matchId, 0);
+    }
+
+    /**
+     * Plays a move, as {@link chess.ChessMatch#tryMove(int)} does. The result of the match after the move is then
+     * returned by {@link #getResult()}.
+     *
+     * @param matchId the id of the match
+     * @param move    the packed move
+     * @return {@link MoveStatus#LEGAL} if the move was played, otherwise the reason it was rejected
+     * @throws IllegalArgumentException if the match is not live
+     * @throws IOException              if the connection failed, or the owner of the match cannot be reached
+     */
+    public synchronized MoveStatus move(long matchId, int move) throws IOException {
+        return STATUSES[call(ShardFrames.MOVE, matchId, move)];
+    }
+
+    /**
+     * Ends a match, which the worker then drops.
+     *
+     * @param matchId the id of the match
+     * @throws IllegalArgumentException if the match is not live
+     * @throws IOException              if the connection failed, or the owner of the match cannot be reached
+     */
+    public synchronized void endMatch(long matchId) throws IOException {
+        call(ShardFrames.END, matchId, 0);
+    }
+
+    /**
+     * Returns the result of the match after the last move played with {@link #move(long, int)}.
+     *
+     * @return the result of the match
+     */
+    public synchronized GameResult getResult() {
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    /**
+     * Sends a request and waits for its reply.
+     *
+     * @return the status of the reply, which is not an error
+     */
+    private int call(byte type, long matchId, int move) throws IOException {
+        int id = nextId++;
+        ShardFrames.writeRequest(out, id, type, matchId, move);
+        out.flush();
+        int replyId = in.readInt();
+        byte replyType = in.readByte();
+        byte status = in.readByte();
+        int resultOrdinal = in.readUnsignedByte();
+        if (replyId != id || replyType != type) {
+            throw new IOException("Unexpected reply " + replyId + " of type " + replyType + " to request " + id);
+        }
+        switch (status) {
+            case ShardFrames.NO_MATCH:
+                throw new IllegalArgumentException("No live match with id " + matchId);
+            case ShardFrames.MATCH_EXISTS:
+                throw new IllegalArgumentException("A match with id " + matchId + " is already live");
+            case ShardFrames.INVALID:
+                throw new IOException("Request rejected as invalid");
+            case ShardFrames.UNAVAILABLE:
+                throw new IOException("The owner of match " + matchId + " cannot be reached");
+            default:
+                if (type == ShardFrames.MOVE) {
+                    result = RESULTS[resultOrdinal];
+                }
+                return status;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package chess.shard;
+
+import chess.CompactPosition;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Binary frames exchanged by {@link ShardClient}, {@link ShardRouter} and {@link ShardWorker}, which all speak the
+ * same protocol, so that a client can talk to a worker directly.
+ * <p>
+ * A request is the request id chosen by the sender (4 bytes), its type (1 byte) and the match id (8 bytes),
+ * followed by the packed move (2 bytes) for a move, by a handoff for an import, or by moves for an append. A reply
+ * is the id of its request (4 bytes), the type of the request (1 byte), a status (1 byte) and the ordinal of the
+ * {@link chess.GameResult} of the match (1 byte), followed by the count and the ids of the matches for a list, or
+ * by a handoff for a successful copy or export. The status of a move is the ordinal of its
+ * {@link chess.MoveStatus}, and that of the other requests {@link #OK}, or one of the negative error codes for any
+ * request. A handoff is the five words of a {@link CompactPosition}, followed by the moves played since, as a count
+ * (2 bytes) and the packed moves (2 bytes each). A worker replies in the order of the requests of each connection;
+ * a router may not, since they go to different workers. All values are big-endian.
+ */
+final class ShardFrames {
+
+    static final byte START = 1;
+    static final byte MOVE = 2;
+    static final byte END = 3;
+
+    /**
+     * Lists the ids of the matches of a worker. The match id of the request is ignored.
+     */
+    static final byte LIST = 4;
+
+    /**
+     * Returns the handoff of a match, which the worker keeps playing.
+     */
+    static final byte COPY = 5;
+
+    /**
+     * Removes a match from a worker and returns its handoff.
+     */
+    static final byte EXPORT = 6;
+
+    /**
+     * Adds a match to a worker from a handoff, replacing any copy of it.
+     */
+    static final byte IMPORT = 7;
+
+    /**
+     * Plays moves on a match imported before, as a count (2 bytes) followed by the packed moves (2 bytes each).
+     */
+    static final byte APPEND = 8;
+
+    static final byte OK = 0;
+    static final byte NO_MATCH = -1;
+    static final byte MATCH_EXISTS = -2;
+    static final byte INVALID = -3;
+
+    /**
+     * The worker owning the match cannot be reached.
+     */
+    static final byte UNAVAILABLE = -4;
+
+    private ShardFrames() {
+    }
+
+    static void writeRequest(DataOutputStream out, int id, byte type, long matchId, int move) throws IOException {
+        out.writeInt(id);
+        out.writeByte(type);
+        out.writeLong(matchId);
+        if (type == MOVE) {
+            out.writeShort(move);
+        }
+    }
+
+    static void writeReply(DataOutputStream out, int id, byte type, int status, int result) throws IOException {
+        out.writeInt(id);
+        out.writeByte(type);
+        out.writeByte(status);
+        out.writeByte(result);
+    }
+
+    static void writeHandoff(DataOutputStream out, MatchHandoff handoff) throws IOException {
+        for (long word : handoff.words) {
+            out.writeLong(word);
+        }
+        writeMoves(out, handoff.moves, 0);
+    }
+
+    static MatchHandoff readHandoff(DataInputStream in) throws IOException {
+        long[] words = new long[CompactPosition.WORDS];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = in.readLong();
+        }
+        return new MatchHandoff(words, readMoves(in));
+    }
+
+    /**
+     * Writes the moves of an array from an index on, with their count.
+     */
+    static void writeMoves(DataOutputStream out, int[] moves, int from) throws IOException {
+        out.writeShort(moves.length - from);
+        for (int i = from; i < moves.length; i++) {
+            out.writeShort(moves[i]);
+        }
+    }
+
+    static int[] readMoves(DataInputStream in) throws IOException {
+        int[] moves = new int[in.readUnsignedShort()];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = in.readUnsignedShort();
+        }
+        return moves;
+    }
+}
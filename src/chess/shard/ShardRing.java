@@ -0,0 +1,147 @@
+package chess.shard;
+
+import java.util.Arrays;
+
+/**
+ * Immutable consistent-hashing ring assigning match ids to workers.
+ * <p>
+ * Each worker is placed at a number of points of a 64-bit ring, its virtual nodes, and a match belongs to the
+ * worker of the first point at or after the hash of its id, wrapping around. Adding a worker only moves to it the
+ * matches that fall just before its points, about 1/n of them, and removing one only moves its own matches, so a
+ * rebalance migrates as few matches as possible. The points are kept in sorted arrays, so finding the owner of a
+ * match is a binary search that allocates nothing.
+ */
+public final class ShardRing {
+
+    /**
+     * Default number of points per worker, enough to keep the largest share within about 15% of the mean.
+     */
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final int virtualNodes;
+    private final int[] workers;
+    private final long[] points;
+    private final int[] owners;
+
+    /**
+     * Creates a ring.
+     *
+     * @param virtualNodes the number of points per worker
+     * @param workers      the ids of the workers
+     * @throws IllegalArgumentException if the number of points is not positive, or a worker is repeated
+     */
+    public ShardRing(int virtualNodes, int... workers) {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("Invalid number of virtual nodes: " + virtualNodes);
+        }
+        this.virtualNodes = virtualNodes;
+        this.workers = workers.clone();
+        Arrays.sort(this.workers);
+        for (int i = 1; i < this.workers.length; i++) {
+            if (this.workers[i] == this.workers[i - 1]) {
+                throw new IllegalArgumentException("Duplicate worker " + this.workers[i]);
+            }
+        }
+        // Points and owners sorted together, as (point, owner) pairs
+        long[][] pairs = new long[this.workers.length * virtualNodes][];
+        int count = 0;
+        for (int worker : this.workers) {
+            for (int i = 0; i < virtualNodes; i++) {
+                pairs[count++] = new long[]{mix((long) worker << 32 | i), worker};
+            }
+        }
+        Arrays.sort(pairs, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        points = new long[count];
+        owners = new int[count];
+        for (int i = 0; i < count; i++) {
+            points[i] = pairs[i][0];
+            owners[i] = (int) pairs[i][1];
+        }
+    }
+
+    /**
+     * Returns a ring with a worker more.
+     *
+     * @param worker the id of the worker
+     * @return the new ring
+     * @throws IllegalArgumentException if the worker is already on the ring
+     */
+    public ShardRing with(int worker) {
+        int[] next = Arrays.copyOf(workers, workers.length + 1);
+        next[workers.length] = worker;
+        return new ShardRing(virtualNodes, next);
+    }
+
+    /**
+     * Returns a ring without a worker.
+     *
+     * @param worker the id of the worker
+     * @return the new ring
+     * @throws IllegalArgumentException if the worker is not on the ring
+     */
+    public ShardRing without(int worker) {
+        int index = Arrays.binarySearch(workers, worker);
+        if (index < 0) {
+            throw new IllegalArgumentException("No worker " + worker);
+        }
+        int[] next = new int[workers.length - 1];
+        System.arraycopy(workers, 0, next, 0, index);
+        System.arraycopy(workers, index + 1, next, index, next.length - index);
+        return new ShardRing(virtualNodes, next);
+    }
+
+    /**
+     * Returns the worker owning a match.
+     *
+     * @param matchId the id of the match
+     * @return the id of the worker
+     * @throws IllegalStateException if the ring has no worker
+     */
+    public int owner(long matchId) {
+        if (points.length == 0) {
+            throw new IllegalStateException("The ring has no worker");
+        }
+        int index = Arrays.binarySearch(points, mix(matchId));
+        if (index < 0) {
+            index = -index - 1;
+            if (index == points.length) {
+                index = 0;
+            }
+        }
+        return owners[index];
+    }
+
+    /**
+     * Returns whether a worker is on the ring.
+     *
+     * @param worker the id of the worker
+     * @return true if the worker owns part of the ring
+     */
+    public boolean contains(int worker) {
+        return Arrays.binarySearch(workers, worker) >= 0;
+    }
+
+    /**
+     * Returns the workers of the ring.
+     *
+     * @return the ids of the workers, in increasing order
+     */
+    public int[] getWorkers() {
+        return workers.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "ShardRing" + Arrays.toString(workers) + " x " + virtualNodes;
+    }
+
+    /**
+     * Spreads the bits of a value over the ring, with the finalizer of SplitMix64.
+     */
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
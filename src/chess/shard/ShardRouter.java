@@ -0,0 +1,876 @@
+package chess.shard;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Front of the sharded matches: accepts the connections of {@link ShardClient}s and forwards each request to the
+ * {@link ShardWorker} owning its match on a {@link ShardRing}, over one connection per worker shared by all the
+ * clients. The thread reading a worker queues its replies to the clients, each of which has a thread writing them,
+ * so that a client slow to read its replies delays neither the worker nor the other clients. A client that falls a
+ * whole queue behind is disconnected.
+ * <p>
+ * Adding or removing a worker rebalances the matches: the router asks every worker for its matches, and migrates
+ * those the new ring assigns elsewhere, a few at a time. A match is first copied to its new worker while its old
+ * worker keeps playing it, then paused for its own migration only: its requests are held while the old worker
+ * exports its {@link MatchHandoff} and the new one plays the moves made since the copy, then forwarded to the new
+ * worker. When the copy is still current, which is the common case, the pause is a single round trip. The other
+ * matches are served throughout, by their old workers until they move. The new matches started while the workers
+ * list their matches go to their old workers and are migrated with the listed ones, so that a failed listing leaves
+ * every match on the worker of the old ring; those started later go straight to their new workers. A match whose new
+ * worker fails once it left its old one is put back on the old worker, which keeps playing it until a later
+ * rebalance moves it.
+ * <p>
+ * A request is routed and sent under the read lock of the router, and a migration pauses and resumes its match
+ * under the write lock, so a request routed to the old worker always reaches it before the export.
+ */
+public class ShardRouter implements Closeable {
+
+    private static final int PENDING = 0;
+    private static final int FROZEN = 1;
+    private static final int DONE = 2;
+
+    /**
+     * Number of replies a client may be behind by before it is disconnected.
+     */
+    private static final int CLIENT_QUEUE = 1024;
+
+    private final ServerSocket server;
+    private final Thread acceptor;
+    private final Map<Integer, WorkerLink> links = new ConcurrentHashMap<>();
+    private final List<Socket> clients = new ArrayList<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failedClients = new LongAdder();
+    private final LongAdder droppedClients = new LongAdder();
+
+    /**
+     * Matches whose owner changes during the current rebalance, by id.
+     */
+    private final Map<Long, Migration> migrations = new ConcurrentHashMap<>();
+
+    /**
+     * Workers holding the matches that a failed migration left off the worker the ring assigns them to, by id.
+     */
+    private final Map<Long, Integer> pinned = new ConcurrentHashMap<>();
+
+    private ShardRing ring;
+
+    /**
+     * Ring being moved to, or null when no rebalance is running.
+     */
+    private ShardRing next;
+
+    /**
+     * Whether the workers of the running rebalance are still listing their matches.
+     */
+    private boolean listing;
+
+    private volatile boolean closed;
+
+    /**
+     * Starts a router, connected to its workers.
+     *
+     * @param address      the address to listen on, with port 0 for any free port
+     * @param workers      the addresses of the workers, by worker id
+     * @param virtualNodes the number of points of each worker on the ring
+     * @throws IOException if the address cannot be bound or a worker cannot be reached
+     */
+    public ShardRouter(InetSocketAddress address, Map<Integer, InetSocketAddress> workers, int virtualNodes)
+            throws IOException {
+        try {
+            for (Map.Entry<Integer, InetSocketAddress> worker : workers.entrySet()) {
+                links.put(worker.getKey(), new WorkerLink(worker.getKey(), worker.getValue()));
+            }
+            ring = new ShardRing(virtualNodes, workers.keySet().stream().mapToInt(Integer::intValue).toArray());
+            server = new ServerSocket();
+            server.bind(address, 256);
+        } catch (IOException | RuntimeException e) {
+            for (WorkerLink link : links.values()) {
+                link.close();
+            }
+            throw e;
+        }
+        acceptor = new Thread(this::accept, "shard-router");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Returns the address the router listens on.
+     *
+     * @return the address
+     */
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress) server.getLocalSocketAddress();
+    }
+
+    /**
+     * Returns the ring the matches are assigned by, the new one once a rebalance completed.
+     *
+     * @return the ring
+     */
+    public ShardRing getRing() {
+        lock.readLock().lock();
+        try {
+            return ring;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of requests of the clients forwarded to the workers.
+     *
+     * @return the number of requests
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * Returns the number of client connections closed because reading them failed.
+     *
+     * @return the number of failed connections
+     */
+    public long getFailedClients() {
+        return failedClients.sum();
+    }
+
+    /**
+     * Returns the number of clients disconnected for falling too many replies behind.
+     *
+     * @return the number of dropped clients
+     */
+    public long getDroppedClients() {
+        return droppedClients.sum();
+    }
+
+    /**
+     * Connects a worker and migrates to it the matches the ring now assigns to it.
+     *
+     * @param worker      the id of the worker
+     * @param address     the address of the worker
+     * @param parallelism the number of matches migrated at once
+     * @return the outcome of the rebalance
+     * @throws IOException if the worker cannot be reached, or a worker could not list its matches
+     */
+    public synchronized RebalanceResult addWorker(int worker, InetSocketAddress address, int parallelism)
+            throws IOException {
+        if (links.containsKey(worker)) {
+            throw new IllegalArgumentException("Worker " + worker + " is already connected");
+        }
+        WorkerLink link = new WorkerLink(worker, address);
+        links.put(worker, link);
+        try {
+            return rebalance(getRing().with(worker), parallelism);
+        } catch (IOException | RuntimeException e) {
+            // A failed listing leaves no match on the new worker; after a failed migration, the ring already has it
+            if (!getRing().contains(worker)) {
+                links.remove(worker);
+                link.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Migrates the matches of a worker to the other workers, then disconnects it. A worker left off the ring but
+     * still connected, because some of its matches could not be migrated, can be removed again.
+     *
+     * @param worker      the id of the worker
+     * @param parallelism the number of matches migrated at once
+     * @return the outcome of the rebalance
+     * @throws IOException if a worker could not list its matches
+     */
+    public synchronized RebalanceResult removeWorker(int worker, int parallelism) throws IOException {
+        ShardRing current = getRing();
+        if (!links.containsKey(worker)) {
+            throw new IllegalArgumentException("No worker " + worker);
+        }
+        try {
+            return rebalance(current.contains(worker) ? current.without(worker) : current, parallelism);
+        } finally {
+            // Kept when the listing failed, or while matches that could not be migrated stay on it
+            if (!getRing().contains(worker) && !pinned.containsValue(worker)) {
+                links.remove(worker).close();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        Map<Integer, Integer> pending = new HashMap<>();
+        for (WorkerLink link : links.values()) {
+            pending.put(link.worker, link.pending.size());
+        }
+        return String.format("%s, %d requests, %d failed and %d dropped clients, %d pinned matches, " +
+                "pending by worker %s", getRing(), getRequests(), getFailedClients(), getDroppedClients(),
+                pinned.size(), pending);
+    }
+
+    /**
+     * Stops the router and disconnects its clients and workers.
+     *
+     * @throws IOException if the server socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        server.close();
+        synchronized (clients) {
+            for (Socket socket : clients) {
+                socket.close();
+            }
+        }
+        for (WorkerLink link : links.values()) {
+            link.close();
+        }
+    }
+
+    /**
+     * Moves to a new ring, migrating the matches whose owner changes. Once the matches are listed, the new ring is
+     * only set after every migration ran, even if one failed or the calling thread is interrupted, so that no match
+     * is left on a worker its ring does not route to.
+     */
+    private RebalanceResult rebalance(ShardRing target, int parallelism) throws IOException {
+        long start = System.nanoTime();
+        ShardRing current;
+        lock.writeLock().lock();
+        try {
+            current = ring;
+            next = target;
+            listing = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        // Listed after the new ring is set, so that a match started later is marked by route() instead
+        try {
+            Set<Integer> holders = new TreeSet<>(pinned.values());
+            for (int worker : current.getWorkers()) {
+                holders.add(worker);
+            }
+            for (int worker : holders) {
+                Forward list = call(links.get(worker), ShardFrames.LIST, 0, null);
+                if (list.status != ShardFrames.OK) {
+                    throw new IOException("Worker " + worker + " could not list its matches");
+                }
+                for (long matchId : list.ids) {
+                    if (target.owner(matchId) != worker) {
+                        migrations.putIfAbsent(matchId, new Migration(PENDING, worker));
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                next = null;
+                listing = false;
+                // Only pending entries exist while listing: their matches are still on their old workers
+                migrations.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        List<Long> moving;
+        lock.writeLock().lock();
+        try {
+            listing = false;
+            moving = new ArrayList<>(migrations.keySet());
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long[] pauses = new long[moving.size()];
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger kept = new AtomicInteger();
+        AtomicInteger held = new AtomicInteger();
+        ExecutorService migrators = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < moving.size(); i++) {
+            int index = i;
+            long matchId = moving.get(i);
+            futures.add(migrators.submit(() -> {
+                pauses[index] = migrate(matchId, target.owner(matchId), failed, kept, held);
+            }));
+        }
+        migrators.shutdown();
+        Throwable failure = null;
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    failure = failure == null ? e.getCause() : failure;
+                    break;
+                }
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            ring = target;
+            next = null;
+            migrations.clear();
+            // Pinned to a worker the new ring assigns them to anyway
+            pinned.entrySet().removeIf(pin -> target.owner(pin.getKey()) == pin.getValue());
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Migration failed", failure);
+        }
+        Arrays.sort(pauses);
+        return new RebalanceResult(moving.size() - kept.get(), failed.get(), kept.get(), held.get(), pauses,
+                System.nanoTime() - start);
+    }
+
+    /**
+     * Migrates a match: holds its requests, moves it from its old worker to its new one, and forwards the held
+     * requests to the worker holding it then.
+     *
+     * @return the time the match was paused, in nanoseconds
+     */
+    private long migrate(long matchId, int to, AtomicInteger failed, AtomicInteger kept, AtomicInteger held) {
+        Migration migration = migrations.get(matchId);
+        WorkerLink source = links.get(migration.from);
+        WorkerLink destination = links.get(to);
+        // Copied before the pause, so that the new worker rebuilds the match while the old one still plays it
+        MatchHandoff copy = null;
+        try {
+            Forward copied = call(source, ShardFrames.COPY, matchId, null);
+            if (copied.status == ShardFrames.OK &&
+                    call(destination, ShardFrames.IMPORT, matchId, copied.handoff).status == ShardFrames.OK) {
+                copy = copied.handoff;
+            }
+        } catch (IOException e) {
+            // Moved in full during the pause
+        }
+        long frozen;
+        lock.writeLock().lock();
+        try {
+            migration.state = FROZEN;
+            frozen = System.nanoTime();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        int owner = to;
+        try {
+            owner = export(matchId, source, destination, copy, failed);
+            if (owner != to) {
+                kept.incrementAndGet();
+            }
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            throw e;
+        } finally {
+            // Resumed even after a failure, so that the held requests are answered
+            lock.writeLock().lock();
+            try {
+                migration.owner = owner;
+                boolean ended = false;
+                WorkerLink link = links.get(owner);
+                for (Forward forward : migration.held) {
+                    ended |= forward.type == ShardFrames.END;
+                    link.send(forward);
+                }
+                if (owner == to || ended) {
+                    pinned.remove(matchId);
+                } else {
+                    pinned.put(matchId, owner);
+                }
+                migration.state = DONE;
+                held.addAndGet(migration.held.size());
+                migration.held.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        return System.nanoTime() - frozen;
+    }
+
+    /**
+     * Moves a paused match from its old worker to its new one, playing only the moves made since its copy when
+     * the copy is still current. When the new worker fails once the old one exported the match, the match is
+     * imported back into the old worker.
+     *
+     * @return the id of the worker holding the match afterwards, the new one unless the match was put back
+     */
+    private int export(long matchId, WorkerLink source, WorkerLink destination, MatchHandoff copy,
+                       AtomicInteger failed) {
+        Forward export;
+        try {
+            export = call(source, ShardFrames.EXPORT, matchId, null);
+        } catch (IOException e) {
+            failed.incrementAndGet();
+            return destination.worker;
+        }
+        if (export.status == ShardFrames.NO_MATCH) {
+            // The match ended meanwhile, so its copy is dropped
+            if (copy != null) {
+                try {
+                    call(destination, ShardFrames.END, matchId, null);
+                } catch (IOException e) {
+                    failed.incrementAndGet();
+                }
+            }
+            return destination.worker;
+        } else if (export.status != ShardFrames.OK) {
+            failed.incrementAndGet();
+            return destination.worker;
+        }
+        MatchHandoff handoff = export.handoff;
+        try {
+            Forward imported = null;
+            if (copy == null || !handoff.continues(copy)) {
+                imported = call(destination, ShardFrames.IMPORT, matchId, handoff);
+            } else if (handoff.moves.length > copy.moves.length) {
+                imported = call(destination, ShardFrames.APPEND, matchId, handoff, copy.moves.length);
+            }
+            if (imported == null || imported.status == ShardFrames.OK) {
+                return destination.worker;
+            }
+        } catch (IOException e) {
+            // Put back below
+        }
+        // Only the handoff holds the match now, so the old worker takes it back
+        try {
+            if (call(source, ShardFrames.IMPORT, matchId, handoff).status == ShardFrames.OK) {
+                if (copy != null) {
+                    dropCopy(destination, matchId);
+                }
+                return source.worker;
+            }
+        } catch (IOException e) {
+            // Lost with both workers
+        }
+        failed.incrementAndGet();
+        return destination.worker;
+    }
+
+    /**
+     * Drops the copy a worker holds of a match put back on its old worker, so that the id can be started there again.
+     */
+    private void dropCopy(WorkerLink link, long matchId) {
+        try {
+            call(link, ShardFrames.END, matchId, null);
+        } catch (IOException e) {
+            // The worker cannot be reached, and the next import of the match replaces the copy
+        }
+    }
+
+    private Forward call(WorkerLink link, byte type, long matchId, MatchHandoff handoff) throws IOException {
+        return call(link, type, matchId, handoff, 0);
+    }
+
+    /**
+     * Sends a request of the router itself to a worker and waits for the reply.
+     *
+     * @param handoff the handoff of an import, or whose moves from an index on are those of an append
+     * @param from    the index of the first move of an append
+     * @return the request, with the fields of its reply set
+     */
+    private Forward call(WorkerLink link, byte type, long matchId, MatchHandoff handoff, int from)
+            throws IOException {
+        Forward forward = new Forward(null, 0, type, matchId, 0);
+        forward.handoff = handoff;
+        forward.from = from;
+        forward.reply = new CompletableFuture<>();
+        link.send(forward);
+        try {
+            forward.reply.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for worker " + link.worker, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Worker " + link.worker + " failed", e.getCause());
+        }
+        if (forward.status == ShardFrames.UNAVAILABLE) {
+            throw new IOException("Worker " + link.worker + " cannot be reached");
+        }
+        return forward;
+    }
+
+    /**
+     * Forwards a request of a client to the worker owning its match, or holds it while the match is migrated.
+     */
+    private void route(Forward forward) {
+        lock.readLock().lock();
+        try {
+            Integer pin = pinned.isEmpty() ? null : pinned.get(forward.matchId);
+            int owner = pin != null ? pin : ring.owner(forward.matchId);
+            if (next != null) {
+                int nextOwner = next.owner(forward.matchId);
+                if (nextOwner != owner) {
+                    Migration migration = migrations.get(forward.matchId);
+                    if (migration == null) {
+                        if (forward.type == ShardFrames.START && listing) {
+                            // Its old worker may already be listed, so it is marked to be migrated
+                            migrations.putIfAbsent(forward.matchId, new Migration(PENDING, owner));
+                        } else if (forward.type == ShardFrames.START) {
+                            // Born on its new worker, so there is nothing to migrate
+                            Migration born = new Migration(DONE, owner);
+                            born.owner = nextOwner;
+                            migrations.putIfAbsent(forward.matchId, born);
+                            owner = nextOwner;
+                        }
+                    } else if (migration.state == FROZEN) {
+                        synchronized (migration) {
+                            migration.held.add(forward);
+                        }
+                        return;
+                    } else if (migration.state == DONE) {
+                        owner = migration.owner;
+                    }
+                }
+            }
+            if (pin != null && forward.type == ShardFrames.END) {
+                pinned.remove(forward.matchId);
+            }
+            links.get(owner).send(forward);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                synchronized (clients) {
+                    if (closed) {
+                        socket.close();
+                        return;
+                    }
+                    clients.add(socket);
+                }
+                Client client = new Client(socket);
+                Thread writer = new Thread(client::write, "shard-router-client-writer");
+                writer.setDaemon(true);
+                writer.start();
+                Thread thread = new Thread(() -> serve(socket, client), "shard-router-client");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                // Closed, or a connection that failed before it was accepted
+            }
+        }
+    }
+
+    /**
+     * Reads the requests of a client. The connection is closed by the thread writing its replies, once it wrote
+     * those queued.
+     */
+    private void serve(Socket socket, Client client) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            while (true) {
+                int id = in.readInt();
+                byte type = in.readByte();
+                long matchId = in.readLong();
+                if (type != ShardFrames.START && type != ShardFrames.MOVE && type != ShardFrames.END) {
+                    // Only the router migrates matches; the rest of the frame cannot be parsed
+                    client.reply(id, type, ShardFrames.INVALID, 0);
+                    return;
+                }
+                int move = type == ShardFrames.MOVE ? in.readUnsignedShort() : 0;
+                requests.increment();
+                route(new Forward(client, id, type, matchId, move));
+            }
+        } catch (EOFException | SocketException e) {
+            // Disconnected
+        } catch (IOException e) {
+            if (!closed) {
+                failedClients.increment();
+            }
+        } finally {
+            client.finish();
+        }
+    }
+
+    /**
+     * Connection of a client, with the queue of its replies: the threads reading the workers add to it, and the
+     * thread of the client writes them, flushing once the queue is empty.
+     */
+    private final class Client {
+
+        private final Socket socket;
+
+        /**
+         * Replies not written yet, from the head on, each packed by {@link #reply(int, byte, int, int)}.
+         */
+        private final long[] queue = new long[CLIENT_QUEUE];
+        private int head;
+        private int size;
+        private boolean finished;
+
+        Client(Socket socket) {
+            this.socket = socket;
+        }
+
+        /**
+         * Queues a reply, or disconnects the client if its queue is full.
+         */
+        synchronized void reply(int id, byte type, int status, int result) {
+            if (finished) {
+                return;
+            }
+            if (size == queue.length) {
+                // Left behind rather than stalling the worker, whose reader would wait for it
+                droppedClients.increment();
+                finished = true;
+                close();
+                return;
+            }
+            queue[(head + size) % queue.length] = (long) id << 32 | (type & 0xFF) << 16 | (status & 0xFF) << 8 |
+                    (result & 0xFF);
+            if (size++ == 0) {
+                notifyAll();
+            }
+        }
+
+        /**
+         * Lets the writing thread close the connection once it wrote the queued replies.
+         */
+        synchronized void finish() {
+            finished = true;
+            notifyAll();
+        }
+
+        void write() {
+            long[] batch = new long[queue.length];
+            try {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                while (true) {
+                    int count;
+                    synchronized (this) {
+                        while (size == 0 && !finished) {
+                            wait();
+                        }
+                        if (size == 0) {
+                            return;
+                        }
+                        count = size;
+                        for (int i = 0; i < count; i++) {
+                            batch[i] = queue[(head + i) % queue.length];
+                        }
+                        head = (head + count) % queue.length;
+                        size = 0;
+                    }
+                    for (int i = 0; i < count; i++) {
+                        long reply = batch[i];
+                        ShardFrames.writeReply(out, (int) (reply >>> 32), (byte) (reply >>> 16), (byte) (reply >>> 8),
+                                (int) reply & 0xFF);
+                    }
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // The client is gone, which its reading thread notices
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        private void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // The connection is dropped anyway
+            }
+            synchronized (clients) {
+                clients.remove(socket);
+            }
+        }
+    }
+
+    /**
+     * Request waiting to be sent or answered: either one of a client, answered by writing to its connection, or one
+     * of the router, answered by completing its future after setting the fields of the reply.
+     */
+    private static final class Forward {
+
+        final Client client;
+        final int clientId;
+        final byte type;
+        final long matchId;
+        final int move;
+        MatchHandoff handoff;
+        int from;
+        CompletableFuture<Void> reply;
+
+        byte status;
+        int result;
+        long[] ids;
+
+        Forward(Client client, int clientId, byte type, long matchId, int move) {
+            this.client = client;
+            this.clientId = clientId;
+            this.type = type;
+            this.matchId = matchId;
+            this.move = move;
+        }
+
+        void complete(byte status, int result) {
+            if (client != null) {
+                client.reply(clientId, type, status, result);
+            } else {
+                this.status = status;
+                this.result = result;
+                reply.complete(null);
+            }
+        }
+    }
+
+    /**
+     * State of a match whose owner changes during a rebalance, with the requests held while it is migrated.
+     */
+    private static final class Migration {
+
+        volatile int state;
+        final int from;
+
+        /**
+         * Worker holding the match once it is done, its new one unless the migration failed after the export.
+         */
+        int owner;
+
+        final List<Forward> held = new ArrayList<>();
+
+        Migration(int state, int from) {
+            this.state = state;
+            this.from = from;
+        }
+    }
+
+    /**
+     * Connection to a worker, carrying the requests of every client, with a thread reading the replies.
+     */
+    private static final class WorkerLink {
+
+        final int worker;
+        private final Socket socket;
+        private final DataOutputStream out;
+        private final DataInputStream in;
+        private final Map<Integer, Forward> pending = new ConcurrentHashMap<>();
+        private int nextId;
+        private volatile boolean down;
+
+        WorkerLink(int worker, InetSocketAddress address) throws IOException {
+            this.worker = worker;
+            socket = new Socket();
+            socket.setTcpNoDelay(true);
+            socket.connect(address);
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            Thread reader = new Thread(this::read, "shard-router-worker-" + worker);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        void send(Forward forward) {
+            synchronized (out) {
+                if (!down) {
+                    int id = nextId++;
+                    pending.put(id, forward);
+                    try {
+                        ShardFrames.writeRequest(out, id, forward.type, forward.matchId, forward.move);
+                        if (forward.type == ShardFrames.IMPORT) {
+                            ShardFrames.writeHandoff(out, forward.handoff);
+                        } else if (forward.type == ShardFrames.APPEND) {
+                            ShardFrames.writeMoves(out, forward.handoff.moves, forward.from);
+                        }
+                        out.flush();
+                    } catch (IOException e) {
+                        // Answers the request with the other pending ones
+                        fail();
+                    }
+                    return;
+                }
+            }
+            forward.complete(ShardFrames.UNAVAILABLE, 0);
+        }
+
+        void close() {
+            fail();
+        }
+
+        private void read() {
+            try {
+                while (true) {
+                    int id = in.readInt();
+                    byte type = in.readByte();
+                    byte status = in.readByte();
+                    int result = in.readUnsignedByte();
+                    Forward forward = pending.remove(id);
+                    if (forward == null) {
+                        throw new IOException("Reply to unknown request " + id);
+                    }
+                    if (type == ShardFrames.LIST) {
+                        forward.ids = new long[in.readInt()];
+                        for (int i = 0; i < forward.ids.length; i++) {
+                            forward.ids[i] = in.readLong();
+                        }
+                    } else if ((type == ShardFrames.COPY || type == ShardFrames.EXPORT) && status == ShardFrames.OK) {
+                        forward.handoff = ShardFrames.readHandoff(in);
+                    }
+                    forward.complete(status, result);
+                }
+            } catch (IOException e) {
+                fail();
+            }
+        }
+
+        /**
+         * Closes the connection and answers the pending requests as unavailable.
+         */
+        private void fail() {
+            down = true;
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // The connection is dropped anyway
+            }
+            for (Integer id : new ArrayList<>(pending.keySet())) {
+                Forward forward = pending.remove(id);
+                if (forward != null) {
+                    forward.complete(ShardFrames.UNAVAILABLE, 0);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package chess.shard;
+
+import chess.ChessMatch;
+import chess.CompactPosition;
+import chess.MoveStatus;
+import chess.exception.ChessException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-local shard of the live matches: holds the matches a {@link ShardRouter} assigns to it and plays their
+ * moves, one thread per connection.
+ * <p>
+ * For each match, the worker keeps the compact position after the last capture or pawn move and the moves played
+ * since, which is all a {@link MatchHandoff} needs: exporting a match for a migration only copies them, and the
+ * worker importing it replays at most the hundred moves of the fifty-move rule. The router imports a copy of a
+ * match before pausing it, so that only the moves played since the copy are appended during the pause.
+ * <p>
+ * The requests of a connection are handled in order, and the replies are flushed when no further request is
+ * waiting, so that pipelined requests share their writes.
+ */
+public class ShardWorker implements Closeable {
+
+    private final ServerSocket server;
+    private final Thread acceptor;
+    private final Map<Long, HostedMatch> matches = new ConcurrentHashMap<>();
+    private final List<Socket> connections = new ArrayList<>();
+    private final LongAdder failedConnections = new LongAdder();
+    private volatile boolean closed;
+
+    /**
+     * Starts a worker.
+     *
+     * @param address the address to listen on, with port 0 for any free port
+     * @throws IOException if the address cannot be bound
+     */
+    public ShardWorker(InetSocketAddress address) throws IOException {
+        server = new ServerSocket();
+        server.bind(address, 256);
+        acceptor = new Thread(this::accept, "shard-worker");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Returns the address the worker listens on.
+     *
+     * @return the address
+     */
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress) server.getLocalSocketAddress();
+    }
+
+    /**
+     * Returns the number of matches held by the worker.
+     *
+     * @return the number of matches
+     */
+    public int getMatches() {
+        return matches.size();
+    }
+
+    /**
+     * Returns the number of connections closed because reading or answering their requests failed.
+     *
+     * @return the number of failed connections
+     */
+    public long getFailedConnections() {
+        return failedConnections.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s, %d matches, %d failed connections", getAddress(), getMatches(),
+                getFailedConnections());
+    }
+
+    /**
+     * Stops the worker and closes its connections. The matches it holds are dropped.
+     *
+     * @throws IOException if the server socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        server.close();
+        synchronized (connections) {
+            for (Socket socket : connections) {
+                socket.close();
+            }
+        }
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                synchronized (connections) {
+                    if (closed) {
+                        socket.close();
+                        return;
+                    }
+                    connections.add(socket);
+                }
+                Thread thread = new Thread(() -> serve(socket), "shard-worker-connection");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                // Closed, or a connection that failed before it was accepted
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            while (true) {
+                int id = in.readInt();
+                byte type = in.readByte();
+                long matchId = in.readLong();
+                handle(in, out, id, type, matchId);
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (EOFException | SocketException e) {
+            // Disconnected
+        } catch (IOException e) {
+            if (!closed) {
+                failedConnections.increment();
+            }
+        } finally {
+            synchronized (connections) {
+                connections.remove(socket);
+            }
+        }
+    }
+
+    private void handle(DataInputStream in, DataOutputStream out, int id, byte type, long matchId)
+            throws IOException {
+        switch (type) {
+            case ShardFrames.START: {
+                HostedMatch match = new HostedMatch(new ChessMatch());
+                byte status = matches.putIfAbsent(matchId, match) == null ? ShardFrames.OK : ShardFrames.MATCH_EXISTS;
+                ShardFrames.writeReply(out, id, type, status, 0);
+                break;
+            }
+            case ShardFrames.MOVE: {
+                int move = in.readUnsignedShort();
+                HostedMatch match = matches.get(matchId);
+                if (match == null) {
+                    ShardFrames.writeReply(out, id, type, ShardFrames.NO_MATCH, 0);
+                } else {
+                    synchronized (match) {
+                        MoveStatus status = match.play(move);
+                        ShardFrames.writeReply(out, id, type, status.ordinal(),
+                                match.match.getGameResult().ordinal());
+                    }
+                }
+                break;
+            }
+            case ShardFrames.END: {
+                HostedMatch match = matches.remove(matchId);
+                ShardFrames.writeReply(out, id, type, match != null ? ShardFrames.OK : ShardFrames.NO_MATCH, 0);
+                break;
+            }
+            case ShardFrames.LIST: {
+                long[] ids = matches.keySet().stream().mapToLong(Long::longValue).toArray();
+                ShardFrames.writeReply(out, id, type, ShardFrames.OK, 0);
+                out.writeInt(ids.length);
+                for (long listed : ids) {
+                    out.writeLong(listed);
+                }
+                break;
+            }
+            case ShardFrames.COPY:
+            case ShardFrames.EXPORT: {
+                HostedMatch match = type == ShardFrames.COPY ? matches.get(matchId) : matches.remove(matchId);
+                if (match == null) {
+                    ShardFrames.writeReply(out, id, type, ShardFrames.NO_MATCH, 0);
+                } else {
+                    synchronized (match) {
+                        ShardFrames.writeReply(out, id, type, ShardFrames.OK, match.match.getGameResult().ordinal());
+                        ShardFrames.writeHandoff(out, match.handoff());
+                    }
+                }
+                break;
+            }
+            case ShardFrames.IMPORT: {
+                MatchHandoff handoff = ShardFrames.readHandoff(in);
+                byte status;
+                int result = 0;
+                try {
+                    HostedMatch match = new HostedMatch(handoff);
+                    matches.put(matchId, match);
+                    status = ShardFrames.OK;
+                    result = match.match.getGameResult().ordinal();
+                } catch (ChessException e) {
+                    status = ShardFrames.INVALID;
+                }
+                ShardFrames.writeReply(out, id, type, status, result);
+                break;
+            }
+            case ShardFrames.APPEND: {
+                int[] moves = ShardFrames.readMoves(in);
+                HostedMatch match = matches.get(matchId);
+                if (match == null) {
+                    ShardFrames.writeReply(out, id, type, ShardFrames.NO_MATCH, 0);
+                } else {
+                    synchronized (match) {
+                        byte status = ShardFrames.OK;
+                        for (int move : moves) {
+                            if (!match.play(move).isLegal()) {
+                                status = ShardFrames.INVALID;
+                                break;
+                            }
+                        }
+                        ShardFrames.writeReply(out, id, type, status, match.match.getGameResult().ordinal());
+                    }
+                }
+                break;
+            }
+            default:
+                // The rest of the frame cannot be parsed, so the connection is dropped
+                ShardFrames.writeReply(out, id, type, ShardFrames.INVALID, 0);
+                out.flush();
+                throw new IOException("Invalid request type " + type);
+        }
+    }
+
+    /**
+     * Match held by the worker, with its position after the last capture or pawn move and the moves since.
+     */
+    private static final class HostedMatch {
+
+        final ChessMatch match;
+        final long[] base;
+        int[] tail;
+        int count;
+
+        HostedMatch(ChessMatch match) {
+            this.match = match;
+            base = new long[CompactPosition.WORDS];
+            CompactPosition.of(match).copyTo(base, 0);
+            tail = new int[16];
+        }
+
+        HostedMatch(MatchHandoff handoff) {
+            match = handoff.rebuild();
+            base = handoff.words;
+            tail = Arrays.copyOf(handoff.moves, Math.max(16, handoff.moves.length));
+            count = handoff.moves.length;
+        }
+
+        MoveStatus play(int move) {
+            MoveStatus status = match.tryMove(move);
+            if (status.isLegal()) {
+                if (match.getHalfmoveClock() == 0) {
+                    // No earlier position can occur again, so the tail restarts from here
+                    CompactPosition.of(match).copyTo(base, 0);
+                    count = 0;
+                } else {
+                    if (count == tail.length) {
+                        tail = Arrays.copyOf(tail, count * 2);
+                    }
+                    tail[count++] = move;
+                }
+            }
+            return status;
+        }
+
+        MatchHandoff handoff() {
+            return new MatchHandoff(base.clone(), Arrays.copyOf(tail, count));
+        }
+    }
+}
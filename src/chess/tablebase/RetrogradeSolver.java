@@ -0,0 +1,211 @@
+package chess.tablebase;
+
+import chess.Move;
+import chess.PieceType;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Solves one endgame table by retrograde analysis.
+ * <p>
+ * Positions are solved in order of their distance to mate, in half-moves. Starting from the checkmates,
+ * each pass retracts the moves leading to the positions solved by the previous pass: a white-to-move
+ * position that can reach a lost black position is won, and a black-to-move position is lost once all
+ * its moves lead to won positions. Every pass runs in parallel over the whole table.
+ */
+final class RetrogradeSolver {
+
+    private static final int ILLEGAL = -1;
+
+    private final TableIndex layout;
+    private final Tablebases dependencies;
+    private final PieceType[] types;
+    private final int n;
+    private final int half;
+
+    /**
+     * Entries of the table: 0 while unknown or drawn, -1 for unused indices, or the distance to mate plus one.
+     */
+    private final byte[] values;
+
+    /**
+     * For white to move, the value offered by a promotion into another table, or 0.
+     */
+    private final byte[] promotions;
+
+    /**
+     * For black to move, the number of distinct positions reachable that are not known to be lost yet,
+     * or -1 if black can escape to a draw.
+     */
+    private final AtomicIntegerArray counters;
+
+    private final ThreadLocal<int[][]> scratch;
+
+    /**
+     * Constructs a solver.
+     *
+     * @param layout       the index of the table to be solved
+     * @param dependencies the tables reached by promotions
+     */
+    RetrogradeSolver(TableIndex layout, Tablebases dependencies) {
+        this.layout = layout;
+        this.dependencies = dependencies;
+        types = layout.getTypes();
+        n = layout.getPieceCount();
+        half = layout.size() / 2;
+        values = new byte[layout.size()];
+        promotions = new byte[half];
+        counters = new AtomicIntegerArray(half);
+        scratch = ThreadLocal.withInitial(() -> new int[][]{new int[n], new int[n], new int[256], new int[256]});
+    }
+
+    /**
+     * Solves the table.
+     *
+     * @return the entries of the table
+     * @throws IllegalStateException if a distance to mate does not fit in an entry
+     */
+    byte[] solve() {
+        IntStream.range(0, layout.size()).parallel().forEach(this::initialize);
+        int maxPromotion = 0;
+        for (byte value : promotions) {
+            maxPromotion = Math.max(maxPromotion, value);
+        }
+
+        for (int level = 1; ; level++) {
+            if (level == Byte.MAX_VALUE) {
+                throw new IllegalStateException("Distance to mate too long in " + layout.getSignature());
+            }
+            int current = level;
+            LongAdder solved = new LongAdder();
+            IntStream.range(0, layout.size()).parallel().forEach(index -> {
+                if (values[index] == current) {
+                    retract(index, current, solved);
+                }
+                if (index < half && promotions[index] == current + 1 && values[index] == 0) {
+                    values[index] = (byte) (current + 1);
+                    solved.increment();
+                }
+            });
+            if (solved.sum() == 0 && maxPromotion <= current + 1) {
+                return values;
+            }
+        }
+    }
+
+    private void initialize(int index) {
+        int[][] buffers = scratch.get();
+        int[] squares = buffers[0];
+        int[] next = buffers[1];
+        int[] moves = buffers[2];
+        int[] indices = buffers[3];
+        boolean blackToMove = layout.isBlackToMove(index);
+
+        layout.decode(index, squares);
+        if (!TablebaseBoard.isLegal(squares, types, n, blackToMove)) {
+            values[index] = ILLEGAL;
+            return;
+        }
+        System.arraycopy(squares, 0, next, 0, n);
+        if (layout.index(next, blackToMove) != index) {
+            values[index] = ILLEGAL;
+            return;
+        }
+
+        if (blackToMove) {
+            int count = TablebaseBoard.blackMoves(squares, types, n, moves);
+            int distinct = 0;
+            for (int i = 0; i < count; i++) {
+                int target = Move.target(moves[i]);
+                if (TablebaseBoard.isOccupied(target, squares, n, 1)) {
+                    // Any capture leaves material that cannot win
+                    counters.set(index - half, -1);
+                    return;
+                }
+                System.arraycopy(squares, 0, next, 0, n);
+                next[1] = target;
+                distinct = addDistinct(indices, distinct, layout.index(next, false));
+            }
+            if (count == 0) {
+                counters.set(index - half, -1);
+                if (TablebaseBoard.isAttackedByWhite(squares[1], squares, types, n, -1)) {
+                    values[index] = 1;
+                }
+            } else {
+                counters.set(index - half, distinct);
+            }
+        } else if (dependencies != null) {
+            int count = TablebaseBoard.whiteMoves(squares, types, n, moves);
+            PieceType[] nextTypes = new PieceType[types.length];
+            int best = 0;
+            for (int i = 0; i < count; i++) {
+                if (Move.promotion(moves[i]) != null) {
+                    int nextCount = Tablebases.play(squares, types, n, moves[i], next, nextTypes);
+                    int value = dependencies.rawValue(next, nextTypes, nextCount, true);
+                    if (value == Tablebases.NOT_FOUND) {
+                        throw new IllegalStateException("Missing table for a promotion from " + layout.getSignature());
+                    }
+                    if (value > 0 && (best == 0 || value + 1 < best)) {
+                        best = value + 1;
+                    }
+                }
+            }
+            promotions[index] = (byte) best;
+        }
+    }
+
+    /**
+     * Retracts the moves leading to a position solved at the given level.
+     */
+    private void retract(int index, int level, LongAdder solved) {
+        int[][] buffers = scratch.get();
+        int[] squares = buffers[0];
+        int[] previous = buffers[1];
+        int[] retractions = buffers[2];
+        int[] indices = buffers[3];
+        boolean blackToMove = layout.isBlackToMove(index);
+
+        layout.decode(index, squares);
+        int count = blackToMove ? TablebaseBoard.whiteRetractions(squares, types, n, retractions)
+                : TablebaseBoard.blackRetractions(squares, n, retractions);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(squares, 0, previous, 0, n);
+            previous[retractions[i] >>> 6] = retractions[i] & 63;
+            if (blackToMove && TablebaseBoard.isAttackedByWhite(previous[1], previous, types, n, -1)) {
+                continue;
+            }
+            distinct = addDistinct(indices, distinct, layout.index(previous, !blackToMove));
+        }
+
+        for (int i = 0; i < distinct; i++) {
+            int previousIndex = indices[i];
+            if (blackToMove) {
+                if (values[previousIndex] == 0) {
+                    values[previousIndex] = (byte) (level + 1);
+                    solved.increment();
+                }
+            } else if (counters.get(previousIndex - half) > 0 && counters.decrementAndGet(previousIndex - half) == 0) {
+                values[previousIndex] = (byte) (level + 1);
+                solved.increment();
+            }
+        }
+    }
+
+    /**
+     * Adds an index to a list unless it is already there. Symmetric moves may reach the same index.
+     *
+     * @return the new size of the list
+     */
+    private static int addDistinct(int[] indices, int count, int index) {
+        for (int i = 0; i < count; i++) {
+            if (indices[i] == index) {
+                return count;
+            }
+        }
+        indices[count] = index;
+        return count + 1;
+    }
+}
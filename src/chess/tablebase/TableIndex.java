@@ -0,0 +1,222 @@
+package chess.tablebase;
+
+import chess.PieceType;
+
+/**
+ * Maps the positions of one endgame table to table indices and back.
+ * <p>
+ * A table holds the positions of a white king and pieces against a lone black king. Positions are
+ * given as an array of squares, numbered as in {@link chess.Move}: the white king first, then the
+ * black king, then the white pieces in the order of {@link #getTypes()}. Symmetric positions share
+ * one index: pawnless tables use the eight symmetries of the board, so the white king lies in the
+ * a1-d1-d4 triangle, and tables with pawns use the left-right mirror only.
+ */
+final class TableIndex {
+
+    private static final int[] TRIANGLE_INDEX = new int[64];
+    private static final int[] TRIANGLE_SQUARES = new int[10];
+
+    static {
+        int n = 0;
+        for (int square = 0; square < 64; square++) {
+            int x = square & 7;
+            int y = 7 - (square >>> 3);
+            if (x <= 3 && y <= x) {
+                TRIANGLE_INDEX[square] = n;
+                TRIANGLE_SQUARES[n++] = square;
+            } else {
+                TRIANGLE_INDEX[square] = -1;
+            }
+        }
+    }
+
+    private final String signature;
+    private final PieceType[] types;
+    private final boolean pawns;
+    private final int half;
+
+    /**
+     * Constructs the index of a table.
+     *
+     * @param signature the material of the table, such as "KQK" or "KBNK"
+     * @throws IllegalArgumentException if the signature is not a white king and pieces against a lone black king
+     */
+    TableIndex(String signature) {
+        this.signature = signature;
+        if (signature.length() < 2 || signature.charAt(0) != 'K' || signature.charAt(signature.length() - 1) != 'K') {
+            throw new IllegalArgumentException("Invalid table signature: " + signature);
+        }
+        types = new PieceType[signature.length() - 2];
+        boolean hasPawns = false;
+        for (int i = 0; i < types.length; i++) {
+            types[i] = typeOf(signature.charAt(i + 1));
+            if (types[i] == null || types[i] == PieceType.KING || (i > 0 && types[i].ordinal() > types[i - 1].ordinal())) {
+                throw new IllegalArgumentException("Invalid table signature: " + signature);
+            }
+            hasPawns |= types[i] == PieceType.PAWN;
+        }
+        pawns = hasPawns;
+        int size = pawns ? 32 : 10;
+        for (int i = 0; i < types.length + 1; i++) {
+            size *= 64;
+        }
+        half = size;
+    }
+
+    String getSignature() {
+        return signature;
+    }
+
+    PieceType[] getTypes() {
+        return types;
+    }
+
+    /**
+     * Returns the number of squares of a position: both kings and the white pieces.
+     */
+    int getPieceCount() {
+        return types.length + 2;
+    }
+
+    /**
+     * Returns the number of entries of the table, for both sides to move.
+     */
+    int size() {
+        return half * 2;
+    }
+
+    /**
+     * Returns whether the entry at the given index has black to move.
+     */
+    boolean isBlackToMove(int index) {
+        return index >= half;
+    }
+
+    /**
+     * Decodes an index into the squares of its position.
+     *
+     * @param index   the table index
+     * @param squares the array receiving the squares
+     */
+    void decode(int index, int[] squares) {
+        int rest = index >= half ? index - half : index;
+        for (int i = types.length + 1; i >= 1; i--) {
+            squares[i] = rest & 63;
+            rest >>>= 6;
+        }
+        squares[0] = pawns ? (rest >>> 2) * 8 + (rest & 3) : TRIANGLE_SQUARES[rest];
+    }
+
+    /**
+     * Returns the index of a position. The squares are moved to the canonical symmetric position in place.
+     *
+     * @param squares     the squares of the position
+     * @param blackToMove whether black is to move
+     * @return the table index
+     */
+    int index(int[] squares, boolean blackToMove) {
+        int n = types.length + 2;
+        if ((squares[0] & 7) > 3) {
+            transform(squares, n, 7);
+        }
+        boolean diagonal = false;
+        if (!pawns) {
+            if ((squares[0] >>> 3) < 4) {
+                transform(squares, n, 56);
+            }
+            int x = squares[0] & 7;
+            int y = 7 - (squares[0] >>> 3);
+            if (y > x) {
+                transpose(squares, n);
+            }
+            diagonal = x == y;
+        }
+        sortSamePieces(squares);
+        int index = rawIndex(squares);
+        if (diagonal) {
+            // The transposed position has the same king index, the lower of both indices is kept
+            transpose(squares, n);
+            sortSamePieces(squares);
+            int transposed = rawIndex(squares);
+            if (transposed < index) {
+                index = transposed;
+            } else {
+                transpose(squares, n);
+                sortSamePieces(squares);
+            }
+        }
+        return blackToMove ? index + half : index;
+    }
+
+    private int rawIndex(int[] squares) {
+        int index = pawns ? (squares[0] >>> 3) * 4 + (squares[0] & 7) : TRIANGLE_INDEX[squares[0]];
+        for (int i = 1; i < types.length + 2; i++) {
+            index = index * 64 + squares[i];
+        }
+        return index;
+    }
+
+    /**
+     * Sorts the squares of identical pieces, so that swapping them does not change the index.
+     */
+    private void sortSamePieces(int[] squares) {
+        for (int i = 1; i < types.length; i++) {
+            if (types[i] == types[i - 1] && squares[i + 2] < squares[i + 1]) {
+                int aux = squares[i + 1];
+                squares[i + 1] = squares[i + 2];
+                squares[i + 2] = aux;
+            }
+        }
+    }
+
+    /**
+     * Mirrors the squares left-right (mask 7) or top-bottom (mask 56).
+     */
+    private static void transform(int[] squares, int n, int mask) {
+        for (int i = 0; i < n; i++) {
+            squares[i] ^= mask;
+        }
+    }
+
+    /**
+     * Mirrors the squares along the a1-h8 diagonal.
+     */
+    private static void transpose(int[] squares, int n) {
+        for (int i = 0; i < n; i++) {
+            int row = squares[i] >>> 3;
+            int column = squares[i] & 7;
+            squares[i] = (7 - column) * 8 + (7 - row);
+        }
+    }
+
+    /**
+     * Returns the piece type of a signature letter, or null if the letter is not a piece.
+     */
+    static PieceType typeOf(char letter) {
+        for (PieceType type : PieceType.values()) {
+            if (type.getLetter().charAt(0) == letter) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the signature of the given white pieces against a lone black king.
+     *
+     * @param types the types of the white pieces, in any order
+     * @param count the number of white pieces
+     * @return the signature, with the pieces in {@link PieceType} order from the queen down
+     */
+    static String signatureOf(PieceType[] types, int count) {
+        StringBuilder sb = new StringBuilder("K");
+        for (int t = PieceType.QUEEN.ordinal(); t >= PieceType.PAWN.ordinal(); t--) {
+            for (int i = 0; i < count; i++) {
+                if (types[i].ordinal() == t) {
+                    sb.append(types[i].getLetter());
+                }
+            }
+        }
+        return sb.append('K').toString();
+    }
+}
@@ -0,0 +1,155 @@
+package chess.tablebase;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One endgame table file, read through a memory mapping.
+ * <p>
+ * The file starts with a 32-byte header: a magic number, the signature padded to 16 bytes, the number of
+ * bits per entry and the number of entries. The entries follow, bit-packed into big-endian longs. An entry
+ * is 0 for a draw, or the number of half-moves until mate plus one: white to move wins, black to move loses.
+ */
+public class Tablebase implements Closeable {
+
+    static final int MAGIC = 0x54424C31;
+    static final int HEADER_SIZE = 32;
+    private static final int SIGNATURE_SIZE = 16;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer data;
+    private final TableIndex layout;
+    private final int bits;
+    private final long mask;
+
+    /**
+     * Opens an endgame table file.
+     *
+     * @param path the path of the table file
+     * @throws IOException if the file cannot be read or is not a table file
+     */
+    public Tablebase(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+                throw new IOException("Not an endgame table file: " + path);
+            }
+            byte[] signature = new byte[SIGNATURE_SIZE];
+            data.get(4, signature);
+            int length = 0;
+            while (length < SIGNATURE_SIZE && signature[length] != 0) {
+                length++;
+            }
+            layout = new TableIndex(new String(signature, 0, length, StandardCharsets.US_ASCII));
+            bits = data.getInt(20);
+            if (data.getLong(24) != layout.size() || bits < 1 || bits > 32 ||
+                    data.capacity() < HEADER_SIZE + dataSize(layout.size(), bits)) {
+                throw new IOException("Corrupted endgame table file: " + path);
+            }
+            mask = (1L << bits) - 1;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the material of the table, such as "KQK".
+     *
+     * @return the signature of the table
+     */
+    public String getSignature() {
+        return layout.getSignature();
+    }
+
+    /**
+     * Returns the number of bits used by each entry of the file.
+     *
+     * @return the number of bits per entry
+     */
+    public int getBitsPerEntry() {
+        return bits;
+    }
+
+    TableIndex getLayout() {
+        return layout;
+    }
+
+    /**
+     * Returns the entry at the given index.
+     *
+     * @param index the table index
+     * @return 0 for a draw, or the number of half-moves until mate plus one
+     */
+    int value(int index) {
+        long bit = (long) index * bits;
+        int offset = HEADER_SIZE + (int) (bit >>> 6) * 8;
+        int shift = (int) (bit & 63);
+        long word = data.getLong(offset) >>> shift;
+        if (shift + bits > 64) {
+            word |= data.getLong(offset + 8) << (64 - shift);
+        }
+        return (int) (word & mask);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Writes a table file. Negative entries, which mark illegal or unused indices, are written as 0.
+     *
+     * @param path   the path of the table file
+     * @param layout the index of the table
+     * @param values the entries of the table
+     * @throws IOException if the file cannot be written
+     */
+    static void write(Path path, TableIndex layout, byte[] values) throws IOException {
+        int max = 1;
+        for (byte value : values) {
+            max = Math.max(max, value);
+        }
+        int bits = 32 - Integer.numberOfLeadingZeros(max);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + (int) dataSize(values.length, bits));
+        buffer.putInt(MAGIC);
+        byte[] signature = layout.getSignature().getBytes(StandardCharsets.US_ASCII);
+        buffer.put(signature).put(new byte[SIGNATURE_SIZE - signature.length]);
+        buffer.putInt(bits);
+        buffer.putLong(values.length);
+
+        long word = 0;
+        int used = 0;
+        for (byte value : values) {
+            long entry = Math.max(value, 0);
+            word |= entry << used;
+            used += bits;
+            if (used >= 64) {
+                buffer.putLong(word);
+                used -= 64;
+                word = used == 0 ? 0 : entry >>> (bits - used);
+            }
+        }
+        if (used > 0) {
+            buffer.putLong(word);
+        }
+        buffer.flip();
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        }
+    }
+
+    private static long dataSize(long entries, int bits) {
+        return (entries * bits + 63) / 64 * 8;
+    }
+}
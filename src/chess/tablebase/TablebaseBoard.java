@@ -0,0 +1,253 @@
+package chess.tablebase;
+
+import chess.Move;
+import chess.MoveGenerator;
+import chess.PieceType;
+
+/**
+ * Move generation for the positions of the endgame tables, on plain square arrays laid out as in {@link TableIndex}:
+ * the white king, the black king, then the white pieces. Black only has its king, so there is no castling and
+ * no en passant, and white pawns can only push and promote.
+ */
+final class TablebaseBoard {
+
+    private static final PieceType[] PROMOTIONS = {PieceType.QUEEN, PieceType.ROOK, PieceType.BISHOP, PieceType.KNIGHT};
+
+    private TablebaseBoard() {
+    }
+
+    static int kingDistance(int a, int b) {
+        return Math.max(Math.abs((a >>> 3) - (b >>> 3)), Math.abs((a & 7) - (b & 7)));
+    }
+
+    /**
+     * Returns whether a square is occupied by one of the pieces, ignoring the piece at the excluded index.
+     */
+    static boolean isOccupied(int square, int[] squares, int n, int excluded) {
+        for (int i = 0; i < n; i++) {
+            if (i != excluded && squares[i] == square) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether a square is attacked by white, ignoring the piece at the excluded index.
+     *
+     * @param square   the attacked square
+     * @param squares  the squares of the position
+     * @param types    the types of the white pieces
+     * @param n        the number of squares of the position
+     * @param excluded the index of a piece that is treated as absent, or -1
+     * @return true if a white piece attacks the square, false otherwise
+     */
+    static boolean isAttackedByWhite(int square, int[] squares, PieceType[] types, int n, int excluded) {
+        if (excluded != 0 && kingDistance(squares[0], square) == 1) {
+            return true;
+        }
+        for (int i = 2; i < n; i++) {
+            if (i != excluded && attacks(types[i - 2], squares[i], square, squares, n, excluded)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean attacks(PieceType type, int from, int to, int[] squares, int n, int excluded) {
+        int dr = (to >>> 3) - (from >>> 3);
+        int dc = (to & 7) - (from & 7);
+        switch (type) {
+            case PAWN:
+                return dr == -1 && Math.abs(dc) == 1;
+            case KNIGHT:
+                return Math.abs(dr * dc) == 2;
+            case BISHOP:
+                return dr != 0 && Math.abs(dr) == Math.abs(dc) && isPathClear(from, to, squares, n, excluded);
+            case ROOK:
+                return (dr == 0) != (dc == 0) && isPathClear(from, to, squares, n, excluded);
+            case QUEEN:
+                return (dr == 0 || dc == 0 || Math.abs(dr) == Math.abs(dc)) && from != to &&
+                        isPathClear(from, to, squares, n, excluded);
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isPathClear(int from, int to, int[] squares, int n, int excluded) {
+        int step = Integer.signum((to >>> 3) - (from >>> 3)) * 8 + Integer.signum((to & 7) - (from & 7));
+        for (int square = from + step; square != to; square += step) {
+            if (isOccupied(square, squares, n, excluded)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the squares form a legal position: no two pieces on a square, kings not adjacent,
+     * no pawn on the first or last row, and the side that is not to move not in check.
+     */
+    static boolean isLegal(int[] squares, PieceType[] types, int n, boolean blackToMove) {
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                if (squares[i] == squares[j]) {
+                    return false;
+                }
+            }
+            if (i >= 2 && types[i - 2] == PieceType.PAWN && (squares[i] < 8 || squares[i] >= 56)) {
+                return false;
+            }
+        }
+        if (kingDistance(squares[0], squares[1]) <= 1) {
+            return false;
+        }
+        return blackToMove || !isAttackedByWhite(squares[1], squares, types, n, -1);
+    }
+
+    /**
+     * Generates the legal moves of white, packed as in {@link Move}.
+     *
+     * @return the number of moves written
+     */
+    static int whiteMoves(int[] squares, PieceType[] types, int n, int[] moves) {
+        int count = 0;
+        for (int target : MoveGenerator.kingTargets(squares[0])) {
+            if (!isOccupied(target, squares, n, -1) && kingDistance(target, squares[1]) > 1) {
+                moves[count++] = Move.of(squares[0], target);
+            }
+        }
+        for (int i = 2; i < n; i++) {
+            int from = squares[i];
+            switch (types[i - 2]) {
+                case PAWN:
+                    int push = from - 8;
+                    if (!isOccupied(push, squares, n, -1)) {
+                        if (push < 8) {
+                            for (PieceType promotion : PROMOTIONS) {
+                                moves[count++] = Move.of(from, push, promotion);
+                            }
+                        } else {
+                            moves[count++] = Move.of(from, push);
+                            if ((from >>> 3) == 6 && !isOccupied(push - 8, squares, n, -1)) {
+                                moves[count++] = Move.of(from, push - 8);
+                            }
+                        }
+                    }
+                    break;
+                case KNIGHT:
+                    for (int target : MoveGenerator.knightTargets(from)) {
+                        if (!isOccupied(target, squares, n, -1)) {
+                            moves[count++] = Move.of(from, target);
+                        }
+                    }
+                    break;
+                default:
+                    count = slidingMoves(types[i - 2], from, squares, n, moves, count);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Generates the legal moves of the black king, including captures, packed as in {@link Move}.
+     *
+     * @return the number of moves written
+     */
+    static int blackMoves(int[] squares, PieceType[] types, int n, int[] moves) {
+        int count = 0;
+        for (int target : MoveGenerator.kingTargets(squares[1])) {
+            if (kingDistance(target, squares[0]) <= 1) {
+                continue;
+            }
+            int captured = -1;
+            for (int i = 2; i < n; i++) {
+                if (squares[i] == target) {
+                    captured = i;
+                }
+            }
+            // The king is moved first, so that it does not block the attacks on its target square
+            int king = squares[1];
+            squares[1] = target;
+            boolean attacked = isAttackedByWhite(target, squares, types, n, captured);
+            squares[1] = king;
+            if (!attacked) {
+                moves[count++] = Move.of(king, target);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Generates the squares a white piece may have come from in the previous move, packed as
+     * {@code index << 6 | square}. Promotions are not retracted, since they come from another table.
+     *
+     * @return the number of retractions written
+     */
+    static int whiteRetractions(int[] squares, PieceType[] types, int n, int[] retractions) {
+        int count = 0;
+        for (int from : MoveGenerator.kingTargets(squares[0])) {
+            if (!isOccupied(from, squares, n, -1) && kingDistance(from, squares[1]) > 1) {
+                retractions[count++] = from;
+            }
+        }
+        for (int i = 2; i < n; i++) {
+            int square = squares[i];
+            switch (types[i - 2]) {
+                case PAWN:
+                    int from = square + 8;
+                    if (from < 56 && !isOccupied(from, squares, n, -1)) {
+                        retractions[count++] = i << 6 | from;
+                        if ((square >>> 3) == 4 && !isOccupied(from + 8, squares, n, -1)) {
+                            retractions[count++] = i << 6 | (from + 8);
+                        }
+                    }
+                    break;
+                case KNIGHT:
+                    for (int target : MoveGenerator.knightTargets(square)) {
+                        if (!isOccupied(target, squares, n, -1)) {
+                            retractions[count++] = i << 6 | target;
+                        }
+                    }
+                    break;
+                default:
+                    int start = count;
+                    count = slidingMoves(types[i - 2], square, squares, n, retractions, count);
+                    for (int j = start; j < count; j++) {
+                        retractions[j] = i << 6 | Move.target(retractions[j]);
+                    }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Generates the squares the black king may have come from in the previous move, packed as
+     * {@code 1 << 6 | square}. Captures are not retracted, since they come from another table.
+     *
+     * @return the number of retractions written
+     */
+    static int blackRetractions(int[] squares, int n, int[] retractions) {
+        int count = 0;
+        for (int from : MoveGenerator.kingTargets(squares[1])) {
+            if (!isOccupied(from, squares, n, -1) && kingDistance(from, squares[0]) > 1) {
+                retractions[count++] = 1 << 6 | from;
+            }
+        }
+        return count;
+    }
+
+    private static int slidingMoves(PieceType type, int from, int[] squares, int n, int[] moves, int count) {
+        int first = type == PieceType.BISHOP ? MoveGenerator.DIAGONALS : 0;
+        int last = type == PieceType.ROOK ? MoveGenerator.DIAGONALS : MoveGenerator.DIRECTIONS;
+        for (int direction = first; direction < last; direction++) {
+            for (int square : MoveGenerator.ray(from, direction)) {
+                if (isOccupied(square, squares, n, -1)) {
+                    break;
+                }
+                moves[count++] = Move.of(from, square);
+            }
+        }
+        return count;
+    }
+}
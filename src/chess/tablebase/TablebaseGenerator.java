@@ -0,0 +1,81 @@
+package chess.tablebase;
+
+import chess.PieceType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Generates endgame table files by retrograde analysis.
+ * <p>
+ * Supported tables hold a king and one piece, or a king and two minor pieces, against a lone king, such as
+ * KQK, KRK, KPK or KBNK. In those endgames any capture by the lone king leaves a draw. Tables with a pawn
+ * need the tables of its promotions, which are generated first when missing.
+ */
+public class TablebaseGenerator {
+
+    private static final PieceType[] PROMOTIONS = {PieceType.QUEEN, PieceType.ROOK, PieceType.BISHOP, PieceType.KNIGHT};
+
+    private final Path directory;
+
+    /**
+     * Constructs a generator writing to the given directory.
+     *
+     * @param directory the directory of the table files
+     */
+    public TablebaseGenerator(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the path of the file of a table.
+     *
+     * @param signature the material of the table, such as "KQK"
+     * @return the path of the table file
+     */
+    public Path path(String signature) {
+        return directory.resolve(signature + Tablebases.EXTENSION);
+    }
+
+    /**
+     * Generates a table and writes its file, replacing any existing file.
+     *
+     * @param signature the material of the table, such as "KQK"
+     * @return the path of the table file
+     * @throws IOException              if a file cannot be read or written
+     * @throws IllegalArgumentException if the table is not supported
+     */
+    public Path generate(String signature) throws IOException {
+        TableIndex layout = new TableIndex(signature);
+        PieceType[] types = layout.getTypes();
+        boolean pawns = false;
+        for (PieceType type : types) {
+            if (types.length > 1 && type != PieceType.BISHOP && type != PieceType.KNIGHT) {
+                throw new IllegalArgumentException("Unsupported table: " + signature);
+            }
+            pawns |= type == PieceType.PAWN;
+        }
+
+        Files.createDirectories(directory);
+        byte[] values;
+        if (pawns) {
+            for (PieceType promotion : PROMOTIONS) {
+                PieceType[] promoted = {promotion};
+                String target = TableIndex.signatureOf(promoted, 1);
+                if ((promotion == PieceType.QUEEN || promotion == PieceType.ROOK) && !Files.exists(path(target))) {
+                    generate(target);
+                }
+            }
+            try (Tablebases dependencies = new Tablebases(directory)) {
+                values = new RetrogradeSolver(layout, dependencies).solve();
+            }
+        } else {
+            values = new RetrogradeSolver(layout, null).solve();
+        }
+
+        Path path = path(signature);
+        Tablebase.write(path, layout, values);
+        return path;
+    }
+}
@@ -0,0 +1,321 @@
+package chess.tablebase;
+
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.Color;
+import chess.GameResult;
+import chess.Move;
+import chess.PieceType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The set of endgame tables of a directory, probed with the positions of chess matches.
+ * <p>
+ * The tables cover a king and up to two pieces against a lone king, for either color. Positions in which
+ * castling is still possible are not distinguished. King against king, and king and a single minor piece
+ * against king, are known draws without a table.
+ */
+public class Tablebases implements Closeable {
+
+    /**
+     * Value returned when the position of the match is not covered by the tables.
+     */
+    public static final int NOT_FOUND = Integer.MIN_VALUE;
+
+    static final String EXTENSION = ".tbl";
+
+    private static final int MAX_PIECES = 4;
+
+    private final Tablebase[] tables = new Tablebase[1 << 15];
+    private final List<Tablebase> opened = new ArrayList<>();
+
+    /**
+     * Opens all the table files of a directory.
+     *
+     * @param directory the directory of the table files
+     * @throws IOException if a table file cannot be opened
+     */
+    public Tablebases(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : files) {
+                Tablebase table = new Tablebase(file);
+                opened.add(table);
+                PieceType[] types = table.getLayout().getTypes();
+                tables[materialKey(types, types.length)] = table;
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the signatures of the opened tables.
+     *
+     * @return the signatures, such as "KQK"
+     */
+    public List<String> getSignatures() {
+        List<String> signatures = new ArrayList<>();
+        for (Tablebase table : opened) {
+            signatures.add(table.getSignature());
+        }
+        return signatures;
+    }
+
+    /**
+     * Returns the win/draw/loss value of the current position for the player to move.
+     *
+     * @param match the match whose current position is probed
+     * @return 1 if the player to move wins, 0 for a draw, -1 if the player to move loses, or {@link #NOT_FOUND}
+     */
+    public int probeWdl(ChessMatch match) {
+        int[] squares = new int[MAX_PIECES + 2];
+        PieceType[] types = new PieceType[MAX_PIECES];
+        int state = load(match, squares, types);
+        if (state < 0) {
+            return NOT_FOUND;
+        }
+        int value = rawValue(squares, types, state >>> 2, (state & 1) != 0);
+        if (value <= 0) {
+            return value;
+        }
+        return (state & 1) != 0 ? -1 : 1;
+    }
+
+    /**
+     * Returns the distance to mate of the current position.
+     *
+     * @param match the match whose current position is probed
+     * @return the number of half-moves until mate with best play by both sides, -1 for a draw, or {@link #NOT_FOUND}
+     */
+    public int probeDtm(ChessMatch match) {
+        int[] squares = new int[MAX_PIECES + 2];
+        PieceType[] types = new PieceType[MAX_PIECES];
+        int state = load(match, squares, types);
+        if (state < 0) {
+            return NOT_FOUND;
+        }
+        int value = rawValue(squares, types, state >>> 2, (state & 1) != 0);
+        return value == NOT_FOUND ? NOT_FOUND : value - 1;
+    }
+
+    /**
+     * Returns a move keeping the value of the current position: the fastest mate when winning,
+     * the longest resistance when losing, and a move that keeps the draw otherwise.
+     *
+     * @param match the match whose current position is probed
+     * @return the packed move, or {@link Move#NONE} if the position is not covered or there is no legal move
+     */
+    public int bestMove(ChessMatch match) {
+        int[] squares = new int[MAX_PIECES + 2];
+        PieceType[] types = new PieceType[MAX_PIECES];
+        int state = load(match, squares, types);
+        if (state < 0) {
+            return Move.NONE;
+        }
+        int n = state >>> 2;
+        boolean blackToMove = (state & 1) != 0;
+        int current = rawValue(squares.clone(), types.clone(), n, blackToMove);
+        if (current == NOT_FOUND) {
+            return Move.NONE;
+        }
+
+        int[] moves = new int[256];
+        int count = blackToMove ? TablebaseBoard.blackMoves(squares, types, n, moves)
+                : TablebaseBoard.whiteMoves(squares, types, n, moves);
+        int[] next = new int[MAX_PIECES + 2];
+        PieceType[] nextTypes = new PieceType[MAX_PIECES];
+        int best = Move.NONE;
+        int bestValue = 0;
+        for (int i = 0; i < count; i++) {
+            int nextCount = play(squares, types, n, moves[i], next, nextTypes);
+            int value = rawValue(next, nextTypes, nextCount, !blackToMove);
+            if (value == NOT_FOUND) {
+                continue;
+            }
+            boolean better;
+            if (current == 0) {
+                better = value == 0 && best == Move.NONE;
+            } else if (!blackToMove) {
+                better = value > 0 && (best == Move.NONE || value < bestValue);
+            } else {
+                better = value > 0 && (best == Move.NONE || value > bestValue);
+            }
+            if (better) {
+                best = moves[i];
+                bestValue = value;
+            }
+        }
+        if (best == Move.NONE || (state & 2) == 0) {
+            return best;
+        }
+        return Move.of(Move.source(best) ^ 56, Move.target(best) ^ 56, Move.promotion(best));
+    }
+
+    /**
+     * Ends the match with the value of its position, when the position is covered by the tables.
+     *
+     * @param match the match to be adjudicated
+     * @return true if the match was adjudicated, false otherwise
+     */
+    public boolean adjudicate(ChessMatch match) {
+        if (match.getGameResult().isOver()) {
+            return false;
+        }
+        int wdl = probeWdl(match);
+        if (wdl == NOT_FOUND) {
+            return false;
+        }
+        if (wdl == 0) {
+            match.adjudicate(GameResult.DRAW_BY_ADJUDICATION);
+        } else {
+            Color winner = (wdl > 0) == (match.getCurrentPlayer() == Color.WHITE) ? Color.WHITE : Color.BLACK;
+            match.adjudicate(winner == Color.WHITE ? GameResult.WHITE_WINS_BY_ADJUDICATION
+                    : GameResult.BLACK_WINS_BY_ADJUDICATION);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Tablebase table : opened) {
+            table.close();
+        }
+    }
+
+    /**
+     * Returns the entry of a position of any covered material.
+     *
+     * @param squares     the squares of the position, laid out as in {@link TableIndex}; reordered in place
+     * @param types       the types of the white pieces, in the order of their squares; reordered in place
+     * @param n           the number of squares of the position
+     * @param blackToMove whether black is to move
+     * @return 0 for a draw, the number of half-moves until mate plus one, or {@link #NOT_FOUND}
+     */
+    int rawValue(int[] squares, PieceType[] types, int n, boolean blackToMove) {
+        int key = materialKey(types, n - 2);
+        if (key == 0 || key == 1 << 3 * PieceType.KNIGHT.ordinal() || key == 1 << 3 * PieceType.BISHOP.ordinal()) {
+            return 0;
+        }
+        Tablebase table = tables[key];
+        if (table == null) {
+            return NOT_FOUND;
+        }
+        // Table order lists the pieces from the queen down to the pawn
+        for (int i = 1; i < n - 2; i++) {
+            for (int j = i; j > 0 && types[j].ordinal() > types[j - 1].ordinal(); j--) {
+                PieceType type = types[j];
+                types[j] = types[j - 1];
+                types[j - 1] = type;
+                int square = squares[j + 2];
+                squares[j + 2] = squares[j + 1];
+                squares[j + 1] = square;
+            }
+        }
+        return table.value(table.getLayout().index(squares, blackToMove));
+    }
+
+    /**
+     * Plays a move on a position, writing the position reached.
+     *
+     * @return the number of squares of the position reached
+     */
+    static int play(int[] squares, PieceType[] types, int n, int move, int[] next, PieceType[] nextTypes) {
+        int source = Move.source(move);
+        int target = Move.target(move);
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (i >= 2 && squares[i] == target) {
+                continue;
+            }
+            next[count] = squares[i] == source ? target : squares[i];
+            if (i >= 2) {
+                PieceType promotion = Move.promotion(move);
+                nextTypes[count - 2] = squares[i] == source && promotion != null ? promotion : types[i - 2];
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Reads the position of a match, with the side owning the pieces as white.
+     *
+     * @return {@code count << 2 | flipped << 1 | blackToMove}, or -1 if the position cannot be covered
+     */
+    private static int load(ChessMatch match, int[] squares, PieceType[] types) {
+        int[] whiteSquares = new int[MAX_PIECES];
+        int[] blackSquares = new int[MAX_PIECES];
+        PieceType[] whiteTypes = new PieceType[MAX_PIECES];
+        PieceType[] blackTypes = new PieceType[MAX_PIECES];
+        int whiteCount = 0;
+        int blackCount = 0;
+        int whiteKing = -1;
+        int blackKing = -1;
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = match.getPiece(square);
+            if (piece == null) {
+                continue;
+            }
+            boolean white = piece.getColor() == Color.WHITE;
+            if (piece.getType() == PieceType.KING) {
+                if (white) {
+                    whiteKing = square;
+                } else {
+                    blackKing = square;
+                }
+            } else if (white && whiteCount < MAX_PIECES) {
+                whiteSquares[whiteCount] = square;
+                whiteTypes[whiteCount++] = piece.getType();
+            } else if (!white && blackCount < MAX_PIECES) {
+                blackSquares[blackCount] = square;
+                blackTypes[blackCount++] = piece.getType();
+            } else {
+                return -1;
+            }
+        }
+        if (whiteKing < 0 || blackKing < 0 || (whiteCount > 0 && blackCount > 0) ||
+                whiteCount + blackCount > MAX_PIECES - 2) {
+            return -1;
+        }
+        boolean blackToMove = match.getCurrentPlayer() == Color.BLACK;
+        boolean flipped = blackCount > 0;
+        if (flipped) {
+            // Colors are swapped and the board is mirrored top-bottom, so pawns keep moving up
+            squares[0] = blackKing ^ 56;
+            squares[1] = whiteKing ^ 56;
+            for (int i = 0; i < blackCount; i++) {
+                squares[i + 2] = blackSquares[i] ^ 56;
+                types[i] = blackTypes[i];
+            }
+            blackToMove = !blackToMove;
+        } else {
+            squares[0] = whiteKing;
+            squares[1] = blackKing;
+            for (int i = 0; i < whiteCount; i++) {
+                squares[i + 2] = whiteSquares[i];
+                types[i] = whiteTypes[i];
+            }
+        }
+        int n = whiteCount + blackCount + 2;
+        return n << 2 | (flipped ? 2 : 0) | (blackToMove ? 1 : 0);
+    }
+
+    /**
+     * Returns a number identifying the material of the white pieces, three bits per piece type.
+     */
+    static int materialKey(PieceType[] types, int count) {
+        int key = 0;
+        for (int i = 0; i < count; i++) {
+            key += 1 << 3 * types[i].ordinal();
+        }
+        return key;
+    }
+}
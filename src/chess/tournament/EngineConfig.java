@@ -0,0 +1,108 @@
+package chess.tournament;
+
+import chess.ChessMatch;
+import chess.engine.Evaluator;
+import chess.engine.Search;
+import chess.engine.TimeBudget;
+import chess.engine.TranspositionTable;
+
+/**
+ * Configuration of an engine taking part in a tournament: how long it searches and with which options.
+ * Each game creates its own search from the configuration, so games can run concurrently.
+ */
+public final class EngineConfig {
+
+    private static final int HASH_MEGABYTES = 8;
+
+    private final String name;
+    private final int depth;
+    private final long moveMillis;
+    private final boolean ordered;
+
+    private EngineConfig(String name, int depth, long moveMillis, boolean ordered) {
+        if (name.isEmpty() || name.chars().anyMatch(Character::isWhitespace)) {
+            throw new IllegalArgumentException("The engine name must be a non-empty word");
+        }
+        this.name = name;
+        this.depth = depth;
+        this.moveMillis = moveMillis;
+        this.ordered = ordered;
+    }
+
+    /**
+     * Creates an engine searching every move to a fixed depth, which makes games reproducible.
+     *
+     * @param name  the name of the engine, without spaces
+     * @param depth the search depth
+     * @return the configuration
+     * @throws IllegalArgumentException if the name is empty or contains spaces, or the depth is not positive
+     */
+    public static EngineConfig depth(String name, int depth) {
+        if (depth < 1 || depth >= Search.MAX_PLY) {
+            throw new IllegalArgumentException("The depth must be between 1 and " + (Search.MAX_PLY - 1));
+        }
+        return new EngineConfig(name, depth, 0, true);
+    }
+
+    /**
+     * Creates an engine searching every move for a fixed time.
+     *
+     * @param name       the name of the engine, without spaces
+     * @param moveMillis the time per move in milliseconds
+     * @return the configuration
+     * @throws IllegalArgumentException if the name is empty or contains spaces, or the time is not positive
+     */
+    public static EngineConfig moveTime(String name, long moveMillis) {
+        if (moveMillis <= 0) {
+            throw new IllegalArgumentException("The time per move must be positive");
+        }
+        return new EngineConfig(name, 0, moveMillis, true);
+    }
+
+    /**
+     * Returns a copy of the configuration with the move ordering heuristics enabled or disabled.
+     *
+     * @param ordered false to search the moves in generation order
+     * @return the new configuration
+     */
+    public EngineConfig withOrdering(boolean ordered) {
+        return new EngineConfig(name, depth, moveMillis, ordered);
+    }
+
+    /**
+     * Returns the name of the engine.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Creates a search for one game.
+     *
+     * @return a new search with its own transposition table
+     */
+    Search newSearch() {
+        Search search = new Search(new TranspositionTable(HASH_MEGABYTES), new Evaluator());
+        search.setOrdering(ordered);
+        return search;
+    }
+
+    /**
+     * Searches the move of the engine.
+     *
+     * @param search the search created for the game by {@link #newSearch()}
+     * @param match  the match
+     * @return the packed move
+     */
+    int move(Search search, ChessMatch match) {
+        return depth > 0 ? search.search(match, depth) : search.search(match, TimeBudget.fixed(moveMillis));
+    }
+
+    @Override
+    public String toString() {
+        return name + (depth > 0 ? " (depth " + depth : " (" + moveMillis + " ms") +
+                (ordered ? ")" : ", unordered)");
+    }
+}
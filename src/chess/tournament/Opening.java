@@ -0,0 +1,68 @@
+package chess.tournament;
+
+import chess.ChessMatch;
+import chess.Move;
+
+/**
+ * Opening of a tournament game: a start position, the initial one or one given in FEN, and moves played from it.
+ */
+public final class Opening {
+
+    private final String fen;
+    private final int[] moves;
+
+    /**
+     * Creates an opening.
+     *
+     * @param fen   the start position in Forsyth-Edwards Notation, or null for the initial position
+     * @param moves the packed moves played from the start position
+     */
+    public Opening(String fen, int[] moves) {
+        this.fen = fen;
+        this.moves = moves.clone();
+    }
+
+    /**
+     * Returns the start position.
+     *
+     * @return the position in Forsyth-Edwards Notation, or null for the initial position
+     */
+    public String getFen() {
+        return fen;
+    }
+
+    /**
+     * Returns the number of moves of the opening.
+     *
+     * @return the number of plies played from the start position
+     */
+    public int getPlies() {
+        return moves.length;
+    }
+
+    /**
+     * Creates a match in the position the opening leads to.
+     *
+     * @return the match
+     * @throws chess.exception.ChessException if the start position is not valid, or a move is illegal
+     */
+    public ChessMatch play() {
+        ChessMatch match = fen == null ? new ChessMatch() : new ChessMatch(fen);
+        for (int move : moves) {
+            match.performChessMove(move);
+        }
+        return match;
+    }
+
+    /**
+     * Returns the moves in UCI notation separated by spaces, as in a file of openings.
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < moves.length; i++) {
+            text.append(i == 0 ? "" : " ").append(Move.toString(moves[i]));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,143 @@
+package chess.tournament;
+
+/**
+ * Sequential probability ratio test deciding between two hypotheses on the Elo difference of two engines:
+ * H0, the difference is elo0, and H1, the difference is elo1.
+ * <p>
+ * The log-likelihood ratio is computed from the win, draw and loss counts with the usual normal approximation of
+ * the trinomial model, and compared after every game with the bounds given by the accepted error rates. Testing
+ * stops as soon as one bound is crossed, which usually takes far fewer games than a fixed-length match of the
+ * same power.
+ */
+public class Sprt {
+
+    /**
+     * Outcome of the test.
+     */
+    public enum Decision {
+        /**
+         * More games are needed.
+         */
+        CONTINUE,
+
+        /**
+         * H0 accepted: the difference is elo0 or less.
+         */
+        ACCEPT_H0,
+
+        /**
+         * H1 accepted: the difference is elo1 or more.
+         */
+        ACCEPT_H1
+    }
+
+    private final double elo0;
+    private final double elo1;
+    private final double lowerBound;
+    private final double upperBound;
+
+    /**
+     * Creates a test.
+     *
+     * @param elo0  the Elo difference of H0
+     * @param elo1  the Elo difference of H1, greater than elo0
+     * @param alpha the probability of accepting H1 when H0 is true
+     * @param beta  the probability of accepting H0 when H1 is true
+     * @throws IllegalArgumentException if elo1 is not greater than elo0 or an error rate is not between 0 and 1
+     */
+    public Sprt(double elo0, double elo1, double alpha, double beta) {
+        if (elo1 <= elo0) {
+            throw new IllegalArgumentException("elo1 must be greater than elo0");
+        }
+        if (alpha <= 0 || alpha >= 1 || beta <= 0 || beta >= 1) {
+            throw new IllegalArgumentException("Error rates must be between 0 and 1");
+        }
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        lowerBound = Math.log(beta / (1 - alpha));
+        upperBound = Math.log((1 - beta) / alpha);
+    }
+
+    /**
+     * Returns the log-likelihood ratio of H1 against H0 for the given results of the first engine.
+     *
+     * @param wins   the number of wins
+     * @param draws  the number of draws
+     * @param losses the number of losses
+     * @return the log-likelihood ratio, or 0 before the first game
+     */
+    public double llr(long wins, long draws, long losses) {
+        if (wins + draws + losses == 0) {
+            return 0;
+        }
+        // An outcome that did not occur yet counts as half a game, so that one-sided results can still decide
+        double winCount = Math.max(wins, 0.5);
+        double drawCount = Math.max(draws, 0.5);
+        double lossCount = Math.max(losses, 0.5);
+        double games = winCount + drawCount + lossCount;
+        double w = winCount / games;
+        double d = drawCount / games;
+        double score = w + d / 2;
+        double variance = w + d / 4 - score * score;
+        double s0 = expectedScore(elo0);
+        double s1 = expectedScore(elo1);
+        return games * (s1 - s0) * (2 * score - s0 - s1) / (2 * variance);
+    }
+
+    /**
+     * Decides whether the test can stop.
+     *
+     * @param wins   the number of wins of the first engine
+     * @param draws  the number of draws
+     * @param losses the number of losses of the first engine
+     * @return the decision
+     */
+    public Decision decide(long wins, long draws, long losses) {
+        double llr = llr(wins, draws, losses);
+        if (llr >= upperBound) {
+            return Decision.ACCEPT_H1;
+        }
+        if (llr <= lowerBound) {
+            return Decision.ACCEPT_H0;
+        }
+        return Decision.CONTINUE;
+    }
+
+    /**
+     * Returns the lower bound of the log-likelihood ratio, below which H0 is accepted.
+     *
+     * @return the lower bound
+     */
+    public double getLowerBound() {
+        return lowerBound;
+    }
+
+    /**
+     * Returns the upper bound of the log-likelihood ratio, above which H1 is accepted.
+     *
+     * @return the upper bound
+     */
+    public double getUpperBound() {
+        return upperBound;
+    }
+
+    /**
+     * Returns the expected score of the stronger player for an Elo difference.
+     *
+     * @param elo the Elo difference
+     * @return the expected score, between 0 and 1
+     */
+    public static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    /**
+     * Returns the Elo difference corresponding to a score.
+     *
+     * @param score the score, strictly between 0 and 1
+     * @return the Elo difference
+     */
+    public static double elo(double score) {
+        return -400 * Math.log10(1 / score - 1);
+    }
+}
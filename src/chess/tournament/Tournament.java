@@ -0,0 +1,422 @@
+package chess.tournament;
+
+import chess.ChessMatch;
+import chess.Color;
+import chess.GameResult;
+import chess.Move;
+import chess.MoveGenerator;
+import chess.book.OpeningBook;
+import chess.exception.ChessException;
+import chess.engine.Search;
+import chess.tablebase.Tablebases;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plays games between two engines on a pool of threads, one {@link ChessMatch} per game, until a number of games
+ * is reached or a {@link Sprt} decides.
+ * <p>
+ * Games are played in pairs from the same opening, each engine playing white once, so that an unbalanced opening
+ * favors neither engine. Openings come from a list of move sequences and EPD positions, or from an opening book,
+ * or else are made of a few random moves. Games end by the rules of the match, by the endgame tables when they are
+ * set, or as a draw after {@value #MAX_PLIES} plies.
+ * <p>
+ * Each finished game is appended to the results file and flushed at once, one line per game:
+ * game number, white engine, black engine, result, number of plies, opening moves and, for an opening that does not
+ * start from the initial position, its start position in FEN, separated by tabs. When the file already holds games
+ * of an interrupted run, they are counted and not played again, and the game left of a pair is played from the
+ * opening recorded for the other one.
+ */
+public class Tournament {
+
+    /**
+     * Number of plies after which a game is adjudicated a draw.
+     */
+    public static final int MAX_PLIES = 400;
+
+    private static final int RANDOM_OPENING_PLIES = 4;
+
+    private final EngineConfig first;
+    private final EngineConfig second;
+    private final Path results;
+
+    private List<Opening> openings = new ArrayList<>();
+    private OpeningBook openingBook;
+    private int bookPlies;
+    private Tablebases tablebases;
+    private Sprt sprt;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private BufferedWriter writer;
+    private final Set<Integer> playedGames = new HashSet<>();
+
+    /**
+     * Openings of the games read from the results file, by game number.
+     */
+    private final Map<Integer, Opening> recordedOpenings = new HashMap<>();
+    private long wins;
+    private long draws;
+    private long losses;
+    private volatile Sprt.Decision decision = Sprt.Decision.CONTINUE;
+
+    /**
+     * Creates a tournament between two engines.
+     *
+     * @param first   the engine whose results are counted: wins and losses are those of this engine
+     * @param second  the opponent
+     * @param results the file receiving the result of each game
+     * @throws IllegalArgumentException if both engines have the same name
+     */
+    public Tournament(EngineConfig first, EngineConfig second, Path results) {
+        if (first.getName().equals(second.getName())) {
+            throw new IllegalArgumentException("The engines must have different names");
+        }
+        this.first = first;
+        this.second = second;
+        this.results = results;
+    }
+
+    /**
+     * Reads openings from a text file holding one opening per line, either as moves in UCI notation from the
+     * initial position separated by spaces, or as a position in EPD or FEN. The operations of an EPD line are
+     * ignored but for the halfmove clock "hmvc" and the move number "fmvn". Empty lines and lines starting with '#'
+     * are skipped.
+     *
+     * @param path the file
+     * @return the openings
+     * @throws IOException    if the file cannot be read
+     * @throws ChessException if a line holds an invalid position, or an invalid or illegal move
+     */
+    public static List<Opening> readOpenings(Path path) throws IOException {
+        List<Opening> openings = new ArrayList<>();
+        for (String line : Files.readAllLines(path)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] tokens = line.split("\\s+");
+            Opening opening;
+            if (tokens[0].indexOf('/') >= 0) {
+                opening = new Opening(fen(line), new int[0]);
+            } else {
+                int[] moves = new int[tokens.length];
+                for (int i = 0; i < tokens.length; i++) {
+                    moves[i] = Move.fromString(tokens[i]);
+                }
+                opening = new Opening(null, moves);
+            }
+            // Checked at once rather than when a game starts from it
+            opening.play();
+            openings.add(opening);
+        }
+        return openings;
+    }
+
+    /**
+     * Returns the FEN of a line holding a position in EPD, or already in FEN.
+     */
+    private static String fen(String line) {
+        String[] tokens = line.split("\\s+", 5);
+        if (tokens.length < 4) {
+            throw new ChessException("Invalid EPD position: " + line);
+        }
+        String fen = tokens[0] + " " + tokens[1] + " " + tokens[2] + " " + tokens[3];
+        String rest = tokens.length > 4 ? tokens[4].trim() : "";
+        if (rest.matches("\\d+\\s+\\d+")) {
+            return fen + " " + rest;
+        }
+        String halfmoveClock = "0";
+        String moveNumber = "1";
+        for (String operation : rest.split(";")) {
+            String[] parts = operation.trim().split("\\s+");
+            if (parts.length == 2 && parts[0].equals("hmvc")) {
+                halfmoveClock = parts[1];
+            } else if (parts.length == 2 && parts[0].equals("fmvn")) {
+                moveNumber = parts[1];
+            }
+        }
+        return fen + " " + halfmoveClock + " " + moveNumber;
+    }
+
+    /**
+     * Sets the openings, used in turn by the game pairs.
+     *
+     * @param openings the openings
+     */
+    public void setOpenings(List<Opening> openings) {
+        this.openings = new ArrayList<>(openings);
+    }
+
+    /**
+     * Sets an opening book in which each pair picks its opening at random, when no opening list is set.
+     *
+     * @param openingBook the opening book
+     * @param plies       the maximum number of book moves of an opening
+     */
+    public void setOpeningBook(OpeningBook openingBook, int plies) {
+        this.openingBook = openingBook;
+        this.bookPlies = plies;
+    }
+
+    /**
+     * Sets the endgame tables used to adjudicate the games.
+     *
+     * @param tablebases the endgame tables, or null for none
+     */
+    public void setTablebases(Tablebases tablebases) {
+        this.tablebases = tablebases;
+    }
+
+    /**
+     * Sets the test stopping the tournament early.
+     *
+     * @param sprt the test, or null to play all the games
+     */
+    public void setSprt(Sprt sprt) {
+        this.sprt = sprt;
+    }
+
+    /**
+     * Sets the number of games played at the same time.
+     *
+     * @param threads the number of threads, by default the number of processors
+     * @throws IllegalArgumentException if the number is not positive
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be positive");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Plays the tournament, resuming the games recorded in the results file.
+     *
+     * @param pairs the number of game pairs of the tournament
+     * @return the decision of the test, or {@link Sprt.Decision#CONTINUE} if all the games were played first
+     * @throws IOException if the results file cannot be read or written
+     */
+    public Sprt.Decision run(int pairs) throws IOException {
+        readResults();
+        AtomicInteger nextPair = new AtomicInteger();
+        writer = Files.newBufferedWriter(results, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        try {
+            List<Thread> workers = new ArrayList<>();
+            List<Throwable> failures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                Thread worker = new Thread(() -> {
+                    int pair;
+                    while (decision == Sprt.Decision.CONTINUE && (pair = nextPair.getAndIncrement()) < pairs) {
+                        playPair(pair);
+                    }
+                }, "tournament-" + i);
+                worker.setUncaughtExceptionHandler((thread, e) -> {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                    nextPair.set(pairs);
+                });
+                workers.add(worker);
+                worker.start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            if (!failures.isEmpty()) {
+                Throwable failure = failures.get(0);
+                if (failure instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) failure).getCause();
+                }
+                throw new IllegalStateException("A game failed", failure);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while playing", e);
+        } finally {
+            writer.close();
+        }
+        return decision;
+    }
+
+    /**
+     * Returns the number of games won by the first engine.
+     *
+     * @return the number of wins
+     */
+    public synchronized long getWins() {
+        return wins;
+    }
+
+    /**
+     * Returns the number of drawn games.
+     *
+     * @return the number of draws
+     */
+    public synchronized long getDraws() {
+        return draws;
+    }
+
+    /**
+     * Returns the number of games lost by the first engine.
+     *
+     * @return the number of losses
+     */
+    public synchronized long getLosses() {
+        return losses;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long games = wins + draws + losses;
+        String s = first + " vs " + second + ": " + games + " games, +" + wins + " =" + draws + " -" + losses;
+        if (games > 0 && wins + draws / 2.0 > 0 && losses + draws / 2.0 > 0) {
+            s += String.format(", %+.1f Elo", Sprt.elo((wins + draws / 2.0) / games));
+        }
+        if (sprt != null) {
+            s += String.format(", LLR %.2f (%.2f, %.2f) %s", sprt.llr(wins, draws, losses),
+                    sprt.getLowerBound(), sprt.getUpperBound(), decision);
+        }
+        return s;
+    }
+
+    private void playPair(int pair) {
+        // The opening of a pair interrupted after its first game, which the second must replay
+        Opening opening = recordedOpening(2 * pair);
+        if (opening == null) {
+            opening = recordedOpening(2 * pair + 1);
+        }
+        for (int game = 2 * pair; game <= 2 * pair + 1; game++) {
+            if (!isPlayed(game)) {
+                if (opening == null) {
+                    opening = opening(pair);
+                }
+                boolean firstIsWhite = game % 2 == 0;
+                play(game, firstIsWhite ? first : second, firstIsWhite ? second : first, opening);
+            }
+        }
+    }
+
+    private void play(int game, EngineConfig white, EngineConfig black, Opening opening) {
+        ChessMatch match = opening.play();
+        Search whiteSearch = white.newSearch();
+        Search blackSearch = black.newSearch();
+        int plies = opening.getPlies();
+        while (!match.getGameResult().isOver()) {
+            if (plies >= MAX_PLIES) {
+                match.adjudicate(GameResult.DRAW_BY_ADJUDICATION);
+            } else if (tablebases == null || !tablebases.adjudicate(match)) {
+                boolean whiteToMove = match.getCurrentPlayer() == Color.WHITE;
+                int move = whiteToMove ? white.move(whiteSearch, match) : black.move(blackSearch, match);
+                match.performChessMove(move);
+                plies++;
+            }
+        }
+        record(game, white, black, match.getGameResult(), plies, opening);
+    }
+
+    private Opening opening(int pair) {
+        if (!openings.isEmpty()) {
+            return openings.get(pair % openings.size());
+        }
+        ChessMatch match = new ChessMatch();
+        List<Integer> moves = new ArrayList<>();
+        if (openingBook != null) {
+            int move;
+            while (moves.size() < bookPlies && (move = openingBook.probe(match)) != Move.NONE) {
+                match.performChessMove(move);
+                moves.add(move);
+            }
+        } else {
+            int[] buffer = new int[256];
+            while (moves.size() < RANDOM_OPENING_PLIES && !match.getGameResult().isOver()) {
+                int count = MoveGenerator.generate(match, MoveGenerator.ALL, buffer, 0);
+                int move = buffer[ThreadLocalRandom.current().nextInt(count)];
+                if (Move.promotion(move) == null && match.makeMove(move)) {
+                    match.undoMove();
+                    match.performChessMove(move);
+                    moves.add(move);
+                }
+            }
+        }
+        return new Opening(null, moves.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private synchronized boolean isPlayed(int game) {
+        return playedGames.contains(game);
+    }
+
+    private synchronized Opening recordedOpening(int game) {
+        return recordedOpenings.get(game);
+    }
+
+    private synchronized void record(int game, EngineConfig white, EngineConfig black, GameResult result,
+                                     int plies, Opening opening) {
+        StringBuilder line = new StringBuilder();
+        line.append(game).append('\t').append(white.getName()).append('\t').append(black.getName())
+                .append('\t').append(result).append('\t').append(plies).append('\t').append(opening);
+        if (opening.getFen() != null) {
+            line.append('\t').append(opening.getFen());
+        }
+        try {
+            writer.write(line.toString());
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        count(game, white.getName(), result);
+    }
+
+    /**
+     * Counts the games of an interrupted run found in the results file, and keeps their openings.
+     */
+    private void readResults() throws IOException {
+        if (!Files.exists(results)) {
+            return;
+        }
+        for (String line : Files.readAllLines(results)) {
+            String[] fields = line.split("\t");
+            if (fields.length >= 5) {
+                int game = Integer.parseInt(fields[0]);
+                count(game, fields[1], GameResult.valueOf(fields[3]));
+                // An empty opening from the initial position leaves no sixth field
+                String[] moves = fields.length > 5 && !fields[5].isEmpty() ? fields[5].split(" ") : new String[0];
+                int[] opening = new int[moves.length];
+                for (int i = 0; i < moves.length; i++) {
+                    opening[i] = Move.fromString(moves[i]);
+                }
+                recordedOpenings.put(game, new Opening(fields.length > 6 ? fields[6] : null, opening));
+            }
+        }
+    }
+
+    private synchronized void count(int game, String white, GameResult result) {
+        if (!playedGames.add(game)) {
+            return;
+        }
+        Color firstColor = white.equals(first.getName()) ? Color.WHITE : Color.BLACK;
+        if (result.isDraw()) {
+            draws++;
+        } else if (result.getWinner() == firstColor) {
+            wins++;
+        } else {
+            losses++;
+        }
+        if (sprt != null && decision == Sprt.Decision.CONTINUE) {
+            decision = sprt.decide(wins, draws, losses);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package chess.engine;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * NNUE arithmetic with the vector API, at the preferred vector size of the platform. The sizes of the network are
+ * multiples of the lane counts of vectors up to 512 bits, so the loops have no scalar tail.
+ */
+final class NnueVectorKernel extends NnueKernel {
+
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    void add(short[] accumulator, short[] weights, int offset) {
+        for (int i = 0; i < NnueNetwork.L1; i += SHORTS.length()) {
+            ShortVector.fromArray(SHORTS, accumulator, i)
+                    .add(ShortVector.fromArray(SHORTS, weights, offset + i))
+                    .intoArray(accumulator, i);
+        }
+    }
+
+    @Override
+    void subtract(short[] accumulator, short[] weights, int offset) {
+        for (int i = 0; i < NnueNetwork.L1; i += SHORTS.length()) {
+            ShortVector.fromArray(SHORTS, accumulator, i)
+                    .sub(ShortVector.fromArray(SHORTS, weights, offset + i))
+                    .intoArray(accumulator, i);
+        }
+    }
+
+    @Override
+    void clip(short[] accumulator, int[] output, int offset) {
+        int parts = SHORTS.length() / INTS.length();
+        for (int i = 0; i < NnueNetwork.L1; i += SHORTS.length()) {
+            ShortVector clipped = ShortVector.fromArray(SHORTS, accumulator, i)
+                    .max((short) 0)
+                    .min((short) NnueNetwork.MAX_ACTIVATION);
+            for (int part = 0; part < parts; part++) {
+                clipped.convertShape(VectorOperators.S2I, INTS, part)
+                        .reinterpretAsInts()
+                        .intoArray(output, offset + i + part * INTS.length());
+            }
+        }
+    }
+
+    @Override
+    int dot(int[] input, int[] weights, int offset, int length) {
+        IntVector sum = IntVector.zero(INTS);
+        for (int i = 0; i < length; i += INTS.length()) {
+            sum = sum.add(IntVector.fromArray(INTS, input, i).mul(IntVector.fromArray(INTS, weights, offset + i)));
+        }
+        return sum.reduceLanes(VectorOperators.ADD);
+    }
+
+    @Override
+    String getName() {
+        return "vector " + SHORTS.vectorBitSize() + " bits";
+    }
+}